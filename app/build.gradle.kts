@@ -69,6 +69,8 @@ android {
             // Use JUnit 4 instead of JUnit 5 platform since our tests are written in JUnit 4
             all {
                 it.useJUnit()
+                // benchmarks under src/test are skipped unless run with -Pbench
+                it.systemProperty("smarthat.bench", project.hasProperty("bench").toString())
             }
         }
     }
@@ -85,6 +87,9 @@ configurations.all {
 }
 
 dependencies {
+    // android-free ingest pipeline
+    implementation(project(":core"))
+    
     // Core Android
     implementation("androidx.appcompat:appcompat:1.6.1")
     implementation("com.google.android.material:material:1.11.0")
@@ -109,6 +114,7 @@ dependencies {
 
     // Testing - JUnit
     testImplementation("junit:junit:4.13.2")
+    testImplementation(testFixtures(project(":core"))) // MicroBenchmark
     
     // Update Mockito configurations
     testImplementation("org.mockito:mockito-core:5.4.0")
@@ -8,6 +8,7 @@ import android.util.Log;
 
 import com.google.android.material.color.DynamicColors;
 import com.team12.smarthat.database.DatabaseHelper;
+import com.team12.smarthat.utils.ThresholdConfig;
 
 /** 
  * 
@@ -32,6 +33,9 @@ public class AppController extends Application {
         // Initialize database
         DatabaseHelper.initialize(this);
         
+        // Threshold snapshot for the sample path, follows preference changes
+        ThresholdConfig.initialize(this);
+        
         // Apply dynamic colors on Android 12+ devices (like Pixel 4a)
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
             DynamicColors.applyToActivitiesIfAvailable(this);
@@ -107,6 +111,10 @@ public class AppController extends Application {
         // Aggressively handle memory pressure to prevent system killing the app
         if (level >= TRIM_MEMORY_MODERATE) {
             Log.w(TAG, "Memory pressure detected: " + level);
+            
+            // we may be killed next, get journaled samples on disk and the pending batch into room
+            DatabaseHelper.getInstance().flush();
+            
             System.gc();
         }
     }
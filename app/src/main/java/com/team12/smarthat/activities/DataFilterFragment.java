@@ -5,7 +5,10 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.EditText;
+import android.widget.RadioGroup;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -15,13 +18,17 @@ import androidx.fragment.app.DialogFragment;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.team12.smarthat.R;
 import com.team12.smarthat.models.DataFilter;
+import com.team12.smarthat.models.SensorData;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
 
 public class DataFilterFragment extends DialogFragment {
+    private static final String ARG_SOURCE_FILTER = "source_filter";
 
     public interface FilterListener {
         void onFilterChanged(DataFilter filter);
@@ -29,11 +36,27 @@ public class DataFilterFragment extends DialogFragment {
 
     // ui elements
     private EditText etStartDate, etEndDate;
+    private CheckBox cbDust, cbNoise, cbGas;
+    private EditText etMinValue, etMaxValue;
+    private TextView tvSource;
+    private RadioGroup rgSource;
     private Button btnApply, btnClearFilters;
     private FloatingActionButton btnClose;
 
     private FilterListener filterListener;
 
+    /**
+     *
+     * @param sourceFilter false for lists with no source, e.g. breach episodes, hides the source choice
+     */
+    public static DataFilterFragment newInstance(boolean sourceFilter) {
+        DataFilterFragment fragment = new DataFilterFragment();
+        Bundle args = new Bundle();
+        args.putBoolean(ARG_SOURCE_FILTER, sourceFilter);
+        fragment.setArguments(args);
+        return fragment;
+    }
+
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
      
@@ -46,6 +69,13 @@ public class DataFilterFragment extends DialogFragment {
     private void initializeComponents(View view) {
         etStartDate = view.findViewById(R.id.et_start_date);
         etEndDate = view.findViewById(R.id.et_end_date);
+        cbDust = view.findViewById(R.id.cb_filter_dust);
+        cbNoise = view.findViewById(R.id.cb_filter_noise);
+        cbGas = view.findViewById(R.id.cb_filter_gas);
+        etMinValue = view.findViewById(R.id.et_min_value);
+        etMaxValue = view.findViewById(R.id.et_max_value);
+        tvSource = view.findViewById(R.id.tv_source);
+        rgSource = view.findViewById(R.id.rg_source);
         btnClose = view.findViewById(R.id.btn_close);
         btnApply = view.findViewById(R.id.btn_apply);
         btnClearFilters = view.findViewById(R.id.btn_clear_filters);
@@ -55,30 +85,71 @@ public class DataFilterFragment extends DialogFragment {
         btnClose.setOnClickListener(v -> dismiss());
         btnApply.setOnClickListener(v -> applyFilter());
         btnClearFilters.setOnClickListener(v -> clearFilters());
+        if(!isSourceFilterEnabled()) {
+            tvSource.setVisibility(View.GONE);
+            rgSource.setVisibility(View.GONE);
+        }
+    }
+
+    private boolean isSourceFilterEnabled() {
+        Bundle args = getArguments();
+        return args == null || args.getBoolean(ARG_SOURCE_FILTER, true);
     }
 
     private void applyFilter() {
         DataFilter dataFilter = createDataFilter();
         if(dataFilter != null) {
             if(filterListener != null) {
-                filterListener.onFilterChanged(dataFilter);
+                // nothing selected is the same as no filter
+                filterListener.onFilterChanged(dataFilter.isEmpty() ? null : dataFilter);
             }
             dismiss();
         }
     }
 
     private DataFilter createDataFilter() {
-     
+        DataFilter dataFilter = new DataFilter();
+        if(!applyDateRange(dataFilter) || !applyValueRange(dataFilter)) {
+            return null;
+        }
+
+        Set<String> sensorTypes = new HashSet<>();
+        if(cbDust.isChecked()) {
+            sensorTypes.add(SensorData.TYPE_DUST);
+        }
+        if(cbNoise.isChecked()) {
+            sensorTypes.add(SensorData.TYPE_NOISE);
+        }
+        if(cbGas.isChecked()) {
+            sensorTypes.add(SensorData.TYPE_GAS);
+        }
+        dataFilter.setSensorTypes(sensorTypes);
+
+        int sourceId = isSourceFilterEnabled() ? rgSource.getCheckedRadioButtonId() : View.NO_ID;
+        if(sourceId == R.id.rb_source_real) {
+            dataFilter.setSource(SensorData.SOURCE_REAL);
+        } else if(sourceId == R.id.rb_source_test) {
+            dataFilter.setSource(SensorData.SOURCE_TEST);
+        }
+        return dataFilter;
+    }
+
+    /**
+     * dates are optional but must be given together
+     * @return false if the input was rejected
+     */
+    private boolean applyDateRange(DataFilter dataFilter) {
         String startDateRaw = etStartDate.getText().toString().trim();
         String endDateRaw = etEndDate.getText().toString().trim();
         
-        
+        if(startDateRaw.isEmpty() && endDateRaw.isEmpty()) {
+            return true;
+        }
         if(startDateRaw.isEmpty() || endDateRaw.isEmpty()) {
             Toast.makeText(getActivity().getBaseContext(), "Please enter a start and an end date", Toast.LENGTH_SHORT).show();
-            return null;
+            return false;
         }
         
-        
         try {
             
             String startDateString = startDateRaw.replace("-", "/") + " 00:00";
@@ -89,19 +160,44 @@ public class DataFilterFragment extends DialogFragment {
 
             if (startDate == null || endDate == null) {
                 Toast.makeText(getActivity().getBaseContext(), "Invalid date format. Please use MM-DD-YY format.", Toast.LENGTH_SHORT).show();
-                return null;
+                return false;
             }
 
            
             if(!startDate.before(endDate)) {
                 Toast.makeText(getActivity().getBaseContext(), "Start date must be before the end date", Toast.LENGTH_SHORT).show();
-                return null;
+                return false;
             }
 
-            return new DataFilter(startDate, endDate);
+            dataFilter.setStartDate(startDate);
+            dataFilter.setEndDate(endDate);
+            return true;
         } catch(ParseException e) {
             Toast.makeText(getActivity().getBaseContext(), "Invalid date format. Please use MM-DD-YY format.", Toast.LENGTH_SHORT).show();
-            return null;
+            return false;
+        }
+    }
+
+    /**
+     * either bound may be left empty
+     * @return false if the input was rejected
+     */
+    private boolean applyValueRange(DataFilter dataFilter) {
+        String minRaw = etMinValue.getText().toString().trim();
+        String maxRaw = etMaxValue.getText().toString().trim();
+        try {
+            Float minValue = minRaw.isEmpty() ? null : Float.parseFloat(minRaw);
+            Float maxValue = maxRaw.isEmpty() ? null : Float.parseFloat(maxRaw);
+            if(minValue != null && maxValue != null && minValue > maxValue) {
+                Toast.makeText(getActivity().getBaseContext(), "Min value must not be above the max value", Toast.LENGTH_SHORT).show();
+                return false;
+            }
+            dataFilter.setMinValue(minValue);
+            dataFilter.setMaxValue(maxValue);
+            return true;
+        } catch(NumberFormatException e) {
+            Toast.makeText(getActivity().getBaseContext(), "Invalid value range", Toast.LENGTH_SHORT).show();
+            return false;
         }
     }
 
@@ -0,0 +1,86 @@
+package com.team12.smarthat.activities;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.ViewModel;
+
+import com.team12.smarthat.database.DatabaseHelper;
+import com.team12.smarthat.database.SensorDataExport;
+import com.team12.smarthat.models.DataFilter;
+
+import java.io.File;
+
+/**
+ * owns the history screen's export so it outlives a rotation
+ * the export is only cancelled when the screen is really closed (onCleared)
+ * listener callbacks arrive on the main thread
+ */
+public class ExportViewModel extends ViewModel implements SensorDataExport.Listener {
+    // percent while an export runs, -1 before the row count is known, null when idle
+    private final MutableLiveData<Integer> progress = new MutableLiveData<>();
+    // outcome message, cleared once shown so a rotation doesn't show it again
+    private final MutableLiveData<String> result = new MutableLiveData<>();
+    private SensorDataExport export;
+
+    public boolean isRunning() {
+        return export != null;
+    }
+
+    public void start(DataFilter filter, SensorDataExport.Format format, boolean gzip, File directory) {
+        progress.setValue(-1);
+        export = DatabaseHelper.getInstance().exportReadings(filter, format, gzip, directory, this);
+    }
+
+    public void cancel() {
+        if (export != null) {
+            export.cancel();
+        }
+    }
+
+    public LiveData<Integer> getProgress() {
+        return progress;
+    }
+
+    public LiveData<String> getResult() {
+        return result;
+    }
+
+    public void consumeResult() {
+        result.setValue(null);
+    }
+
+    @Override
+    public void onProgress(long rowsWritten, long totalRows) {
+        if (totalRows > 0) {
+            // rows inserted during the export can push it past the starting count
+            progress.setValue((int) Math.min(100, rowsWritten * 100 / totalRows));
+        }
+    }
+
+    @Override
+    public void onComplete(File file, long rowsWritten) {
+        finish(rowsWritten + " readings exported to " + file.getName());
+    }
+
+    @Override
+    public void onCancelled() {
+        finish("Export cancelled");
+    }
+
+    @Override
+    public void onError(Exception e) {
+        finish("Export failed");
+    }
+
+    private void finish(String message) {
+        export = null;
+        progress.setValue(null);
+        result.setValue(message);
+    }
+
+    @Override
+    protected void onCleared() {
+        // the screen is gone for good, don't leave a .part file behind
+        cancel();
+    }
+}
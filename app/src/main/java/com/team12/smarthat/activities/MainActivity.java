@@ -13,11 +13,13 @@ import android.content.SharedPreferences;
 import android.content.res.Resources;
 import android.graphics.Color;
 import android.graphics.PorterDuff;
+import android.graphics.Typeface;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
 import android.view.Menu;
@@ -39,17 +41,25 @@ import androidx.core.content.ContextCompat;
 import com.github.anastr.speedviewlib.PointerSpeedometer;
 import com.github.anastr.speedviewlib.components.Section;
 import com.team12.smarthat.R;
+import com.team12.smarthat.bluetooth.core.BleCaptureRecorder;
 import com.team12.smarthat.bluetooth.core.BleConnectionManager;
 import com.team12.smarthat.bluetooth.core.BluetoothServiceIntegration;
 import com.team12.smarthat.bluetooth.core.MockBleConnectionManager;
 import com.team12.smarthat.bluetooth.devices.esp32.ESP32BluetoothSpec;
+import com.team12.smarthat.core.LatencyTracer;
 import com.team12.smarthat.database.DatabaseHelper;
 import com.team12.smarthat.models.SensorData;
 import com.team12.smarthat.permissions.BluetoothPermissionManager;
 import com.team12.smarthat.utils.Constants;
+import com.team12.smarthat.utils.LiveStatistics;
 import com.team12.smarthat.utils.NotificationUtils;
+import com.team12.smarthat.utils.SensorScenario;
 import com.team12.smarthat.utils.TestDataGenerator;
+import com.team12.smarthat.utils.ThresholdConfig;
 
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.Locale;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -85,6 +95,8 @@ public class MainActivity extends AppCompatActivity implements
     // ble connection management
     private BleConnectionManager connectionManager;
     private BluetoothServiceIntegration btIntegration;
+    // raw payload capture, handed to every integration instance, null when off
+    private BleCaptureRecorder captureRecorder;
     
     // added to support switching between real and mock ble managers
     private MockBleConnectionManager mockConnectionManager;
@@ -152,6 +164,11 @@ public class MainActivity extends AppCompatActivity implements
         MenuItem testModeItem = menu.findItem(R.id.action_test_mode);
         testModeItem.setVisible(Constants.DEV_MODE);
         
+        MenuItem captureItem = menu.findItem(R.id.action_ble_capture);
+        if (captureItem != null) {
+            captureItem.setChecked(captureRecorder != null && captureRecorder.isRecording());
+        }
+        
         // Update test mode menu items
         if (testDataGenerator != null) {
             TestDataGenerator.TestMode currentMode = testDataGenerator.getCurrentMode();
@@ -168,6 +185,11 @@ public class MainActivity extends AppCompatActivity implements
             if (highNoiseItem != null) highNoiseItem.setChecked(currentMode == TestDataGenerator.TestMode.HIGH_NOISE);
             if (highGasItem != null) highGasItem.setChecked(currentMode == TestDataGenerator.TestMode.HIGH_GAS);
             if (randomItem != null) randomItem.setChecked(currentMode == TestDataGenerator.TestMode.RANDOM);
+            
+            MenuItem loadItem = menu.findItem(R.id.action_test_mode_load);
+            if (loadItem != null) loadItem.setChecked(testDataGenerator.isLoadTestActive());
+            MenuItem scenarioItem = menu.findItem(R.id.action_test_mode_scenario);
+            if (scenarioItem != null) scenarioItem.setChecked(testDataGenerator.isScenarioActive());
         }
         
         return super.onPrepareOptionsMenu(menu);
@@ -187,6 +209,15 @@ public class MainActivity extends AppCompatActivity implements
             Intent intent = new Intent(this, SettingsActivity.class);
             startActivity(intent);
             return true;
+        } else if (id == R.id.action_ble_capture) {
+            toggleBleCapture();
+            return true;
+        } else if (id == R.id.action_live_statistics) {
+            showLiveStatistics();
+            return true;
+        } else if (id == R.id.action_latency_report) {
+            showLatencyReport();
+            return true;
         } else if (id == R.id.action_test_mode_off) {
             setTestMode(TestDataGenerator.TestMode.OFF);
             return true;
@@ -205,6 +236,12 @@ public class MainActivity extends AppCompatActivity implements
         } else if (id == R.id.action_test_mode_random) {
             setTestMode(TestDataGenerator.TestMode.RANDOM);
             return true;
+        } else if (id == R.id.action_test_mode_load) {
+            toggleLoadTest();
+            return true;
+        } else if (id == R.id.action_test_mode_scenario) {
+            toggleScenario();
+            return true;
         }
         
         return super.onOptionsItemSelected(item);
@@ -297,6 +334,9 @@ public class MainActivity extends AppCompatActivity implements
             
 
             
+            // close the capture file, the preference keeps it on for the next launch
+            stopBleCapture();
+            
             // remove listeners to prevent callbacks during cleanup
             if (btIntegration != null) {
                 btIntegration.removeSensorDataListener(this);
@@ -411,10 +451,16 @@ public class MainActivity extends AppCompatActivity implements
         mockConnectionManager = MockBleConnectionManager.getInstance(this, permissionManager);
 
         btIntegration = new BluetoothServiceIntegration(connectionManager);
+        btIntegration.setCaptureRecorder(captureRecorder);
         btIntegration.addSensorDataListener(this);
         
         // set up lifecycle aware connection state observation
         btIntegration.observeConnectionState(this);
+        
+        // capture stays on across launches until it is switched off
+        if (getSharedPreferences(Constants.PREF_NAME, MODE_PRIVATE).getBoolean(Constants.PREF_BLE_CAPTURE_ENABLED, false)) {
+            startBleCapture();
+        }
 
         notificationUtils = new NotificationUtils(this);
         
@@ -424,6 +470,166 @@ public class MainActivity extends AppCompatActivity implements
     }
     // endregion
 
+    // region ble capture
+    /**
+     * all three sensors at LOAD_TEST_RATE_HZ with jitter, through the mock connection
+     */
+    private void toggleLoadTest() {
+        if (testDataGenerator != null && testDataGenerator.isLoadTestActive()) {
+            testDataGenerator.stopLoadTest();
+            showToast("Load test stopped");
+        } else if (!testModeActive || testDataGenerator == null
+                || mockConnectionManager.getCurrentState() != BleConnectionManager.ConnectionState.CONNECTED) {
+            showToast("Connect in test mode to run a load test");
+        } else {
+            int hz = Constants.LOAD_TEST_RATE_HZ;
+            TestDataGenerator.LoadProfile profile = new TestDataGenerator.LoadProfile(hz, hz, hz)
+                    .setShape(TestDataGenerator.LoadProfile.Shape.JITTER);
+            if (testDataGenerator.startLoadTest(profile)) {
+                showToast("Load test: " + hz + " Hz per sensor");
+            }
+        }
+        invalidateOptionsMenu();
+    }
+    
+    /**
+     * the alert walkthrough scenario with the fixed seed, the same data on every run
+     */
+    private void toggleScenario() {
+        if (testDataGenerator != null && testDataGenerator.isScenarioActive()) {
+            testDataGenerator.stopScenario();
+            showToast("Scenario stopped");
+        } else if (!testModeActive || testDataGenerator == null
+                || mockConnectionManager.getCurrentState() != BleConnectionManager.ConnectionState.CONNECTED) {
+            showToast("Connect in test mode to play a scenario");
+        } else {
+            if (testDataGenerator.startScenario(SensorScenario.alertWalkthrough(Constants.TEST_SCENARIO_SEED))) {
+                showToast("Playing scripted scenario");
+            }
+        }
+        invalidateOptionsMenu();
+    }
+    
+    private void toggleBleCapture() {
+        boolean enable = captureRecorder == null;
+        if (enable && !startBleCapture()) {
+            showToast("Could not start BLE capture");
+            return;
+        }
+        if (!enable) {
+            stopBleCapture();
+        }
+        getSharedPreferences(Constants.PREF_NAME, MODE_PRIVATE).edit()
+                .putBoolean(Constants.PREF_BLE_CAPTURE_ENABLED, enable).apply();
+        showToast(enable ? "Recording raw BLE data" : "BLE capture saved");
+        invalidateOptionsMenu();
+    }
+    
+    /**
+     * per-stage latency percentiles since the last reset, also written to the log
+     */
+    private void showLatencyReport() {
+        LatencyTracer tracer = LatencyTracer.getInstance();
+        String report = tracer.report();
+        Log.i(Constants.TAG_MAIN, "Sample latency:\n" + report);
+        
+        TextView reportView = new TextView(this);
+        reportView.setTypeface(Typeface.MONOSPACE);
+        reportView.setTextSize(11);
+        reportView.setText(report);
+        int padding = (int) (16 * getResources().getDisplayMetrics().density);
+        reportView.setPadding(padding, padding, padding, padding);
+        
+        new AlertDialog.Builder(this)
+            .setTitle("Sample Latency")
+            .setView(reportView)
+            .setPositiveButton("OK", null)
+            .setNeutralButton("Reset", (dialog, which) -> tracer.reset())
+            .show();
+    }
+    
+    /**
+     * rolling window statistics of the real sensor readings, test data is left out
+     */
+    private void showLiveStatistics() {
+        LiveStatistics statistics = LiveStatistics.getInstance();
+        String report = statistics.report();
+        Log.i(Constants.TAG_MAIN, "Live statistics:\n" + report);
+        
+        TextView reportView = new TextView(this);
+        reportView.setTypeface(Typeface.MONOSPACE);
+        reportView.setTextSize(11);
+        reportView.setText(report);
+        int padding = (int) (16 * getResources().getDisplayMetrics().density);
+        reportView.setPadding(padding, padding, padding, padding);
+        
+        new AlertDialog.Builder(this)
+            .setTitle("Live Statistics (last " + Constants.LIVE_STATS_WINDOW_MS / 60000 + " min)")
+            .setView(reportView)
+            .setPositiveButton("OK", null)
+            .setNeutralButton("Reset", (dialog, which) -> statistics.reset())
+            .show();
+    }
+    
+    /**
+     * start a new capture file under files/captures and hand it to the integration
+     * only the newest BLE_CAPTURE_MAX_FILES captures are kept, a full one rolls over to a new file
+     * @return true if recording
+     */
+    private boolean startBleCapture() {
+        File directory = new File(getFilesDir(), Constants.BLE_CAPTURE_DIR);
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(Constants.TAG_MAIN, "Could not create ble capture folder");
+            return false;
+        }
+        // room for the one about to start
+        BleCaptureRecorder.deleteOldCaptures(directory, Constants.BLE_CAPTURE_MAX_FILES - 1);
+        
+        String name = "ble_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date()) + ".shcap";
+        BleCaptureRecorder recorder = new BleCaptureRecorder(new File(directory, name),
+                Constants.BLE_CAPTURE_BUFFER_SIZE, Constants.BLE_CAPTURE_FLUSH_INTERVAL_MS, Constants.BLE_CAPTURE_MAX_BYTES);
+        recorder.setLimitListener(full -> mainHandler.post(() -> rollOverBleCapture(full)));
+        if (!recorder.start(System.currentTimeMillis(), SystemClock.elapsedRealtimeNanos())) {
+            return false;
+        }
+        captureRecorder = recorder;
+        if (btIntegration != null) {
+            btIntegration.setCaptureRecorder(recorder);
+        }
+        return true;
+    }
+    
+    // the capture hit its size limit, close it and keep recording into a new file
+    private void rollOverBleCapture(BleCaptureRecorder full) {
+        if (captureRecorder != full) {
+            // already stopped or replaced
+            return;
+        }
+        stopBleCapture();
+        if (startBleCapture()) {
+            showToast("BLE capture file full, continuing in a new file");
+        } else {
+            getSharedPreferences(Constants.PREF_NAME, MODE_PRIVATE).edit()
+                    .putBoolean(Constants.PREF_BLE_CAPTURE_ENABLED, false).apply();
+            showToast("BLE capture file full, recording stopped");
+        }
+        invalidateOptionsMenu();
+    }
+    
+    private void stopBleCapture() {
+        if (captureRecorder == null) {
+            return;
+        }
+        if (btIntegration != null) {
+            btIntegration.setCaptureRecorder(null);
+        }
+        // the last write and fsync stay off the main thread
+        BleCaptureRecorder recorder = captureRecorder;
+        captureRecorder = null;
+        new Thread(recorder::stop, "BleCaptureStop").start();
+    }
+    // endregion
+
     // region ui config
     private void setupUI() {
         tvStatus.setText(R.string.status_disconnected);
@@ -530,6 +736,10 @@ public class MainActivity extends AppCompatActivity implements
                     if (testDataGenerator != null && testDataGenerator.isTestModeActive()) {
                         testDataGenerator.stopTestMode();
                     }
+                    if (testDataGenerator != null) {
+                        testDataGenerator.stopLoadTest();
+                        testDataGenerator.stopScenario();
+                    }
                 }
             }
         });
@@ -920,15 +1130,20 @@ public class MainActivity extends AppCompatActivity implements
         });
     }
 
-    private void updateSensorDisplays(SensorData data) {
+    /**
+     *
+     * @param checkThresholds false for a suspected spike, it is shown and stored without alerting
+     */
+    private void updateSensorDisplays(SensorData data, boolean checkThresholds) {
         try {
+            // one snapshot per sample, shared with the threshold handlers
+            ThresholdConfig config = ThresholdConfig.get();
             if (data.isDustData()) {
                 String dustText = getString(R.string.dust_format, data.getValue());
                 tvDust.setText(dustText);
                 
                 // Check if the value exceeds custom threshold
-                float dustThreshold = getCustomDustThreshold();
-                if (data.getValue() > dustThreshold) {
+                if (config.isBreach(data)) {
                     tvDust.setTextColor(Color.RED);
                 } else {
                     tvDust.setTextColor(ContextCompat.getColor(this, R.color.sensor_value));
@@ -942,14 +1157,15 @@ public class MainActivity extends AppCompatActivity implements
                 }
                 
                 // Use our custom threshold handler
-                handleDustSensorData(data);
+                if (checkThresholds) {
+                    handleDustSensorData(data, config);
+                }
             } else if (data.isNoiseData()) {
                 String noiseText = getString(R.string.noise_format, data.getValue());
                 tvNoise.setText(noiseText);
                 
                 // Check if the value exceeds custom threshold
-                float noiseThreshold = getCustomNoiseThreshold();
-                if (data.getValue() > noiseThreshold) {
+                if (config.isBreach(data)) {
                     tvNoise.setTextColor(Color.RED);
                 } else {
                     tvNoise.setTextColor(ContextCompat.getColor(this, R.color.sensor_value));
@@ -963,17 +1179,16 @@ public class MainActivity extends AppCompatActivity implements
                 }
                 
                 // Use our custom threshold handler
-                handleNoiseSensorData(data);
+                if (checkThresholds) {
+                    handleNoiseSensorData(data, config);
+                }
             } else if (data.isGasData()) {
                 // Update gas value text
                 String gasText = getString(R.string.gas_format, data.getValue());
                 tvGasValue.setText(gasText);
                 
-                // Get custom threshold for gas
-                float gasThreshold = getCustomGasThreshold();
-                
                 // Check if the value exceeds custom threshold
-                if (data.getValue() > gasThreshold) {
+                if (config.isBreach(data)) {
                     tvGasValue.setTextColor(Color.RED);
                 } else {
                     tvGasValue.setTextColor(ContextCompat.getColor(this, R.color.sensor_value));
@@ -1011,8 +1226,11 @@ public class MainActivity extends AppCompatActivity implements
                 }
                 
                 // Use our custom threshold handler
-                handleGasSensorData(data);
+                if (checkThresholds) {
+                    handleGasSensorData(data, config);
+                }
             }
+            LatencyTracer.getInstance().markSample(data, LatencyTracer.STAGE_DISPLAYED);
             
             // update db in background only save real data by default
             if (!data.isTestData()) {
@@ -1042,7 +1260,7 @@ public class MainActivity extends AppCompatActivity implements
                 }
                 
                 // update ui
-                updateSensorDisplays(data);
+                updateSensorDisplays(data, true);
                 
                 // log4debug
                 if (data.isTestData()) {
@@ -1056,6 +1274,27 @@ public class MainActivity extends AppCompatActivity implements
         });
     }
 
+    /**
+     * a lone reading the spike filter flagged, shown and stored with its flag but not alerted on
+     */
+    @Override
+    public void onSuspectedSpike(SensorData data, String sensorType, float median) {
+        if (data == null) {
+            return;
+        }
+
+        mainHandler.post(() -> {
+            try {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                updateSensorDisplays(data, false);
+            } catch (Exception e) {
+                Log.e(Constants.TAG_MAIN, "Error handling suspected spike: " + e.getMessage());
+            }
+        });
+    }
+
     /**
      * show a toast message
      */
@@ -1306,6 +1545,7 @@ public class MainActivity extends AppCompatActivity implements
                         btIntegration.cleanup();
                     }
                     btIntegration = new BluetoothServiceIntegration(mockConnectionManager);
+                    btIntegration.setCaptureRecorder(captureRecorder);
                     btIntegration.addSensorDataListener(this);
                     testModeActive = true;
                     updateTestModeUI(mode);
@@ -1322,6 +1562,7 @@ public class MainActivity extends AppCompatActivity implements
                         btIntegration.cleanup();
                     }
                     btIntegration = new BluetoothServiceIntegration(connectionManager);
+                    btIntegration.setCaptureRecorder(captureRecorder);
                     btIntegration.addSensorDataListener(this);
                     tvTestMode.setVisibility(View.GONE);
                     testModeActive = false;
@@ -1370,33 +1611,14 @@ public class MainActivity extends AppCompatActivity implements
     }
     // endregion
 
-    // Get custom dust threshold
-    private float getCustomDustThreshold() {
-        SharedPreferences prefs = getSharedPreferences(Constants.PREF_NAME, MODE_PRIVATE);
-        return prefs.getFloat(Constants.PREF_DUST_THRESHOLD, Constants.DUST_THRESHOLD);
-    }
-    
-    // Get custom noise threshold
-    private float getCustomNoiseThreshold() {
-        SharedPreferences prefs = getSharedPreferences(Constants.PREF_NAME, MODE_PRIVATE);
-        return prefs.getFloat(Constants.PREF_NOISE_THRESHOLD, Constants.NOISE_THRESHOLD);
-    }
-    
-    // Get custom gas threshold
-    private float getCustomGasThreshold() {
-        SharedPreferences prefs = getSharedPreferences(Constants.PREF_NAME, MODE_PRIVATE);
-        return prefs.getFloat(Constants.PREF_GAS_THRESHOLD, Constants.GAS_THRESHOLD);
-    }
-
-    private void handleDustSensorData(SensorData data) {
-        // Get custom threshold
-        float dustThreshold = getCustomDustThreshold();
+    private void handleDustSensorData(SensorData data, ThresholdConfig config) {
+        float dustThreshold = config.getDustThreshold();
         
         // Check if value exceeds threshold
-        if (data.getValue() > dustThreshold) {
+        if (config.isBreach(data)) {
             // Show alert
             if (notificationUtils != null) {
-                notificationUtils.showDustAlert(data);
+                notificationUtils.showDustAlert(data, config);
             }
             
             // Log for test data
@@ -1408,12 +1630,11 @@ public class MainActivity extends AppCompatActivity implements
         }
     }
 
-    private void handleNoiseSensorData(SensorData data) {
-        // Get custom threshold
-        float noiseThreshold = getCustomNoiseThreshold();
+    private void handleNoiseSensorData(SensorData data, ThresholdConfig config) {
+        float noiseThreshold = config.getNoiseThreshold();
         
         // Check if noise exceeds threshold
-        if (data.getValue() > noiseThreshold) {
+        if (config.isBreach(data)) {
             // Track sustained high noise
             long currentTime = System.currentTimeMillis();
             
@@ -1425,7 +1646,7 @@ public class MainActivity extends AppCompatActivity implements
             } else if (currentTime - highNoiseStartTime >= SUSTAINED_NOISE_THRESHOLD_MS) {
                 // High noise sustained for required duration, trigger alert
                 if (notificationUtils != null) {
-                    notificationUtils.showNoiseAlert(data);
+                    notificationUtils.showNoiseAlert(data, config);
                 }
                 
                 // log for test data
@@ -1447,15 +1668,14 @@ public class MainActivity extends AppCompatActivity implements
         }
     }
     
-    private void handleGasSensorData(SensorData data) {
-        // Get custom threshold
-        float gasThreshold = getCustomGasThreshold();
+    private void handleGasSensorData(SensorData data, ThresholdConfig config) {
+        float gasThreshold = config.getGasThreshold();
         
         // Check if value exceeds threshold
-        if (data.getValue() > gasThreshold) {
+        if (config.isBreach(data)) {
             // Show alert
             if (notificationUtils != null) {
-                notificationUtils.showGasAlert(data);
+                notificationUtils.showGasAlert(data, config);
             }
             
             // Log for test data
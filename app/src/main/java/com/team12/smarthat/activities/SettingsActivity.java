@@ -13,10 +13,12 @@ import androidx.appcompat.widget.AppCompatButton;
 
 import com.google.android.material.slider.Slider;
 import com.team12.smarthat.R;
+import com.team12.smarthat.database.DatabaseHelper;
 import com.team12.smarthat.databinding.ActivitySettingsBinding;
 import com.team12.smarthat.utils.Constants;
 import com.team12.smarthat.utils.NotificationUtils;
 import com.team12.smarthat.utils.PermissionManager;
+import com.team12.smarthat.utils.ThresholdConfig;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -691,7 +693,11 @@ public class SettingsActivity extends AppCompatActivity {
                 editor.putFloat(Constants.PREF_NOISE_THRESHOLD, noiseThreshold);
                 editor.putFloat(Constants.PREF_GAS_THRESHOLD, gasThreshold);
                 editor.apply();
+                // publish before the rebuild reads it, the prefs listener runs later on the main thread
+                ThresholdConfig.refresh(this);
                 Log.d(Constants.TAG_MAIN, "All thresholds saved in batch operation");
+                // breach episodes were cut with the old thresholds
+                DatabaseHelper.getInstance().rebuildBreachEpisodes();
                 thresholdsChanged = false;
             } catch (Exception e) {
                 Log.e(Constants.TAG_MAIN, "Error saving thresholds: " + e.getMessage());
@@ -17,16 +17,20 @@ import androidx.appcompat.widget.Toolbar;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.ViewModelProvider;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
 import com.team12.smarthat.R;
 import com.team12.smarthat.adapters.ThresholdBreachAdapter;
 import com.team12.smarthat.database.DatabaseHelper;
+import com.team12.smarthat.database.SensorDataExport;
+import com.team12.smarthat.models.BreachEpisode;
 import com.team12.smarthat.models.DataFilter;
-import com.team12.smarthat.models.SensorData;
 import com.team12.smarthat.utils.DataFilterHelper;
 
+import java.io.File;
 import java.util.List;
 
 public class ThresholdHistoryActivity extends AppCompatActivity {
@@ -38,6 +42,11 @@ public class ThresholdHistoryActivity extends AppCompatActivity {
     private Button btnDeleteAll;
     private Toolbar toolbar;
     private DataFilterHelper dataFilterHelper;
+    // current episode query, replaced when the filter changes
+    private LiveData<List<BreachEpisode>> breachesLiveData;
+    private ExportViewModel exportViewModel;
+    // progress of the running export, null when idle
+    private Snackbar exportProgress;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -53,6 +62,7 @@ public class ThresholdHistoryActivity extends AppCompatActivity {
         setupToolbar();
         setupListeners();
         loadThresholdBreaches();
+        observeExport();
     }
     
     private void setupToolbar() {
@@ -83,8 +93,8 @@ public class ThresholdHistoryActivity extends AppCompatActivity {
         recyclerView.setAdapter(adapter);
         
         // Set delete listener for individual item deletion
-        adapter.setDeleteListener(id -> {
-            confirmDeleteSingleItem(id);
+        adapter.setDeleteListener(episode -> {
+            confirmDeleteSingleItem(episode);
         });
         
         // Optimize scroll performance for Android 12
@@ -98,6 +108,7 @@ public class ThresholdHistoryActivity extends AppCompatActivity {
         
         // Use singleton pattern for database access
         databaseHelper = DatabaseHelper.getInstance();
+        exportViewModel = new ViewModelProvider(this).get(ExportViewModel.class);
     }
     
     private void setupListeners() {
@@ -108,10 +119,9 @@ public class ThresholdHistoryActivity extends AppCompatActivity {
     private void showDeleteAllConfirmationDialog() {
         AlertDialog.Builder builder = new AlertDialog.Builder(this)
                 .setTitle("Delete All")
-                .setMessage("Are you sure you want to delete all threshold breach records? This action cannot be undone.")
+                .setMessage("Are you sure you want to delete all threshold breach records?")
                 .setPositiveButton("Delete All", (dialog, which) -> {
-                    databaseHelper.deleteAllThresholdBreaches(this);
-                    Snackbar.make(recyclerView, "All records deleted", Snackbar.LENGTH_SHORT).show();
+                    databaseHelper.deleteAllThresholdBreaches(this, this::showUndoSnackbar);
                 })
                 .setNegativeButton("Cancel", null);
         
@@ -125,11 +135,11 @@ public class ThresholdHistoryActivity extends AppCompatActivity {
         dialog.show();
     }
     
-    private void confirmDeleteSingleItem(int id) {
+    private void confirmDeleteSingleItem(BreachEpisode episode) {
         AlertDialog.Builder builder = new AlertDialog.Builder(this)
                 .setTitle("Delete Item")
                 .setMessage("Delete this threshold breach record?")
-                .setPositiveButton("Delete", (dialog, which) -> deleteThresholdBreach(id))
+                .setPositiveButton("Delete", (dialog, which) -> deleteThresholdBreach(episode))
                 .setNegativeButton("Cancel", null);
         
         AlertDialog dialog = builder.create();
@@ -142,29 +152,45 @@ public class ThresholdHistoryActivity extends AppCompatActivity {
         dialog.show();
     }
     
-    private void deleteThresholdBreach(int id) {
-        databaseHelper.deleteThresholdBreach(id);
-        Snackbar.make(recyclerView, "Item deleted", Snackbar.LENGTH_SHORT).show();
+    private void deleteThresholdBreach(BreachEpisode episode) {
+        databaseHelper.deleteBreachEpisode(episode, this::showUndoSnackbar);
+    }
+    
+    // deletes only tombstone rows, so they can be brought back until the next purge
+    private void showUndoSnackbar(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String message = ids.size() == 1 ? "Item deleted" : ids.size() + " readings deleted";
+        // the history list is hidden once everything is deleted, anchor to the root view instead
+        Snackbar.make(findViewById(android.R.id.content), message, Snackbar.LENGTH_LONG)
+                .setAction("Undo", v -> databaseHelper.restoreThresholdBreaches(ids))
+                .show();
     }
     
     private void loadThresholdBreaches() {
-        // Optimize data loading for Android 12
-        databaseHelper.getThresholdBreachesWithCustomThresholds(this)
-            .observe(this, sensorDataList -> {
-                if (sensorDataList != null && !sensorDataList.isEmpty()) {
-                    recyclerView.setVisibility(View.VISIBLE);
-                    tvNoData.setVisibility(View.GONE);
-                    adapter.setBreaches(sensorDataList);
-                    btnDeleteAll.setVisibility(View.VISIBLE);
-                } else {
-                    recyclerView.setVisibility(View.GONE);
-                    tvNoData.setVisibility(View.VISIBLE);
-                    btnDeleteAll.setVisibility(View.GONE);
-                }
-                
-                // Invalidate options menu to update action items
-                invalidateOptionsMenu();
-            });
+        // Drop the previous query so a filter change doesn't leave it running
+        if (breachesLiveData != null) {
+            breachesLiveData.removeObservers(this);
+        }
+        
+        // One row per breach episode instead of per reading, throttled while this screen is visible
+        breachesLiveData = databaseHelper.getBreachEpisodes();
+        breachesLiveData.observe(this, sensorDataList -> {
+            if (sensorDataList != null && !sensorDataList.isEmpty()) {
+                recyclerView.setVisibility(View.VISIBLE);
+                tvNoData.setVisibility(View.GONE);
+                adapter.setBreaches(sensorDataList);
+                btnDeleteAll.setVisibility(View.VISIBLE);
+            } else {
+                recyclerView.setVisibility(View.GONE);
+                tvNoData.setVisibility(View.VISIBLE);
+                btnDeleteAll.setVisibility(View.GONE);
+            }
+            
+            // Invalidate options menu to update action items
+            invalidateOptionsMenu();
+        });
     }
     
     @Override
@@ -184,12 +210,65 @@ public class ThresholdHistoryActivity extends AppCompatActivity {
         else if(id == R.id.action_filter) {
             openDataFilterFragment();
         }
+        else if (id == R.id.action_export_csv) {
+            startExport(SensorDataExport.Format.CSV, false);
+            return true;
+        }
+        else if (id == R.id.action_export_ndjson) {
+            startExport(SensorDataExport.Format.NDJSON, true);
+            return true;
+        }
         
         return super.onOptionsItemSelected(item);
     }
     
+    // streams the readings matching the current filter to app storage, the snackbar shows progress and can cancel
+    private void startExport(SensorDataExport.Format format, boolean gzip) {
+        if (exportViewModel.isRunning()) {
+            Toast.makeText(this, "An export is already running", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        File directory = getExternalFilesDir("exports");
+        if (directory == null) {
+            directory = new File(getFilesDir(), "exports");
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            Toast.makeText(this, "Could not create export folder", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        exportViewModel.start(dataFilterHelper.getCurrentFilter(), format, gzip, directory);
+    }
+    
+    // the export lives in the view model, a recreated screen picks its progress back up
+    private void observeExport() {
+        exportViewModel.getProgress().observe(this, percent -> {
+            if (percent == null) {
+                if (exportProgress != null) {
+                    exportProgress.dismiss();
+                    exportProgress = null;
+                }
+                return;
+            }
+            if (exportProgress == null) {
+                exportProgress = Snackbar.make(findViewById(android.R.id.content), "Exporting readings...", Snackbar.LENGTH_INDEFINITE)
+                        .setAction("Cancel", v -> exportViewModel.cancel());
+                exportProgress.show();
+            }
+            if (percent >= 0) {
+                exportProgress.setText("Exporting readings " + percent + "%");
+            }
+        });
+        exportViewModel.getResult().observe(this, message -> {
+            if (message != null) {
+                Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+                exportViewModel.consumeResult();
+            }
+        });
+    }
+    
     private void openDataFilterFragment() {
-        DataFilterFragment dataFilterFragment = new DataFilterFragment();
+        // episodes don't record a source, don't offer a choice that changes nothing
+        DataFilterFragment dataFilterFragment = DataFilterFragment.newInstance(false);
         dataFilterFragment.setFilterListener(new DataFilterFragment.FilterListener() {
             @Override
             public void onFilterChanged(DataFilter filter) {
@@ -197,7 +276,9 @@ public class ThresholdHistoryActivity extends AppCompatActivity {
                     dataFilterHelper.setFilter(filter);
                     // Save filter state
                     dataFilterHelper.saveFilterState(ThresholdHistoryActivity.this);
-                    String msg = "Showing data from " + filter.getFormattedStartDate() + " to " + filter.getFormattedEndDate();
+                    String msg = filter.hasDateRange()
+                            ? "Showing data from " + filter.getFormattedStartDate() + " to " + filter.getFormattedEndDate()
+                            : "Filter applied";
                     Toast.makeText(ThresholdHistoryActivity.this, msg, Toast.LENGTH_SHORT).show();
                 }
                 else {
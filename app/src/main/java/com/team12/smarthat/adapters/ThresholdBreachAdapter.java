@@ -1,82 +1,149 @@
 package com.team12.smarthat.adapters;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.CheckBox;
 import android.widget.ImageView;
 import android.widget.TextView;
-import android.os.Build;
 import android.widget.ImageButton;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.core.content.ContextCompat;
 
 import com.team12.smarthat.R;
-import com.team12.smarthat.models.SensorData;
+import com.team12.smarthat.models.BreachEpisode;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * history list of breach episodes
+ * - episodes are turned into pre-formatted BreachItems off the main thread
+ * - ListAdapter diffs on its background thread, so a new emission only rebinds what changed
+ * - ids are the episode ids, stable across emissions
+ */
+public class ThresholdBreachAdapter extends ListAdapter<ThresholdBreachAdapter.BreachItem, ThresholdBreachAdapter.ViewHolder> {
+
+    // formatting runs here, one thread so the date formats need no locking
+    private static final Executor FORMAT_EXECUTOR = Executors.newSingleThreadExecutor();
 
-public class ThresholdBreachAdapter extends RecyclerView.Adapter<ThresholdBreachAdapter.ViewHolder> {
-    
-    private List<SensorData> breaches;
     private final Context context;
     private final SimpleDateFormat dateFormat;
-    
+    private final SimpleDateFormat timeFormat;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // formatted items of the last submission, reused while their episode is unchanged
+    private Map<Long, BreachItem> itemCache = new HashMap<>();
+    // drops formatting results that a newer submission has overtaken
+    private int submitGeneration = 0;
+
     // Callback for item deletion
     private ItemDeleteListener deleteListener;
-    
+
     public interface ItemDeleteListener {
-        void onDeleteItem(int id);
+        void onDeleteItem(BreachEpisode episode);
     }
-    
+
     public ThresholdBreachAdapter(Context context) {
+        super(DIFF_CALLBACK);
         this.context = context;
         this.dateFormat = new SimpleDateFormat("MM/dd/yy HH:mm", Locale.getDefault());
+        this.timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+        setHasStableIds(true);
     }
-    
+
     public void setDeleteListener(ItemDeleteListener listener) {
         this.deleteListener = listener;
     }
-    
+
     @NonNull
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_threshold_breach, parent, false);
-        return new ViewHolder(view);
+        ViewHolder holder = new ViewHolder(view);
+
+        // Hide the checkbox since we're not using selection mode
+        holder.cbSelectItem.setVisibility(View.GONE);
+
+        // one listener per holder, looks up the item when clicked
+        holder.btnDeleteItem.setOnClickListener(v -> {
+            int position = holder.getAdapterPosition();
+            if (deleteListener != null && position != RecyclerView.NO_POSITION) {
+                deleteListener.onDeleteItem(getItem(position).episode);
+            }
+        });
+        return holder;
     }
-    
+
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        if (breaches == null || breaches.isEmpty()) {
-            return;
+        BreachItem item = getItem(position);
+        holder.ivSensorIcon.setImageResource(item.iconResource);
+        holder.ivSensorIcon.setColorFilter(item.iconColor);
+        holder.tvSensorType.setText(item.typeLabel);
+        holder.tvSensorValue.setText(item.valueText);
+        holder.tvTimestamp.setText(item.timeText);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).episode.getId();
+    }
+
+    /**
+     * show a new list of episodes, formatting and diffing happen off the main thread
+     * @param breaches episodes, newest first
+     */
+    public void setBreaches(List<BreachEpisode> breaches) {
+        int generation = ++submitGeneration;
+        FORMAT_EXECUTOR.execute(() -> {
+            List<BreachItem> items = toItems(breaches);
+            mainHandler.post(() -> {
+                if (generation == submitGeneration) {
+                    submitList(items);
+                }
+            });
+        });
+    }
+
+    /**
+     * runs on FORMAT_EXECUTOR
+     */
+    private List<BreachItem> toItems(List<BreachEpisode> breaches) {
+        List<BreachItem> items = new ArrayList<>(breaches.size());
+        Map<Long, BreachItem> cache = new HashMap<>();
+        Map<Long, BreachItem> previous = itemCache;
+        for (BreachEpisode episode : breaches) {
+            BreachItem item = previous.get(episode.getId());
+            if (item == null || !item.sameEpisode(episode)) {
+                item = format(episode);
+            }
+            items.add(item);
+            cache.put(episode.getId(), item);
         }
-        
-        SensorData data = breaches.get(position);
+        itemCache = cache;
+        return items;
+    }
+
+    private BreachItem format(BreachEpisode data) {
         String sensorType = data.getSensorType();
         boolean isDustSensor = sensorType.equals("dust");
         boolean isNoiseSensor = sensorType.equals("noise");
-        boolean isGasSensor = sensorType.equals("gas");
-        
-        // Hide the checkbox since we're not using selection mode
-        holder.cbSelectItem.setVisibility(View.GONE);
-        
-        // Set up delete button click listener
-        holder.btnDeleteItem.setOnClickListener(v -> {
-            if (deleteListener != null) {
-                deleteListener.onDeleteItem(data.getId());
-            }
-        });
-        
+
         // Set sensor icon based on sensor type
         int iconResource;
         if (isDustSensor) {
@@ -86,8 +153,7 @@ public class ThresholdBreachAdapter extends RecyclerView.Adapter<ThresholdBreach
         } else { // Gas sensor
             iconResource = android.R.drawable.ic_dialog_alert;
         }
-        holder.ivSensorIcon.setImageResource(iconResource);
-        
+
         // Set icon color based on sensor type
         int iconColor;
         if (isDustSensor) {
@@ -97,30 +163,27 @@ public class ThresholdBreachAdapter extends RecyclerView.Adapter<ThresholdBreach
         } else { // Gas sensor
             iconColor = ContextCompat.getColor(context, R.color.error);
         }
-        holder.ivSensorIcon.setColorFilter(iconColor);
-        
-        // Set texts
-        holder.tvSensorType.setText(isDustSensor ? "Dust" : isNoiseSensor ? "Noise" : "Gas");
-        
-        // Format value
-        String valueWithUnit = formatSensorValue(data);
-        holder.tvSensorValue.setText(valueWithUnit);
-        
-        // Format timestamp
-        String formattedDate = dateFormat.format(new Date(data.getTimestamp()));
-        holder.tvTimestamp.setText(formattedDate);
-        
-        // Set threshold status
-        TextView thresholdStatus = holder.tvThresholdStatus;
-        thresholdStatus.setText(R.string.threshold_exceeded);
-        thresholdStatus.setBackgroundResource(R.drawable.bg_threshold_chip);
+
+        String typeLabel = isDustSensor ? "Dust" : isNoiseSensor ? "Noise" : "Gas";
+
+        // Peak and mean of the episode
+        String valueWithUnit = formatSensorValue(sensorType, data.getPeakValue())
+                + " peak, " + formatSensorValue(sensorType, data.getMeanValue()) + " avg";
+
+        // Episode span and sample count
+        String formattedDate = dateFormat.format(new Date(data.getStartTimestamp()));
+        if (data.getSampleCount() > 1) {
+            formattedDate += " - " + timeFormat.format(new Date(data.getEndTimestamp()))
+                    + " (" + data.getSampleCount() + " readings)";
+        }
+
+        return new BreachItem(data, iconResource, iconColor, typeLabel, valueWithUnit, formattedDate);
     }
-    
-    private String formatSensorValue(SensorData data) {
-        boolean isDustSensor = data.getSensorType().equals("dust");
-        boolean isNoiseSensor = data.getSensorType().equals("noise");
-        boolean isGasSensor = data.getSensorType().equals("gas");
-        
+
+    private String formatSensorValue(String sensorType, float value) {
+        boolean isDustSensor = sensorType.equals("dust");
+        boolean isNoiseSensor = sensorType.equals("noise");
+
         String unit;
         if (isDustSensor) {
             unit = " µg/m³";
@@ -129,20 +192,53 @@ public class ThresholdBreachAdapter extends RecyclerView.Adapter<ThresholdBreach
         } else { // Gas sensor
             unit = " ppm";
         }
-        
-        return String.format(Locale.US, "%.1f%s", data.getValue(), unit);
-    }
-    
-    @Override
-    public int getItemCount() {
-        return breaches == null ? 0 : breaches.size();
+
+        return String.format(Locale.US, "%.1f%s", value, unit);
     }
-    
-    public void setBreaches(List<SensorData> breaches) {
-        this.breaches = breaches;
-        notifyDataSetChanged();
+
+    /**
+     * pre-formatted row, binding only copies these into the views
+     */
+    public static class BreachItem {
+        private final BreachEpisode episode;
+        private final int iconResource;
+        private final int iconColor;
+        private final String typeLabel;
+        private final String valueText;
+        private final String timeText;
+
+        BreachItem(BreachEpisode episode, int iconResource, int iconColor,
+                   String typeLabel, String valueText, String timeText) {
+            this.episode = episode;
+            this.iconResource = iconResource;
+            this.iconColor = iconColor;
+            this.typeLabel = typeLabel;
+            this.valueText = valueText;
+            this.timeText = timeText;
+        }
+
+        // an open episode only grows, so its end and count tell whether it changed
+        boolean sameEpisode(BreachEpisode other) {
+            return episode.getEndTimestamp() == other.getEndTimestamp()
+                    && episode.getSampleCount() == other.getSampleCount()
+                    && episode.getPeakValue() == other.getPeakValue();
+        }
     }
-    
+
+    private static final DiffUtil.ItemCallback<BreachItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<BreachItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull BreachItem oldItem, @NonNull BreachItem newItem) {
+            return oldItem.episode.getId() == newItem.episode.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull BreachItem oldItem, @NonNull BreachItem newItem) {
+            // unchanged episodes reuse the same item instance
+            return oldItem == newItem || (oldItem.valueText.equals(newItem.valueText)
+                    && oldItem.timeText.equals(newItem.timeText));
+        }
+    };
+
     public static class ViewHolder extends RecyclerView.ViewHolder {
         private final CheckBox cbSelectItem;
         private final ImageView ivSensorIcon;
@@ -151,7 +247,7 @@ public class ThresholdBreachAdapter extends RecyclerView.Adapter<ThresholdBreach
         private final TextView tvTimestamp;
         private final TextView tvThresholdStatus;
         private final ImageButton btnDeleteItem;
-        
+
         public ViewHolder(@NonNull View itemView) {
             super(itemView);
             cbSelectItem = itemView.findViewById(R.id.cb_select_item);
@@ -161,6 +257,10 @@ public class ThresholdBreachAdapter extends RecyclerView.Adapter<ThresholdBreach
             tvTimestamp = itemView.findViewById(R.id.tv_timestamp);
             tvThresholdStatus = itemView.findViewById(R.id.tv_threshold_status);
             btnDeleteItem = itemView.findViewById(R.id.btn_delete_item);
+
+            // the same for every row
+            tvThresholdStatus.setText(R.string.threshold_exceeded);
+            tvThresholdStatus.setBackgroundResource(R.drawable.bg_threshold_chip);
         }
     }
-} 
\ No newline at end of file
+}
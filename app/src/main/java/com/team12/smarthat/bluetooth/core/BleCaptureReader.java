@@ -0,0 +1,146 @@
+package com.team12.smarthat.bluetooth.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.UUID;
+
+/**
+ * reads a capture written by BleCaptureRecorder one payload at a time
+ * streams through a fixed buffer, a session of any length reads in constant memory
+ * a torn record at the tail (capture cut off by a crash) ends the session quietly
+ */
+public class BleCaptureReader implements Closeable {
+    // larger than the biggest payload record, so one always fits
+    private static final int BUFFER_SIZE = 80 * 1024;
+
+    private final FileInputStream stream;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final UUID[] uuids = new UUID[256];
+    private final long startWallClockMs;
+    private final long startNanos;
+
+    private UUID uuid;
+    private long receiveNanos;
+    private byte[] payload;
+
+    /**
+     * open a capture and read its header
+     * @throws IOException if the file is not a capture this version can read
+     */
+    public BleCaptureReader(File file) throws IOException {
+        stream = new FileInputStream(file);
+        channel = stream.getChannel();
+        buffer.limit(0);
+
+        try {
+            if (!fill(BleCaptureRecorder.HEADER_SIZE) || buffer.getInt() != BleCaptureRecorder.MAGIC) {
+                throw new IOException("Not a ble capture: " + file);
+            }
+            byte version = buffer.get();
+            if (version != BleCaptureRecorder.VERSION) {
+                throw new IOException("Unsupported ble capture version " + version);
+            }
+            startWallClockMs = buffer.getLong();
+            startNanos = buffer.getLong();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * advance to the next payload, uuid definitions are taken in on the way
+     * @return false at the end of the capture
+     */
+    public boolean next() throws IOException {
+        while (fill(1)) {
+            byte type = buffer.get();
+            if (type == BleCaptureRecorder.RECORD_UUID) {
+                if (!fill(BleCaptureRecorder.UUID_RECORD_SIZE - 1)) {
+                    return false;
+                }
+                int index = buffer.get() & 0xFF;
+                uuids[index] = new UUID(buffer.getLong(), buffer.getLong());
+            } else if (type == BleCaptureRecorder.RECORD_PAYLOAD) {
+                if (!fill(BleCaptureRecorder.PAYLOAD_RECORD_HEADER_SIZE - 1)) {
+                    return false;
+                }
+                int index = buffer.get() & 0xFF;
+                long nanos = buffer.getLong();
+                int length = buffer.getShort() & 0xFFFF;
+                if (!fill(length)) {
+                    return false;
+                }
+                if (uuids[index] == null) {
+                    throw new IOException("Ble capture payload refers to undefined uuid " + index);
+                }
+                uuid = uuids[index];
+                receiveNanos = nanos;
+                payload = new byte[length];
+                buffer.get(payload);
+                return true;
+            } else {
+                throw new IOException("Corrupt ble capture record type " + type);
+            }
+        }
+        return false;
+    }
+
+    /**
+     *
+     * @return characteristic of the current payload
+     */
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    /**
+     *
+     * @return monotonic receive time of the current payload, same clock as getStartNanos()
+     */
+    public long getReceiveNanos() {
+        return receiveNanos;
+    }
+
+    /**
+     *
+     * @return the current payload, a new array per payload so it can be handed on
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public long getStartWallClockMs() {
+        return startWallClockMs;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+
+    // make at least count bytes readable, false if the file ends first
+    private boolean fill(int count) throws IOException {
+        if (buffer.remaining() >= count) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < count) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+}
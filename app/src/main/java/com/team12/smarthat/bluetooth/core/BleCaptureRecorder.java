@@ -0,0 +1,358 @@
+package com.team12.smarthat.bluetooth.core;
+
+import android.util.Log;
+
+import com.team12.smarthat.utils.Constants;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * records every raw characteristic payload of a ble session to a compact binary file,
+ * so a reported anomaly can be replayed byte for byte later
+ * - record() copies into a preallocated buffer under a short lock, no allocation and no io
+ * - a writer thread swaps the two buffers and writes the full one through a FileChannel,
+ *   every flush interval or as soon as the buffer is half full
+ * - if the writer falls a whole buffer behind, records are dropped and counted, the ble thread never waits
+ * - a record that would take the file past maxBytes ends the capture, the listener is told once
+ * file layout, big endian:
+ *   header   magic "SHCP", version u8, wall clock ms at start i64, monotonic ns at start i64
+ *   uuid     0x01, index u8, msb i64, lsb i64 - once per uuid, before its first payload
+ *   payload  0x02, index u8, receive ns i64, length u16, bytes
+ */
+public class BleCaptureRecorder {
+    static final int MAGIC = 0x53484350; // "SHCP"
+    static final byte VERSION = 1;
+    static final byte RECORD_UUID = 1;
+    static final byte RECORD_PAYLOAD = 2;
+    static final int HEADER_SIZE = 4 + 1 + 8 + 8;
+    static final int UUID_RECORD_SIZE = 1 + 1 + 8 + 8;
+    static final int PAYLOAD_RECORD_HEADER_SIZE = 1 + 1 + 8 + 2;
+    private static final int MAX_UUIDS = 256;
+    private static final int MAX_PAYLOAD = 0xFFFF;
+    static final String FILE_EXTENSION = ".shcap";
+
+    /**
+     * told from the recording thread when the size limit ends the capture
+     */
+    public interface LimitListener {
+        void onCaptureLimitReached(BleCaptureRecorder recorder);
+    }
+
+    private final File file;
+    private final long flushIntervalMs;
+    private final long maxBytes;
+    private volatile LimitListener limitListener;
+
+    // guards the active buffer, the uuid table and the counters
+    private final Object lock = new Object();
+    private ByteBuffer active;
+    // only touched by the writer thread, or by stop() once the writer is done
+    private ByteBuffer writing;
+    private final UUID[] uuids = new UUID[MAX_UUIDS];
+    private int uuidCount = 0;
+    private long recordCount = 0;
+    private long droppedCount = 0;
+    // bytes taken by the header and every accepted record, written or still buffered
+    private long capturedBytes = 0;
+    private boolean limitReached = false;
+
+    private FileOutputStream outputStream;
+    private FileChannel channel;
+    private volatile ScheduledExecutorService writer;
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+    private volatile boolean recording = false;
+    private volatile long bytesWritten = 0;
+
+    /**
+     *
+     * @param file capture file, overwritten
+     * @param bufferSize bytes held in memory per buffer, two are allocated
+     * @param flushIntervalMs longest a record waits before it is written
+     */
+    public BleCaptureRecorder(File file, int bufferSize, long flushIntervalMs) {
+        this(file, bufferSize, flushIntervalMs, Long.MAX_VALUE);
+    }
+
+    /**
+     *
+     * @param maxBytes largest the file may grow, header included
+     */
+    public BleCaptureRecorder(File file, int bufferSize, long flushIntervalMs, long maxBytes) {
+        this.file = file;
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.maxBytes = maxBytes;
+        this.active = ByteBuffer.allocate(bufferSize);
+        this.writing = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * create the file and write the header
+     * @param wallClockMs System.currentTimeMillis() now, to put receive times on a calendar
+     * @param monotonicNanos the clock record() timestamps come from, read now
+     * @return true if recording
+     */
+    public synchronized boolean start(long wallClockMs, long monotonicNanos) {
+        if (writer != null) {
+            return recording;
+        }
+
+        try {
+            outputStream = new FileOutputStream(file);
+            channel = outputStream.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).put(VERSION).putLong(wallClockMs).putLong(monotonicNanos);
+            header.flip();
+            writeFully(header);
+        } catch (IOException e) {
+            Log.e(Constants.TAG_BLUETOOTH, "Unable to start ble capture: " + e.getMessage(), e);
+            close();
+            return false;
+        }
+
+        synchronized (lock) {
+            // a restarted capture is a new file, uuids are defined again
+            uuidCount = 0;
+            active.clear();
+            capturedBytes = HEADER_SIZE;
+            limitReached = false;
+        }
+        writer = Executors.newSingleThreadScheduledExecutor();
+        writer.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        recording = true;
+        Log.d(Constants.TAG_BLUETOOTH, "Ble capture started: " + file);
+        return true;
+    }
+
+    /**
+     * append one payload, safe to call from any thread
+     * @param uuid characteristic the payload came from
+     * @param payload raw value, copied before this returns
+     * @param receiveNanos monotonic receive time, same clock as passed to start()
+     */
+    public void record(UUID uuid, byte[] payload, long receiveNanos) {
+        if (!recording || uuid == null || payload == null) {
+            return;
+        }
+
+        boolean halfFull = false;
+        boolean full = false;
+        synchronized (lock) {
+            if (!recording) {
+                return;
+            }
+            int index = indexOf(uuid);
+            int needed = PAYLOAD_RECORD_HEADER_SIZE + payload.length + (index < 0 ? UUID_RECORD_SIZE : 0);
+            if (capturedBytes + needed > maxBytes) {
+                // what is buffered is still written, stop() closes the file
+                recording = false;
+                limitReached = true;
+                droppedCount++;
+                full = true;
+            } else if (payload.length > MAX_PAYLOAD || needed > active.remaining() || (index < 0 && uuidCount == MAX_UUIDS)) {
+                droppedCount++;
+                return;
+            } else {
+                if (index < 0) {
+                    index = uuidCount;
+                    uuids[uuidCount++] = uuid;
+                    active.put(RECORD_UUID).put((byte) index)
+                            .putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+                }
+                active.put(RECORD_PAYLOAD).put((byte) index).putLong(receiveNanos)
+                        .putShort((short) payload.length).put(payload);
+                capturedBytes += needed;
+                recordCount++;
+                halfFull = active.position() >= active.capacity() / 2;
+            }
+        }
+
+        if (full) {
+            Log.w(Constants.TAG_BLUETOOTH, "Ble capture reached " + maxBytes + " bytes, recording stopped: " + file);
+            LimitListener listener = limitListener;
+            if (listener != null) {
+                listener.onCaptureLimitReached(this);
+            }
+            return;
+        }
+
+        if (halfFull && flushQueued.compareAndSet(false, true)) {
+            try {
+                ScheduledExecutorService current = writer;
+                if (current != null) {
+                    current.execute(this::flush);
+                }
+            } catch (RejectedExecutionException e) {
+                // stopping, stop() writes what is left
+                flushQueued.set(false);
+            }
+        }
+    }
+
+    /**
+     * write what is buffered and close the file, records after this are ignored
+     */
+    public synchronized void stop() {
+        if (writer == null) {
+            return;
+        }
+        synchronized (lock) {
+            recording = false;
+        }
+
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                Log.w(Constants.TAG_BLUETOOTH, "Ble capture writer did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+        flush();
+
+        try {
+            if (channel != null) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            Log.e(Constants.TAG_BLUETOOTH, "Error syncing ble capture: " + e.getMessage());
+        }
+        close();
+        Log.d(Constants.TAG_BLUETOOTH, "Ble capture stopped: " + getRecordCount() + " records, "
+                + getDroppedCount() + " dropped, " + bytesWritten + " bytes");
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     *
+     * @return true if the size limit ended the capture
+     */
+    public boolean isLimitReached() {
+        synchronized (lock) {
+            return limitReached;
+        }
+    }
+
+    public void setLimitListener(LimitListener listener) {
+        this.limitListener = listener;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getRecordCount() {
+        synchronized (lock) {
+            return recordCount;
+        }
+    }
+
+    /**
+     *
+     * @return payloads that did not fit because the writer was behind or were too large
+     */
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return droppedCount;
+        }
+    }
+
+    /**
+     *
+     * @return bytes in the file so far, header included
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * delete the oldest captures in a folder so at most keep are left
+     * @return number of files deleted
+     */
+    public static int deleteOldCaptures(File directory, int keep) {
+        File[] captures = directory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+        if (captures == null || captures.length <= keep) {
+            return 0;
+        }
+        Arrays.sort(captures, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        int deleted = 0;
+        for (int i = 0; i < captures.length - Math.max(0, keep); i++) {
+            if (captures[i].delete()) {
+                deleted++;
+            } else {
+                Log.w(Constants.TAG_BLUETOOTH, "Could not delete old ble capture " + captures[i]);
+            }
+        }
+        return deleted;
+    }
+
+    // writer thread, or stop() once the writer has finished
+    private void flush() {
+        flushQueued.set(false);
+        ByteBuffer full;
+        synchronized (lock) {
+            if (active.position() == 0) {
+                return;
+            }
+            full = active;
+            active = writing;
+            writing = full;
+        }
+
+        full.flip();
+        try {
+            writeFully(full);
+        } catch (IOException e) {
+            // later records could refer to uuids defined in what was lost, end the capture here
+            Log.e(Constants.TAG_BLUETOOTH, "Error writing ble capture, stopping: " + e.getMessage());
+            synchronized (lock) {
+                recording = false;
+            }
+        }
+        full.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        if (channel == null) {
+            throw new IOException("Capture file is closed");
+        }
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+    }
+
+    private int indexOf(UUID uuid) {
+        for (int i = 0; i < uuidCount; i++) {
+            if (uuids[i].equals(uuid)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void close() {
+        try {
+            if (outputStream != null) {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            Log.e(Constants.TAG_BLUETOOTH, "Error closing ble capture: " + e.getMessage());
+        }
+        outputStream = null;
+        channel = null;
+    }
+}
@@ -33,6 +33,7 @@ import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
 import com.team12.smarthat.bluetooth.devices.esp32.ESP32BluetoothSpec;
+import com.team12.smarthat.core.LatencyTracer;
 import com.team12.smarthat.permissions.BluetoothPermissionManager;
 import com.team12.smarthat.utils.Constants;
 
@@ -106,6 +107,14 @@ public class BleConnectionManager {
     
     public interface CharacteristicChangeListener {
         void onCharacteristicChanged(BluetoothGattCharacteristic characteristic);
+        
+        /**
+         * same, with the latency trace begun in the gatt callback
+         * @param trace LatencyTracer id, LatencyTracer.NO_TRACE if tracing is off
+         */
+        default void onCharacteristicChanged(BluetoothGattCharacteristic characteristic, int trace) {
+            onCharacteristicChanged(characteristic);
+        }
     }
     
     /**
@@ -674,12 +683,14 @@ public class BleConnectionManager {
             // Optimization for Android 12 on Pixel 4a - reduce context switches
             // by using a local reference to the listener that's thread-safe
             final CharacteristicChangeListener localListener = characteristicChangeListener;
+            // latency is measured from here, before the hop to the main thread
+            final int trace = LatencyTracer.getInstance().begin();
             
             mainHandler.post(() -> {
                 // Check again in case listener was removed while posting to main thread
                 if (localListener != null) {
                     // Forward the characteristic changed event to the registered listener
-                    localListener.onCharacteristicChanged(characteristic);
+                    localListener.onCharacteristicChanged(characteristic, trace);
                 }
             });
         }
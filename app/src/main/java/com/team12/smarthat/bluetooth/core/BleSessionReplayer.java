@@ -0,0 +1,381 @@
+package com.team12.smarthat.bluetooth.core;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.team12.smarthat.bluetooth.devices.esp32.ESP32BluetoothSpec;
+import com.team12.smarthat.models.SensorData;
+import com.team12.smarthat.utils.Constants;
+import com.team12.smarthat.utils.TDigest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * replays a BleCaptureRecorder session through the ingest pipeline at recorded speed,
+ * N times faster, or as fast as the pipeline takes it
+ * - payloads go to MockBleConnectionManager byte for byte, each in its own characteristic
+ * - with a finite speed the recorded gaps between payloads are kept, divided by the speed
+ * - latency runs from handing a payload over to its reading reaching the integration's listeners,
+ *   matched per sensor in order. a payload that yields no reading (bad json, skipped as out of
+ *   order, dropped from a full queue) makes later latencies of that sensor upper bounds,
+ *   the report counts them as lost
+ * one replay at a time, the report is delivered on the main thread
+ */
+public class BleSessionReplayer implements BluetoothServiceIntegration.SensorDataListener {
+    /** no waiting between payloads */
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    // readings still missing after this long without one are counted as lost
+    private static final long DRAIN_IDLE_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final long DRAIN_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * where replayed payloads go, MockBleConnectionManager in the app
+     */
+    interface PayloadSink {
+        void deliver(UUID uuid, byte[] payload);
+    }
+
+    public interface Listener {
+        void onReplayFinished(Report report);
+
+        void onReplayFailed(Exception e);
+    }
+
+    private final PayloadSink sink;
+    private final Executor callbackExecutor;
+    private final BluetoothServiceIntegration integration;
+    private final Map<UUID, String> sensorTypes = new HashMap<>();
+
+    // guards everything the listener callbacks touch
+    private final Object lock = new Object();
+    private final Map<String, ArrayDeque<Long>> pending = new HashMap<>();
+    private final TDigest latencies = new TDigest(100);
+    private long expected;
+    private long delivered;
+    private long maxLatencyNanos;
+    private volatile long lastOutputNanos;
+
+    private volatile Thread replayThread;
+    private volatile boolean cancelled;
+
+    /**
+     * replay into the app's pipeline
+     * @param mockManager manager the integration is listening to
+     * @param integration integration whose listener dispatch ends the measured latency
+     */
+    public BleSessionReplayer(MockBleConnectionManager mockManager, BluetoothServiceIntegration integration) {
+        this((uuid, payload) -> {
+            BluetoothGattCharacteristic characteristic = new BluetoothGattCharacteristic(uuid,
+                    BluetoothGattCharacteristic.PROPERTY_NOTIFY, BluetoothGattCharacteristic.PERMISSION_READ);
+            characteristic.setValue(payload);
+            mockManager.simulateCharacteristicChange(characteristic);
+        }, new Handler(Looper.getMainLooper())::post, integration);
+    }
+
+    BleSessionReplayer(PayloadSink sink, Executor callbackExecutor, BluetoothServiceIntegration integration) {
+        this.sink = sink;
+        this.callbackExecutor = callbackExecutor;
+        this.integration = integration;
+        sensorTypes.put(ESP32BluetoothSpec.DUST_CHARACTERISTIC_UUID, SensorData.TYPE_DUST);
+        sensorTypes.put(ESP32BluetoothSpec.SOUND_CHARACTERISTIC_UUID, SensorData.TYPE_NOISE);
+        sensorTypes.put(ESP32BluetoothSpec.GAS_CHARACTERISTIC_UUID, SensorData.TYPE_GAS);
+    }
+
+    /**
+     * start replaying on a background thread
+     * @param capture file written by BleCaptureRecorder
+     * @param speed 1 for recorded timing, N for N times faster, MAX_SPEED for no waiting
+     * @param listener gets the report, or the error if the capture can't be read
+     * @return false if a replay is already running
+     */
+    public synchronized boolean start(File capture, double speed, Listener listener) {
+        if (replayThread != null) {
+            return false;
+        }
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Replay speed must be positive: " + speed);
+        }
+
+        cancelled = false;
+        synchronized (lock) {
+            pending.clear();
+            latencies.reset();
+            expected = 0;
+            delivered = 0;
+            maxLatencyNanos = 0;
+        }
+        if (integration != null) {
+            integration.addSensorDataListener(this);
+        }
+        replayThread = new Thread(() -> replay(capture, speed, listener), "BleSessionReplay");
+        replayThread.start();
+        return true;
+    }
+
+    /**
+     * stop handing payloads over, the report covers what was replayed so far
+     */
+    public void cancel() {
+        cancelled = true;
+        Thread thread = replayThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public boolean isRunning() {
+        return replayThread != null;
+    }
+
+    @Override
+    public void onSensorData(SensorData data, String sensorType) {
+        recordOutput(sensorType);
+    }
+
+    private void recordOutput(String sensorType) {
+        long now = System.nanoTime();
+        synchronized (lock) {
+            ArrayDeque<Long> queue = pending.get(sensorType);
+            if (queue == null || queue.isEmpty()) {
+                // not one of ours, e.g. a reading still in flight from before the replay
+                return;
+            }
+            long latency = now - queue.pollFirst();
+            latencies.add(latency / 1e6);
+            maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+            delivered++;
+        }
+        lastOutputNanos = now;
+    }
+
+    private void replay(File capture, double speed, Listener listener) {
+        long injected = 0;
+        long maxLagNanos = 0;
+        long startNanos = 0;
+        long lastInjectNanos = 0;
+
+        try (BleCaptureReader reader = new BleCaptureReader(capture)) {
+            long firstRecordNanos = 0;
+            while (!cancelled && reader.next()) {
+                if (injected == 0) {
+                    firstRecordNanos = reader.getReceiveNanos();
+                    startNanos = System.nanoTime();
+                }
+
+                if (!Double.isInfinite(speed)) {
+                    long due = startNanos + (long) ((reader.getReceiveNanos() - firstRecordNanos) / speed);
+                    long lag = System.nanoTime() - due;
+                    if (lag > 0) {
+                        // the pipeline or this thread fell behind the recorded timing
+                        maxLagNanos = Math.max(maxLagNanos, lag);
+                    }
+                    waitUntil(due);
+                }
+
+                String sensorType = sensorTypes.get(reader.getUuid());
+                lastInjectNanos = System.nanoTime();
+                if (sensorType != null) {
+                    synchronized (lock) {
+                        ArrayDeque<Long> queue = pending.get(sensorType);
+                        if (queue == null) {
+                            queue = new ArrayDeque<>();
+                            pending.put(sensorType, queue);
+                        }
+                        queue.addLast(lastInjectNanos);
+                        expected++;
+                    }
+                }
+                sink.deliver(reader.getUuid(), reader.getPayload());
+                injected++;
+            }
+
+            awaitDrain(lastInjectNanos);
+            Report report = buildReport(speed, injected, startNanos, lastInjectNanos, maxLagNanos);
+            Log.d(Constants.TAG_BLUETOOTH, "Replay finished: " + report);
+            finish();
+            callbackExecutor.execute(() -> listener.onReplayFinished(report));
+        } catch (IOException | RuntimeException e) {
+            Log.e(Constants.TAG_BLUETOOTH, "Replay failed: " + e.getMessage(), e);
+            finish();
+            callbackExecutor.execute(() -> listener.onReplayFailed(e));
+        }
+    }
+
+    private void waitUntil(long dueNanos) {
+        long wait;
+        while (!cancelled && (wait = dueNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, wait);
+        }
+    }
+
+    // wait for the readings still in the pipeline, until none has arrived for DRAIN_IDLE_NANOS
+    private void awaitDrain(long lastInjectNanos) {
+        while (!cancelled) {
+            synchronized (lock) {
+                if (delivered >= expected) {
+                    return;
+                }
+            }
+            long idleSince = Math.max(lastInjectNanos, lastOutputNanos);
+            if (System.nanoTime() - idleSince > DRAIN_IDLE_NANOS) {
+                return;
+            }
+            LockSupport.parkNanos(this, DRAIN_POLL_NANOS);
+        }
+    }
+
+    private Report buildReport(double speed, long injected, long startNanos, long lastInjectNanos, long maxLagNanos) {
+        synchronized (lock) {
+            long endNanos = Math.max(lastInjectNanos, delivered > 0 ? lastOutputNanos : 0);
+            return new Report(speed, cancelled, injected, expected, delivered,
+                    injected > 0 ? endNanos - startNanos : 0,
+                    injected > 0 ? lastInjectNanos - startNanos : 0,
+                    latencies.quantile(0.5), latencies.quantile(0.95), latencies.quantile(0.99),
+                    maxLatencyNanos / 1e6, maxLagNanos / 1e6);
+        }
+    }
+
+    private synchronized void finish() {
+        if (integration != null) {
+            integration.removeSensorDataListener(this);
+        }
+        replayThread = null;
+    }
+
+    /**
+     * throughput and latency of one replay, times in milliseconds
+     */
+    public static class Report {
+        private final double speed;
+        private final boolean cancelled;
+        private final long payloads;
+        private final long expectedReadings;
+        private final long readings;
+        private final double durationMs;
+        private final double injectDurationMs;
+        private final double p50LatencyMs;
+        private final double p95LatencyMs;
+        private final double p99LatencyMs;
+        private final double maxLatencyMs;
+        private final double maxScheduleLagMs;
+
+        Report(double speed, boolean cancelled, long payloads, long expectedReadings, long readings,
+               long durationNanos, long injectDurationNanos, double p50LatencyMs, double p95LatencyMs,
+               double p99LatencyMs, double maxLatencyMs, double maxScheduleLagMs) {
+            this.speed = speed;
+            this.cancelled = cancelled;
+            this.payloads = payloads;
+            this.expectedReadings = expectedReadings;
+            this.readings = readings;
+            this.durationMs = durationNanos / 1e6;
+            this.injectDurationMs = injectDurationNanos / 1e6;
+            this.p50LatencyMs = p50LatencyMs;
+            this.p95LatencyMs = p95LatencyMs;
+            this.p99LatencyMs = p99LatencyMs;
+            this.maxLatencyMs = maxLatencyMs;
+            this.maxScheduleLagMs = maxScheduleLagMs;
+        }
+
+        public double getSpeed() {
+            return speed;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         *
+         * @return payloads handed to the pipeline
+         */
+        public long getPayloads() {
+            return payloads;
+        }
+
+        /**
+         *
+         * @return readings that reached the listeners
+         */
+        public long getReadings() {
+            return readings;
+        }
+
+        /**
+         *
+         * @return sensor payloads that never produced a reading
+         */
+        public long getLostReadings() {
+            return expectedReadings - readings;
+        }
+
+        /**
+         *
+         * @return first payload handed over to the last reading or payload, whichever came later
+         */
+        public double getDurationMs() {
+            return durationMs;
+        }
+
+        /**
+         *
+         * @return readings per second through the whole pipeline
+         */
+        public double getReadingsPerSecond() {
+            return durationMs > 0 ? readings * 1000 / durationMs : 0;
+        }
+
+        /**
+         *
+         * @return payloads per second handed over, bounded by the speed and the recorded rate
+         */
+        public double getPayloadsPerSecond() {
+            return injectDurationMs > 0 ? payloads * 1000 / injectDurationMs : 0;
+        }
+
+        public double getP50LatencyMs() {
+            return p50LatencyMs;
+        }
+
+        public double getP95LatencyMs() {
+            return p95LatencyMs;
+        }
+
+        public double getP99LatencyMs() {
+            return p99LatencyMs;
+        }
+
+        public double getMaxLatencyMs() {
+            return maxLatencyMs;
+        }
+
+        /**
+         *
+         * @return how far behind the recorded timing a payload was handed over, 0 at MAX_SPEED
+         */
+        public double getMaxScheduleLagMs() {
+            return maxScheduleLagMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%s%d payloads, %d readings (%d lost) in %.1f ms, %.1f payloads/s, %.1f readings/s, "
+                            + "latency p50 %.2f p95 %.2f p99 %.2f max %.2f ms, schedule lag max %.2f ms",
+                    cancelled ? "cancelled, " : "", payloads, readings, getLostReadings(), durationMs,
+                    getPayloadsPerSecond(), getReadingsPerSecond(),
+                    p50LatencyMs, p95LatencyMs, p99LatencyMs, maxLatencyMs, maxScheduleLagMs);
+        }
+    }
+}
@@ -10,28 +10,27 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.lifecycle.LifecycleOwner;
 import androidx.lifecycle.Observer;
 
 import com.team12.smarthat.bluetooth.devices.esp32.ESP32BluetoothSpec;
+import com.team12.smarthat.core.Clock;
+import com.team12.smarthat.core.IngestPipeline;
+import com.team12.smarthat.core.LatencyTracer;
+import com.team12.smarthat.database.RecentDataStore;
 import com.team12.smarthat.models.SensorData;
 import com.team12.smarthat.utils.Constants;
-
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.team12.smarthat.utils.HampelFilter;
+import com.team12.smarthat.utils.LiveStatistics;
 
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -46,20 +45,17 @@ public class BluetoothServiceIntegration implements
     public static final String SENSOR_TYPE_NOISE = SensorData.TYPE_NOISE;
     public static final String SENSOR_TYPE_GAS = SensorData.TYPE_GAS;
     
-    //sensor value bounds for validation
-    private static final float MAX_DUST_VALUE = 1000.0f;
-    private static final float MAX_NOISE_VALUE = 150.0f;
-    private static final float MAX_GAS_VALUE = 5000.0f;
+    //sensor value bounds for validation, package-private for the ingest benchmark
+    static final float MAX_DUST_VALUE = 1000.0f;
+    static final float MAX_NOISE_VALUE = 150.0f;
+    static final float MAX_GAS_VALUE = 5000.0f;
     
     // Notification timeout constants - using values from ESP32BluetoothSpec
     private static final long NOTIFICATION_TIMEOUT_MS = ESP32BluetoothSpec.NotificationParams.NOTIFICATION_TIMEOUT_MS;
     private static final long NOTIFICATION_CHECK_INTERVAL_MS = 2000; // Check every 2 seconds
     private static final int MAX_VERIFICATION_ATTEMPTS = 3; // Try to verify notifications three times before reconnecting
     
-    // Queue management constants
-    private static final int MAX_QUEUE_SIZE = 100; // Maximum number of notifications to queue
-    private static final long MAX_TIMESTAMP_DEVIATION = ESP32BluetoothSpec.NotificationParams.MAX_TIMESTAMP_DEVIATION_MS;
-    private static final int BATCH_PROCESSING_SIZE = 10; // Process notifications in batches for better efficiency
+    static final long MAX_TIMESTAMP_DEVIATION = ESP32BluetoothSpec.NotificationParams.MAX_TIMESTAMP_DEVIATION_MS;
     
     private final BleConnectionManager connectionManager;
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
@@ -90,29 +86,33 @@ public class BluetoothServiceIntegration implements
         }
     };
     
-    // Track the last processed timestamps by sensor type to detect out-of-order
-    private final Map<String, Long> lastProcessedTimestamps = new HashMap<>();
-    
-    // Queue for notification processing
-    private final ConcurrentLinkedQueue<NotificationData> notificationQueue = new ConcurrentLinkedQueue<>();
-    private final AtomicBoolean processingQueue = new AtomicBoolean(false);
+    // queueing, ordering, parsing and validation live in the android-free core module,
+    // this class adapts gatt notifications into it and dispatches what comes out
+    private final GattPayloadSource payloadSource = new GattPayloadSource();
+    private final IngestPipeline pipeline;
+    // per-sample stage timestamps, shared with the ui and the database
+    private final LatencyTracer tracer = LatencyTracer.getInstance();
     private final Handler backgroundHandler;
-    
-    // Last valid readings for each sensor type to use as fallbacks
-    private float lastValidDustReading = ESP32BluetoothSpec.NotificationParams.INITIAL_DUST_VALUE; // Default to clean air value
-    private float lastValidNoiseReading = ESP32BluetoothSpec.NotificationParams.INITIAL_SOUND_VALUE; // Default to quiet room value
-    private float lastValidGasReading = ESP32BluetoothSpec.NotificationParams.INITIAL_GAS_VALUE; // Default to initial state for gas sensor
-    
-    // Class to store notification data
-    private static class NotificationData {
-        public final BluetoothGattCharacteristic characteristic;
-        public final long receivedTimestamp;
-        
-        public NotificationData(BluetoothGattCharacteristic characteristic) {
-            this.characteristic = characteristic;
-            this.receivedTimestamp = System.currentTimeMillis();
-        }
-    }
+    // in-memory recent readings and rolling statistics, fed before listeners are notified
+    private final RecentDataStore recentData = RecentDataStore.getInstance();
+    private final LiveStatistics liveStatistics = LiveStatistics.getInstance();
+    // readings come from the test data generator, kept out of the live statistics
+    private final boolean testSource;
+    
+    // spike filter stage between parsing and dispatch, dust and gas only
+    // noise is spiky by nature and has its own sustained-level rule
+    private final HampelFilter dustSpikeFilter = new HampelFilter(
+            Constants.SPIKE_FILTER_WINDOW, Constants.SPIKE_FILTER_SIGMAS, Constants.DUST_SPIKE_MIN_DEVIATION);
+    private final HampelFilter gasSpikeFilter = new HampelFilter(
+            Constants.SPIKE_FILTER_WINDOW, Constants.SPIKE_FILTER_SIGMAS, Constants.GAS_SPIKE_MIN_DEVIATION);
+    private volatile boolean spikeFilterEnabled = true;
+    private volatile long flaggedSpikeCount = 0;
+    // last reading of the sensor was flagged, a flagged one right after it confirms a real step
+    private boolean dustSpikePending = false;
+    private boolean gasSpikePending = false;
+    
+    // raw payload capture, null when off, owned by the caller so it outlives this instance
+    private volatile BleCaptureRecorder captureRecorder;
     
     /**
      * interface for sensor data listener simplified
@@ -124,6 +124,17 @@ public class BluetoothServiceIntegration implements
          * @param sensorType the type of sensor (use sensor_type_* constants)
          */
         void onSensorData(SensorData data, String sensorType);
+        
+        /**
+         * called instead of onSensorData for a lone reading the spike filter flagged
+         * it should be shown and stored but not alerted on, if the next reading of the sensor
+         * is flagged too the step is real and that one arrives through onSensorData
+         * @param data the suspected spike, its metadata marks it as one
+         * @param median window median the reading was compared with
+         */
+        default void onSuspectedSpike(SensorData data, String sensorType, float median) {
+            onSensorData(data, sensorType);
+        }
     }
     
     /**
@@ -134,6 +145,8 @@ public class BluetoothServiceIntegration implements
             throw new IllegalArgumentException("BleConnectionManager cannot be null");
         }
         this.connectionManager = connectionManager;
+        // the mock manager only ever carries test mode data
+        this.testSource = connectionManager instanceof MockBleConnectionManager;
         
         // initialize uuids from esp32 spec
         this.dustCharacteristicUuid = ESP32BluetoothSpec.DUST_CHARACTERISTIC_UUID;
@@ -145,6 +158,30 @@ public class BluetoothServiceIntegration implements
         handlerThread.start();
         this.backgroundHandler = new Handler(handlerThread.getLooper());
         
+        pipeline = new IngestPipeline(new HandlerScheduler(backgroundHandler), Clock.SYSTEM,
+                MAX_TIMESTAMP_DEVIATION, new IngestPipeline.Listener() {
+                    @Override
+                    public void onReading(String sensorType, float value, long timestamp, int trace) {
+                        SensorData data = new SensorData(sensorType, value, timestamp);
+                        // later stages only see the reading, the tracer finds the trace from it
+                        tracer.attach(trace, data);
+                        notifyListeners(data, sensorType);
+                    }
+                    
+                    @Override
+                    public void onWarning(String message) {
+                        Log.w(TAG, message);
+                    }
+                });
+        pipeline.addSensor(dustCharacteristicUuid, SENSOR_TYPE_DUST, MAX_DUST_VALUE,
+                ESP32BluetoothSpec.NotificationParams.INITIAL_DUST_VALUE);
+        pipeline.addSensor(soundCharacteristicUuid, SENSOR_TYPE_NOISE, MAX_NOISE_VALUE,
+                ESP32BluetoothSpec.NotificationParams.INITIAL_SOUND_VALUE);
+        pipeline.addSensor(gasCharacteristicUuid, SENSOR_TYPE_GAS, MAX_GAS_VALUE,
+                ESP32BluetoothSpec.NotificationParams.INITIAL_GAS_VALUE);
+        pipeline.setTracer(tracer);
+        payloadSource.setPayloadListener(pipeline);
+        
         // register as a characteristic change listener
         connectionManager.setCharacteristicChangeListener(this);
         
@@ -218,117 +255,45 @@ public class BluetoothServiceIntegration implements
     }
     
     /**
-     * parse and process sensor data from json string
+     * notify all registered listeners on the main thread
      */
-    private void parseSensorData(String jsonData, String sensorType) {
-        if (jsonData == null || jsonData.isEmpty()) {
-            Log.e(TAG, "Empty JSON data received");
+    private void notifyListeners(final SensorData data, final String sensorType) {
+        if (data == null || sensorType == null) {
             return;
         }
         
-        if (sensorType == null) {
-            Log.e(TAG, "Sensor type is null");
-            return;
+        // single-reading spikes are flagged, never dropped, they are shown and stored but kept
+        // out of the alerts and rolling statistics. a flagged reading right after another one
+        // is a real step and goes through as a normal reading
+        HampelFilter spikeFilter = spikeFilterFor(sensorType);
+        final boolean flagged = spikeFilterEnabled && spikeFilter != null && spikeFilter.isOutlier(data.getValue());
+        final boolean confirmed = spikeFilter != null && followsFlagged(sensorType, flagged);
+        final boolean spike = flagged && !confirmed;
+        final float median = spike ? spikeFilter.getLastMedian() : 0f;
+        if (spike) {
+            flaggedSpikeCount++;
+            data.markSuspectedSpike(median);
+            Log.w(TAG, "Suspected " + sensorType + " spike: " + data.getValue() + " (window median " + median + ")");
+        } else if (flagged) {
+            Log.w(TAG, "Confirmed " + sensorType + " step: " + data.getValue());
         }
         
-        try {
-            JSONObject json = new JSONObject(jsonData);
-            
-            // extract message type
-            String messageType = json.optString("messageType", "");
-            if (messageType.isEmpty()) {
-                Log.w(TAG, "Missing messageType in JSON: " + jsonData);
-            } else {
-                Log.d(TAG, "Message type: " + messageType);
-            }
-            
-            // extract data value - check both "data" (hardware format) and "value" (test mode format)
-            double value = 0.0;
-            if (json.has("data")) {
-                value = json.optDouble("data", 0.0);
-            } else if (json.has("value")) {
-                value = json.optDouble("value", 0.0);
-            }
-            
-            long timestamp = 0;
-            if (json.has("timeStamp")) {
-                timestamp = json.optLong("timeStamp", 0);
-            } else if (json.has("timestamp")) {
-                timestamp = json.optLong("timestamp", 0);
-            }
-            
-            Log.d(TAG, "Parsed sensor data - type: " + sensorType + ", value: " + value + ", timestamp: " + timestamp);
-            
-            // validate data based on sensor type
-            if (SENSOR_TYPE_DUST.equals(sensorType)) {
-                if (value < 0 || value > MAX_DUST_VALUE) {
-                    Log.w(TAG, "Dust sensor value out of range: " + value);
-                    // we'll still create and dispatch the data 
-                } else {
-                    // Only update last valid reading if the value is valid
-                    lastValidDustReading = (float)value;
-                }
-            } else if (SENSOR_TYPE_NOISE.equals(sensorType)) {
-                if (value < 0 || value > MAX_NOISE_VALUE) {
-                    Log.w(TAG, "Noise sensor value out of range: " + value);
-                    // we'll still create and dispatch the data 
-                } else {
-                    // Only update last valid reading if the value is valid
-                    lastValidNoiseReading = (float)value;
-                }
-            } else if (SENSOR_TYPE_GAS.equals(sensorType)) {
-                if (value < 0 || value > MAX_GAS_VALUE) {
-                    Log.w(TAG, "Gas sensor value out of range: " + value);
-                    // we'll still create and dispatch the data 
-                } else {
-                    // Only update last valid reading if the value is valid
-                    lastValidGasReading = (float)value;
-                }
-            }
-            
-            // create sensor data object
-            SensorData sensorData = new SensorData(sensorType, (float)value, timestamp);
-            
-            // notify listeners on main thread
-            notifyListeners(sensorData, sensorType);
-            
-        } catch (JSONException e) {
-            Log.e(TAG, "Error parsing JSON: " + e.getMessage());
-            Log.e(TAG, "Invalid JSON: " + jsonData);
-            
-            // Determine appropriate fallback value based on sensor type
-            float fallbackValue;
-            if (SENSOR_TYPE_DUST.equals(sensorType)) {
-                fallbackValue = lastValidDustReading;
-            } else if (SENSOR_TYPE_NOISE.equals(sensorType)) {
-                fallbackValue = lastValidNoiseReading;
-            } else if (SENSOR_TYPE_GAS.equals(sensorType)) {
-                fallbackValue = lastValidGasReading;
-            } else {
-                fallbackValue = 0.0f;
-            }
-            
-            Log.w(TAG, "Using last valid reading as fallback: " + fallbackValue + " for " + sensorType);
-            
-            // Create sensor data with fallback value and current timestamp
-            SensorData fallbackData = new SensorData(sensorType, fallbackValue, System.currentTimeMillis());
-            notifyListeners(fallbackData, sensorType);
-        }
-    }
-    
-    /**
-     * notify all registered listeners on the main thread
-     */
-    private void notifyListeners(final SensorData data, final String sensorType) {
-        if (data == null || sensorType == null) {
-            return;
+        // keep the recent window and rolling statistics in memory, this runs on the single notification thread
+        recentData.record(data);
+        if (!spike && !testSource && !data.isTestData()) {
+            liveStatistics.record(data);
         }
         
         // dispatch on main thread
         mainHandler.post(() -> {
+            tracer.markSample(data, LatencyTracer.STAGE_DISPATCHED);
             for (SensorDataListener listener : dataListeners) {
                 try {
-                    listener.onSensorData(data, sensorType);
+                    if (spike) {
+                        listener.onSuspectedSpike(data, sensorType, median);
+                    } else {
+                        listener.onSensorData(data, sensorType);
+                    }
                 } catch (Exception e) {
                     Log.e(TAG, "Error notifying listener: " + e.getMessage(), e);
                 }
@@ -336,223 +301,80 @@ public class BluetoothServiceIntegration implements
         });
     }
     
+    // remember whether this reading was flagged
+    // @return true if the previous reading of the sensor was flagged
+    private boolean followsFlagged(String sensorType, boolean flagged) {
+        boolean previous;
+        if (SENSOR_TYPE_DUST.equals(sensorType)) {
+            previous = dustSpikePending;
+            dustSpikePending = flagged;
+        } else {
+            previous = gasSpikePending;
+            gasSpikePending = flagged;
+        }
+        return previous;
+    }
+    
+    private HampelFilter spikeFilterFor(String sensorType) {
+        if (SENSOR_TYPE_DUST.equals(sensorType)) {
+            return dustSpikeFilter;
+        } else if (SENSOR_TYPE_GAS.equals(sensorType)) {
+            return gasSpikeFilter;
+        }
+        return null;
+    }
+    
     /**
-     * callback when a characteristic changes (notification received)
+     * turn the spike filter stage on or off, e.g. while calibrating a sensor
      */
-    @Override
-    public void onCharacteristicChanged(BluetoothGattCharacteristic characteristic) {
-        // Update the last notification timestamp
-        lastNotificationTimestamp = System.currentTimeMillis();
-        
-        // Reset verification attempts when we receive a notification
-        verificationAttempts = 0;
-        
-        // Manage queue size before adding new notifications
-        manageQueueSize();
-        
-        // Queue the notification for processing
-        notificationQueue.add(new NotificationData(characteristic));
-        
-        // Start processing the queue if not already processing
-        processNotificationQueue();
+    public void setSpikeFilterEnabled(boolean enabled) {
+        spikeFilterEnabled = enabled;
+        Log.d(TAG, "Spike filter " + (enabled ? "enabled" : "disabled"));
     }
     
     /**
-     * Manage the notification queue size to prevent memory issues
+     *
+     * @return readings flagged by the spike filter since this integration was created
      */
-    private void manageQueueSize() {
-        // If queue is already at or exceeding max size, remove oldest notifications
-        if (notificationQueue.size() >= MAX_QUEUE_SIZE) {
-            Log.w(TAG, "Notification queue reached maximum size (" + MAX_QUEUE_SIZE + 
-                  "), removing oldest notifications");
-            
-            int toRemove = notificationQueue.size() - MAX_QUEUE_SIZE + 1; // +1 to make room for the new one
-            for (int i = 0; i < toRemove; i++) {
-                notificationQueue.poll(); // Remove oldest
-            }
-        }
+    public long getFlaggedSpikeCount() {
+        return flaggedSpikeCount;
     }
     
     /**
-     * process all notifications in the queue with timestamp-based ordering
+     * record every raw payload this instance receives, before parsing or filtering
+     * @param recorder started recorder, null to stop capturing here (the recorder is not stopped)
      */
-    private void processNotificationQueue() {
-        // Only one thread should process the queue at a time
-        if (processingQueue.getAndSet(true)) {
-            return;
-        }
-        
-        // Process in a background thread to avoid blocking
-        backgroundHandler.post(() -> {
-            try {
-                // Process all notifications in the queue
-                List<NotificationData> notifications = new ArrayList<>();
-                NotificationData notification;
-                
-                
-                // to prevent processing too many at once if the queue is very large
-                int count = 0;
-                while ((notification = notificationQueue.poll()) != null && count < BATCH_PROCESSING_SIZE) {
-                    notifications.add(notification);
-                    count++;
-                }
-                
-                // If no notifications to process, return
-                if (notifications.isEmpty()) {
-                    processingQueue.set(false);
-                    return;
-                }
-                
-                // Sort notifications by characteristic timestamp if available
-                Collections.sort(notifications, (a, b) -> {
-                    long aTimestamp = extractTimestamp(a.characteristic);
-                    long bTimestamp = extractTimestamp(b.characteristic);
-                    
-                    // If timestamps are the same, sort by received time
-                    if (aTimestamp == bTimestamp) {
-                        return Long.compare(a.receivedTimestamp, b.receivedTimestamp);
-                    }
-                    
-                    return Long.compare(aTimestamp, bTimestamp);
-                });
-                
-                // Process each notification with enhanced timestamp validation
-                for (NotificationData data : notifications) {
-                    processCharacteristicWithTimestampValidation(data.characteristic);
-                }
-                
-                // Release the processing lock
-                processingQueue.set(false);
-                
-                // If there are more notifications to process, trigger another processing cycle
-                if (!notificationQueue.isEmpty()) {
-                    processNotificationQueue();
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error processing notification queue: " + e.getMessage(), e);
-                processingQueue.set(false);
-                
-                // Even if there was an error, try to process remaining notifications
-                if (!notificationQueue.isEmpty()) {
-                    // Small delay before retrying to avoid tight loop in case of persistent errors
-                    backgroundHandler.postDelayed(this::processNotificationQueue, 100);
-                }
-            }
-        });
+    public void setCaptureRecorder(BleCaptureRecorder recorder) {
+        captureRecorder = recorder;
     }
     
     /**
-     * Process a characteristic with timestamp validation to handle out-of-order notifications
+     * callback when a characteristic changes (notification received)
      */
-    private void processCharacteristicWithTimestampValidation(BluetoothGattCharacteristic characteristic) {
-        if (characteristic == null) {
-            return;
-        }
-        
-        UUID uuid = characteristic.getUuid();
-        String sensorType = null;
-        
-        // determine sensor type from characteristic uuid
-        if (uuid.equals(dustCharacteristicUuid)) {
-            sensorType = SENSOR_TYPE_DUST;
-        } else if (uuid.equals(soundCharacteristicUuid)) {
-            sensorType = SENSOR_TYPE_NOISE;
-        } else if (uuid.equals(gasCharacteristicUuid)) {
-            sensorType = SENSOR_TYPE_GAS;
-        } else {
-            Log.w(TAG, "Unknown characteristic UUID: " + uuid);
-            return;
-        }
-        
-        // extract timestamp for validation
-        long timestamp = extractTimestamp(characteristic);
-        
-        // Check if this might be an out-of-order notification
-        if (timestamp > 0 && lastProcessedTimestamps.containsKey(sensorType)) {
-            long lastTimestamp = lastProcessedTimestamps.get(sensorType);
-            long timeDifference = timestamp - lastTimestamp;
-            
-            
-            if (timeDifference < 0 && Math.abs(timeDifference) < MAX_TIMESTAMP_DEVIATION) {
-                Log.w(TAG, "Processing out-of-order notification for " + sensorType + 
-                      ", time difference: " + timeDifference + "ms");
-                // Continue processing even though it's out of order
-            } else if (timeDifference < 0) {
-                // This is a significantly older notification, log and skip
-                Log.w(TAG, "Skipping significantly out-of-order notification for " + sensorType + 
-                      ", time difference: " + timeDifference + "ms (exceeds max deviation of " + 
-                      MAX_TIMESTAMP_DEVIATION + "ms)");
-                return;
-            }
-        }
-        
-        // process the characteristic data
-        try {
-            byte[] data = characteristic.getValue();
-            if (data == null || data.length == 0) {
-                Log.e(TAG, "Empty characteristic data");
-                return;
-            }
-            
-            String stringData = new String(data, java.nio.charset.StandardCharsets.UTF_8);
-            Log.d(TAG, "Characteristic data (" + sensorType + "): " + stringData);
-            
-            // parse and process the data - this notifies listeners
-            parseSensorData(stringData, sensorType);
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error processing characteristic data: " + e.getMessage(), e);
-            
-            // Even if processing fails, update the timestamp record to maintain proper ordering
-            if (timestamp > 0) {
-                Long currentLastTimestamp = lastProcessedTimestamps.get(sensorType);
-                if (currentLastTimestamp == null || timestamp > currentLastTimestamp) {
-                    lastProcessedTimestamps.put(sensorType, timestamp);
-                }
-            }
-        }
-        
-        // Update the last processed timestamp if this was a valid one
-        if (timestamp > 0) { // Only update if we have a valid timestamp
-            Long currentLastTimestamp = lastProcessedTimestamps.get(sensorType);
-            if (currentLastTimestamp == null || timestamp > currentLastTimestamp) {
-                lastProcessedTimestamps.put(sensorType, timestamp);
-            }
-        }
+    @Override
+    public void onCharacteristicChanged(BluetoothGattCharacteristic characteristic) {
+        onCharacteristicChanged(characteristic, LatencyTracer.NO_TRACE);
     }
     
     /**
-     * extract timestamp from a characteristic
+     * same, traced from the gatt callback
      */
-    private long extractTimestamp(BluetoothGattCharacteristic characteristic) {
-        try {
-            byte[] data = characteristic.getValue();
-            if (data == null || data.length == 0) {
-                return 0;
-            }
-            
-            String stringData = new String(data, java.nio.charset.StandardCharsets.UTF_8);
-            JSONObject json = new JSONObject(stringData);
-            
-            // Try both timeStamp (ESP32) and timestamp (test mode) formats
-            if (json.has("timeStamp")) {
-                // This is the primary format used by ESP32 hardware
-                long timeStamp = json.optLong("timeStamp", 0);
-                Log.d(TAG, "Found ESP32 hardware timeStamp format: " + timeStamp);
-                return timeStamp;
-            } else if (json.has("timestamp")) {
-                // This is the secondary format used in test mode
-                long timestamp = json.optLong("timestamp", 0);
-                Log.d(TAG, "Found alternative timestamp format: " + timestamp);
-                return timestamp;
-            } else {
-                Log.w(TAG, "No timestamp found in JSON data: " + stringData);
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error extracting timestamp: " + e.getMessage());
+    @Override
+    public void onCharacteristicChanged(BluetoothGattCharacteristic characteristic, int trace) {
+        // capture first, the characteristic's value is overwritten by the next notification
+        BleCaptureRecorder recorder = captureRecorder;
+        if (recorder != null) {
+            recorder.record(characteristic.getUuid(), characteristic.getValue(), SystemClock.elapsedRealtimeNanos());
         }
         
-        return 0;
+        // Update the last notification timestamp
+        lastNotificationTimestamp = System.currentTimeMillis();
+        
+        // Reset verification attempts when we receive a notification
+        verificationAttempts = 0;
+        
+        // queued for the background thread, parsing and ordering happen there
+        payloadSource.onCharacteristicChanged(characteristic, trace);
     }
     
     /**
@@ -842,12 +664,11 @@ public class BluetoothServiceIntegration implements
         
         // Remove listeners
         dataListeners.clear();
+        captureRecorder = null;
         
-        // Clear notification queue
-        notificationQueue.clear();
-        
-        // Clear timestamp tracking
-        lastProcessedTimestamps.clear();
+        // Clear queued notifications and timestamp tracking
+        payloadSource.setPayloadListener(null);
+        pipeline.clear();
         
         // Clean up background handler
         if (backgroundHandler != null) {
@@ -0,0 +1,25 @@
+package com.team12.smarthat.bluetooth.core;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import com.team12.smarthat.core.PayloadSource;
+
+/**
+ * hands characteristic notifications to the core pipeline as uuid and bytes
+ * the value array is taken as is, setValue() replaces it rather than writing into it
+ */
+class GattPayloadSource implements PayloadSource {
+    private volatile Listener listener;
+
+    @Override
+    public void setPayloadListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    void onCharacteristicChanged(BluetoothGattCharacteristic characteristic, int trace) {
+        Listener current = listener;
+        if (current != null && characteristic != null) {
+            current.onPayload(characteristic.getUuid(), characteristic.getValue(), trace);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.team12.smarthat.bluetooth.core;
+
+import android.os.Handler;
+
+import com.team12.smarthat.core.Scheduler;
+
+/**
+ * runs core pipeline tasks on a Handler, a HandlerThread's handler keeps them in order
+ */
+public class HandlerScheduler implements Scheduler {
+    private final Handler handler;
+
+    public HandlerScheduler(Handler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        handler.post(task);
+    }
+
+    @Override
+    public void executeDelayed(Runnable task, long delayMs) {
+        handler.postDelayed(task, delayMs);
+    }
+}
@@ -12,6 +12,7 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.LiveData;
 
+import com.team12.smarthat.core.LatencyTracer;
 import com.team12.smarthat.permissions.BluetoothPermissionManager;
 import com.team12.smarthat.utils.Constants;
 
@@ -144,7 +145,9 @@ public class MockBleConnectionManager extends BleConnectionManager {
         if (characteristic != null) {
             CharacteristicChangeListener listener = getCharacteristicChangeListener();
             if (listener != null) {
-                mockHandler.post(() -> listener.onCharacteristicChanged(characteristic));
+                // traced from here, as the real gatt callback is
+                int trace = LatencyTracer.getInstance().begin();
+                mockHandler.post(() -> listener.onCharacteristicChanged(characteristic, trace));
             }
         }
     }
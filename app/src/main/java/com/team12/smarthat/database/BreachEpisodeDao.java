@@ -0,0 +1,52 @@
+package com.team12.smarthat.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.RawQuery;
+import androidx.room.Update;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import com.team12.smarthat.models.BreachEpisode;
+
+import java.util.List;
+
+@Dao
+// breach episodes, written by BreachEpisodeTracker on the db executor
+public interface BreachEpisodeDao {
+    String OVERLAPS = "endTimestamp >= :startTimestamp AND startTimestamp <= :endTimestamp";
+
+    @Insert
+    long insert(BreachEpisode episode);
+
+    @Update
+    void update(BreachEpisode episode);
+
+    // history list, newest first
+    @Query("SELECT * FROM breach_episodes ORDER BY startTimestamp DESC")
+    List<BreachEpisode> getEpisodesSync();
+
+    @Query("SELECT * FROM breach_episodes WHERE " + OVERLAPS + " ORDER BY startTimestamp DESC")
+    List<BreachEpisode> getEpisodesSync(long startTimestamp, long endTimestamp);
+
+    // filtered history list, built by FilterQuery.breachEpisodes
+    @RawQuery
+    List<BreachEpisode> queryEpisodes(SupportSQLiteQuery query);
+
+    // extent of the episodes a rebuild of the range would cut through
+    @Query("SELECT MIN(startTimestamp) FROM breach_episodes WHERE " + OVERLAPS)
+    Long getOverlapStart(long startTimestamp, long endTimestamp);
+
+    @Query("SELECT MAX(endTimestamp) FROM breach_episodes WHERE " + OVERLAPS)
+    Long getOverlapEnd(long startTimestamp, long endTimestamp);
+
+    // episodes starting before liveStart lost samples to retention, a rebuild leaves them alone
+    @Query("DELETE FROM breach_episodes WHERE " + OVERLAPS + " AND startTimestamp >= :liveStart")
+    int deleteOverlapping(long startTimestamp, long endTimestamp, long liveStart);
+
+    @Query("SELECT MAX(endTimestamp) FROM breach_episodes WHERE sensorType = :sensorType AND startTimestamp < :liveStart")
+    Long getRetiredEnd(String sensorType, long liveStart);
+
+    @Query("DELETE FROM breach_episodes")
+    void clearEpisodes();
+}
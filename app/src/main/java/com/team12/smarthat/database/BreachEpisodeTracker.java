@@ -0,0 +1,91 @@
+package com.team12.smarthat.database;
+
+import com.team12.smarthat.models.BreachEpisode;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * folds readings into breach episodes as they are ingested
+ * an episode stays open while readings of its sensor stay above the threshold,
+ * a reading at or below it or a gap longer than maxGapMs closes it
+ * readings must arrive in timestamp order per sensor
+ * not thread safe, DatabaseHelper only uses it on the db executor
+ */
+class BreachEpisodeTracker {
+    private final BreachEpisodeDao dao;
+    private final long maxGapMs;
+    // open episode per sensor type
+    private final Map<String, BreachEpisode> open = new HashMap<>();
+    // extended since the last flush
+    private final Set<BreachEpisode> dirty = new LinkedHashSet<>();
+
+    BreachEpisodeTracker(BreachEpisodeDao dao, long maxGapMs) {
+        this.dao = dao;
+        this.maxGapMs = maxGapMs;
+    }
+
+    /**
+     * fold one reading in, a new episode is inserted right away so it has an id
+     */
+    void track(String sensorType, long timestamp, float value, float threshold) {
+        BreachEpisode episode = open.get(sensorType);
+        if (episode != null && (value <= threshold || timestamp - episode.getEndTimestamp() > maxGapMs)) {
+            open.remove(sensorType);
+            episode = null;
+        }
+
+        if (value <= threshold) {
+            return;
+        }
+
+        if (episode == null) {
+            episode = BreachEpisode.start(sensorType, timestamp, value, threshold);
+            episode.setId(dao.insert(episode));
+            open.put(sensorType, episode);
+        } else {
+            episode.extend(timestamp, value);
+            dirty.add(episode);
+        }
+    }
+
+    /**
+     * write episodes extended since the last flush
+     */
+    void flush() {
+        for (BreachEpisode episode : dirty) {
+            dao.update(episode);
+        }
+        dirty.clear();
+    }
+
+    /**
+     *
+     * @return the open episode of a sensor, null if its last reading was not a breach
+     */
+    BreachEpisode getOpenEpisode(String sensorType) {
+        return open.get(sensorType);
+    }
+
+    /**
+     * continue a sensor from another tracker's state, used after a rebuild
+     * replaced the episode this tracker had open
+     */
+    void setOpenEpisode(String sensorType, BreachEpisode episode) {
+        if (episode == null) {
+            open.remove(sensorType);
+        } else {
+            open.put(sensorType, episode);
+        }
+    }
+
+    /**
+     * forget all open episodes, the next breach of every sensor starts a new one
+     */
+    void reset() {
+        open.clear();
+        dirty.clear();
+    }
+}
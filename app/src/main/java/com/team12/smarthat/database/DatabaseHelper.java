@@ -1,19 +1,35 @@
 package com.team12.smarthat.database;
 
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.lifecycle.LiveData;
 import androidx.room.Room;
 import androidx.sqlite.db.SupportSQLiteQuery;
 
+import com.team12.smarthat.core.LatencyTracer;
+import com.team12.smarthat.models.BreachEpisode;
+import com.team12.smarthat.models.DataFilter;
+import com.team12.smarthat.models.JournalCheckpoint;
+import com.team12.smarthat.models.NoiseDoseShift;
 import com.team12.smarthat.models.SensorData;
+import com.team12.smarthat.models.SensorSeries;
+import com.team12.smarthat.models.SensorStats;
+import com.team12.smarthat.models.SensorWindow;
 import com.team12.smarthat.utils.Constants;
+import com.team12.smarthat.utils.ThresholdConfig;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  *db access using singleton pattern
@@ -22,10 +38,48 @@ public class DatabaseHelper {
     private static volatile DatabaseHelper instance;
     private static Context appContext;
     
+    private final SensorDatabase database;
     private final SensorDataDao dao;
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final BreachEpisodeDao episodeDao;
+    // open breach episodes, only touched on the db executor
+    private final BreachEpisodeTracker episodeTracker;
+    private final NoiseDoseDao noiseDoseDao;
+    // osha dose of the current shift, only touched on the db executor
+    private final NoiseDoseTracker noiseDoseTracker;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    // exports read on their own thread so a long one never queues ahead of insert batches
+    private final ExecutorService exportExecutor = Executors.newSingleThreadExecutor();
     // max records# in db
     public static final int MAX_RECORDS = 10000;
+    // retention runs once this many rows went in since the last run, about one zone block,
+    // so the table stays under MAX_RECORDS + RETENTION_SLACK without a cleanup per batch
+    private static final int RETENTION_SLACK = 1000;
+    private static final long CLEANUP_INTERVAL_MS = 10 * 60 * 1000;
+    // only touched on the db executor
+    private int insertedSinceCleanup = 0;
+    
+    // write batching - samples are journaled first so they can wait here safely
+    private static final int INSERT_BATCH_SIZE = 50;
+    private static final long INSERT_BATCH_DELAY_MS = 2000;
+    private static final String JOURNAL_FILE_NAME = "sample_journal.bin";
+    
+    private final SampleJournal journal;
+    // guards journal and pendingInserts so both always hold the same samples
+    private final Object pendingLock = new Object();
+    private List<SensorData> pendingInserts = new ArrayList<>();
+    // journal leftovers from the previous run, ahead of every new sample in the journal
+    // only touched on the db executor
+    private List<SensorData> unreplayed;
+    
+    // tombstone purge - deleted rows are removed in small chunks between insert batches
+    private static final long PURGE_INTERVAL_MS = 5 * 60 * 1000;
+    private static final int PURGE_CHUNK_SIZE = 200;
+    private static final int MAX_IDS_PER_STATEMENT = 500;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    
+    private static final String[] EPISODE_SENSOR_TYPES = {
+            SensorData.TYPE_DUST, SensorData.TYPE_NOISE, SensorData.TYPE_GAS
+    };
     
     /**
      * initialize the DatabaseHelper with application context
@@ -80,18 +134,264 @@ public class DatabaseHelper {
      * @param context application context for database creation
      */
     private DatabaseHelper(Context context) {
-        SensorDatabase db = SensorDatabase.getInstance(context);
-        dao = db.sensorDataDao();
+        database = SensorDatabase.getInstance(context);
+        dao = database.sensorDataDao();
+        episodeDao = database.breachEpisodeDao();
+        episodeTracker = new BreachEpisodeTracker(episodeDao, Constants.BREACH_EPISODE_MAX_GAP_MS);
+        noiseDoseDao = database.noiseDoseDao();
+        noiseDoseTracker = new NoiseDoseTracker(noiseDoseDao, Constants.NOISE_DOSE_MAX_HOLD_MS, Constants.NOISE_SHIFT_BREAK_MS);
+        
+        // read leftovers before anything new is appended, then replay them first
+        journal = new SampleJournal(new File(context.getFilesDir(), JOURNAL_FILE_NAME));
+        List<SensorData> recovered = journal.open();
+        if (!recovered.isEmpty()) {
+            unreplayed = recovered;
+            executor.execute(this::flushPendingInserts);
+        }
+        
+        // a database migrated from before episodes existed gets them built from its samples
+        executor.execute(this::rebuildEpisodesAfterMigration);
+        
         // schedule initial cleanup
         scheduleCleanup();
+        schedulePurge();
     }
 
     // ble note: will update sensordata and dao methods
     public void insertData(SensorData data) {
-        executor.execute(() -> {
-            dao.insert(data);
-            // check if cleanup is needed after insert
+        synchronized (pendingLock) {
+            // journal before queueing so the sample survives the process being killed
+            journal.append(data);
+            pendingInserts.add(data);
+            
+            if (pendingInserts.size() == 1) {
+                // first sample of a batch, make sure it's written within the delay
+                executor.schedule(this::flushPendingInserts, INSERT_BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+            } else if (pendingInserts.size() == INSERT_BATCH_SIZE) {
+                executor.execute(this::flushPendingInserts);
+            }
+        }
+    }
+    
+    /**
+     * write all pending samples to room in one transaction
+     * a batch that fails goes back ahead of newer samples and is retried, the journal only
+     * drops samples once they are committed
+     * runs on the db executor
+     */
+    private void flushPendingInserts() {
+        // the journal is in commit order, leftovers have to land before anything newer
+        if (!replayJournal()) {
+            executor.schedule(this::flushPendingInserts, INSERT_BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        
+        List<SensorData> batch;
+        long batchSequence;
+        synchronized (pendingLock) {
+            if (pendingInserts.isEmpty()) {
+                return;
+            }
+            journal.sync();
+            batch = pendingInserts;
+            pendingInserts = new ArrayList<>();
+            // once leftovers are replayed the journal holds exactly the pending samples
+            batchSequence = journal.getLastSequence();
+        }
+        
+        try {
+            database.runInTransaction(() -> {
+                dao.insertAllWithZones(batch);
+                dao.setJournalCheckpoint(new JournalCheckpoint(JournalCheckpoint.ID, batchSequence));
+                trackEpisodes(batch);
+                trackNoiseDose(batch);
+            });
+        } catch (Exception e) {
+            // open episodes may point at rows that were rolled back, the dose was rolled back too
+            episodeTracker.reset();
+            noiseDoseTracker.reset();
+            Log.e(Constants.TAG_DATABASE, "Error inserting batch of " + batch.size() + " samples, retrying: " + e.getMessage(), e);
+            synchronized (pendingLock) {
+                // back at the head, journal order and pending order stay the same
+                batch.addAll(pendingInserts);
+                pendingInserts = batch;
+            }
+            executor.schedule(this::flushPendingInserts, INSERT_BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        
+        synchronized (pendingLock) {
+            // samples journaled while the batch was committing stay in the journal
+            journal.commit(batch.size());
+        }
+        
+        LatencyTracer tracer = LatencyTracer.getInstance();
+        for (int i = 0; i < batch.size(); i++) {
+            tracer.markSample(batch.get(i), LatencyTracer.STAGE_COMMITTED);
+        }
+        
+        // cleanup needed only once enough rows went in
+        insertedSinceCleanup += batch.size();
+        if (insertedSinceCleanup >= RETENTION_SLACK) {
             checkAndCleanupDatabase();
+        }
+    }
+    
+    /**
+     * re-insert samples left in the journal by a previous run
+     * records up to the checkpoint committed with the last batch are already in room and skipped
+     * runs on the db executor
+     * @return false if they are still waiting to be committed
+     */
+    private boolean replayJournal() {
+        if (unreplayed == null) {
+            return true;
+        }
+        List<SensorData> recovered = unreplayed;
+        long firstSequence;
+        synchronized (pendingLock) {
+            // leftovers are the oldest records in the journal
+            firstSequence = journal.getFirstSequence();
+        }
+        long lastSequence = firstSequence + recovered.size() - 1;
+        try {
+            Long checkpoint = dao.getJournalCheckpoint();
+            int committed = checkpoint == null ? 0
+                    : (int) Math.max(0, Math.min(recovered.size(), checkpoint - firstSequence + 1));
+            List<SensorData> missing = recovered.subList(committed, recovered.size());
+            database.runInTransaction(() -> {
+                dao.insertAllWithZones(missing);
+                dao.setJournalCheckpoint(new JournalCheckpoint(JournalCheckpoint.ID, lastSequence));
+                trackEpisodes(missing);
+                trackNoiseDose(missing);
+            });
+            Log.d(Constants.TAG_DATABASE, "Replayed " + missing.size() + " of " + recovered.size() + " journaled samples");
+        } catch (Exception e) {
+            episodeTracker.reset();
+            noiseDoseTracker.reset();
+            Log.e(Constants.TAG_DATABASE, "Error replaying sample journal, retrying: " + e.getMessage(), e);
+            return false;
+        }
+        
+        synchronized (pendingLock) {
+            journal.commit(recovered.size());
+        }
+        unreplayed = null;
+        return true;
+    }
+    
+    /**
+     * fold newly inserted samples into the breach episodes
+     * runs on the db executor inside the insert transaction
+     */
+    private void trackEpisodes(List<SensorData> batch) {
+        ThresholdConfig config = ThresholdConfig.get();
+        for (SensorData data : batch) {
+            episodeTracker.track(data.getSensorType(), data.getTimestamp(), data.getValue(),
+                    config.thresholdFor(data.getSensorType()));
+        }
+        episodeTracker.flush();
+    }
+    
+    /**
+     * fold newly inserted noise samples into the shift dose
+     * test data is left out, the dose is a compliance record
+     * runs on the db executor inside the insert transaction
+     */
+    private void trackNoiseDose(List<SensorData> batch) {
+        for (SensorData data : batch) {
+            if (data.isNoiseData() && !data.isTestData()) {
+                noiseDoseTracker.track(data.getTimestamp(), data.getValue());
+            }
+        }
+        noiseDoseTracker.flush();
+    }
+    
+    /**
+     * recompute the breach episodes around [from, to] from the live samples
+     * the range grows to cover every episode it cuts through, plus the episode gap
+     * so neighbours that now touch are merged
+     * episodes older than the stored samples were built from rows retention has since
+     * retired, they are kept as they are and the rebuild starts after them
+     * runs on the db executor after deletes, undo and threshold changes
+     */
+    private void rebuildEpisodes(long from, long to) {
+        long gap = Constants.BREACH_EPISODE_MAX_GAP_MS;
+        long start = from > Long.MIN_VALUE + gap ? from - gap : Long.MIN_VALUE;
+        long end = to < Long.MAX_VALUE - gap ? to + gap : Long.MAX_VALUE;
+        ThresholdConfig config = ThresholdConfig.get();
+        
+        try {
+            database.runInTransaction(() -> {
+                Long oldestStored = dao.getOldestStoredTimestamp();
+                // nothing stored, every episode is all that is left of its samples
+                long liveStart = oldestStored != null ? oldestStored : Long.MAX_VALUE;
+                Long overlapStart = episodeDao.getOverlapStart(start, end);
+                Long overlapEnd = episodeDao.getOverlapEnd(start, end);
+                long rebuildStart = overlapStart != null ? Math.min(start, overlapStart) : start;
+                long rebuildEnd = overlapEnd != null ? Math.max(end, overlapEnd) : end;
+                episodeDao.deleteOverlapping(rebuildStart, rebuildEnd, liveStart);
+                
+                BreachEpisodeTracker rebuilt = new BreachEpisodeTracker(episodeDao, gap);
+                for (String sensorType : EPISODE_SENSOR_TYPES) {
+                    // the samples a kept episode still has would otherwise become a second copy of it
+                    Long retiredEnd = episodeDao.getRetiredEnd(sensorType, liveStart);
+                    long streamStart = retiredEnd != null ? Math.max(rebuildStart, retiredEnd + 1) : rebuildStart;
+                    float threshold = config.thresholdFor(sensorType);
+                    if (streamStart <= rebuildEnd) {
+                        try (Cursor cursor = dao.streamReadings(sensorType, streamStart, rebuildEnd)) {
+                            int timestampColumn = cursor.getColumnIndexOrThrow("timestamp");
+                            int valueColumn = cursor.getColumnIndexOrThrow("value");
+                            while (cursor.moveToNext()) {
+                                rebuilt.track(sensorType, cursor.getLong(timestampColumn), cursor.getFloat(valueColumn), threshold);
+                            }
+                        }
+                    }
+                    
+                    // the open episode was just deleted if it was in range, carry on from its replacement
+                    BreachEpisode current = episodeTracker.getOpenEpisode(sensorType);
+                    if (current != null && current.getStartTimestamp() >= liveStart
+                            && current.getEndTimestamp() >= rebuildStart && current.getStartTimestamp() <= rebuildEnd) {
+                        episodeTracker.setOpenEpisode(sensorType, rebuilt.getOpenEpisode(sensorType));
+                    }
+                }
+                rebuilt.flush();
+            });
+        } catch (Exception e) {
+            episodeTracker.reset();
+            Log.e(Constants.TAG_DATABASE, "Error rebuilding breach episodes: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * rebuild the episodes around a set of samples that were deleted or restored
+     */
+    private void rebuildEpisodesAround(List<Integer> ids) {
+        long from = Long.MAX_VALUE;
+        long to = Long.MIN_VALUE;
+        for (List<Integer> chunk : chunks(ids)) {
+            Long min = dao.getMinTimestamp(chunk);
+            Long max = dao.getMaxTimestamp(chunk);
+            if (min != null && max != null) {
+                from = Math.min(from, min);
+                to = Math.max(to, max);
+            }
+        }
+        if (from <= to) {
+            rebuildEpisodes(from, to);
+        }
+    }
+    
+    /**
+     * push journaled samples to disk and write the pending batch soon, returns right away
+     * called when the system signals memory pressure, on the main thread
+     */
+    public void flush() {
+        executor.execute(() -> {
+            synchronized (pendingLock) {
+                journal.sync();
+            }
+            flushPendingInserts();
         });
     }
     
@@ -112,32 +412,92 @@ public class DatabaseHelper {
         // implementation can be expanded as needed
     }
     
-    // if ble: will update dao query here, liveData for changes
-    public LiveData<List<SensorData>> getAllReadings() {
-        return dao.getAllData();
+    /**
+     * live readings of one sensor from the last windowMs milliseconds
+     * only new rows are fetched on each refresh
+     * @param sensorType sensor type (SensorData.TYPE_*)
+     * @param windowMs window length in milliseconds
+     * @return livedata emitting the window and what was appended to it
+     */
+    public LiveData<SensorWindow> getRecentReadings(String sensorType, long windowMs) {
+        return new ThrottledQueryLiveData<>(database, database.getQueryExecutor(),
+                Constants.LIVE_WINDOW_REFRESH_INTERVAL_MS,
+                SensorWindowQuery.lastMillis(dao, sensorType, windowMs), "sensor_data");
     }
     
-    // get all threshold breaches
-    public LiveData<List<SensorData>> getThresholdBreaches(float dustThreshold, float noiseThreshold, float gasThreshold) {
-        return dao.getThresholdBreaches(dustThreshold, noiseThreshold, gasThreshold);
+    /**
+     * live view of the last maxRows readings of one sensor
+     * only new rows are fetched on each refresh
+     * @param sensorType sensor type (SensorData.TYPE_*)
+     * @param maxRows number of readings to keep
+     * @return livedata emitting the window and what was appended to it
+     */
+    public LiveData<SensorWindow> getLatestReadings(String sensorType, int maxRows) {
+        return new ThrottledQueryLiveData<>(database, database.getQueryExecutor(),
+                Constants.LIVE_WINDOW_REFRESH_INTERVAL_MS,
+                SensorWindowQuery.lastRows(dao, sensorType, maxRows), "sensor_data");
+    }
+
+    /**
+     * one sensor over a date range reduced to about targetPoints points with lttb
+     * for long-range charts, rows are streamed and never loaded as a list
+     * @param sensorType sensor type (SensorData.TYPE_*)
+     * @param filter date range, null for everything stored
+     * @param targetPoints number of points to draw, usually the chart width in pixels
+     * @return livedata emitting the downsampled series, refreshed when data changes
+     */
+    public LiveData<SensorSeries> getDownsampledReadings(String sensorType, DataFilter filter, int targetPoints) {
+        long startTimestamp = filter != null ? filter.getStartTimestamp() : 0;
+        long endTimestamp = filter != null ? filter.getEndTimestamp() : Long.MAX_VALUE;
+        return new ThrottledQueryLiveData<>(database, database.getQueryExecutor(),
+                Constants.HISTORY_REFRESH_INTERVAL_MS,
+                new DownsampleQuery(database, sensorType, startTimestamp, endTimestamp, targetPoints), "sensor_data");
+    }
+
+    /**
+     * count, min, max, mean, std dev and approximate p50/p95/p99 per sensor
+     * computed in sql and one cursor pass, no rows are loaded
+     * @param filter date range, e.g. a shift, null for everything stored
+     * @return livedata emitting one entry per sensor type with readings in the range
+     */
+    public LiveData<List<SensorStats>> getStatistics(DataFilter filter) {
+        long startTimestamp = filter != null ? filter.getStartTimestamp() : 0;
+        long endTimestamp = filter != null ? filter.getEndTimestamp() : Long.MAX_VALUE;
+        return new ThrottledQueryLiveData<>(database, database.getQueryExecutor(),
+                Constants.HISTORY_REFRESH_INTERVAL_MS,
+                new StatsQuery(database, startTimestamp, endTimestamp), "sensor_data");
+    }
+
+    /**
+     * wrap a blocking sensor_data query in livedata that re-queries at most
+     * every HISTORY_REFRESH_INTERVAL_MS and only while observed
+     * @param query blocking dao query
+     * @return throttled livedata for the query
+     */
+    private LiveData<List<SensorData>> throttledQuery(Callable<List<SensorData>> query) {
+        return new ThrottledQueryLiveData<>(database, database.getQueryExecutor(),
+                Constants.HISTORY_REFRESH_INTERVAL_MS, query, "sensor_data");
     }
     
     /**
      * periodic database cleanup
      */
     private void scheduleCleanup() {
-        executor.execute(this::checkAndCleanupDatabase);
+        executor.scheduleWithFixedDelay(this::checkAndCleanupDatabase, 0, CLEANUP_INTERVAL_MS, TimeUnit.MILLISECONDS);
     }
     
     /**
      * dbcleanup check
      */
     private void checkAndCleanupDatabase() {
+        insertedSinceCleanup = 0;
         try {
             int count = dao.getCount();
             if (count > MAX_RECORDS) {
                 Log.d(Constants.TAG_DATABASE, "Database cleanup: removing " + (count - MAX_RECORDS) + " old records");
                 dao.deleteOldest(count - MAX_RECORDS);
+                // retired blocks drop out of the zone map
+                dao.retireZones();
             }
         } catch (Exception e) {
             Log.e(Constants.TAG_DATABASE, "Error during database cleanup: " + e.getMessage());
@@ -148,7 +508,13 @@ public class DatabaseHelper {
      * clear up db
      */
     public void clearAllData() {
-        executor.execute(dao::clearAll);
+        executor.execute(() -> {
+            dao.clearAll();
+            episodeDao.clearEpisodes();
+            episodeTracker.reset();
+            noiseDoseDao.clearShifts();
+            noiseDoseTracker.reset();
+        });
     }
     
     /**
@@ -173,84 +539,152 @@ public class DatabaseHelper {
     
     /**
      * Get the user's custom dust threshold value
-     * @param context Context for accessing shared preferences
+     * @param context unused, the value comes from the ThresholdConfig snapshot
      * @return The custom threshold value or the default if not set
      */
     public float getCustomDustThreshold(Context context) {
-        SharedPreferences prefs = context.getSharedPreferences(Constants.PREF_NAME, Context.MODE_PRIVATE);
-        return prefs.getFloat(Constants.PREF_DUST_THRESHOLD, Constants.DUST_THRESHOLD);
+        return ThresholdConfig.get().getDustThreshold();
     }
     
     /**
      * Get the user's custom noise threshold value
-     * @param context Context for accessing shared preferences
+     * @param context unused, the value comes from the ThresholdConfig snapshot
      * @return The custom threshold value or the default if not set
      */
     public float getCustomNoiseThreshold(Context context) {
-        SharedPreferences prefs = context.getSharedPreferences(Constants.PREF_NAME, Context.MODE_PRIVATE);
-        return prefs.getFloat(Constants.PREF_NOISE_THRESHOLD, Constants.NOISE_THRESHOLD);
+        return ThresholdConfig.get().getNoiseThreshold();
     }
     
     /**
      * Get the user's custom gas threshold value
-     * @param context Context for accessing shared preferences
+     * @param context unused, the value comes from the ThresholdConfig snapshot
      * @return The custom threshold value or the default if not set
      */
     public float getCustomGasThreshold(Context context) {
-        SharedPreferences prefs = context.getSharedPreferences(Constants.PREF_NAME, Context.MODE_PRIVATE);
-        return prefs.getFloat(Constants.PREF_GAS_THRESHOLD, Constants.GAS_THRESHOLD);
+        return ThresholdConfig.get().getGasThreshold();
     }
     
     /**
-     * Get threshold breaches with custom thresholds
-     * @param context Context for accessing shared preferences
-     * @return LiveData list of threshold breaches based on custom thresholds
+     * breach episodes for the history screen, newest first
+     * follows the active filter, value bounds apply to the episode peak
+     * @return throttled livedata of the episodes
      */
-    public LiveData<List<SensorData>> getThresholdBreachesWithCustomThresholds(Context context) {
-        float dustThreshold = getCustomDustThreshold(context);
-        float noiseThreshold = getCustomNoiseThreshold(context);
-        float gasThreshold = getCustomGasThreshold(context);
-        
-        // Use the version that supports filtering
-        if(com.team12.smarthat.utils.DataFilterHelper.getInstance().getCurrentFilter() != null) {
-            return getThresholdBreaches(dustThreshold, noiseThreshold, gasThreshold, context);
+    public LiveData<List<BreachEpisode>> getBreachEpisodes() {
+        DataFilter filter = com.team12.smarthat.utils.DataFilterHelper.getInstance().getCurrentFilter();
+        Callable<List<BreachEpisode>> query;
+        if (filter != null) {
+            // compiled once, every refresh reuses the same statement text and args
+            SupportSQLiteQuery filtered = FilterQuery.breachEpisodes(filter).toQuery();
+            query = () -> episodeDao.queryEpisodes(filtered);
+        } else {
+            query = episodeDao::getEpisodesSync;
         }
-        
-        // If no filtering needed, use original version with gas threshold
-        return getThresholdBreaches(dustThreshold, noiseThreshold, gasThreshold);
+        return new ThrottledQueryLiveData<>(database, database.getQueryExecutor(),
+                Constants.HISTORY_REFRESH_INTERVAL_MS, query, "breach_episodes");
     }
     
     /**
-     * Get threshold breaches with filter handling support
-     * @param dustThreshold Custom dust threshold
-     * @param noiseThreshold Custom noise threshold
-     * @param gasThreshold Custom gas threshold
-     * @param context Context for accessing shared preferences
-     * @return LiveData list of threshold breaches with filter support
+     * osha noise dose per shift, newest first
+     * shifts overlapping the active date filter when one is set
+     * @return throttled livedata of the shifts
      */
-    public LiveData<List<SensorData>> getThresholdBreaches(float dustThreshold, float noiseThreshold, float gasThreshold, Context context) {
-        // Check if date filtering is needed
-        com.team12.smarthat.models.DataFilter filter = com.team12.smarthat.utils.DataFilterHelper.getInstance().getCurrentFilter();
-        if (filter != null) {
-            // Apply date range filtering
-            return dao.getThresholdBreaches(
-                dustThreshold, noiseThreshold, gasThreshold, 
-                filter.getStartTimestamp(), filter.getEndTimestamp());
+    public LiveData<List<NoiseDoseShift>> getNoiseDoseShifts() {
+        DataFilter filter = com.team12.smarthat.utils.DataFilterHelper.getInstance().getCurrentFilter();
+        Callable<List<NoiseDoseShift>> query = filter != null && filter.hasDateRange()
+                ? () -> noiseDoseDao.getShiftsSync(filter.getStartTimestamp(), filter.getEndTimestamp())
+                : noiseDoseDao::getShiftsSync;
+        return new ThrottledQueryLiveData<>(database, database.getQueryExecutor(),
+                Constants.HISTORY_REFRESH_INTERVAL_MS, query, "noise_dose_shifts");
+    }
+    
+    /**
+     * dose of the latest shift, updated as noise samples are stored
+     * @return throttled livedata of the shift, null value before the first noise sample
+     */
+    public LiveData<NoiseDoseShift> getCurrentNoiseDose() {
+        return new ThrottledQueryLiveData<>(database, database.getQueryExecutor(),
+                Constants.HISTORY_REFRESH_INTERVAL_MS, noiseDoseDao::getLatestShift, "noise_dose_shifts");
+    }
+    
+    /**
+     * end the current shift now, e.g. when the user clocks in
+     * the next noise sample starts a new shift at zero dose
+     */
+    public void startNewNoiseShift() {
+        executor.execute(noiseDoseTracker::startNewShift);
+    }
+    
+    /**
+     * recompute the episodes of every stored sample with the current thresholds
+     * call after the thresholds change, episodes older than the stored samples are kept
+     */
+    public void rebuildBreachEpisodes() {
+        executor.execute(this::rebuildAllEpisodes);
+    }
+    
+    // runs on the db executor
+    private void rebuildAllEpisodes() {
+        Long oldest = dao.getOldestTimestamp();
+        if (oldest != null) {
+            rebuildEpisodes(oldest, Long.MAX_VALUE);
+        }
+    }
+    
+    /**
+     * build the episodes of the samples a 2 -> 3 migration kept
+     * runs on the db executor
+     */
+    private void rebuildEpisodesAfterMigration() {
+        try {
+            // opening the database runs a pending migration
+            database.getOpenHelper().getWritableDatabase();
+        } catch (Exception e) {
+            Log.e(Constants.TAG_DATABASE, "Error opening database: " + e.getMessage(), e);
+            return;
+        }
+        if (SensorDatabase.takeEpisodeRebuild()) {
+            Log.d(Constants.TAG_DATABASE, "Building breach episodes of migrated samples");
+            rebuildAllEpisodes();
         }
-        
-        // No date filtering
-        return dao.getThresholdBreaches(dustThreshold, noiseThreshold, gasThreshold);
+    }
+    
+    /**
+     * live readings matching a filter, newest first
+     * @param filter criteria, all optional
+     * @return throttled livedata of the readings
+     */
+    public LiveData<List<SensorData>> getReadings(DataFilter filter) {
+        SupportSQLiteQuery query = FilterQuery.readings(filter).toQuery();
+        return throttledQuery(() -> dao.querySensorData(query));
+    }
+    
+    /**
+     * stream the live readings matching a filter to a file in the background
+     * exports run one at a time, a second one waits for the first
+     * @param filter criteria, null exports everything stored
+     * @param format csv or ndjson
+     * @param gzip compress the file, adds .gz to its name
+     * @param directory where the file is written
+     * @param listener progress and result, called on the main thread
+     * @return the running export, cancel() stops it
+     */
+    public SensorDataExport exportReadings(DataFilter filter, SensorDataExport.Format format, boolean gzip,
+                                           File directory, SensorDataExport.Listener listener) {
+        File file = new File(directory, SensorDataExport.fileName(format, gzip, System.currentTimeMillis()));
+        SensorDataExport export = new SensorDataExport(dao, filter, format, gzip, file, listener, mainHandler::post);
+        exportExecutor.execute(export);
+        return export;
     }
     
     /**
      * Delete a specific threshold breach by its ID
+     * the row is tombstoned and can be restored until the purger removes it
      * @param id ID of the record to delete
      */
     public void deleteThresholdBreach(int id) {
-        executor.execute(() -> {
-            dao.deleteById(id);
-            Log.d(Constants.TAG_DATABASE, "Deleted threshold breach with ID: " + id);
-        });
+        List<Integer> ids = new ArrayList<>();
+        ids.add(id);
+        deleteThresholdBreaches(ids);
     }
     
     /**
@@ -259,24 +693,147 @@ public class DatabaseHelper {
      */
     public void deleteThresholdBreaches(List<Integer> ids) {
         executor.execute(() -> {
-            dao.deleteByIds(ids);
-            Log.d(Constants.TAG_DATABASE, "Deleted " + ids.size() + " threshold breaches");
+            int count = tombstone(ids);
+            rebuildEpisodesAround(ids);
+            Log.d(Constants.TAG_DATABASE, "Deleted " + count + " threshold breaches");
+        });
+    }
+    
+    /**
+     * delete a breach episode together with the samples it was built from
+     * @param episode episode shown in the history
+     * @param callback receives the deleted sample ids on the main thread for undo, may be null
+     */
+    public void deleteBreachEpisode(BreachEpisode episode, DeleteCallback callback) {
+        executor.execute(() -> {
+            List<Integer> ids = dao.getEpisodeSampleIds(episode.getSensorType(),
+                    episode.getStartTimestamp(), episode.getEndTimestamp(), episode.getThreshold());
+            int count = tombstone(ids);
+            rebuildEpisodes(episode.getStartTimestamp(), episode.getEndTimestamp());
+            Log.d(Constants.TAG_DATABASE, "Deleted breach episode " + episode.getId() + " with " + count + " samples");
+            
+            if (callback != null) {
+                mainHandler.post(() -> callback.onDeleted(ids));
+            }
         });
     }
     
     /**
      * Delete all threshold breaches based on custom thresholds
+     * only the breaches matching the active filter are deleted, matching what the history shows
      * @param context Context for accessing shared preferences
+     * @param callback receives the deleted ids on the main thread so the delete can be undone, may be null
      */
-    public void deleteAllThresholdBreaches(Context context) {
-        float dustThreshold = getCustomDustThreshold(context);
-        float noiseThreshold = getCustomNoiseThreshold(context);
-        float gasThreshold = getCustomGasThreshold(context);
+    public void deleteAllThresholdBreaches(Context context, DeleteCallback callback) {
+        ThresholdConfig config = ThresholdConfig.get();
+        float dustThreshold = config.getDustThreshold();
+        float noiseThreshold = config.getNoiseThreshold();
+        float gasThreshold = config.getGasThreshold();
+        DataFilter filter = com.team12.smarthat.utils.DataFilterHelper.getInstance().getCurrentFilter();
+        SupportSQLiteQuery filtered = filter != null
+                ? FilterQuery.thresholdBreachIds(filter, dustThreshold, noiseThreshold, gasThreshold).toQuery()
+                : null;
         
         executor.execute(() -> {
-            int count = dao.deleteAllThresholdBreaches(dustThreshold, noiseThreshold, gasThreshold);
+            List<Integer> ids = filtered != null
+                    ? dao.queryIds(filtered)
+                    : dao.getThresholdBreachIds(dustThreshold, noiseThreshold, gasThreshold);
+            int count = tombstone(ids);
+            if (filter != null) {
+                rebuildEpisodes(filter.getStartTimestamp(), filter.getEndTimestamp());
+            } else {
+                rebuildEpisodes(Long.MIN_VALUE, Long.MAX_VALUE);
+            }
             Log.d(Constants.TAG_DATABASE, "Deleted all threshold breaches: " + count + " records");
+            
+            if (callback != null) {
+                mainHandler.post(() -> callback.onDeleted(ids));
+            }
+        });
+    }
+    
+    /**
+     * undo a delete, rows come back unless they were already purged
+     * @param ids ids handed out by a delete
+     */
+    public void restoreThresholdBreaches(List<Integer> ids) {
+        executor.execute(() -> {
+            int count = 0;
+            for (List<Integer> chunk : chunks(ids)) {
+                count += dao.restoreByIds(chunk);
+            }
+            // zone maxima ignore tombstoned rows, widen them again
+            dao.refreshZones();
+            rebuildEpisodesAround(ids);
+            Log.d(Constants.TAG_DATABASE, "Restored " + count + " threshold breaches");
         });
     }
+    
+    /**
+     * mark rows deleted, runs on the db executor
+     * @return number of rows tombstoned
+     */
+    private int tombstone(List<Integer> ids) {
+        int count = 0;
+        for (List<Integer> chunk : chunks(ids)) {
+            count += dao.tombstoneByIds(chunk);
+        }
+        return count;
+    }
+    
+    // keeps IN (:ids) under sqlite's bind argument limit
+    private static List<List<Integer>> chunks(List<Integer> ids) {
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += MAX_IDS_PER_STATEMENT) {
+            chunks.add(ids.subList(i, Math.min(ids.size(), i + MAX_IDS_PER_STATEMENT)));
+        }
+        return chunks;
+    }
+    
+    /**
+     * periodic purge of tombstoned rows
+     */
+    private void schedulePurge() {
+        executor.scheduleWithFixedDelay(this::startPurge, PURGE_INTERVAL_MS, PURGE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * one purge cycle: remove rows marked in the previous cycle, then mark the current tombstones
+     * a tombstone survives at least one full PURGE_INTERVAL_MS so undo has time to reach it
+     */
+    private void startPurge() {
+        purgeChunk(0);
+    }
+    
+    /**
+     * delete one chunk and queue the next behind whatever is already on the executor,
+     * so insert batches never wait for a whole purge
+     * @param purged rows removed so far this cycle
+     */
+    private void purgeChunk(int purged) {
+        try {
+            int removed = dao.purgeTombstones(PURGE_CHUNK_SIZE);
+            if (removed == PURGE_CHUNK_SIZE) {
+                executor.execute(() -> purgeChunk(purged + removed));
+                return;
+            }
+            
+            int total = purged + removed;
+            if (total > 0) {
+                // the purged rows may have been the peaks of their zones
+                dao.refreshZones();
+                Log.d(Constants.TAG_DATABASE, "Purged " + total + " deleted records");
+            }
+            dao.markTombstonesPurgeReady();
+        } catch (Exception e) {
+            Log.e(Constants.TAG_DATABASE, "Error purging deleted records: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * receives the ids removed by a bulk delete
+     */
+    public interface DeleteCallback {
+        void onDeleted(List<Integer> ids);
+    }
 }
-
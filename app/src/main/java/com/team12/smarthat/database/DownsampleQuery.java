@@ -0,0 +1,49 @@
+package com.team12.smarthat.database;
+
+import android.database.Cursor;
+
+import com.team12.smarthat.models.SensorSeries;
+import com.team12.smarthat.utils.LttbDownsampler;
+
+import java.util.concurrent.Callable;
+
+/**
+ * query behind the downsampled chart series
+ * rows are streamed from a cursor straight into LttbDownsampler, so a week of
+ * readings never exists on the heap as SensorData objects
+ * no transaction, that would hold the single write connection and stall insert batches
+ * behind the scan. a row committed between count and scan only shifts the bucket edges,
+ * the downsampler ignores extra rows and closes early on missing ones
+ */
+class DownsampleQuery implements Callable<SensorSeries> {
+    private final SensorDataDao dao;
+    private final String sensorType;
+    private final long startTimestamp;
+    private final long endTimestamp;
+    private final int targetPoints;
+
+    DownsampleQuery(SensorDatabase database, String sensorType,
+                    long startTimestamp, long endTimestamp, int targetPoints) {
+        this.dao = database.sensorDataDao();
+        this.sensorType = sensorType;
+        this.startTimestamp = startTimestamp;
+        this.endTimestamp = endTimestamp;
+        this.targetPoints = targetPoints;
+    }
+
+    @Override
+    public SensorSeries call() {
+        int count = dao.countReadings(sensorType, startTimestamp, endTimestamp);
+        LttbDownsampler downsampler = new LttbDownsampler(count, targetPoints);
+
+        try (Cursor cursor = dao.streamReadings(sensorType, startTimestamp, endTimestamp)) {
+            int timestampColumn = cursor.getColumnIndexOrThrow("timestamp");
+            int valueColumn = cursor.getColumnIndexOrThrow("value");
+            while (cursor.moveToNext()) {
+                downsampler.add(cursor.getLong(timestampColumn), cursor.getFloat(valueColumn));
+            }
+        }
+
+        return new SensorSeries(sensorType, downsampler.getTimestamps(), downsampler.getValues(), count);
+    }
+}
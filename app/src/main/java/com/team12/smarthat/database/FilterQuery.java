@@ -0,0 +1,207 @@
+package com.team12.smarthat.database;
+
+import androidx.sqlite.db.SimpleSQLiteQuery;
+
+import com.team12.smarthat.models.DataFilter;
+import com.team12.smarthat.models.SensorData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * compiles a DataFilter into one parameterized query
+ * only criteria that are set become predicates, every value is a bound argument
+ * - sensor_data: sensorType IN / deleted / timestamp range line up with the
+ *   (sensorType, deleted, timestamp) index, value and source are checked on the rows it yields
+ * - breach queries also narrow the zone map by sensor type and the value lower bound
+ * - breach_episodes: sensorType IN / startTimestamp use the (sensorType, startTimestamp) index
+ */
+class FilterQuery {
+    private static final String[] SENSOR_TYPES = {SensorData.TYPE_DUST, SensorData.TYPE_NOISE, SensorData.TYPE_GAS};
+    private static final String[] ZONE_COLUMNS = {"z.maxDust", "z.maxNoise", "z.maxGas"};
+
+    private final String select;
+    private final List<String> predicates = new ArrayList<>();
+    private final List<Object> args = new ArrayList<>();
+    private String orderBy = "";
+
+    private FilterQuery(String select) {
+        this.select = select;
+    }
+
+    /**
+     * live readings matching the filter, newest first
+     */
+    static FilterQuery readings(DataFilter filter) {
+        FilterQuery query = new FilterQuery("SELECT * FROM sensor_data s");
+        query.sensorTypes("s.sensorType", filter);
+        query.predicates.add("s.deleted = 0");
+        query.rowCriteria(filter);
+        query.orderBy = " ORDER BY s.timestamp DESC";
+        return query;
+    }
+
+    /**
+     * number of live readings matching the filter
+     */
+    static FilterQuery readingCount(DataFilter filter) {
+        FilterQuery query = new FilterQuery("SELECT COUNT(*) FROM sensor_data s");
+        query.sensorTypes("s.sensorType", filter);
+        query.predicates.add("s.deleted = 0");
+        query.rowCriteria(filter);
+        return query;
+    }
+
+    /**
+     * next page of an export, oldest first
+     * keyset on (timestamp, id) so every page starts where the last one ended without an OFFSET scan
+     */
+    static FilterQuery exportPage(DataFilter filter, long afterTimestamp, long afterId, int limit) {
+        FilterQuery query = new FilterQuery("SELECT s.id, s.timestamp, s.sensorType, s.value, s.source, s.metadata FROM sensor_data s");
+        query.sensorTypes("s.sensorType", filter);
+        query.predicates.add("s.deleted = 0");
+        query.rowCriteria(filter);
+        query.predicates.add("(s.timestamp > ? OR (s.timestamp = ? AND s.id > ?))");
+        query.args.add(afterTimestamp);
+        query.args.add(afterTimestamp);
+        query.args.add(afterId);
+        // the limit is bound last, after every predicate's arguments
+        query.orderBy = " ORDER BY s.timestamp ASC, s.id ASC LIMIT ?";
+        query.args.add(limit);
+        return query;
+    }
+
+    /**
+     * live readings above their sensor's threshold matching the filter, newest first
+     */
+    static FilterQuery thresholdBreaches(DataFilter filter, float dustThreshold, float noiseThreshold, float gasThreshold) {
+        FilterQuery query = new FilterQuery("SELECT s.* " + SensorDataDao.ZONE_JOIN);
+        query.breachCriteria(filter, dustThreshold, noiseThreshold, gasThreshold);
+        query.orderBy = " ORDER BY s.timestamp DESC";
+        return query;
+    }
+
+    /**
+     * ids of the readings thresholdBreaches() would return
+     */
+    static FilterQuery thresholdBreachIds(DataFilter filter, float dustThreshold, float noiseThreshold, float gasThreshold) {
+        FilterQuery query = new FilterQuery("SELECT s.id " + SensorDataDao.ZONE_JOIN);
+        query.breachCriteria(filter, dustThreshold, noiseThreshold, gasThreshold);
+        return query;
+    }
+
+    /**
+     * breach episodes matching the filter, newest first
+     * value bounds apply to the episode peak, episodes don't record a source so it is ignored
+     */
+    static FilterQuery breachEpisodes(DataFilter filter) {
+        FilterQuery query = new FilterQuery("SELECT * FROM breach_episodes");
+        query.sensorTypes("sensorType", filter);
+        if (filter.hasDateRange()) {
+            query.predicates.add("endTimestamp >= ? AND startTimestamp <= ?");
+            query.args.add(filter.getStartTimestamp());
+            query.args.add(filter.getEndTimestamp());
+        }
+        if (filter.getMinValue() != null) {
+            query.predicates.add("peakValue >= ?");
+            query.args.add(filter.getMinValue());
+        }
+        if (filter.getMaxValue() != null) {
+            query.predicates.add("peakValue <= ?");
+            query.args.add(filter.getMaxValue());
+        }
+        query.orderBy = " ORDER BY startTimestamp DESC";
+        return query;
+    }
+
+    String getSql() {
+        StringBuilder sql = new StringBuilder(select);
+        if (!predicates.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", predicates));
+        }
+        return sql.append(orderBy).toString();
+    }
+
+    Object[] getArgs() {
+        return args.toArray();
+    }
+
+    SimpleSQLiteQuery toQuery() {
+        return new SimpleSQLiteQuery(getSql(), getArgs());
+    }
+
+    private void breachCriteria(DataFilter filter, float dustThreshold, float noiseThreshold, float gasThreshold) {
+        float[] thresholds = {dustThreshold, noiseThreshold, gasThreshold};
+        Float minValue = filter.getMinValue();
+
+        // zones first: skip blocks with no selected sensor above both its threshold and the lower bound
+        List<String> zoneTerms = new ArrayList<>();
+        List<String> rowTerms = new ArrayList<>();
+        List<Object> rowArgs = new ArrayList<>();
+        for (int i = 0; i < SENSOR_TYPES.length; i++) {
+            if (!filter.getSensorTypes().isEmpty() && !filter.getSensorTypes().contains(SENSOR_TYPES[i])) {
+                continue;
+            }
+            String zoneTerm = ZONE_COLUMNS[i] + " > ?";
+            args.add(thresholds[i]);
+            if (minValue != null) {
+                zoneTerm += " AND " + ZONE_COLUMNS[i] + " >= ?";
+                args.add(minValue);
+            }
+            zoneTerms.add("(" + zoneTerm + ")");
+
+            rowTerms.add("(s.sensorType = ? AND s.value > ?)");
+            rowArgs.add(SENSOR_TYPES[i]);
+            rowArgs.add(thresholds[i]);
+        }
+
+        if (zoneTerms.isEmpty()) {
+            // only unknown sensor types selected, they never breach
+            predicates.add("0");
+            return;
+        }
+        predicates.add("(" + String.join(" OR ", zoneTerms) + ")");
+        if (filter.hasDateRange()) {
+            predicates.add("z.maxTimestamp >= ? AND z.minTimestamp <= ?");
+            args.add(filter.getStartTimestamp());
+            args.add(filter.getEndTimestamp());
+        }
+
+        predicates.add("s.deleted = 0");
+        predicates.add("(" + String.join(" OR ", rowTerms) + ")");
+        args.addAll(rowArgs);
+        rowCriteria(filter);
+    }
+
+    private void rowCriteria(DataFilter filter) {
+        if (filter.hasDateRange()) {
+            predicates.add("s.timestamp BETWEEN ? AND ?");
+            args.add(filter.getStartTimestamp());
+            args.add(filter.getEndTimestamp());
+        }
+        if (filter.getMinValue() != null) {
+            predicates.add("s.value >= ?");
+            args.add(filter.getMinValue());
+        }
+        if (filter.getMaxValue() != null) {
+            predicates.add("s.value <= ?");
+            args.add(filter.getMaxValue());
+        }
+        if (filter.getSource() != null) {
+            predicates.add("s.source = ?");
+            args.add(filter.getSource());
+        }
+    }
+
+    private void sensorTypes(String column, DataFilter filter) {
+        if (filter.getSensorTypes().isEmpty()) {
+            return;
+        }
+        StringBuilder placeholders = new StringBuilder();
+        for (String sensorType : filter.getSensorTypes()) {
+            placeholders.append(placeholders.length() == 0 ? "?" : ", ?");
+            args.add(sensorType);
+        }
+        predicates.add(column + " IN (" + placeholders + ")");
+    }
+}
@@ -0,0 +1,34 @@
+package com.team12.smarthat.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Update;
+
+import com.team12.smarthat.models.NoiseDoseShift;
+
+import java.util.List;
+
+@Dao
+// per shift noise dose, written by NoiseDoseTracker on the db executor
+public interface NoiseDoseDao {
+    @Insert
+    long insert(NoiseDoseShift shift);
+
+    @Update
+    void update(NoiseDoseShift shift);
+
+    // shift to continue after a restart
+    @Query("SELECT * FROM noise_dose_shifts ORDER BY startTimestamp DESC LIMIT 1")
+    NoiseDoseShift getLatestShift();
+
+    // newest first
+    @Query("SELECT * FROM noise_dose_shifts ORDER BY startTimestamp DESC")
+    List<NoiseDoseShift> getShiftsSync();
+
+    @Query("SELECT * FROM noise_dose_shifts WHERE lastTimestamp >= :startTimestamp AND startTimestamp <= :endTimestamp ORDER BY startTimestamp DESC")
+    List<NoiseDoseShift> getShiftsSync(long startTimestamp, long endTimestamp);
+
+    @Query("DELETE FROM noise_dose_shifts")
+    void clearShifts();
+}
@@ -0,0 +1,84 @@
+package com.team12.smarthat.database;
+
+import com.team12.smarthat.models.NoiseDoseShift;
+
+/**
+ * folds noise readings into the current shift's dose as they are ingested
+ * constant memory: only the open shift is held
+ * a gap longer than shiftBreakMs starts a new shift, after a restart the latest
+ * stored shift is picked up again if the first reading is within the break
+ * not thread safe, DatabaseHelper only uses it on the db executor
+ */
+class NoiseDoseTracker {
+    private final NoiseDoseDao dao;
+    private final long maxHoldMs;
+    private final long shiftBreakMs;
+    private NoiseDoseShift shift;
+    // the stored shift is looked up once, on the first reading
+    private boolean loaded = false;
+    private boolean dirty = false;
+
+    NoiseDoseTracker(NoiseDoseDao dao, long maxHoldMs, long shiftBreakMs) {
+        this.dao = dao;
+        this.maxHoldMs = maxHoldMs;
+        this.shiftBreakMs = shiftBreakMs;
+    }
+
+    /**
+     * fold one noise reading in, a new shift is inserted right away so it has an id
+     */
+    void track(long timestamp, float level) {
+        if (!loaded) {
+            shift = dao.getLatestShift();
+            loaded = true;
+        }
+        if (shift != null && timestamp - shift.getLastTimestamp() > shiftBreakMs) {
+            flush();
+            shift = null;
+        }
+
+        if (shift == null) {
+            shift = NoiseDoseShift.start(timestamp, level);
+            shift.setId(dao.insert(shift));
+        } else {
+            shift.add(timestamp, level, maxHoldMs);
+            dirty = true;
+        }
+    }
+
+    /**
+     * write the open shift if it changed since the last flush
+     */
+    void flush() {
+        if (dirty && shift != null) {
+            dao.update(shift);
+        }
+        dirty = false;
+    }
+
+    /**
+     *
+     * @return the open shift, null before the first reading
+     */
+    NoiseDoseShift getCurrentShift() {
+        return shift;
+    }
+
+    /**
+     * close the open shift, the next reading starts a new one
+     */
+    void startNewShift() {
+        flush();
+        shift = null;
+        loaded = true;
+    }
+
+    /**
+     * drop in-memory state, the stored shift is read again on the next reading
+     */
+    void reset() {
+        shift = null;
+        loaded = false;
+        dirty = false;
+    }
+}
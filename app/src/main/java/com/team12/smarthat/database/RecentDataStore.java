@@ -0,0 +1,67 @@
+package com.team12.smarthat.database;
+
+import com.team12.smarthat.models.SensorData;
+import com.team12.smarthat.utils.Constants;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * process-wide store of the most recent readings, one SensorRingBuffer per sensor
+ * fed by BluetoothServiceIntegration as readings are parsed, so live charts,
+ * alert rules and statistics over the last few minutes never touch sqlite
+ * writes come from the ble processing thread only, reads are lock free from any thread
+ */
+public class RecentDataStore {
+    private static volatile RecentDataStore instance;
+    private static int capacity = Constants.RECENT_DATA_CAPACITY;
+
+    private final ConcurrentHashMap<String, SensorRingBuffer> buffers = new ConcurrentHashMap<>();
+
+    /**
+     * change the per-sensor capacity, only has an effect before the first getInstance()
+     * @param readingsPerSensor readings kept for each sensor
+     */
+    public static synchronized void initialize(int readingsPerSensor) {
+        if (instance == null) {
+            capacity = readingsPerSensor;
+        }
+    }
+
+    public static RecentDataStore getInstance() {
+        if (instance == null) {
+            synchronized (RecentDataStore.class) {
+                if (instance == null) {
+                    instance = new RecentDataStore(capacity);
+                }
+            }
+        }
+        return instance;
+    }
+
+    private RecentDataStore(int capacity) {
+        // the known sensors up front so the ingest path never allocates
+        buffers.put(SensorData.TYPE_DUST, new SensorRingBuffer(capacity));
+        buffers.put(SensorData.TYPE_NOISE, new SensorRingBuffer(capacity));
+        buffers.put(SensorData.TYPE_GAS, new SensorRingBuffer(capacity));
+    }
+
+    /**
+     * record a reading, call from the single ingest thread
+     */
+    public void record(SensorData data) {
+        getBuffer(data.getSensorType()).add(data.getTimestamp(), data.getValue());
+    }
+
+    /**
+     *
+     * @param sensorType sensor type (SensorData.TYPE_*)
+     * @return ring buffer of that sensor, created empty on first use
+     */
+    public SensorRingBuffer getBuffer(String sensorType) {
+        SensorRingBuffer buffer = buffers.get(sensorType);
+        if (buffer == null) {
+            buffer = buffers.computeIfAbsent(sensorType, type -> new SensorRingBuffer(capacity));
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,328 @@
+package com.team12.smarthat.database;
+
+import android.util.Log;
+
+import com.team12.smarthat.models.SensorData;
+import com.team12.smarthat.utils.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * append-only journal of samples accepted by DatabaseHelper but not yet committed to room
+ * - every append is written to the file right away so it survives the process being killed
+ * - fsync is batched (every SYNC_BATCH records or on sync()) to cover power loss without
+ *   paying for a disk flush per sample
+ * - records are fixed size, a torn record at the tail is ignored on replay
+ * - every record carries a sequence number, consecutive and increasing across runs. the header
+ *   keeps the next one so it survives the journal being emptied, DatabaseHelper stores the last
+ *   committed one in room to skip records that were committed before a crash
+ * - commit() drops only the oldest records, whatever was appended after a batch stays
+ * - the spike flag travels with the record, a replayed spike is stored with its metadata
+ * not thread safe, DatabaseHelper serializes access
+ */
+public class SampleJournal {
+    private static final int MAGIC = 0x53484A4C; // "SHJL"
+    // magic + next sequence
+    static final int HEADER_SIZE = 4 + 8;
+    // marks the start of each record so garbage at the tail is detected, changes with the layout
+    private static final byte RECORD_MARKER = 0x5C;
+    // marker + sequence + sensor type + value + timestamp + source + flags + spike median
+    static final int RECORD_SIZE = 1 + 8 + 1 + 4 + 8 + 1 + 1 + 4;
+    // records between two fsyncs
+    private static final int SYNC_BATCH = 16;
+
+    private static final byte TYPE_UNKNOWN = 0;
+    private static final byte TYPE_DUST = 1;
+    private static final byte TYPE_NOISE = 2;
+    private static final byte TYPE_GAS = 3;
+
+    private static final byte SOURCE_REAL = 0;
+    private static final byte SOURCE_TEST = 1;
+
+    private static final byte FLAG_SUSPECTED_SPIKE = 1;
+
+    private final File file;
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_SIZE);
+    private final ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_SIZE);
+    private RandomAccessFile output;
+    private FileChannel channel;
+    private int unsyncedRecords = 0;
+    private int recordCount = 0;
+    // sequence of the oldest record in the journal, the next one appended gets firstSequence + recordCount
+    private long firstSequence = 1;
+
+    public SampleJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * read what's left over from the previous run and open the journal for appending
+     * @return samples that were journaled but possibly never committed
+     */
+    public List<SensorData> open() {
+        List<SensorData> recovered = readRecords();
+        recordCount = recovered.size();
+
+        try {
+            output = new RandomAccessFile(file, "rw");
+            channel = output.getChannel();
+            if (recordCount == 0) {
+                writeHeader(firstSequence);
+            }
+            // drop a torn tail record so new records stay aligned
+            channel.truncate(HEADER_SIZE + (long) recordCount * RECORD_SIZE);
+        } catch (IOException e) {
+            Log.e(Constants.TAG_DATABASE, "Unable to open sample journal: " + e.getMessage(), e);
+            close();
+        }
+
+        if (!recovered.isEmpty()) {
+            Log.w(Constants.TAG_DATABASE, "Recovered " + recovered.size() + " uncommitted samples from journal");
+        }
+        return recovered;
+    }
+
+    /**
+     * append a sample, the write reaches the os before this returns
+     * @param data sample to record
+     */
+    public void append(SensorData data) {
+        if (channel == null) {
+            return;
+        }
+
+        recordBuffer.clear();
+        recordBuffer.put(RECORD_MARKER);
+        recordBuffer.putLong(firstSequence + recordCount);
+        recordBuffer.put(encodeType(data.getSensorType()));
+        recordBuffer.putFloat(data.getValue());
+        recordBuffer.putLong(data.getTimestamp());
+        recordBuffer.put(data.isTestData() ? SOURCE_TEST : SOURCE_REAL);
+        recordBuffer.put(data.isSuspectedSpike() ? FLAG_SUSPECTED_SPIKE : 0);
+        recordBuffer.putFloat(data.getSpikeMedian());
+        recordBuffer.flip();
+
+        try {
+            long position = HEADER_SIZE + (long) recordCount * RECORD_SIZE;
+            while (recordBuffer.hasRemaining()) {
+                position += channel.write(recordBuffer, position);
+            }
+            recordCount++;
+            if (++unsyncedRecords >= SYNC_BATCH) {
+                sync();
+            }
+        } catch (IOException e) {
+            Log.e(Constants.TAG_DATABASE, "Error appending to sample journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * force appended records to disk
+     */
+    public void sync() {
+        if (channel == null || unsyncedRecords == 0) {
+            return;
+        }
+
+        try {
+            channel.force(false);
+            unsyncedRecords = 0;
+        } catch (IOException e) {
+            Log.e(Constants.TAG_DATABASE, "Error syncing sample journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * discard the oldest records once they are committed to room, newer ones are kept
+     * the kept records are copied to the start of the file before it's truncated, a crash in
+     * between leaves duplicates that replay skips, never a gap
+     * @param records number of records, from the oldest, that are committed
+     */
+    public void commit(int records) {
+        if (channel == null || records <= 0) {
+            return;
+        }
+        if (records >= recordCount) {
+            reset();
+            return;
+        }
+
+        try {
+            ByteBuffer kept = ByteBuffer.allocate((recordCount - records) * RECORD_SIZE);
+            long position = HEADER_SIZE + (long) records * RECORD_SIZE;
+            while (kept.hasRemaining()) {
+                int read = channel.read(kept, position);
+                if (read < 0) {
+                    throw new IOException("sample journal shorter than its record count");
+                }
+                position += read;
+            }
+            kept.flip();
+            position = HEADER_SIZE;
+            while (kept.hasRemaining()) {
+                position += channel.write(kept, position);
+            }
+            channel.truncate(position);
+            channel.force(false);
+            recordCount -= records;
+            firstSequence += records;
+            unsyncedRecords = 0;
+        } catch (IOException e) {
+            Log.e(Constants.TAG_DATABASE, "Error committing sample journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * discard all records, call only once everything journaled is committed
+     */
+    public void reset() {
+        if (channel == null || recordCount == 0) {
+            return;
+        }
+
+        try {
+            // the next sequence has to be on disk before the records that held it are gone
+            long nextSequence = firstSequence + recordCount;
+            writeHeader(nextSequence);
+            channel.force(false);
+            channel.truncate(HEADER_SIZE);
+            channel.force(false);
+            firstSequence = nextSequence;
+            recordCount = 0;
+            unsyncedRecords = 0;
+        } catch (IOException e) {
+            Log.e(Constants.TAG_DATABASE, "Error resetting sample journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return number of records currently in the journal
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     *
+     * @return sequence of the oldest record in the journal, or of the next one if it's empty
+     */
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     *
+     * @return sequence of the newest record appended, firstSequence - 1 if the journal is empty
+     */
+    public long getLastSequence() {
+        return firstSequence + recordCount - 1;
+    }
+
+    public void close() {
+        try {
+            if (output != null) {
+                output.close();
+            }
+        } catch (IOException e) {
+            Log.e(Constants.TAG_DATABASE, "Error closing sample journal: " + e.getMessage());
+        }
+        output = null;
+        channel = null;
+    }
+
+    private List<SensorData> readRecords() {
+        List<SensorData> records = new ArrayList<>();
+        if (!file.exists()) {
+            return records;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < HEADER_SIZE) {
+                return records;
+            }
+            long complete = (raf.length() - HEADER_SIZE) / RECORD_SIZE;
+            ByteBuffer buffer = ByteBuffer.allocate((int) (HEADER_SIZE + complete * RECORD_SIZE));
+            raf.getChannel().read(buffer);
+            buffer.flip();
+
+            if (buffer.getInt() != MAGIC) {
+                Log.w(Constants.TAG_DATABASE, "Sample journal has an unknown layout, discarding it");
+                return records;
+            }
+            long nextSequence = buffer.getLong();
+
+            while (buffer.remaining() >= RECORD_SIZE) {
+                if (buffer.get() != RECORD_MARKER) {
+                    Log.w(Constants.TAG_DATABASE, "Corrupt sample journal record, stopping replay");
+                    break;
+                }
+                long sequence = buffer.getLong();
+                if (records.isEmpty()) {
+                    firstSequence = sequence;
+                } else if (sequence != firstSequence + records.size()) {
+                    Log.w(Constants.TAG_DATABASE, "Sample journal sequence gap at " + sequence + ", stopping replay");
+                    break;
+                }
+                String sensorType = decodeType(buffer.get());
+                float value = buffer.getFloat();
+                long timestamp = buffer.getLong();
+                byte source = buffer.get();
+                byte flags = buffer.get();
+                float spikeMedian = buffer.getFloat();
+
+                SensorData data = new SensorData(sensorType, value, timestamp);
+                data.setSource(source == SOURCE_TEST ? SensorData.SOURCE_TEST : SensorData.SOURCE_REAL);
+                if ((flags & FLAG_SUSPECTED_SPIKE) != 0) {
+                    data.markSuspectedSpike(spikeMedian);
+                }
+                records.add(data);
+            }
+            if (records.isEmpty()) {
+                firstSequence = nextSequence;
+            }
+        } catch (IOException e) {
+            Log.e(Constants.TAG_DATABASE, "Error reading sample journal: " + e.getMessage(), e);
+        }
+        return records;
+    }
+
+    private void writeHeader(long nextSequence) throws IOException {
+        headerBuffer.clear();
+        headerBuffer.putInt(MAGIC).putLong(nextSequence);
+        headerBuffer.flip();
+        long position = 0;
+        while (headerBuffer.hasRemaining()) {
+            position += channel.write(headerBuffer, position);
+        }
+    }
+
+    private static byte encodeType(String sensorType) {
+        if (SensorData.TYPE_DUST.equals(sensorType)) {
+            return TYPE_DUST;
+        } else if (SensorData.TYPE_NOISE.equals(sensorType)) {
+            return TYPE_NOISE;
+        } else if (SensorData.TYPE_GAS.equals(sensorType)) {
+            return TYPE_GAS;
+        }
+        return TYPE_UNKNOWN;
+    }
+
+    private static String decodeType(byte code) {
+        switch (code) {
+            case TYPE_DUST:
+                return SensorData.TYPE_DUST;
+            case TYPE_NOISE:
+                return SensorData.TYPE_NOISE;
+            case TYPE_GAS:
+                return SensorData.TYPE_GAS;
+            default:
+                return "unknown";
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package com.team12.smarthat.database;
 
-import androidx.lifecycle.LiveData;
+import android.database.Cursor;
+
 import androidx.room.Dao;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.RawQuery;
+import androidx.room.Transaction;
 import androidx.sqlite.db.SupportSQLiteQuery;
 
+import com.team12.smarthat.models.JournalCheckpoint;
+import com.team12.smarthat.models.SensorAggregate;
 import com.team12.smarthat.models.SensorData;
+import com.team12.smarthat.models.SensorDataZone;
 
 import java.util.List;
 //live data to automatically notify observers when change
@@ -16,25 +22,194 @@ import java.util.List;
 @Dao
 // insert a new sensor reading into db
 public interface SensorDataDao {
+    // zone map: walk only the blocks whose summary can contain a match, rows are looked up by id range
+    String ZONE_JOIN = "FROM sensor_data_zones z INNER JOIN sensor_data s "
+            + "ON s.id BETWEEN z.blockId * " + SensorDataZone.BLOCK_SIZE
+            + " AND z.blockId * " + SensorDataZone.BLOCK_SIZE + " + " + (SensorDataZone.BLOCK_SIZE - 1) + " ";
+    // rows of sensor_data that fall in the zone being updated
+    String BLOCK_ROWS = "id BETWEEN blockId * " + SensorDataZone.BLOCK_SIZE
+            + " AND blockId * " + SensorDataZone.BLOCK_SIZE + " + " + (SensorDataZone.BLOCK_SIZE - 1);
+    String ZONE_BREACH = "(z.maxDust > :dustThreshold OR z.maxNoise > :noiseThreshold OR z.maxGas > :gasThreshold)";
+    String ZONE_RANGE = "z.maxTimestamp >= :startTimestamp AND z.minTimestamp <= :endTimestamp";
+    String ROW_BREACH = "((s.sensorType = 'dust' AND s.value > :dustThreshold) OR (s.sensorType = 'noise' AND s.value > :noiseThreshold) OR (s.sensorType = 'gas' AND s.value > :gasThreshold))";
+    String ROW_RANGE = "s.timestamp >= :startTimestamp AND s.timestamp <= :endTimestamp";
+    // tombstoned rows stay in the table until the purger removes them
+    String ROW_LIVE = "s.deleted = 0";
+    String TOMBSTONED = "deleted >= " + SensorData.TOMBSTONE_DELETED;
+    String PURGE_READY = "deleted >= " + SensorData.TOMBSTONE_PURGE_READY;
+
     @Insert
-    void insert(SensorData data);
+    long insert(SensorData data);
+
+    // creates the zone row if this is the first row in the block
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertZone(SensorDataZone zone);
+
+    // widen a zone to cover a newly inserted row
+    @Query("UPDATE sensor_data_zones SET minTimestamp = MIN(minTimestamp, :timestamp), maxTimestamp = MAX(maxTimestamp, :timestamp), "
+            + "maxDust = CASE WHEN :sensorType = 'dust' THEN MAX(maxDust, :value) ELSE maxDust END, "
+            + "maxNoise = CASE WHEN :sensorType = 'noise' THEN MAX(maxNoise, :value) ELSE maxNoise END, "
+            + "maxGas = CASE WHEN :sensorType = 'gas' THEN MAX(maxGas, :value) ELSE maxGas END "
+            + "WHERE blockId = :blockId")
+    void extendZone(long blockId, String sensorType, float value, long timestamp);
+
+    /**
+     * insert a reading and keep its zone summary in the same transaction
+     * @param data the reading to insert
+     */
+    @Transaction
+    default void insertWithZone(SensorData data) {
+        long blockId = insert(data) / SensorDataZone.BLOCK_SIZE;
+        insertZone(SensorDataZone.empty(blockId, data.getTimestamp()));
+        extendZone(blockId, data.getSensorType(), data.getValue(), data.getTimestamp());
+    }
+
+    /**
+     * insert a batch of readings with their zone updates in one transaction
+     * @param batch readings to insert
+     */
+    @Transaction
+    default void insertAllWithZones(List<SensorData> batch) {
+        for (SensorData data : batch) {
+            insertWithZone(data);
+        }
+    }
+
+    // journal records up to this sequence are committed, replay skips them
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void setJournalCheckpoint(JournalCheckpoint checkpoint);
+
+    /**
+     *
+     * @return sequence of the last journal record committed, null if none ever was
+     */
+    @Query("SELECT sequence FROM journal_checkpoint WHERE id = " + JournalCheckpoint.ID)
+    Long getJournalCheckpoint();
+
+    // drop zones whose rows have all been retired
+    @Query("DELETE FROM sensor_data_zones WHERE NOT EXISTS (SELECT 1 FROM sensor_data WHERE " + BLOCK_ROWS + ")")
+    void deleteEmptyZones();
+
+    // tighten zone bounds after deletes, each subquery only reads its own block
+    // tombstoned rows don't count towards the maxima, restoring them must refresh again
+    @Query("UPDATE sensor_data_zones SET "
+            + "minTimestamp = IFNULL((SELECT MIN(timestamp) FROM sensor_data WHERE " + BLOCK_ROWS + "), minTimestamp), "
+            + "maxTimestamp = IFNULL((SELECT MAX(timestamp) FROM sensor_data WHERE " + BLOCK_ROWS + "), maxTimestamp), "
+            + "maxDust = IFNULL((SELECT MAX(value) FROM sensor_data WHERE sensorType = 'dust' AND deleted = 0 AND " + BLOCK_ROWS + "), " + SensorDataZone.NO_VALUE + "), "
+            + "maxNoise = IFNULL((SELECT MAX(value) FROM sensor_data WHERE sensorType = 'noise' AND deleted = 0 AND " + BLOCK_ROWS + "), " + SensorDataZone.NO_VALUE + "), "
+            + "maxGas = IFNULL((SELECT MAX(value) FROM sensor_data WHERE sensorType = 'gas' AND deleted = 0 AND " + BLOCK_ROWS + "), " + SensorDataZone.NO_VALUE + ")")
+    void recomputeZoneBounds();
+
+    /**
+     * bring the zone map back in line after rows were retired or deleted
+     * bounds stay valid without this, it only restores skipping
+     */
+    @Transaction
+    default void refreshZones() {
+        deleteEmptyZones();
+        recomputeZoneBounds();
+    }
+
+    // zones below the oldest live block, every row in them is retired
+    @Query("DELETE FROM sensor_data_zones WHERE blockId < :blockId")
+    void deleteZonesBefore(long blockId);
+
+    // recomputeZoneBounds for one block only
+    @Query("UPDATE sensor_data_zones SET "
+            + "minTimestamp = IFNULL((SELECT MIN(timestamp) FROM sensor_data WHERE " + BLOCK_ROWS + "), minTimestamp), "
+            + "maxTimestamp = IFNULL((SELECT MAX(timestamp) FROM sensor_data WHERE " + BLOCK_ROWS + "), maxTimestamp), "
+            + "maxDust = IFNULL((SELECT MAX(value) FROM sensor_data WHERE sensorType = 'dust' AND deleted = 0 AND " + BLOCK_ROWS + "), " + SensorDataZone.NO_VALUE + "), "
+            + "maxNoise = IFNULL((SELECT MAX(value) FROM sensor_data WHERE sensorType = 'noise' AND deleted = 0 AND " + BLOCK_ROWS + "), " + SensorDataZone.NO_VALUE + "), "
+            + "maxGas = IFNULL((SELECT MAX(value) FROM sensor_data WHERE sensorType = 'gas' AND deleted = 0 AND " + BLOCK_ROWS + "), " + SensorDataZone.NO_VALUE + ") "
+            + "WHERE blockId = :blockId")
+    void recomputeZone(long blockId);
+
+    @Query("SELECT MIN(id) FROM sensor_data")
+    Long getMinId();
+
+    /**
+     * zone upkeep after retention removed the oldest rows
+     * blocks below the oldest row are dropped, only the block it sits in is recomputed,
+     * so the cost doesn't grow with the table. a row retired from a newer block keeps its
+     * zone's bounds wide, that only costs skipping until the next refreshZones()
+     */
+    @Transaction
+    default void retireZones() {
+        Long minId = getMinId();
+        if (minId == null) {
+            clearZones();
+            return;
+        }
+        long firstLiveBlock = minId / SensorDataZone.BLOCK_SIZE;
+        deleteZonesBefore(firstLiveBlock);
+        recomputeZone(firstLiveBlock);
+    }
+
+    @Query("DELETE FROM sensor_data_zones")
+    void clearZones();
 
-    @Query("SELECT * FROM sensor_data ORDER BY timestamp DESC")
-    //retrive in timestamp order recent first
-    //live data updates
-    LiveData<List<SensorData>> getAllData();
-    
-    //clear db for test debug
     @Query("DELETE FROM sensor_data")
-    void clearAll();
+    void clearReadings();
 
-    // get all threshold breaches
-    @Query("SELECT * FROM sensor_data WHERE (sensorType = 'dust' AND value > :dustThreshold) OR (sensorType = 'noise' AND value > :noiseThreshold) OR (sensorType = 'gas' AND value > :gasThreshold) ORDER BY timestamp DESC")
-    LiveData<List<SensorData>> getThresholdBreaches(float dustThreshold, float noiseThreshold, float gasThreshold);
+    // windowed live queries, all served by the (sensorType, deleted, timestamp) index
+    @Query("SELECT * FROM sensor_data WHERE sensorType = :sensorType AND deleted = 0 AND timestamp >= :sinceTimestamp ORDER BY timestamp ASC")
+    List<SensorData> getReadingsSince(String sensorType, long sinceTimestamp);
 
-    // get threshold breaches with date range filtering
-    @Query("SELECT * FROM sensor_data WHERE ((sensorType = 'dust' AND value > :dustThreshold) OR (sensorType = 'noise' AND value > :noiseThreshold) OR (sensorType = 'gas' AND value > :gasThreshold)) AND timestamp >= :startTimestamp AND timestamp <= :endTimestamp ORDER BY timestamp DESC")
-    LiveData<List<SensorData>> getThresholdBreaches(float dustThreshold, float noiseThreshold, float gasThreshold, long startTimestamp, long endTimestamp);
+    @Query("SELECT * FROM (SELECT * FROM sensor_data WHERE sensorType = :sensorType AND deleted = 0 ORDER BY timestamp DESC LIMIT :limit) ORDER BY timestamp ASC")
+    List<SensorData> getLatestReadings(String sensorType, int limit);
+
+    // rows added since the last refresh of a window
+    @Query("SELECT * FROM sensor_data WHERE sensorType = :sensorType AND deleted = 0 AND timestamp >= :sinceTimestamp AND id > :afterId ORDER BY timestamp ASC")
+    List<SensorData> getReadingsAfter(String sensorType, long sinceTimestamp, long afterId);
+
+    // live rows of a window's span, a window holding a different number lost or regained rows
+    @Query("SELECT COUNT(*) FROM sensor_data WHERE sensorType = :sensorType AND deleted = 0 AND timestamp >= :sinceTimestamp AND id <= :maxId")
+    int countLiveSince(String sensorType, long sinceTimestamp, long maxId);
+
+    // streamed input for downsampling and percentiles, rows are never built into a list
+    @Query("SELECT COUNT(*) FROM sensor_data WHERE sensorType = :sensorType AND deleted = 0 AND timestamp BETWEEN :startTimestamp AND :endTimestamp")
+    int countReadings(String sensorType, long startTimestamp, long endTimestamp);
+
+    @Query("SELECT timestamp, value FROM sensor_data WHERE sensorType = :sensorType AND deleted = 0 AND timestamp BETWEEN :startTimestamp AND :endTimestamp ORDER BY timestamp ASC")
+    Cursor streamReadings(String sensorType, long startTimestamp, long endTimestamp);
+
+    // samples making up a breach episode
+    @Query("SELECT id FROM sensor_data WHERE sensorType = :sensorType AND deleted = 0 AND timestamp BETWEEN :startTimestamp AND :endTimestamp AND value > :threshold")
+    List<Integer> getEpisodeSampleIds(String sensorType, long startTimestamp, long endTimestamp, float threshold);
+
+    // time span of a set of rows, tombstoned or not, to rebuild the episodes around them
+    @Query("SELECT MIN(timestamp) FROM sensor_data WHERE id IN (:ids)")
+    Long getMinTimestamp(List<Integer> ids);
+
+    @Query("SELECT MAX(timestamp) FROM sensor_data WHERE id IN (:ids)")
+    Long getMaxTimestamp(List<Integer> ids);
+
+    @Query("SELECT MIN(timestamp) FROM sensor_data WHERE deleted = 0")
+    Long getOldestTimestamp();
+
+    // start of what retention left, tombstoned rows included
+    @Query("SELECT MIN(timestamp) FROM sensor_data")
+    Long getOldestStoredTimestamp();
+
+    // per-sensor summary in one indexed range scan, percentiles come from streamReadings
+    @Query("SELECT sensorType, COUNT(*) AS count, MIN(value) AS min, MAX(value) AS max, "
+            + "AVG(value) AS mean, AVG(value * value) AS meanSquare "
+            + "FROM sensor_data WHERE deleted = 0 AND timestamp BETWEEN :startTimestamp AND :endTimestamp GROUP BY sensorType")
+    List<SensorAggregate> getAggregates(long startTimestamp, long endTimestamp);
+
+    //clear db for test debug
+    @Transaction
+    default void clearAll() {
+        clearReadings();
+        clearZones();
+    }
+
+    // threshold breaches, all time or within a date range
+    @Query("SELECT s.* " + ZONE_JOIN + "WHERE " + ZONE_BREACH + " AND " + ROW_LIVE + " AND " + ROW_BREACH + " ORDER BY s.timestamp DESC")
+    List<SensorData> getThresholdBreachesSync(float dustThreshold, float noiseThreshold, float gasThreshold);
+
+    @Query("SELECT s.* " + ZONE_JOIN + "WHERE " + ZONE_BREACH + " AND " + ZONE_RANGE + " AND " + ROW_LIVE + " AND " + ROW_BREACH + " AND " + ROW_RANGE + " ORDER BY s.timestamp DESC")
+    List<SensorData> getThresholdBreachesSync(float dustThreshold, float noiseThreshold, float gasThreshold, long startTimestamp, long endTimestamp);
 
     // get total count of records
     @Query("SELECT COUNT(*) FROM sensor_data")
@@ -50,16 +225,41 @@ public interface SensorDataDao {
      */
     @RawQuery
     int vacuum(SupportSQLiteQuery query);
+
+    // history filters compiled by FilterQuery, parameterized so unset criteria add no predicates
+    @RawQuery
+    List<SensorData> querySensorData(SupportSQLiteQuery query);
+
+    @RawQuery
+    List<Integer> queryIds(SupportSQLiteQuery query);
+
+    // export pages are streamed straight off the cursor, see SensorDataExport
+    @RawQuery
+    Cursor queryCursor(SupportSQLiteQuery query);
+
+    @RawQuery
+    int queryCount(SupportSQLiteQuery query);
     
-    // delete a specific record by its ID
-    @Query("DELETE FROM sensor_data WHERE id = :id")
-    void deleteById(int id);
-    
-    // delete multiple records by their IDs
-    @Query("DELETE FROM sensor_data WHERE id IN (:ids)")
-    void deleteByIds(List<Integer> ids);
-    
-    // delete all threshold breaches
-    @Query("DELETE FROM sensor_data WHERE (sensorType = 'dust' AND value > :dustThreshold) OR (sensorType = 'noise' AND value > :noiseThreshold) OR (sensorType = 'gas' AND value > :gasThreshold)")
-    int deleteAllThresholdBreaches(float dustThreshold, float noiseThreshold, float gasThreshold);
-}
\ No newline at end of file
+    // ids of live threshold breaches, used to tombstone them in bounded chunks
+    @Query("SELECT s.id " + ZONE_JOIN + "WHERE " + ZONE_BREACH + " AND " + ROW_LIVE + " AND " + ROW_BREACH)
+    List<Integer> getThresholdBreachIds(float dustThreshold, float noiseThreshold, float gasThreshold);
+
+    @Query("SELECT s.id " + ZONE_JOIN + "WHERE " + ZONE_BREACH + " AND " + ZONE_RANGE + " AND " + ROW_LIVE + " AND " + ROW_BREACH + " AND " + ROW_RANGE)
+    List<Integer> getThresholdBreachIds(float dustThreshold, float noiseThreshold, float gasThreshold, long startTimestamp, long endTimestamp);
+
+    // soft delete, rows disappear from every query but stay on disk until purged
+    @Query("UPDATE sensor_data SET deleted = " + SensorData.TOMBSTONE_DELETED + " WHERE id IN (:ids) AND deleted = 0")
+    int tombstoneByIds(List<Integer> ids);
+
+    // undo a soft delete, works until the purger has removed the rows
+    @Query("UPDATE sensor_data SET deleted = 0 WHERE id IN (:ids) AND " + TOMBSTONED)
+    int restoreByIds(List<Integer> ids);
+
+    // first purge phase, rows tombstoned before this call are removed on the next one
+    @Query("UPDATE sensor_data SET deleted = deleted | " + SensorData.TOMBSTONE_PURGE_READY + " WHERE deleted = " + SensorData.TOMBSTONE_DELETED)
+    int markTombstonesPurgeReady();
+
+    // second purge phase, physically delete at most limit rows
+    @Query("DELETE FROM sensor_data WHERE id IN (SELECT id FROM sensor_data WHERE " + PURGE_READY + " LIMIT :limit)")
+    int purgeTombstones(int limit);
+}
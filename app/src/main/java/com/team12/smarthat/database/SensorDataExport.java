@@ -0,0 +1,352 @@
+package com.team12.smarthat.database;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import com.team12.smarthat.models.DataFilter;
+import com.team12.smarthat.utils.Constants;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * streams the sensor_data rows matching a DataFilter into a csv or ndjson file, optionally gzipped
+ * - rows are read oldest first in keyset pages through a raw cursor and written one at a time
+ *   into a reused buffer, memory stays the same for a day or a year of readings
+ * - every page is its own short read on the export thread, inserts are never held up
+ * - written to a .part file that is renamed once complete, cancelling or failing deletes it
+ * listener callbacks run on the callback executor, usually the main thread
+ */
+public class SensorDataExport implements Runnable {
+    private static final int PAGE_SIZE = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 250;
+    private static final String FILE_NAME_DATE_FORMAT = "yyyyMMdd_HHmmss";
+    private static final String CSV_HEADER = "id,timestamp,time,sensorType,value,source,metadata\n";
+
+    public enum Format {
+        CSV("csv"),
+        NDJSON("ndjson");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    public interface Listener {
+        /**
+         * @param rowsWritten rows written so far
+         * @param totalRows rows matching the filter when the export started
+         */
+        void onProgress(long rowsWritten, long totalRows);
+
+        void onComplete(File file, long rowsWritten);
+
+        void onCancelled();
+
+        void onError(Exception e);
+    }
+
+    private final SensorDataDao dao;
+    private final DataFilter filter;
+    private final Format format;
+    private final boolean gzip;
+    private final File file;
+    private final Listener listener;
+    private final Executor callbackExecutor;
+    private volatile boolean cancelled = false;
+
+    // reused for every row
+    private final StringBuilder row = new StringBuilder(256);
+    private char[] chars = new char[256];
+
+    SensorDataExport(SensorDataDao dao, DataFilter filter, Format format, boolean gzip, File file,
+                     Listener listener, Executor callbackExecutor) {
+        this.dao = dao;
+        this.filter = filter != null ? filter : new DataFilter();
+        this.format = format;
+        this.gzip = gzip;
+        this.file = file;
+        this.listener = listener;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * stop after the current page, the partial file is deleted and onCancelled is called
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void run() {
+        File part = new File(file.getPath() + ".part");
+        try {
+            long total = dao.queryCount(FilterQuery.readingCount(filter).toQuery());
+            long written = 0;
+            long lastProgress = 0;
+
+            try (Writer out = open(part)) {
+                if (format == Format.CSV) {
+                    out.write(CSV_HEADER);
+                }
+
+                long afterTimestamp = Long.MIN_VALUE;
+                long afterId = Long.MIN_VALUE;
+                int pageRows = PAGE_SIZE;
+                while (pageRows == PAGE_SIZE && !cancelled) {
+                    pageRows = 0;
+                    try (Cursor cursor = dao.queryCursor(
+                            FilterQuery.exportPage(filter, afterTimestamp, afterId, PAGE_SIZE).toQuery())) {
+                        while (cursor.moveToNext()) {
+                            afterId = cursor.getLong(0);
+                            afterTimestamp = cursor.getLong(1);
+                            row.setLength(0);
+                            appendRow(format, row, afterId, afterTimestamp, cursor.getString(2),
+                                    cursor.getFloat(3), cursor.getString(4), cursor.getString(5));
+                            write(out);
+                            pageRows++;
+                        }
+                    }
+                    written += pageRows;
+
+                    long now = System.currentTimeMillis();
+                    if (now - lastProgress >= PROGRESS_INTERVAL_MS) {
+                        lastProgress = now;
+                        long rows = written;
+                        callbackExecutor.execute(() -> listener.onProgress(rows, total));
+                    }
+                }
+            }
+
+            if (cancelled) {
+                deleteQuietly(part);
+                Log.d(Constants.TAG_DATABASE, "Export cancelled after " + written + " rows");
+                callbackExecutor.execute(listener::onCancelled);
+                return;
+            }
+            if (file.exists() && !file.delete() || !part.renameTo(file)) {
+                throw new IOException("Could not move export to " + file);
+            }
+
+            long rows = written;
+            Log.d(Constants.TAG_DATABASE, "Exported " + rows + " rows to " + file);
+            callbackExecutor.execute(() -> {
+                listener.onProgress(rows, total);
+                listener.onComplete(file, rows);
+            });
+        } catch (IOException | RuntimeException e) {
+            Log.e(Constants.TAG_DATABASE, "Export failed: " + e.getMessage(), e);
+            deleteQuietly(part);
+            callbackExecutor.execute(() -> listener.onError(e));
+        }
+    }
+
+    /**
+     *
+     * @return file name for an export started at the given local time, e.g. smarthat_readings_20250101_080000.csv.gz
+     */
+    public static String fileName(Format format, boolean gzip, long timestamp) {
+        String time = new SimpleDateFormat(FILE_NAME_DATE_FORMAT, Locale.US).format(new Date(timestamp));
+        return "smarthat_readings_" + time + "." + format.getExtension() + (gzip ? ".gz" : "");
+    }
+
+    private Writer open(File part) throws IOException {
+        OutputStream stream = new FileOutputStream(part);
+        try {
+            if (gzip) {
+                stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+            }
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    // copies the row out through a reused char array, Writer.append would make a String per row
+    private void write(Writer out) throws IOException {
+        int length = row.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        row.getChars(0, length, chars, 0);
+        out.write(chars, 0, length);
+    }
+
+    private static void deleteQuietly(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(Constants.TAG_DATABASE, "Could not delete " + file);
+        }
+    }
+
+    /**
+     * one line of the export including the trailing newline
+     */
+    static void appendRow(Format format, StringBuilder out, long id, long timestamp, String sensorType,
+                          float value, String source, String metadata) {
+        if (format == Format.CSV) {
+            out.append(id).append(',').append(timestamp).append(',');
+            appendIsoTime(out, timestamp);
+            out.append(',');
+            appendCsvField(out, sensorType);
+            out.append(',');
+            if (!Float.isNaN(value) && !Float.isInfinite(value)) {
+                out.append(value);
+            }
+            out.append(',');
+            appendCsvField(out, source);
+            out.append(',');
+            appendCsvField(out, metadata);
+        } else {
+            out.append("{\"id\":").append(id).append(",\"timestamp\":").append(timestamp).append(",\"time\":\"");
+            appendIsoTime(out, timestamp);
+            out.append("\",\"sensorType\":");
+            appendJsonString(out, sensorType);
+            out.append(",\"value\":");
+            if (Float.isNaN(value) || Float.isInfinite(value)) {
+                out.append("null");
+            } else {
+                out.append(value);
+            }
+            out.append(",\"source\":");
+            appendJsonString(out, source);
+            out.append(",\"metadata\":");
+            appendJsonString(out, metadata);
+            out.append('}');
+        }
+        out.append('\n');
+    }
+
+    /**
+     * utc iso-8601 with milliseconds, e.g. 2025-01-01T08:00:00.000Z
+     * civil-from-days arithmetic, no calendar or formatter per row
+     */
+    static void appendIsoTime(StringBuilder out, long timestamp) {
+        long days = Math.floorDiv(timestamp, 86400000L);
+        long millisOfDay = Math.floorMod(timestamp, 86400000L);
+
+        // days since 0000-03-01 in 400 year eras, march first puts the leap day last
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        long month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        appendPadded(out, year, 4);
+        out.append('-');
+        appendPadded(out, month, 2);
+        out.append('-');
+        appendPadded(out, day, 2);
+        out.append('T');
+        appendPadded(out, millisOfDay / 3600000, 2);
+        out.append(':');
+        appendPadded(out, millisOfDay / 60000 % 60, 2);
+        out.append(':');
+        appendPadded(out, millisOfDay / 1000 % 60, 2);
+        out.append('.');
+        appendPadded(out, millisOfDay % 1000, 3);
+        out.append('Z');
+    }
+
+    private static void appendPadded(StringBuilder out, long value, int digits) {
+        long limit = 1;
+        for (int i = 1; i < digits; i++) {
+            limit *= 10;
+        }
+        for (; limit > 1 && value < limit && value >= 0; limit /= 10) {
+            out.append('0');
+        }
+        out.append(value);
+    }
+
+    // rfc 4180, quoted only when needed
+    private static void appendCsvField(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private static void appendJsonString(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append("\\u00");
+                        out.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -2,18 +2,80 @@ package com.team12.smarthat.database;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.team12.smarthat.models.BreachEpisode;
+import com.team12.smarthat.models.JournalCheckpoint;
+import com.team12.smarthat.models.NoiseDoseShift;
 import com.team12.smarthat.models.SensorData;
+import com.team12.smarthat.models.SensorDataZone;
 
 //room database config class
 //database version,entities,access point definition
 // ble case: will update our sensordata model
-@Database(entities = {SensorData.class}, version = 2, exportSchema = false)
+@Database(entities = {SensorData.class, SensorDataZone.class, BreachEpisode.class, NoiseDoseShift.class, JournalCheckpoint.class}, version = 3, exportSchema = false)
 public abstract class SensorDatabase extends RoomDatabase {
 public abstract SensorDataDao sensorDataDao(); // dao interface
+public abstract BreachEpisodeDao breachEpisodeDao();
+public abstract NoiseDoseDao noiseDoseDao();
+
+// set when MIGRATION_2_3 ran, the episodes it can't build in sql are rebuilt by DatabaseHelper
+private static volatile boolean episodesNeedRebuild = false;
+
+    /**
+     * 2 -> 3: tombstones, zone map, breach episodes, noise dose shifts and the journal checkpoint
+     * existing readings are kept, their zones are built here
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE sensor_data ADD COLUMN deleted INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_sensor_data_sensorType_deleted_timestamp "
+                    + "ON sensor_data (sensorType, deleted, timestamp)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_sensor_data_deleted_timestamp "
+                    + "ON sensor_data (deleted, timestamp)");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS sensor_data_zones (blockId INTEGER NOT NULL, "
+                    + "minTimestamp INTEGER NOT NULL, maxTimestamp INTEGER NOT NULL, maxDust REAL NOT NULL, "
+                    + "maxNoise REAL NOT NULL, maxGas REAL NOT NULL, PRIMARY KEY(blockId))");
+            // one zone per block of existing rows, same bounds the inserts would have built
+            db.execSQL("INSERT INTO sensor_data_zones (blockId, minTimestamp, maxTimestamp, maxDust, maxNoise, maxGas) "
+                    + "SELECT id / " + SensorDataZone.BLOCK_SIZE + ", MIN(timestamp), MAX(timestamp), "
+                    + "IFNULL(MAX(CASE WHEN sensorType = 'dust' THEN value END), " + SensorDataZone.NO_VALUE + "), "
+                    + "IFNULL(MAX(CASE WHEN sensorType = 'noise' THEN value END), " + SensorDataZone.NO_VALUE + "), "
+                    + "IFNULL(MAX(CASE WHEN sensorType = 'gas' THEN value END), " + SensorDataZone.NO_VALUE + ") "
+                    + "FROM sensor_data GROUP BY id / " + SensorDataZone.BLOCK_SIZE);
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS breach_episodes (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "sensorType TEXT, startTimestamp INTEGER NOT NULL, endTimestamp INTEGER NOT NULL, "
+                    + "peakValue REAL NOT NULL, valueSum REAL NOT NULL, sampleCount INTEGER NOT NULL, "
+                    + "threshold REAL NOT NULL)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_breach_episodes_startTimestamp "
+                    + "ON breach_episodes (startTimestamp)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_breach_episodes_endTimestamp "
+                    + "ON breach_episodes (endTimestamp)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_breach_episodes_sensorType_startTimestamp "
+                    + "ON breach_episodes (sensorType, startTimestamp)");
+
+            // the dose is a per-shift compliance record, past shifts are not reconstructed
+            db.execSQL("CREATE TABLE IF NOT EXISTS noise_dose_shifts (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "startTimestamp INTEGER NOT NULL, lastTimestamp INTEGER NOT NULL, lastLevel REAL NOT NULL, "
+                    + "peakLevel REAL NOT NULL, dose REAL NOT NULL, measuredMs INTEGER NOT NULL, "
+                    + "sampleCount INTEGER NOT NULL)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_noise_dose_shifts_startTimestamp "
+                    + "ON noise_dose_shifts (startTimestamp)");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS journal_checkpoint (id INTEGER NOT NULL, "
+                    + "sequence INTEGER NOT NULL, PRIMARY KEY(id))");
+
+            episodesNeedRebuild = true;
+        }
+    };
 
 private static volatile SensorDatabase INSTANCE;
 //to avoid multiple db instances
@@ -25,8 +87,24 @@ if (INSTANCE == null) {
  INSTANCE = Room.databaseBuilder( //build room db instance
    context.getApplicationContext(),
    SensorDatabase.class,
-"sensor_readings.db").fallbackToDestructiveMigration()
+"sensor_readings.db").addMigrations(MIGRATION_2_3)
+                            // stored readings are kept on upgrade, only a downgrade or a pre-release version 1 starts over
+                            .fallbackToDestructiveMigrationOnDowngrade()
+                            .fallbackToDestructiveMigrationFrom(1)
+                            // readers (history, exports) never wait on the insert batches
+                            .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
                             .build();
    }}
  }
- return INSTANCE;}}
\ No newline at end of file
+ return INSTANCE;}
+
+    /**
+     *
+     * @return true once if the database was just migrated and its breach episodes need building
+     */
+    static boolean takeEpisodeRebuild() {
+        boolean rebuild = episodesNeedRebuild;
+        episodesNeedRebuild = false;
+        return rebuild;
+    }
+}
@@ -0,0 +1,137 @@
+package com.team12.smarthat.database;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * fixed-capacity ring of the most recent readings of one sensor
+ * - timestamps and values live in primitive atomic arrays, nothing is boxed or allocated per reading
+ * - one writer thread, any number of readers, no locks
+ * - the writer fills a slot then publishes it through the volatile write count,
+ *   readers copy what they need and re-check the count to drop slots the writer
+ *   may have overwritten meanwhile (seqlock style), retrying if that cut into the copy
+ * - slots are read and written with volatile semantics, plain array loads could be reordered
+ *   past the re-check and let a torn copy pass. VarHandle fences would be cheaper but need
+ *   api 33, the readings arrive at tens per second so the barriers don't show
+ */
+public class SensorRingBuffer {
+    // a reader that keeps losing the race returns the part that is still valid
+    private static final int MAX_READ_ATTEMPTS = 4;
+
+    private final int capacity;
+    // one spare slot for the write in progress, so all capacity readings stay readable
+    private final int slots;
+    private final AtomicLongArray timestamps;
+    // float bits, there is no atomic float array
+    private final AtomicIntegerArray values;
+    // readings ever written, slot of reading n is n % slots
+    private volatile long writeCount = 0;
+
+    public SensorRingBuffer(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.slots = this.capacity + 1;
+        this.timestamps = new AtomicLongArray(slots);
+        this.values = new AtomicIntegerArray(slots);
+    }
+
+    /**
+     * append a reading, overwriting the oldest once full
+     * only ever call from one thread
+     */
+    public void add(long timestamp, float value) {
+        long count = writeCount;
+        int slot = (int) (count % slots);
+        timestamps.set(slot, timestamp);
+        values.set(slot, Float.floatToRawIntBits(value));
+        writeCount = count + 1;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     *
+     * @return number of readings currently held
+     */
+    public int size() {
+        return (int) Math.min(writeCount, capacity);
+    }
+
+    /**
+     * copy the newest readings, oldest first
+     * @param outTimestamps receives timestamps, its length caps how many are copied
+     * @param outValues receives values, at least as long as outTimestamps
+     * @return number of readings copied
+     */
+    public int copyLatest(long[] outTimestamps, float[] outValues) {
+        return copy(Long.MIN_VALUE, outTimestamps, outValues);
+    }
+
+    /**
+     * copy the readings at or after sinceTimestamp, oldest first
+     * if more match than fit, the newest ones are kept
+     * @return number of readings copied
+     */
+    public int copySince(long sinceTimestamp, long[] outTimestamps, float[] outValues) {
+        return copy(sinceTimestamp, outTimestamps, outValues);
+    }
+
+    /**
+     *
+     * @param fallback returned when the buffer is empty
+     * @return newest value
+     */
+    public float getLatestValue(float fallback) {
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            long end = writeCount;
+            if (end == 0) {
+                return fallback;
+            }
+            float value = Float.intBitsToFloat(values.get((int) ((end - 1) % slots)));
+            // the slot is reused by write end - 1 + slots, which may already be in progress
+            if (writeCount - end < capacity) {
+                return value;
+            }
+        }
+        return fallback;
+    }
+
+    private int copy(long sinceTimestamp, long[] outTimestamps, float[] outValues) {
+        int maxCount = Math.min(outTimestamps.length, outValues.length);
+        int copied = 0;
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            long end = writeCount;
+            long start = Math.max(0, end - capacity);
+
+            // walk back from the newest reading to the window start
+            long first = end;
+            while (first > start && end - first < maxCount
+                    && timestamps.get((int) ((first - 1) % slots)) >= sinceTimestamp) {
+                first--;
+            }
+
+            copied = (int) (end - first);
+            for (int i = 0; i < copied; i++) {
+                int slot = (int) ((first + i) % slots);
+                outTimestamps[i] = timestamps.get(slot);
+                outValues[i] = Float.intBitsToFloat(values.get(slot));
+            }
+
+            // slots from here on were not touched by the writer while copying,
+            // the write in progress (not yet counted) may be reusing the one before it
+            long firstValid = writeCount - slots + 1;
+            if (first >= firstValid) {
+                return copied;
+            }
+            if (attempt == MAX_READ_ATTEMPTS - 1) {
+                // keep the valid tail
+                int dropped = (int) Math.min(copied, firstValid - first);
+                copied -= dropped;
+                System.arraycopy(outTimestamps, dropped, outTimestamps, 0, copied);
+                System.arraycopy(outValues, dropped, outValues, 0, copied);
+            }
+        }
+        return copied;
+    }
+}
@@ -0,0 +1,148 @@
+package com.team12.smarthat.database;
+
+import com.team12.smarthat.core.Clock;
+import com.team12.smarthat.models.SensorData;
+import com.team12.smarthat.models.SensorWindow;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * incremental query behind the windowed live readings
+ * the first call loads the window, later calls only fetch rows newer than the last
+ * one seen (through the sensorType/timestamp index) and evict what fell out
+ * - rows deleted or retired from inside the window are noticed by counting the live rows
+ *   of its span, the window is then loaded again and emitted as all evicted, all appended
+ * - in time mode the result goes stale as the oldest row ages out, ThrottledQueryLiveData
+ *   re-runs it then even if nothing was written
+ * work per refresh is proportional to the window, not the table
+ * stateful - ThrottledQueryLiveData never runs it concurrently
+ */
+class SensorWindowQuery implements Callable<SensorWindow>, ThrottledQueryLiveData.Expiring {
+    private final SensorDataDao dao;
+    private final Clock clock;
+    private final String sensorType;
+    // exactly one of these is set
+    private final long windowMs;
+    private final int maxRows;
+
+    private final ArrayDeque<SensorData> window = new ArrayDeque<>();
+    private boolean loaded = false;
+    private long lastId = 0;
+
+    private SensorWindowQuery(SensorDataDao dao, Clock clock, String sensorType, long windowMs, int maxRows) {
+        this.dao = dao;
+        this.clock = clock;
+        this.sensorType = sensorType;
+        this.windowMs = windowMs;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * @return query for readings from the last windowMs milliseconds
+     */
+    static SensorWindowQuery lastMillis(SensorDataDao dao, String sensorType, long windowMs) {
+        return lastMillis(dao, Clock.SYSTEM, sensorType, windowMs);
+    }
+
+    static SensorWindowQuery lastMillis(SensorDataDao dao, Clock clock, String sensorType, long windowMs) {
+        return new SensorWindowQuery(dao, clock, sensorType, windowMs, 0);
+    }
+
+    /**
+     * @return query for the last maxRows readings
+     */
+    static SensorWindowQuery lastRows(SensorDataDao dao, String sensorType, int maxRows) {
+        return new SensorWindowQuery(dao, Clock.SYSTEM, sensorType, 0, maxRows);
+    }
+
+    @Override
+    public SensorWindow call() {
+        int evicted = 0;
+        if (loaded && lostRows()) {
+            // rows went missing in the middle, start over rather than patch the deque
+            evicted = window.size();
+            window.clear();
+            lastId = 0;
+            loaded = false;
+        }
+
+        List<SensorData> appended;
+        if (!loaded) {
+            appended = windowMs > 0
+                    ? dao.getReadingsSince(sensorType, clock.currentTimeMillis() - windowMs)
+                    : dao.getLatestReadings(sensorType, maxRows);
+            loaded = true;
+        } else {
+            appended = dao.getReadingsAfter(sensorType, lowerTimestampBound(), lastId);
+        }
+
+        for (SensorData data : appended) {
+            window.addLast(data);
+            lastId = Math.max(lastId, data.getId());
+        }
+
+        evicted += evict();
+        return new SensorWindow(sensorType, new ArrayList<>(window), appended, evicted);
+    }
+
+    /**
+     * ms until the oldest reading leaves a time window
+     */
+    @Override
+    public long millisUntilStale() {
+        SensorData oldest = window.peekFirst();
+        if (windowMs <= 0 || oldest == null) {
+            return -1;
+        }
+        return Math.max(0, oldest.getTimestamp() + windowMs - clock.currentTimeMillis());
+    }
+
+    /**
+     * true when rows of the window were tombstoned or retired since they were loaded
+     * in time mode a restored row shows up too, in rows mode a row tied with the oldest one
+     * on timestamp may be live without being kept, so only a shortfall counts there
+     */
+    private boolean lostRows() {
+        if (window.isEmpty()) {
+            return false;
+        }
+        // a late row can sit behind a newer one, the front isn't always the oldest
+        long oldestTimestamp = Long.MAX_VALUE;
+        for (SensorData data : window) {
+            oldestTimestamp = Math.min(oldestTimestamp, data.getTimestamp());
+        }
+        int live = dao.countLiveSince(sensorType, oldestTimestamp, lastId);
+        return windowMs > 0 ? live != window.size() : live < window.size();
+    }
+
+    /**
+     * new rows can't be older than the window start (time mode) or the oldest row kept (rows mode)
+     */
+    private long lowerTimestampBound() {
+        if (windowMs > 0) {
+            return clock.currentTimeMillis() - windowMs;
+        }
+        SensorData oldest = window.peekFirst();
+        return oldest != null ? oldest.getTimestamp() : 0;
+    }
+
+    private int evict() {
+        int evicted = 0;
+        if (windowMs > 0) {
+            long cutoff = clock.currentTimeMillis() - windowMs;
+            while (!window.isEmpty() && window.peekFirst().getTimestamp() < cutoff) {
+                window.pollFirst();
+                evicted++;
+            }
+        } else {
+            while (window.size() > maxRows) {
+                window.pollFirst();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+}
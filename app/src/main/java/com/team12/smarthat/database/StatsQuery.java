@@ -0,0 +1,53 @@
+package com.team12.smarthat.database;
+
+import android.database.Cursor;
+
+import com.team12.smarthat.models.SensorAggregate;
+import com.team12.smarthat.models.SensorStats;
+import com.team12.smarthat.utils.ValueHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * query behind the range statistics
+ * count/min/max/mean/std dev come from one sql aggregate, percentiles from a
+ * single cursor pass per sensor into a histogram bounded by that min/max
+ * no row objects are created, only one histogram per sensor
+ * no transaction, wal gives each statement its own snapshot and a write transaction would
+ * stall insert batches behind the scan. the histogram clamps a value that landed in between
+ */
+class StatsQuery implements Callable<List<SensorStats>> {
+    // (max - min) / 1024 resolution, e.g. ~0.15 dB over the full noise range
+    private static final int HISTOGRAM_BINS = 1024;
+
+    private final SensorDataDao dao;
+    private final long startTimestamp;
+    private final long endTimestamp;
+
+    StatsQuery(SensorDatabase database, long startTimestamp, long endTimestamp) {
+        this.dao = database.sensorDataDao();
+        this.startTimestamp = startTimestamp;
+        this.endTimestamp = endTimestamp;
+    }
+
+    @Override
+    public List<SensorStats> call() {
+        List<SensorAggregate> aggregates = dao.getAggregates(startTimestamp, endTimestamp);
+        List<SensorStats> stats = new ArrayList<>(aggregates.size());
+
+        for (SensorAggregate aggregate : aggregates) {
+            ValueHistogram histogram = new ValueHistogram(aggregate.getMin(), aggregate.getMax(), HISTOGRAM_BINS);
+            try (Cursor cursor = dao.streamReadings(aggregate.getSensorType(), startTimestamp, endTimestamp)) {
+                int valueColumn = cursor.getColumnIndexOrThrow("value");
+                while (cursor.moveToNext()) {
+                    histogram.add(cursor.getFloat(valueColumn));
+                }
+            }
+            stats.add(new SensorStats(aggregate,
+                    histogram.percentile(0.50), histogram.percentile(0.95), histogram.percentile(0.99)));
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,190 @@
+package com.team12.smarthat.database;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.room.InvalidationTracker;
+import androidx.room.RoomDatabase;
+
+import com.team12.smarthat.utils.Constants;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * livedata that re-runs a query when its tables are invalidated, but at most
+ * once every minIntervalMs
+ * - bursts of inserts are coalesced into a single re-query
+ * - nothing is re-queried while there are no active observers (screen not visible),
+ *   the query runs once when the observer becomes active again
+ * - a query implementing Expiring is also re-run once its result goes stale, tables
+ *   written or not
+ * used instead of room's own livedata for history screens that stay open during a live session
+ */
+public class ThrottledQueryLiveData<T> extends LiveData<T> {
+    private final RoomDatabase database;
+    private final Executor queryExecutor;
+    private final Callable<T> query;
+    private final long minIntervalMs;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // set by the invalidation tracker, cleared when a query starts
+    private final AtomicBoolean invalid = new AtomicBoolean(true);
+    // true while a refresh is posted on the handler
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    // true while the query is running on the executor
+    private final AtomicBoolean computing = new AtomicBoolean(false);
+
+    private volatile long lastQueryTime = 0;
+
+    private final InvalidationTracker.Observer tableObserver;
+    // wanted tracker registration, set on the main thread
+    private volatile boolean active = false;
+    // actual tracker registration, only changed in syncRegistration
+    private boolean registered = false;
+
+    /**
+     * a query whose result ages without any write, e.g. a time window
+     */
+    public interface Expiring {
+        /**
+         *
+         * @return ms until the last result is stale, negative if it never is
+         */
+        long millisUntilStale();
+    }
+
+    private final Runnable expiryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            invalid.set(true);
+            scheduleRefresh();
+        }
+    };
+
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            scheduled.set(false);
+            if (!hasActiveObservers()) {
+                // paused, onActive will pick it up
+                return;
+            }
+            queryExecutor.execute(ThrottledQueryLiveData.this::runQuery);
+        }
+    };
+
+    /**
+     * @param database room database to track invalidations on
+     * @param queryExecutor executor the query runs on (never the main thread)
+     * @param minIntervalMs minimum time between two queries
+     * @param query blocking query returning the new value
+     * @param tables tables that trigger a refresh when written
+     */
+    public ThrottledQueryLiveData(RoomDatabase database, Executor queryExecutor, long minIntervalMs,
+                                  Callable<T> query, String... tables) {
+        this.database = database;
+        this.queryExecutor = queryExecutor;
+        this.minIntervalMs = minIntervalMs;
+        this.query = query;
+        this.tableObserver = new InvalidationTracker.Observer(tables) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> invalidatedTables) {
+                invalid.set(true);
+                scheduleRefresh();
+            }
+        };
+    }
+
+    @Override
+    protected void onActive() {
+        // tracker registration touches the database so keep it off the main thread
+        active = true;
+        queryExecutor.execute(this::syncRegistration);
+
+        // we were not listening while inactive so assume the data changed
+        invalid.set(true);
+        scheduleRefresh();
+    }
+
+    @Override
+    protected void onInactive() {
+        active = false;
+        queryExecutor.execute(this::syncRegistration);
+        mainHandler.removeCallbacks(expiryRunnable);
+    }
+
+    /**
+     * bring the tracker registration in line with the latest active state
+     * the executor may run these out of order or in parallel, so each one reconciles
+     * under the lock instead of blindly adding or removing
+     */
+    private synchronized void syncRegistration() {
+        boolean wanted = active;
+        if (wanted == registered) {
+            return;
+        }
+        if (wanted) {
+            database.getInvalidationTracker().addObserver(tableObserver);
+        } else {
+            database.getInvalidationTracker().removeObserver(tableObserver);
+        }
+        registered = wanted;
+    }
+
+    /**
+     * post a refresh no earlier than minIntervalMs after the previous query
+     */
+    private void scheduleRefresh() {
+        if (!hasActiveObservers() || computing.get()) {
+            // inactive: refreshed in onActive, computing: rescheduled when the query finishes
+            return;
+        }
+
+        if (scheduled.compareAndSet(false, true)) {
+            long elapsed = SystemClock.uptimeMillis() - lastQueryTime;
+            long delay = Math.max(0, minIntervalMs - elapsed);
+            mainHandler.postDelayed(refreshRunnable, delay);
+        }
+    }
+
+    private void scheduleExpiry() {
+        if (!(query instanceof Expiring)) {
+            return;
+        }
+        long delay = ((Expiring) query).millisUntilStale();
+        mainHandler.removeCallbacks(expiryRunnable);
+        if (delay >= 0) {
+            mainHandler.postDelayed(expiryRunnable, delay);
+        }
+    }
+
+    private void runQuery() {
+        if (!computing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            if (invalid.compareAndSet(true, false)) {
+                lastQueryTime = SystemClock.uptimeMillis();
+                postValue(query.call());
+                scheduleExpiry();
+            }
+        } catch (Exception e) {
+            Log.e(Constants.TAG_DATABASE, "Error running throttled query: " + e.getMessage(), e);
+        } finally {
+            computing.set(false);
+        }
+
+        // writes that landed while we were querying
+        if (invalid.get()) {
+            scheduleRefresh();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.team12.smarthat.models;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * contiguous run of over-threshold readings of one sensor
+ * replaces one history row per sample, a 20 minute exposure is one episode
+ * threshold is the one in effect when the episode was built
+ */
+@Entity(tableName = "breach_episodes", indices = {
+        @Index(value = {"startTimestamp"}),
+        @Index(value = {"endTimestamp"}),
+        @Index(value = {"sensorType", "startTimestamp"})})
+public class BreachEpisode {
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+
+    private String sensorType;
+    private long startTimestamp;
+    private long endTimestamp;
+    private float peakValue;
+    private double valueSum;
+    private int sampleCount;
+    private float threshold;
+
+    public BreachEpisode(String sensorType, long startTimestamp, long endTimestamp,
+                         float peakValue, double valueSum, int sampleCount, float threshold) {
+        this.sensorType = sensorType;
+        this.startTimestamp = startTimestamp;
+        this.endTimestamp = endTimestamp;
+        this.peakValue = peakValue;
+        this.valueSum = valueSum;
+        this.sampleCount = sampleCount;
+        this.threshold = threshold;
+    }
+
+    /**
+     *
+     * @return episode made of a single over-threshold reading
+     */
+    public static BreachEpisode start(String sensorType, long timestamp, float value, float threshold) {
+        return new BreachEpisode(sensorType, timestamp, timestamp, value, value, 1, threshold);
+    }
+
+    /**
+     * add the next over-threshold reading of the run
+     */
+    public void extend(long timestamp, float value) {
+        endTimestamp = Math.max(endTimestamp, timestamp);
+        peakValue = Math.max(peakValue, value);
+        valueSum += value;
+        sampleCount++;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getSensorType() {
+        return sensorType;
+    }
+
+    public long getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    public long getEndTimestamp() {
+        return endTimestamp;
+    }
+
+    public float getPeakValue() {
+        return peakValue;
+    }
+
+    public double getValueSum() {
+        return valueSum;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public float getThreshold() {
+        return threshold;
+    }
+
+    public float getMeanValue() {
+        return sampleCount > 0 ? (float) (valueSum / sampleCount) : 0.0f;
+    }
+
+    public long getDurationMs() {
+        return endTimestamp - startTimestamp;
+    }
+}
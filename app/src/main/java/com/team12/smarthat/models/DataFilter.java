@@ -2,14 +2,28 @@ package com.team12.smarthat.models;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
 
+/**
+ * history filter, every criterion is optional
+ * DatabaseHelper compiles it into one parameterized query so unset criteria cost nothing
+ */
 public class DataFilter {
     public static final String TIMESTAMP_DATE_FORMAT = "MM/dd/yy HH:mm";
 
     private Date startDate;
     private Date endDate;
+    // empty means every sensor
+    private final Set<String> sensorTypes = new HashSet<>();
+    // null means unbounded
+    private Float minValue;
+    private Float maxValue;
+    // SensorData.SOURCE_REAL / SOURCE_TEST, null means both
+    private String source;
 
     public DataFilter() {
         this.startDate = null;
@@ -37,12 +51,67 @@ public class DataFilter {
         return endDate;
     }
 
+    /**
+     *
+     * @return true if both dates are set
+     */
+    public boolean hasDateRange() {
+        return startDate != null && endDate != null;
+    }
+
     public long getStartTimestamp() {
-        return startDate.getTime();
+        return startDate != null ? startDate.getTime() : 0;
     }
 
     public long getEndTimestamp() {
-        return endDate.getTime();
+        return endDate != null ? endDate.getTime() : Long.MAX_VALUE;
+    }
+
+    /**
+     *
+     * @return selected sensor types (SensorData.TYPE_*), empty for all
+     */
+    public Set<String> getSensorTypes() {
+        return Collections.unmodifiableSet(sensorTypes);
+    }
+
+    public void setSensorTypes(Set<String> sensorTypes) {
+        this.sensorTypes.clear();
+        if (sensorTypes != null) {
+            this.sensorTypes.addAll(sensorTypes);
+        }
+    }
+
+    public Float getMinValue() {
+        return minValue;
+    }
+
+    public void setMinValue(Float minValue) {
+        this.minValue = minValue;
+    }
+
+    public Float getMaxValue() {
+        return maxValue;
+    }
+
+    public void setMaxValue(Float maxValue) {
+        this.maxValue = maxValue;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    /**
+     *
+     * @return true if no criterion is set
+     */
+    public boolean isEmpty() {
+        return !hasDateRange() && sensorTypes.isEmpty() && minValue == null && maxValue == null && source == null;
     }
 
     public void setStartDate(Date startDate) {
@@ -62,6 +131,9 @@ public class DataFilter {
     }
 
     private String formatDate(Date date) {
+        if (date == null) {
+            return "";
+        }
         SimpleDateFormat sdf = new SimpleDateFormat(TIMESTAMP_DATE_FORMAT, Locale.getDefault());
         return sdf.format(date);
     }
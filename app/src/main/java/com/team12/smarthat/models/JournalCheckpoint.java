@@ -0,0 +1,33 @@
+package com.team12.smarthat.models;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * single row holding the sequence of the last sample journal record committed to sensor_data
+ * written in the same transaction as the rows, so a replay after a crash knows exactly
+ * which journal records are already in room
+ */
+@Entity(tableName = "journal_checkpoint")
+public class JournalCheckpoint {
+    // the only row
+    public static final int ID = 0;
+
+    @PrimaryKey
+    private int id;
+
+    private long sequence;
+
+    public JournalCheckpoint(int id, long sequence) {
+        this.id = id;
+        this.sequence = sequence;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+}
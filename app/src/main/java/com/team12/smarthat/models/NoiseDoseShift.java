@@ -0,0 +1,128 @@
+package com.team12.smarthat.models;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import com.team12.smarthat.utils.OshaNoiseDose;
+
+/**
+ * running osha noise dose of one shift
+ * a few numbers per shift no matter how many readings went in,
+ * each reading's level counts from its timestamp until the next reading
+ */
+@Entity(tableName = "noise_dose_shifts", indices = {@Index(value = {"startTimestamp"})})
+public class NoiseDoseShift {
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+
+    private long startTimestamp;
+    private long lastTimestamp;
+    private float lastLevel;
+    private float peakLevel;
+    // 1.0 = 100% of the daily allowance
+    private double dose;
+    // time covered by readings, gaps beyond the hold limit are not counted
+    private long measuredMs;
+    private int sampleCount;
+
+    public NoiseDoseShift(long startTimestamp, long lastTimestamp, float lastLevel, float peakLevel,
+                          double dose, long measuredMs, int sampleCount) {
+        this.startTimestamp = startTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.lastLevel = lastLevel;
+        this.peakLevel = peakLevel;
+        this.dose = dose;
+        this.measuredMs = measuredMs;
+        this.sampleCount = sampleCount;
+    }
+
+    /**
+     *
+     * @return shift made of its first reading, no dose yet
+     */
+    public static NoiseDoseShift start(long timestamp, float level) {
+        return new NoiseDoseShift(timestamp, timestamp, level, level, 0, 0, 1);
+    }
+
+    /**
+     * add the next reading, the previous level is charged for the time since it
+     * readings older than the last one are dropped
+     * @param maxHoldMs longest a single reading may count for, covers sensor dropouts
+     */
+    public void add(long timestamp, float level, long maxHoldMs) {
+        long elapsed = timestamp - lastTimestamp;
+        if (elapsed <= 0) {
+            return;
+        }
+        long held = Math.min(elapsed, maxHoldMs);
+        dose += held / OshaNoiseDose.allowedMs(lastLevel);
+        measuredMs += held;
+        lastTimestamp = timestamp;
+        lastLevel = level;
+        peakLevel = Math.max(peakLevel, level);
+        sampleCount++;
+    }
+
+    public double getDosePercent() {
+        return dose * 100;
+    }
+
+    /**
+     *
+     * @return 8 hour twa in dB, NaN while the dose is zero
+     */
+    public double getTwa() {
+        return OshaNoiseDose.twa(dose);
+    }
+
+    /**
+     * time left until 100% if exposure continues at the shift's average rate so far
+     * @return ms to a full dose, 0 once reached, -1 if there is no dose to extrapolate
+     */
+    public long getProjectedMsToFullDose() {
+        if (dose >= 1) {
+            return 0;
+        }
+        if (dose <= 0 || measuredMs <= 0) {
+            return -1;
+        }
+        return (long) ((1 - dose) * measuredMs / dose);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public float getLastLevel() {
+        return lastLevel;
+    }
+
+    public float getPeakLevel() {
+        return peakLevel;
+    }
+
+    public double getDose() {
+        return dose;
+    }
+
+    public long getMeasuredMs() {
+        return measuredMs;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+}
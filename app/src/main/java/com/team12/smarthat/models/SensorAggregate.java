@@ -0,0 +1,56 @@
+package com.team12.smarthat.models;
+
+/**
+ * sql aggregates of one sensor over a time range, filled by room
+ * meanSquare is kept so the standard deviation needs no second pass
+ */
+public class SensorAggregate {
+    private final String sensorType;
+    private final int count;
+    private final float min;
+    private final float max;
+    private final double mean;
+    private final double meanSquare;
+
+    public SensorAggregate(String sensorType, int count, float min, float max, double mean, double meanSquare) {
+        this.sensorType = sensorType;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.meanSquare = meanSquare;
+    }
+
+    public String getSensorType() {
+        return sensorType;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public float getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getMeanSquare() {
+        return meanSquare;
+    }
+
+    /**
+     *
+     * @return population standard deviation
+     */
+    public double getStandardDeviation() {
+        // rounding can push the variance slightly below zero for constant series
+        return Math.sqrt(Math.max(0.0, meanSquare - mean * mean));
+    }
+}
@@ -2,11 +2,18 @@ package com.team12.smarthat.models;
 
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import android.util.Log;
 
-@Entity(tableName = "sensor_data")
+import java.util.Locale;
+
+// sensorType + deleted + timestamp index backs the per-sensor windowed queries
+// deleted + timestamp backs the history list and the tombstone purger
+@Entity(tableName = "sensor_data", indices = {
+        @Index(value = {"sensorType", "deleted", "timestamp"}),
+        @Index(value = {"deleted", "timestamp"})})
 public class SensorData {
     private static final String TAG = "SensorData";
     
@@ -24,6 +31,14 @@ public class SensorData {
     private static final float MAX_NOISE_VALUE = 150.0f;
     private static final long MAX_FUTURE_TIMESTAMP = 60000; // 1 minute in the future
     private static final float MAX_GAS_VALUE = 5000.0f;
+
+    // tombstone bits, live rows have deleted == 0
+    // DELETED hides the row, PURGE_READY is set by the purger one cycle before it removes the row
+    public static final int TOMBSTONE_DELETED = 1;
+    public static final int TOMBSTONE_PURGE_READY = 2;
+
+    // metadata of a reading the spike filter flagged
+    private static final String SPIKE_METADATA_FORMAT = "{\"suspectedSpike\":true,\"windowMedian\":%.2f}";
     
     @PrimaryKey(autoGenerate = true)
     private int id;
@@ -33,6 +48,11 @@ public class SensorData {
     private long timestamp;
     private String metadata; // json string
     private String source = SOURCE_REAL; // default to real data
+    private int deleted = 0; // tombstone bitmask
+    // window median of a flagged reading, NaN if not flagged. only known in the process that
+    // flagged it (and the sample journal), rows read back from room keep just the metadata
+    @Ignore
+    private float spikeMedian = Float.NaN;
 
     public SensorData(String sensorType, float value) {
         this.sensorType = normalizeSensorType(sensorType);
@@ -186,6 +206,39 @@ public class SensorData {
         this.source = source;
     }
     
+    /**
+     * flag this reading as a suspected spike, the flag is kept in its metadata
+     * @param windowMedian median of the window the reading was compared with
+     */
+    public void markSuspectedSpike(float windowMedian) {
+        this.spikeMedian = windowMedian;
+        this.metadata = String.format(Locale.US, SPIKE_METADATA_FORMAT, windowMedian);
+    }
+    
+    /**
+     * 
+     * @return true if the spike filter flagged this reading
+     */
+    public boolean isSuspectedSpike() {
+        return !Float.isNaN(spikeMedian);
+    }
+    
+    /**
+     * 
+     * @return window median the reading was compared with, NaN if not flagged
+     */
+    public float getSpikeMedian() {
+        return spikeMedian;
+    }
+    
+    public int getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(int deleted) {
+        this.deleted = deleted;
+    }
+
     /**
      * 
      * @return true if test data, false if real data
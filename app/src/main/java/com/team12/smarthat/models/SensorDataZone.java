@@ -0,0 +1,71 @@
+package com.team12.smarthat.models;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * zone map entry summarizing a fixed id range of sensor_data
+ * breach and range queries check these first and skip blocks that can't match
+ * max values are upper bounds: deletes never make a zone skip rows it shouldn't
+ */
+@Entity(tableName = "sensor_data_zones")
+public class SensorDataZone {
+    // rows per zone, block of a row is id / BLOCK_SIZE
+    public static final int BLOCK_SIZE = 1024;
+
+    // stored when a block has no rows of that sensor type yet
+    public static final float NO_VALUE = -1.0f;
+
+    @PrimaryKey
+    private long blockId;
+
+    private long minTimestamp;
+    private long maxTimestamp;
+    private float maxDust;
+    private float maxNoise;
+    private float maxGas;
+
+    public SensorDataZone(long blockId, long minTimestamp, long maxTimestamp,
+                          float maxDust, float maxNoise, float maxGas) {
+        this.blockId = blockId;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.maxDust = maxDust;
+        this.maxNoise = maxNoise;
+        this.maxGas = maxGas;
+    }
+
+    /**
+     *
+     * @param blockId block the zone covers
+     * @param timestamp timestamp of the first row in the block
+     * @return zone with no sensor values recorded yet
+     */
+    public static SensorDataZone empty(long blockId, long timestamp) {
+        return new SensorDataZone(blockId, timestamp, timestamp, NO_VALUE, NO_VALUE, NO_VALUE);
+    }
+
+    public long getBlockId() {
+        return blockId;
+    }
+
+    public long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    public float getMaxDust() {
+        return maxDust;
+    }
+
+    public float getMaxNoise() {
+        return maxNoise;
+    }
+
+    public float getMaxGas() {
+        return maxGas;
+    }
+}
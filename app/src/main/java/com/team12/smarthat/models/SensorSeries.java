@@ -0,0 +1,48 @@
+package com.team12.smarthat.models;
+
+/**
+ * chart-ready series of one sensor over a time range
+ * points are kept in parallel primitive arrays, oldest first, so a long
+ * range costs two arrays instead of one SensorData object per point
+ */
+public class SensorSeries {
+    private final String sensorType;
+    private final long[] timestamps;
+    private final float[] values;
+    private final int sourceCount;
+
+    public SensorSeries(String sensorType, long[] timestamps, float[] values, int sourceCount) {
+        this.sensorType = sensorType;
+        this.timestamps = timestamps;
+        this.values = values;
+        this.sourceCount = sourceCount;
+    }
+
+    public String getSensorType() {
+        return sensorType;
+    }
+
+    /**
+     *
+     * @return number of points in the series
+     */
+    public int size() {
+        return timestamps.length;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public float getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     *
+     * @return number of stored readings the series was built from
+     */
+    public int getSourceCount() {
+        return sourceCount;
+    }
+}
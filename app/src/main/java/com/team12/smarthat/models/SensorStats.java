@@ -0,0 +1,55 @@
+package com.team12.smarthat.models;
+
+/**
+ * summary of one sensor over a time range, e.g. for an end-of-shift report
+ * percentiles are approximate, within one histogram bin of the exact value
+ */
+public class SensorStats {
+    private final SensorAggregate aggregate;
+    private final float p50;
+    private final float p95;
+    private final float p99;
+
+    public SensorStats(SensorAggregate aggregate, float p50, float p95, float p99) {
+        this.aggregate = aggregate;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+    }
+
+    public String getSensorType() {
+        return aggregate.getSensorType();
+    }
+
+    public int getCount() {
+        return aggregate.getCount();
+    }
+
+    public float getMin() {
+        return aggregate.getMin();
+    }
+
+    public float getMax() {
+        return aggregate.getMax();
+    }
+
+    public double getMean() {
+        return aggregate.getMean();
+    }
+
+    public double getStandardDeviation() {
+        return aggregate.getStandardDeviation();
+    }
+
+    public float getMedian() {
+        return p50;
+    }
+
+    public float getP95() {
+        return p95;
+    }
+
+    public float getP99() {
+        return p99;
+    }
+}
@@ -0,0 +1,51 @@
+package com.team12.smarthat.models;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * readings of one sensor inside a live window (last n minutes or last n rows)
+ * appended holds only the rows that arrived since the previous emission so
+ * charts can add points instead of redrawing the whole series
+ */
+public class SensorWindow {
+    private final String sensorType;
+    private final List<SensorData> readings;
+    private final List<SensorData> appended;
+    private final int evictedCount;
+
+    public SensorWindow(String sensorType, List<SensorData> readings, List<SensorData> appended, int evictedCount) {
+        this.sensorType = sensorType;
+        this.readings = Collections.unmodifiableList(readings);
+        this.appended = Collections.unmodifiableList(appended);
+        this.evictedCount = evictedCount;
+    }
+
+    public String getSensorType() {
+        return sensorType;
+    }
+
+    /**
+     *
+     * @return every reading in the window, oldest first
+     */
+    public List<SensorData> getReadings() {
+        return readings;
+    }
+
+    /**
+     *
+     * @return readings added since the previous emission, oldest first
+     */
+    public List<SensorData> getAppended() {
+        return appended;
+    }
+
+    /**
+     *
+     * @return number of readings that dropped out of the front of the window since the previous emission
+     */
+    public int getEvictedCount() {
+        return evictedCount;
+    }
+}
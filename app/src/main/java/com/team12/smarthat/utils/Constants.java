@@ -57,6 +57,8 @@ public class Constants {
         30 * 60 * 1000,      // 30 mins
         15 * 60 * 1000       // 15 mins
     };
+    // sound below this level is left out of the noise dose (osha hearing conservation threshold)
+    public static final float OSHA_DOSE_THRESHOLD = 80.0f;
     
     // valid range for sensor readings
     public static final float DUST_MIN_VALUE = 0.0f;
@@ -80,6 +82,27 @@ public class Constants {
     // database settings
     public static final int MAX_DATABASE_RECORDS = 10000; // don't store too much
     public static final long DATABASE_CLEANUP_INTERVAL = 86400000;
+    public static final long HISTORY_REFRESH_INTERVAL_MS = 2000; // min time between history re-queries
+    public static final long LIVE_WINDOW_REFRESH_INTERVAL_MS = 500; // min time between live window refreshes
+    public static final int RECENT_DATA_CAPACITY = 1800; // readings kept in memory per sensor, ~30 min at 1 Hz
+    public static final long BREACH_EPISODE_MAX_GAP_MS = 30000; // missing readings longer than this end a breach episode
+    public static final long NOISE_DOSE_MAX_HOLD_MS = 10000; // a noise reading counts toward the dose for at most this long
+    public static final long NOISE_SHIFT_BREAK_MS = 2 * 60 * 60 * 1000; // no noise readings for this long starts a new shift
+    public static final long LIVE_STATS_WINDOW_MS = 5 * 60 * 1000; // sliding window of the live statistics
+    public static final int LIVE_STATS_BUCKETS = 10; // the window slides in steps of window / buckets
+    public static final long LIVE_STATS_EWMA_TAU_MS = 30000; // ewma time constant
+    public static final double LIVE_STATS_COMPRESSION = 100; // t-digest compression per bucket
+    public static final int SPIKE_FILTER_WINDOW = 5; // readings per sensor the spike filter's median is taken over
+    public static final float SPIKE_FILTER_SIGMAS = 3.0f; // robust standard deviations from the median that make a spike
+    public static final float DUST_SPIKE_MIN_DEVIATION = 20.0f; // µg/m³, smaller jumps are never spikes
+    public static final float GAS_SPIKE_MIN_DEVIATION = 200.0f; // ppm, smaller jumps are never spikes
+    public static final String BLE_CAPTURE_DIR = "captures"; // under the app's files dir
+    public static final int BLE_CAPTURE_BUFFER_SIZE = 64 * 1024; // bytes per capture buffer, two are allocated
+    public static final long BLE_CAPTURE_FLUSH_INTERVAL_MS = 1000; // longest a captured payload waits in memory
+    public static final long BLE_CAPTURE_MAX_BYTES = 32 * 1024 * 1024; // a full capture file is closed and a new one started
+    public static final int BLE_CAPTURE_MAX_FILES = 10; // oldest captures are deleted beyond this
+    public static final int LOAD_TEST_RATE_HZ = 100; // per sensor, for the test mode load test
+    public static final long TEST_SCENARIO_SEED = 12L; // fixed so every scripted scenario run sees the same data
     
     // app preferences
     public static final String PREF_NAME = "app_prefs";
@@ -92,6 +115,11 @@ public class Constants {
     public static final String PREF_GAS_THRESHOLD = "gas_threshold";
     public static final String PREF_FILTER_START_DATE = "filter_start_date";
     public static final String PREF_FILTER_END_DATE = "filter_end_date";
+    public static final String PREF_FILTER_SENSOR_TYPES = "filter_sensor_types";
+    public static final String PREF_FILTER_MIN_VALUE = "filter_min_value";
+    public static final String PREF_FILTER_MAX_VALUE = "filter_max_value";
+    public static final String PREF_FILTER_SOURCE = "filter_source";
+    public static final String PREF_BLE_CAPTURE_ENABLED = "ble_capture_enabled";
     
     // test mode preferences
     public static final String PREF_TEST_MODE_ACTIVE = "test_mode_active";
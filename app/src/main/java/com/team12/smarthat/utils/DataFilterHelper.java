@@ -3,6 +3,9 @@ package com.team12.smarthat.utils;
 import android.content.Context;
 import android.content.SharedPreferences;
 import java.text.ParseException;
+import java.util.HashSet;
+import java.util.Set;
+
 import com.team12.smarthat.models.DataFilter;
 
 import static android.content.Context.MODE_PRIVATE;
@@ -37,7 +40,7 @@ public class DataFilterHelper {
     }
     
     /**
-     * Set a new date filter
+     * Set a new filter
      * @param dataFilter DataFilter to set as current
      */
     public void setFilter(DataFilter dataFilter) {
@@ -59,13 +62,32 @@ public class DataFilterHelper {
         SharedPreferences sharedPreferences = context.getSharedPreferences(Constants.PREF_NAME, MODE_PRIVATE);
         SharedPreferences.Editor prefsEditor = sharedPreferences.edit();
         
+        // Clear old values first, only the criteria that are set get written back
+        prefsEditor.remove(Constants.PREF_FILTER_START_DATE);
+        prefsEditor.remove(Constants.PREF_FILTER_END_DATE);
+        prefsEditor.remove(Constants.PREF_FILTER_SENSOR_TYPES);
+        prefsEditor.remove(Constants.PREF_FILTER_MIN_VALUE);
+        prefsEditor.remove(Constants.PREF_FILTER_MAX_VALUE);
+        prefsEditor.remove(Constants.PREF_FILTER_SOURCE);
+
         if(currentFilter != null) {
-            prefsEditor.putString(Constants.PREF_FILTER_START_DATE, currentFilter.getStartDate().toString());
-            prefsEditor.putString(Constants.PREF_FILTER_END_DATE, currentFilter.getEndDate().toString());
-        } else {
-            // Clear saved filters when currentFilter is null
-            prefsEditor.remove(Constants.PREF_FILTER_START_DATE);
-            prefsEditor.remove(Constants.PREF_FILTER_END_DATE);
+            // stored in the format restore parses
+            if(currentFilter.hasDateRange()) {
+                prefsEditor.putString(Constants.PREF_FILTER_START_DATE, currentFilter.getFormattedStartDate());
+                prefsEditor.putString(Constants.PREF_FILTER_END_DATE, currentFilter.getFormattedEndDate());
+            }
+            if(!currentFilter.getSensorTypes().isEmpty()) {
+                prefsEditor.putStringSet(Constants.PREF_FILTER_SENSOR_TYPES, new HashSet<>(currentFilter.getSensorTypes()));
+            }
+            if(currentFilter.getMinValue() != null) {
+                prefsEditor.putFloat(Constants.PREF_FILTER_MIN_VALUE, currentFilter.getMinValue());
+            }
+            if(currentFilter.getMaxValue() != null) {
+                prefsEditor.putFloat(Constants.PREF_FILTER_MAX_VALUE, currentFilter.getMaxValue());
+            }
+            if(currentFilter.getSource() != null) {
+                prefsEditor.putString(Constants.PREF_FILTER_SOURCE, currentFilter.getSource());
+            }
         }
         
         prefsEditor.apply();
@@ -80,12 +102,26 @@ public class DataFilterHelper {
         String startDate = sharedPreferences.getString(Constants.PREF_FILTER_START_DATE, "");
         String endDate = sharedPreferences.getString(Constants.PREF_FILTER_END_DATE, "");
 
+        DataFilter filter = new DataFilter();
         if(!(startDate.isEmpty() || endDate.isEmpty())) {
             try {
-                currentFilter = new DataFilter(startDate, endDate);
+                filter = new DataFilter(startDate, endDate);
             } catch(ParseException e) {
-                currentFilter = null;
+                // dates saved by older versions can't be parsed, keep the other criteria
+                filter = new DataFilter();
             }
         }
+
+        Set<String> sensorTypes = sharedPreferences.getStringSet(Constants.PREF_FILTER_SENSOR_TYPES, null);
+        filter.setSensorTypes(sensorTypes);
+        if(sharedPreferences.contains(Constants.PREF_FILTER_MIN_VALUE)) {
+            filter.setMinValue(sharedPreferences.getFloat(Constants.PREF_FILTER_MIN_VALUE, 0f));
+        }
+        if(sharedPreferences.contains(Constants.PREF_FILTER_MAX_VALUE)) {
+            filter.setMaxValue(sharedPreferences.getFloat(Constants.PREF_FILTER_MAX_VALUE, 0f));
+        }
+        filter.setSource(sharedPreferences.getString(Constants.PREF_FILTER_SOURCE, null));
+
+        currentFilter = filter.isEmpty() ? null : filter;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,92 @@
+package com.team12.smarthat.utils;
+
+/**
+ * causal hampel outlier test over the latest readings of one sensor
+ * a reading is an outlier when it lies more than sigmas robust standard deviations
+ * (1.4826 * median absolute deviation) and at least minDeviation from the window median
+ * - every reading enters the window, the median shrugs off a lone spike while a real
+ *   step wins the median once it fills half the window
+ * - fixed arrays, nothing is allocated per reading
+ * not thread safe, one filter per sensor on the ingest thread
+ */
+public class HampelFilter {
+    // turns the median absolute deviation into a standard deviation for normal data
+    private static final float MAD_SCALE = 1.4826f;
+
+    private final float[] window;
+    private final float[] scratch;
+    private final float sigmas;
+    private final float minDeviation;
+    private int count = 0;
+    private int next = 0;
+    private float lastMedian = Float.NaN;
+
+    /**
+     *
+     * @param windowSize readings the median is taken over, odd sizes give a true middle
+     * @param sigmas how many robust standard deviations away counts as an outlier
+     * @param minDeviation smallest distance from the median that can be an outlier,
+     *                     keeps a flat signal (MAD of 0) from flagging every wiggle
+     */
+    public HampelFilter(int windowSize, float sigmas, float minDeviation) {
+        this.window = new float[Math.max(3, windowSize)];
+        this.scratch = new float[window.length];
+        this.sigmas = sigmas;
+        this.minDeviation = minDeviation;
+    }
+
+    /**
+     * add a reading and test it against the window
+     * @return true if the reading is an outlier, always false until the window is full
+     */
+    public boolean isOutlier(float value) {
+        window[next] = value;
+        next = (next + 1) % window.length;
+        if (count < window.length) {
+            count++;
+        }
+
+        System.arraycopy(window, 0, scratch, 0, count);
+        float median = median(scratch, count);
+        lastMedian = median;
+        if (count < window.length) {
+            return false;
+        }
+
+        for (int i = 0; i < count; i++) {
+            scratch[i] = Math.abs(window[i] - median);
+        }
+        float mad = median(scratch, count);
+        float deviation = Math.abs(value - median);
+        return deviation >= minDeviation && deviation > sigmas * MAD_SCALE * mad;
+    }
+
+    /**
+     *
+     * @return window median at the last reading, what an outlier would be replaced with
+     */
+    public float getLastMedian() {
+        return lastMedian;
+    }
+
+    public void reset() {
+        count = 0;
+        next = 0;
+        lastMedian = Float.NaN;
+    }
+
+    // insertion sort in place, windows are a handful of readings
+    private static float median(float[] values, int length) {
+        for (int i = 1; i < length; i++) {
+            float value = values[i];
+            int j = i - 1;
+            while (j >= 0 && values[j] > value) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = value;
+        }
+        int middle = length / 2;
+        return length % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2;
+    }
+}
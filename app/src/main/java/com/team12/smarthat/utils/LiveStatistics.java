@@ -0,0 +1,107 @@
+package com.team12.smarthat.utils;
+
+import com.team12.smarthat.models.SensorData;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * process-wide rolling statistics per sensor, see RollingStatistics
+ * fed by BluetoothServiceIntegration next to RecentDataStore as readings are parsed,
+ * so ui and alert rules get ewma / variance / percentiles without a database query
+ * only real sensor readings are recorded, test mode data would skew the exposure figures
+ * shown in MainActivity's live statistics dialog
+ * memory is fixed per sensor however long the app runs
+ */
+public class LiveStatistics {
+    private static volatile LiveStatistics instance;
+
+    private static final String[] REPORTED_SENSORS = {SensorData.TYPE_DUST, SensorData.TYPE_NOISE, SensorData.TYPE_GAS};
+
+    private final ConcurrentHashMap<String, RollingStatistics> statistics = new ConcurrentHashMap<>();
+
+    public static LiveStatistics getInstance() {
+        if (instance == null) {
+            synchronized (LiveStatistics.class) {
+                if (instance == null) {
+                    instance = new LiveStatistics();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private LiveStatistics() {
+        // the known sensors up front so the ingest path never allocates
+        statistics.put(SensorData.TYPE_DUST, newStatistics());
+        statistics.put(SensorData.TYPE_NOISE, newStatistics());
+        statistics.put(SensorData.TYPE_GAS, newStatistics());
+    }
+
+    /**
+     * record a reading, call from the single ingest thread
+     */
+    public void record(SensorData data) {
+        getStatistics(data.getSensorType()).add(data.getTimestamp(), data.getValue());
+    }
+
+    /**
+     *
+     * @param sensorType sensor type (SensorData.TYPE_*)
+     * @return snapshot of the window ending at the sensor's latest reading
+     */
+    public RollingStatistics.Snapshot getSnapshot(String sensorType) {
+        return getStatistics(sensorType).snapshot();
+    }
+
+    /**
+     *
+     * @param sensorType sensor type (SensorData.TYPE_*)
+     * @return statistics of that sensor, created empty on first use
+     */
+    public RollingStatistics getStatistics(String sensorType) {
+        RollingStatistics stats = statistics.get(sensorType);
+        if (stats == null) {
+            stats = statistics.computeIfAbsent(sensorType, type -> newStatistics());
+        }
+        return stats;
+    }
+
+    /**
+     *
+     * @return one line per known sensor over the current window, for display and the log
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (String sensorType : REPORTED_SENSORS) {
+            RollingStatistics.Snapshot snapshot = getSnapshot(sensorType);
+            if (report.length() > 0) {
+                report.append('\n');
+            }
+            if (snapshot.getWindowCount() == 0) {
+                report.append(String.format(Locale.US, "%-5s no readings", sensorType));
+                continue;
+            }
+            report.append(String.format(Locale.US,
+                    "%-5s n %d  mean %.1f sd %.1f  ewma %.1f\n      min %.1f p50 %.1f p95 %.1f p99 %.1f max %.1f",
+                    sensorType, snapshot.getWindowCount(), snapshot.getWindowMean(), snapshot.getWindowStdDev(),
+                    snapshot.getEwma(), snapshot.getWindowMin(), snapshot.getP50(), snapshot.getP95(),
+                    snapshot.getP99(), snapshot.getWindowMax()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * start every sensor over, e.g. at the start of a shift
+     */
+    public void reset() {
+        for (RollingStatistics stats : statistics.values()) {
+            stats.reset();
+        }
+    }
+
+    private static RollingStatistics newStatistics() {
+        return new RollingStatistics(Constants.LIVE_STATS_WINDOW_MS, Constants.LIVE_STATS_BUCKETS,
+                Constants.LIVE_STATS_EWMA_TAU_MS, Constants.LIVE_STATS_COMPRESSION);
+    }
+}
@@ -0,0 +1,244 @@
+package com.team12.smarthat.utils;
+
+/**
+ * streaming largest-triangle-three-buckets downsampling
+ * points are fed oldest first with add(), only the two buckets around the
+ * selection point are buffered so memory is bounded by 2 * total / target
+ * the first and last points are always kept, spikes survive because the
+ * point forming the largest triangle with its neighbours wins each bucket
+ *
+ * usage: new LttbDownsampler(count, target), add() every row, then finish()
+ */
+public class LttbDownsampler {
+    // fewer than this can't have a first, last and one bucket point
+    private static final int MIN_TARGET = 3;
+
+    private final int totalPoints;
+    private final int targetPoints;
+    private final boolean passThrough;
+    // input points per bucket
+    private final double bucketSize;
+
+    private final long[] outTimestamps;
+    private final float[] outValues;
+    private int outCount = 0;
+
+    // bucket being selected from, and the bucket after it being filled
+    private long[] currentTimestamps;
+    private float[] currentValues;
+    private int currentSize = 0;
+    private long[] nextTimestamps;
+    private float[] nextValues;
+    private int nextSize = 0;
+
+    // index of the next input point and where the filling bucket ends
+    private int index = 0;
+    private int bucket = 0;
+    private int bucketEnd;
+
+    // last selected point, corner a of the triangle
+    private long selectedTimestamp;
+    private float selectedValue;
+    private boolean finished = false;
+
+    /**
+     *
+     * @param totalPoints number of points that will be added
+     * @param targetPoints number of points wanted, at least 3
+     */
+    public LttbDownsampler(int totalPoints, int targetPoints) {
+        this.totalPoints = Math.max(0, totalPoints);
+        this.targetPoints = Math.max(MIN_TARGET, targetPoints);
+        this.passThrough = this.totalPoints <= this.targetPoints;
+
+        if (passThrough) {
+            bucketSize = 1;
+            outTimestamps = new long[this.totalPoints];
+            outValues = new float[this.totalPoints];
+        } else {
+            bucketSize = (double) (this.totalPoints - 2) / (this.targetPoints - 2);
+            outTimestamps = new long[this.targetPoints];
+            outValues = new float[this.targetPoints];
+
+            int capacity = (int) Math.ceil(bucketSize) + 1;
+            currentTimestamps = new long[capacity];
+            currentValues = new float[capacity];
+            nextTimestamps = new long[capacity];
+            nextValues = new float[capacity];
+            bucketEnd = bucketStart(1);
+        }
+    }
+
+    /**
+     * feed the next point, timestamps must not decrease
+     * points beyond totalPoints are ignored
+     */
+    public void add(long timestamp, float value) {
+        if (finished || index >= totalPoints) {
+            return;
+        }
+
+        if (passThrough) {
+            emit(timestamp, value);
+            index++;
+            return;
+        }
+
+        if (index == 0) {
+            emit(timestamp, value);
+        } else if (index == totalPoints - 1) {
+            closeBuckets(timestamp, value);
+        } else {
+            if (index >= bucketEnd) {
+                // the filling bucket is complete, its average decides the previous one
+                selectFromCurrent(averageTimestamp(), averageValue());
+                swapBuckets();
+                bucket++;
+                bucketEnd = bucketStart(bucket + 1);
+            }
+            nextTimestamps[nextSize] = timestamp;
+            nextValues[nextSize] = value;
+            nextSize++;
+        }
+        index++;
+    }
+
+    /**
+     * @return timestamps of the selected points, oldest first
+     */
+    public long[] getTimestamps() {
+        finish();
+        return trim(outTimestamps);
+    }
+
+    /**
+     * @return values of the selected points, same order as getTimestamps()
+     */
+    public float[] getValues() {
+        finish();
+        return trim(outValues);
+    }
+
+    /**
+     * close the series, also copes with fewer points than announced
+     * by treating the last buffered point as the end
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        if (!passThrough && index > 1 && index < totalPoints) {
+            if (nextSize > 0) {
+                nextSize--;
+                closeBuckets(nextTimestamps[nextSize], nextValues[nextSize]);
+            } else if (currentSize > 0) {
+                currentSize--;
+                long lastTimestamp = currentTimestamps[currentSize];
+                float lastValue = currentValues[currentSize];
+                selectFromCurrent(lastTimestamp, lastValue);
+                emit(lastTimestamp, lastValue);
+            }
+        }
+        finished = true;
+    }
+
+    private void closeBuckets(long lastTimestamp, float lastValue) {
+        selectFromCurrent(averageTimestamp(), averageValue());
+        swapBuckets();
+        selectFromCurrent(lastTimestamp, lastValue);
+        emit(lastTimestamp, lastValue);
+        finished = true;
+    }
+
+    // first input index of bucket k, the last bucket ends right before the final point
+    private int bucketStart(int k) {
+        return (int) Math.floor(k * bucketSize) + 1;
+    }
+
+    /**
+     * keep the point of the current bucket that spans the largest triangle
+     * with the last selected point and c
+     */
+    private void selectFromCurrent(double cTimestamp, double cValue) {
+        if (currentSize == 0) {
+            return;
+        }
+
+        // relative to a so epoch millis don't swamp the value axis in doubles
+        double cx = cTimestamp - selectedTimestamp;
+        double cy = cValue - selectedValue;
+        double maxArea = -1;
+        int best = 0;
+        for (int i = 0; i < currentSize; i++) {
+            double bx = currentTimestamps[i] - selectedTimestamp;
+            double by = currentValues[i] - selectedValue;
+            double area = Math.abs(bx * cy - cx * by);
+            if (area > maxArea) {
+                maxArea = area;
+                best = i;
+            }
+        }
+        emit(currentTimestamps[best], currentValues[best]);
+        currentSize = 0;
+    }
+
+    private double averageTimestamp() {
+        if (nextSize == 0) {
+            return selectedTimestamp;
+        }
+        // average the offsets from the first point, summing raw millis would overflow precision
+        double sum = 0;
+        for (int i = 0; i < nextSize; i++) {
+            sum += nextTimestamps[i] - nextTimestamps[0];
+        }
+        return nextTimestamps[0] + sum / nextSize;
+    }
+
+    private double averageValue() {
+        if (nextSize == 0) {
+            return selectedValue;
+        }
+        double sum = 0;
+        for (int i = 0; i < nextSize; i++) {
+            sum += nextValues[i];
+        }
+        return sum / nextSize;
+    }
+
+    private void swapBuckets() {
+        long[] timestamps = currentTimestamps;
+        float[] values = currentValues;
+        currentTimestamps = nextTimestamps;
+        currentValues = nextValues;
+        currentSize = nextSize;
+        nextTimestamps = timestamps;
+        nextValues = values;
+        nextSize = 0;
+    }
+
+    private void emit(long timestamp, float value) {
+        outTimestamps[outCount] = timestamp;
+        outValues[outCount] = value;
+        outCount++;
+        selectedTimestamp = timestamp;
+        selectedValue = value;
+    }
+
+    private long[] trim(long[] array) {
+        if (outCount == array.length) {
+            return array;
+        }
+        long[] trimmed = new long[outCount];
+        System.arraycopy(array, 0, trimmed, 0, outCount);
+        return trimmed;
+    }
+
+    private float[] trim(float[] array) {
+        if (outCount == array.length) {
+            return array;
+        }
+        float[] trimmed = new float[outCount];
+        System.arraycopy(array, 0, trimmed, 0, outCount);
+        return trimmed;
+    }
+}
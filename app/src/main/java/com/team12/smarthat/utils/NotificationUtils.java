@@ -189,44 +189,24 @@ public class NotificationUtils {
     }
 
     /**
-     * Get custom dust threshold
-     * @return The user-defined dust threshold or default from Constants
-     */
-    private float getCustomDustThreshold() {
-        return context.getSharedPreferences(Constants.PREF_NAME, Context.MODE_PRIVATE)
-                .getFloat(Constants.PREF_DUST_THRESHOLD, Constants.DUST_THRESHOLD);
-    }
-    
-    /**
-     * Get custom noise threshold
-     * @return The user-defined noise threshold or default from Constants
-     */
-    private float getCustomNoiseThreshold() {
-        return context.getSharedPreferences(Constants.PREF_NAME, Context.MODE_PRIVATE)
-                .getFloat(Constants.PREF_NOISE_THRESHOLD, Constants.NOISE_THRESHOLD);
-    }
-    
-    /**
-     * Get custom gas threshold
-     * @return The user-defined gas threshold or default from Constants
+     * Show an alert for dust sensor threshold breach
+     * @param data the dust sensor data that triggered the alert
      */
-    private float getCustomGasThreshold() {
-        return context.getSharedPreferences(Constants.PREF_NAME, Context.MODE_PRIVATE)
-                .getFloat(Constants.PREF_GAS_THRESHOLD, Constants.GAS_THRESHOLD);
+    @SuppressLint("MissingPermission")
+    public void showDustAlert(SensorData data) {
+        showDustAlert(data, ThresholdConfig.get());
     }
 
     /**
-     * Show an alert for dust sensor threshold breach
-     * @param data the dust sensor data that triggered the alert
+     * @param config threshold snapshot the breach was detected with
      */
     @SuppressLint("MissingPermission")
-    public void showDustAlert(SensorData data) {
+    public void showDustAlert(SensorData data, ThresholdConfig config) {
         // Check if this is test data and adjust the title
         boolean isTestData = data.isTestData();
         float value = data.getValue();
         
-        // Get custom threshold if available
-        float threshold = getCustomDustThreshold();
+        float threshold = config.getDustThreshold();
         
         String title = isTestData ? "Test Dust Alert" : "Dust Alert";
         String message = String.format("Dust level of %.1f µg/m³ exceeds safe limit (%.1f µg/m³)%s", 
@@ -242,12 +222,19 @@ public class NotificationUtils {
      */
     @SuppressLint("MissingPermission")
     public void showNoiseAlert(SensorData data) {
+        showNoiseAlert(data, ThresholdConfig.get());
+    }
+
+    /**
+     * @param config threshold snapshot the breach was detected with
+     */
+    @SuppressLint("MissingPermission")
+    public void showNoiseAlert(SensorData data, ThresholdConfig config) {
         // Check if this is test data and adjust the title
         boolean isTestData = data.isTestData();
         float value = data.getValue();
         
-        // Get custom threshold if available
-        float threshold = getCustomNoiseThreshold();
+        float threshold = config.getNoiseThreshold();
         
         String title = isTestData ? "Test Noise Alert" : "Noise Alert";
         String message = String.format("Noise level of %.1f dB exceeds safe limit (%.1f dB)%s", 
@@ -263,12 +250,19 @@ public class NotificationUtils {
      */
     @SuppressLint("MissingPermission")
     public void showGasAlert(SensorData data) {
+        showGasAlert(data, ThresholdConfig.get());
+    }
+
+    /**
+     * @param config threshold snapshot the breach was detected with
+     */
+    @SuppressLint("MissingPermission")
+    public void showGasAlert(SensorData data, ThresholdConfig config) {
         // Check if this is test data and adjust the title
         boolean isTestData = data.isTestData();
         float value = data.getValue();
         
-        // Get custom threshold if available
-        float threshold = getCustomGasThreshold();
+        float threshold = config.getGasThreshold();
         
         String title = isTestData ? "Test Gas Alert" : "Gas Alert";
         String message = String.format("Gas level of %.1f ppm exceeds safe limit (%.1f ppm)%s", 
@@ -299,8 +293,7 @@ public class NotificationUtils {
         // Check system permission, POST_NOTIFICATIONS permission on Android 13+, and app preference
         boolean systemEnabled = NotificationManagerCompat.from(context).areNotificationsEnabled();
         boolean permissionGranted = hasNotificationPermission();
-        boolean appEnabled = context.getSharedPreferences(Constants.PREF_NAME, Context.MODE_PRIVATE)
-                .getBoolean(Constants.PREF_NOTIFICATIONS_ENABLED, true); // Default to enabled
+        boolean appEnabled = ThresholdConfig.get().areNotificationsEnabled(); // Default to enabled
         
         // Log all states for debugging
         if (Constants.ENABLE_DEBUG_LOGGING) {
@@ -324,21 +317,8 @@ public class NotificationUtils {
             return false;
         }
         
-        // Then check for specific type
-        String prefKey;
-        if (alertType.equalsIgnoreCase("dust")) {
-            prefKey = Constants.PREF_DUST_NOTIFICATIONS_ENABLED;
-        } else if (alertType.equalsIgnoreCase("noise")) {
-            prefKey = Constants.PREF_NOISE_NOTIFICATIONS_ENABLED;
-        } else if (alertType.equalsIgnoreCase("gas")) {
-            prefKey = Constants.PREF_GAS_NOTIFICATIONS_ENABLED;
-        } else {
-            // For unknown types, fall back to the global setting
-            return true;
-        }
-        
-        return context.getSharedPreferences(Constants.PREF_NAME, Context.MODE_PRIVATE)
-               .getBoolean(prefKey, true);
+        // Then check for specific type, unknown types fall back to the global setting
+        return ThresholdConfig.get().areNotificationsEnabledForType(alertType);
     }
     
     /**
@@ -350,6 +330,7 @@ public class NotificationUtils {
                 .edit()
                 .putBoolean(Constants.PREF_NOTIFICATIONS_ENABLED, enabled)
                 .apply();
+        ThresholdConfig.refresh(context);
         
         Log.d(Constants.TAG_MAIN, "Notifications " + (enabled ? "enabled" : "disabled") + " by user");
     }
@@ -376,6 +357,7 @@ public class NotificationUtils {
                 .edit()
                 .putBoolean(prefKey, enabled)
                 .apply();
+        ThresholdConfig.refresh(context);
         
         Log.d(Constants.TAG_MAIN, alertType + " notifications " + (enabled ? "enabled" : "disabled") + " by user");
     }
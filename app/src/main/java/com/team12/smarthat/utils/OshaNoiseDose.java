@@ -0,0 +1,64 @@
+package com.team12.smarthat.utils;
+
+/**
+ * osha noise exposure math over Constants.OSHA_NOISE_LEVELS / OSHA_EXPOSURE_TIMES
+ * - allowed time at a level is interpolated from the table, halving every exchange-rate dB
+ * - dose is the sum of (time at level / allowed time at level), 1.0 = 100%
+ * - the 8 hour twa is the steady level that would give the same dose in 8 hours
+ */
+public final class OshaNoiseDose {
+    private static final float[] LEVELS = Constants.OSHA_NOISE_LEVELS;
+    private static final long[] TIMES = Constants.OSHA_EXPOSURE_TIMES;
+
+    // 90 dB for 8 hours, the first table row
+    public static final float CRITERION_LEVEL = LEVELS[0];
+    public static final long CRITERION_MS = TIMES[0];
+    // dB per halving of the allowed time, 5 dB for the osha table
+    public static final double EXCHANGE_RATE = (LEVELS[LEVELS.length - 1] - LEVELS[0])
+            / log2((double) TIMES[0] / TIMES[TIMES.length - 1]);
+
+    private OshaNoiseDose() {
+    }
+
+    /**
+     *
+     * @param level sound level in dB
+     * @return ms the level may be sustained for a 100% dose, infinite below OSHA_DOSE_THRESHOLD
+     */
+    public static double allowedMs(float level) {
+        if (level < Constants.OSHA_DOSE_THRESHOLD) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // inside the table: interpolate log2(time) between the two rows around the level
+        for (int i = 1; i < LEVELS.length; i++) {
+            if (level <= LEVELS[i]) {
+                if (level < LEVELS[i - 1]) {
+                    break;
+                }
+                double fraction = (level - LEVELS[i - 1]) / (LEVELS[i] - LEVELS[i - 1]);
+                double log2Time = log2(TIMES[i - 1]) + fraction * (log2(TIMES[i]) - log2(TIMES[i - 1]));
+                return Math.pow(2, log2Time);
+            }
+        }
+        // outside it: extrapolate from the nearest end with the exchange rate
+        int anchor = level < LEVELS[0] ? 0 : LEVELS.length - 1;
+        return TIMES[anchor] / Math.pow(2, (level - LEVELS[anchor]) / EXCHANGE_RATE);
+    }
+
+    /**
+     *
+     * @param dose accumulated dose, 1.0 = 100%
+     * @return 8 hour time weighted average in dB, NaN for no dose
+     */
+    public static double twa(double dose) {
+        if (dose <= 0) {
+            return Double.NaN;
+        }
+        // the criterion duration is the 8 hours the twa is defined over
+        return CRITERION_LEVEL + EXCHANGE_RATE * log2(dose);
+    }
+
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
+}
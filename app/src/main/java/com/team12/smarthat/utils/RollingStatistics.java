@@ -0,0 +1,255 @@
+package com.team12.smarthat.utils;
+
+/**
+ * streaming statistics of one sensor in constant memory
+ * - ewma of the value with a time constant, so uneven sample spacing is handled
+ * - welford mean / variance since the start (or the last reset), e.g. over a shift
+ * - sliding window split into time buckets, each with its own welford state and
+ *   t-digest, expired buckets are recycled and live ones combined for a snapshot
+ * one writer adds, any thread may take snapshots
+ */
+public class RollingStatistics {
+    private final long ewmaTauMs;
+    private final long bucketMs;
+    private final Bucket[] buckets;
+    // merges the live buckets' digests for a snapshot
+    private final TDigest windowDigest;
+
+    private double ewma = Double.NaN;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private float latest = Float.NaN;
+
+    // since start
+    private long totalCount = 0;
+    private double totalMean = 0;
+    private double totalM2 = 0;
+
+    /**
+     *
+     * @param windowMs length of the sliding window
+     * @param bucketCount buckets the window is split into, it slides one bucket at a time
+     * @param ewmaTauMs ewma time constant, a reading this old has ~37% of the weight it had
+     * @param compression t-digest compression of each bucket
+     */
+    public RollingStatistics(long windowMs, int bucketCount, long ewmaTauMs, double compression) {
+        int count = Math.max(1, bucketCount);
+        this.bucketMs = Math.max(1, windowMs / count);
+        this.ewmaTauMs = Math.max(1, ewmaTauMs);
+        this.buckets = new Bucket[count];
+        for (int i = 0; i < count; i++) {
+            buckets[i] = new Bucket(compression);
+        }
+        this.windowDigest = new TDigest(compression);
+    }
+
+    /**
+     * add a reading, readings older than the window are only counted in the totals
+     */
+    public synchronized void add(long timestamp, float value) {
+        if (Float.isNaN(value)) {
+            return;
+        }
+
+        // ewma with alpha from the time since the previous reading
+        if (Double.isNaN(ewma)) {
+            ewma = value;
+        } else if (timestamp > lastTimestamp) {
+            double alpha = 1 - Math.exp(-(double) (timestamp - lastTimestamp) / ewmaTauMs);
+            ewma += alpha * (value - ewma);
+        }
+        if (timestamp >= lastTimestamp) {
+            lastTimestamp = timestamp;
+            latest = value;
+        }
+
+        totalCount++;
+        double delta = value - totalMean;
+        totalMean += delta / totalCount;
+        totalM2 += delta * (value - totalMean);
+
+        long index = Math.floorDiv(timestamp, bucketMs);
+        if (index <= Math.floorDiv(lastTimestamp, bucketMs) - buckets.length) {
+            return;
+        }
+        Bucket bucket = buckets[(int) Math.floorMod(index, (long) buckets.length)];
+        if (bucket.index != index) {
+            bucket.reset(index);
+        }
+        bucket.add(value);
+    }
+
+    /**
+     *
+     * @param now timestamp the window ends at, usually the latest reading's
+     * @return current values, window fields are NaN / 0 when the window is empty
+     */
+    public synchronized Snapshot snapshot(long now) {
+        long firstIndex = Math.floorDiv(now, bucketMs) - buckets.length + 1;
+        windowDigest.reset();
+        long count = 0;
+        double mean = 0;
+        double m2 = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (Bucket bucket : buckets) {
+            if (bucket.count == 0 || bucket.index < firstIndex || bucket.index > firstIndex + buckets.length - 1) {
+                continue;
+            }
+            // chan et al. parallel combination of the welford states
+            long combined = count + bucket.count;
+            double delta = bucket.mean - mean;
+            mean += delta * bucket.count / combined;
+            m2 += bucket.m2 + delta * delta * count * bucket.count / combined;
+            count = combined;
+            min = Math.min(min, bucket.digest.getMin());
+            max = Math.max(max, bucket.digest.getMax());
+            windowDigest.merge(bucket.digest);
+        }
+
+        return new Snapshot(latest, ewma,
+                totalCount, totalMean, totalCount > 1 ? Math.sqrt(totalM2 / (totalCount - 1)) : Double.NaN,
+                count, count > 0 ? mean : Double.NaN, count > 1 ? Math.sqrt(m2 / (count - 1)) : Double.NaN,
+                count > 0 ? min : Double.NaN, count > 0 ? max : Double.NaN,
+                windowDigest.quantile(0.5), windowDigest.quantile(0.95), windowDigest.quantile(0.99));
+    }
+
+    /**
+     *
+     * @return snapshot of the window ending at the latest reading
+     */
+    public synchronized Snapshot snapshot() {
+        return snapshot(lastTimestamp == Long.MIN_VALUE ? 0 : lastTimestamp);
+    }
+
+    /**
+     * start over, e.g. at the start of a shift
+     */
+    public synchronized void reset() {
+        ewma = Double.NaN;
+        lastTimestamp = Long.MIN_VALUE;
+        latest = Float.NaN;
+        totalCount = 0;
+        totalMean = 0;
+        totalM2 = 0;
+        for (Bucket bucket : buckets) {
+            bucket.reset(Long.MIN_VALUE);
+        }
+    }
+
+    private static class Bucket {
+        final TDigest digest;
+        long index = Long.MIN_VALUE;
+        long count = 0;
+        double mean = 0;
+        double m2 = 0;
+
+        Bucket(double compression) {
+            digest = new TDigest(compression);
+        }
+
+        void reset(long index) {
+            this.index = index;
+            count = 0;
+            mean = 0;
+            m2 = 0;
+            digest.reset();
+        }
+
+        void add(float value) {
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+            digest.add(value);
+        }
+    }
+
+    /**
+     * immutable copy handed to the ui and alert rules
+     */
+    public static class Snapshot {
+        private final float latest;
+        private final double ewma;
+        private final long totalCount;
+        private final double totalMean;
+        private final double totalStdDev;
+        private final long windowCount;
+        private final double windowMean;
+        private final double windowStdDev;
+        private final double windowMin;
+        private final double windowMax;
+        private final double p50;
+        private final double p95;
+        private final double p99;
+
+        Snapshot(float latest, double ewma, long totalCount, double totalMean, double totalStdDev,
+                 long windowCount, double windowMean, double windowStdDev, double windowMin, double windowMax,
+                 double p50, double p95, double p99) {
+            this.latest = latest;
+            this.ewma = ewma;
+            this.totalCount = totalCount;
+            this.totalMean = totalMean;
+            this.totalStdDev = totalStdDev;
+            this.windowCount = windowCount;
+            this.windowMean = windowMean;
+            this.windowStdDev = windowStdDev;
+            this.windowMin = windowMin;
+            this.windowMax = windowMax;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+        }
+
+        public float getLatest() {
+            return latest;
+        }
+
+        public double getEwma() {
+            return ewma;
+        }
+
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        public double getTotalMean() {
+            return totalMean;
+        }
+
+        public double getTotalStdDev() {
+            return totalStdDev;
+        }
+
+        public long getWindowCount() {
+            return windowCount;
+        }
+
+        public double getWindowMean() {
+            return windowMean;
+        }
+
+        public double getWindowStdDev() {
+            return windowStdDev;
+        }
+
+        public double getWindowMin() {
+            return windowMin;
+        }
+
+        public double getWindowMax() {
+            return windowMax;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public double getP95() {
+            return p95;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+    }
+}
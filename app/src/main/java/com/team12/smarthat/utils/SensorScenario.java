@@ -0,0 +1,348 @@
+package com.team12.smarthat.utils;
+
+import com.team12.smarthat.models.SensorData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * a scripted stretch of sensor data that comes out the same every time for the same seed
+ * shapes are laid on a sensor's timeline, a later shape wins where two overlap and
+ * time covered by no shape produces no samples
+ *
+ * usage:
+ *   new SensorScenario(seed, 30_000)
+ *       .rate(SensorData.TYPE_DUST, 10)
+ *       .ramp(SensorData.TYPE_DUST, 0, 20_000, 20f, 150f)
+ *       .dropout(SensorData.TYPE_DUST, 12_000, 14_000)
+ *       .generate(System.currentTimeMillis())
+ * offsets are ms from the start of the scenario
+ */
+public class SensorScenario {
+    private static final String[] TYPES = {SensorData.TYPE_DUST, SensorData.TYPE_NOISE, SensorData.TYPE_GAS};
+
+    /**
+     * one reading, delivered at offset ms into the scenario
+     * out of order bursts deliver a reading later than its timestamp says
+     */
+    public static class Sample {
+        private final long offsetMs;
+        private final String type;
+        private final float value;
+        private final long timestamp;
+
+        Sample(long offsetMs, String type, float value, long timestamp) {
+            this.offsetMs = offsetMs;
+            this.type = type;
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+
+        public long getOffsetMs() {
+            return offsetMs;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public float getValue() {
+            return value;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         *
+         * @return test-mode json for this reading ({"type","value","timestamp"}), not the
+         *         esp32's messageType/data/timeStamp format
+         */
+        public byte[] toPayload() {
+            return TestDataGenerator.payload(type, value, timestamp);
+        }
+
+        public SensorData toSensorData() {
+            SensorData data = new SensorData(type, value, timestamp);
+            data.setSource(SensorData.SOURCE_TEST);
+            return data;
+        }
+    }
+
+    private interface Shape {
+        // r is the sensor's own generator, only shapes that need randomness draw from it
+        float valueAt(long offsetMs, Random r);
+    }
+
+    private static class Segment {
+        final long startMs;
+        final long endMs;
+        final Shape shape;
+
+        Segment(long startMs, long endMs, Shape shape) {
+            this.startMs = startMs;
+            this.endMs = endMs;
+            this.shape = shape;
+        }
+
+        boolean covers(long offsetMs) {
+            return offsetMs >= startMs && offsetMs < endMs;
+        }
+    }
+
+    private static class Burst {
+        final long atMs;
+        final int count;
+
+        Burst(long atMs, int count) {
+            this.atMs = atMs;
+            this.count = count;
+        }
+    }
+
+    private final long seed;
+    private final long durationMs;
+    private final int[] ratesHz = new int[TYPES.length];
+    private final float[] jitter = new float[TYPES.length];
+    private final List<List<Segment>> segments = new ArrayList<>();
+    private final List<List<Segment>> dropouts = new ArrayList<>();
+    private final List<List<Burst>> bursts = new ArrayList<>();
+
+    /**
+     *
+     * @param seed every random draw in the scenario comes from this
+     * @param durationMs length of the scenario
+     */
+    public SensorScenario(long seed, long durationMs) {
+        if (durationMs <= 0) {
+            throw new IllegalArgumentException("Scenario duration must be positive: " + durationMs);
+        }
+        this.seed = seed;
+        this.durationMs = durationMs;
+        for (int i = 0; i < TYPES.length; i++) {
+            segments.add(new ArrayList<>());
+            dropouts.add(new ArrayList<>());
+            bursts.add(new ArrayList<>());
+        }
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * samples per second for a sensor, nothing is produced for a sensor without a rate
+     */
+    public SensorScenario rate(String type, int hz) {
+        if (hz < 0 || hz > TestDataGenerator.LoadProfile.MAX_RATE_HZ) {
+            throw new IllegalArgumentException("Rate must be between 0 and "
+                    + TestDataGenerator.LoadProfile.MAX_RATE_HZ + " Hz: " + hz);
+        }
+        ratesHz[indexOf(type)] = hz;
+        return this;
+    }
+
+    /**
+     * uniform measurement noise of +-amount added to every value of a sensor
+     */
+    public SensorScenario jitter(String type, float amount) {
+        jitter[indexOf(type)] = Math.abs(amount);
+        return this;
+    }
+
+    public SensorScenario constant(String type, long startMs, long endMs, float value) {
+        return add(type, startMs, endMs, (offset, r) -> value);
+    }
+
+    /**
+     * straight line from one value to another across the window
+     */
+    public SensorScenario ramp(String type, long startMs, long endMs, float from, float to) {
+        float slope = (to - from) / Math.max(1, endMs - startMs);
+        return add(type, startMs, endMs, (offset, r) -> from + slope * (offset - startMs));
+    }
+
+    /**
+     * square wave, high for the first dutyCycle of every period
+     * @param dutyCycle 0..1
+     */
+    public SensorScenario squarePulse(String type, long startMs, long endMs, float low, float high,
+                                      long periodMs, float dutyCycle) {
+        if (periodMs <= 0 || dutyCycle < 0f || dutyCycle > 1f) {
+            throw new IllegalArgumentException("Invalid pulse: period " + periodMs + ", duty " + dutyCycle);
+        }
+        long highMs = (long) (periodMs * dutyCycle);
+        return add(type, startMs, endMs, (offset, r) -> (offset - startMs) % periodMs < highMs ? high : low);
+    }
+
+    /**
+     * held around a level for the whole window, each sample within +-spread of it
+     * the noise sensor version is a sustained loud stretch for dose and alert checks
+     */
+    public SensorScenario sustained(String type, long startMs, long endMs, float level, float spread) {
+        return add(type, startMs, endMs, (offset, r) -> level + (r.nextFloat() * 2f - 1f) * spread);
+    }
+
+    /**
+     * sine around a mean, co2 rising and falling with occupancy or ventilation
+     */
+    public SensorScenario sine(String type, long startMs, long endMs, float mean, float amplitude, long periodMs) {
+        if (periodMs <= 0) {
+            throw new IllegalArgumentException("Sine period must be positive: " + periodMs);
+        }
+        double omega = 2 * Math.PI / periodMs;
+        return add(type, startMs, endMs,
+                (offset, r) -> mean + amplitude * (float) Math.sin(omega * (offset - startMs)));
+    }
+
+    /**
+     * no samples at all in the window, null for every sensor at once
+     */
+    public SensorScenario dropout(String type, long startMs, long endMs) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (type == null || TYPES[i].equals(type)) {
+                dropouts.get(i).add(new Segment(checkStart(startMs, endMs), endMs, null));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * the count samples from atMs on are delivered newest first, at their usual delivery times
+     */
+    public SensorScenario outOfOrderBurst(String type, long atMs, int count) {
+        if (count < 2) {
+            throw new IllegalArgumentException("An out of order burst needs at least 2 samples: " + count);
+        }
+        bursts.get(indexOf(type)).add(new Burst(atMs, count));
+        return this;
+    }
+
+    /**
+     * every sample of the scenario in delivery order, sensors in dust, noise, gas order on a tie
+     * @param startWallClockMs timestamp of offset 0
+     */
+    public List<Sample> generate(long startWallClockMs) {
+        List<Sample> all = new ArrayList<>();
+        for (int i = 0; i < TYPES.length; i++) {
+            if (ratesHz[i] > 0) {
+                all.addAll(generateSensor(i, startWallClockMs));
+            }
+        }
+        // stable, so ties keep sensor order
+        Collections.sort(all, (a, b) -> Long.compare(a.offsetMs, b.offsetMs));
+        return all;
+    }
+
+    private List<Sample> generateSensor(int sensor, long startWallClockMs) {
+        // a sensor's values don't depend on which other sensors are scripted
+        Random r = new Random(seed * 31 + sensor);
+        double periodMs = 1000.0 / ratesHz[sensor];
+        List<Segment> sensorSegments = segments.get(sensor);
+        List<Sample> samples = new ArrayList<>();
+
+        for (long n = 0; ; n++) {
+            long offset = Math.round(n * periodMs);
+            if (offset >= durationMs) {
+                break;
+            }
+            if (inDropout(sensor, offset)) {
+                continue;
+            }
+            Segment segment = null;
+            for (int i = sensorSegments.size() - 1; i >= 0; i--) {
+                if (sensorSegments.get(i).covers(offset)) {
+                    segment = sensorSegments.get(i);
+                    break;
+                }
+            }
+            if (segment == null) {
+                continue;
+            }
+
+            float value = segment.shape.valueAt(offset, r);
+            if (jitter[sensor] > 0f) {
+                value += (r.nextFloat() * 2f - 1f) * jitter[sensor];
+            }
+            // readings are never negative on the device
+            samples.add(new Sample(offset, TYPES[sensor], Math.max(0f, value), startWallClockMs + offset));
+        }
+
+        for (Burst burst : bursts.get(sensor)) {
+            reverse(samples, burst);
+        }
+        return samples;
+    }
+
+    // swap readings between delivery slots, delivery times stay where they were
+    private static void reverse(List<Sample> samples, Burst burst) {
+        int from = 0;
+        while (from < samples.size() && samples.get(from).offsetMs < burst.atMs) {
+            from++;
+        }
+        int to = Math.min(samples.size(), from + burst.count) - 1;
+        for (; from < to; from++, to--) {
+            Sample a = samples.get(from);
+            Sample b = samples.get(to);
+            samples.set(from, new Sample(a.offsetMs, b.type, b.value, b.timestamp));
+            samples.set(to, new Sample(b.offsetMs, a.type, a.value, a.timestamp));
+        }
+    }
+
+    private boolean inDropout(int sensor, long offsetMs) {
+        for (Segment dropout : dropouts.get(sensor)) {
+            if (dropout.covers(offsetMs)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private SensorScenario add(String type, long startMs, long endMs, Shape shape) {
+        segments.get(indexOf(type)).add(new Segment(checkStart(startMs, endMs), endMs, shape));
+        return this;
+    }
+
+    private static long checkStart(long startMs, long endMs) {
+        if (startMs < 0 || endMs <= startMs) {
+            throw new IllegalArgumentException("Invalid window: " + startMs + " to " + endMs);
+        }
+        return startMs;
+    }
+
+    private static int indexOf(String type) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equals(type)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sensor type: " + type);
+    }
+
+    /**
+     * two minutes that walk every alert path: dust ramps through its threshold, noise pulses
+     * then holds loud, co2 swings through its levels, with a dropout and an out of order burst
+     */
+    public static SensorScenario alertWalkthrough(long seed) {
+        return new SensorScenario(seed, 120_000)
+                .rate(SensorData.TYPE_DUST, 2)
+                .rate(SensorData.TYPE_NOISE, 4)
+                .rate(SensorData.TYPE_GAS, 1)
+                .jitter(SensorData.TYPE_DUST, 2f)
+                .jitter(SensorData.TYPE_GAS, 10f)
+                .ramp(SensorData.TYPE_DUST, 0, 60_000, 20f, Constants.DUST_THRESHOLD + 60f)
+                .ramp(SensorData.TYPE_DUST, 60_000, 120_000, Constants.DUST_THRESHOLD + 60f, 20f)
+                .squarePulse(SensorData.TYPE_NOISE, 0, 60_000, 55f, Constants.NOISE_THRESHOLD + 10f, 10_000, 0.2f)
+                .sustained(SensorData.TYPE_NOISE, 60_000, 120_000, Constants.NOISE_THRESHOLD + 5f, 3f)
+                .sine(SensorData.TYPE_GAS, 0, 120_000, 1000f, 700f, 60_000)
+                .dropout(null, 40_000, 45_000)
+                .outOfOrderBurst(SensorData.TYPE_NOISE, 90_000, 6);
+    }
+}
@@ -0,0 +1,223 @@
+package com.team12.smarthat.utils;
+
+/**
+ * merging t-digest for streaming percentiles in bounded memory
+ * - values are buffered, then sorted and merged into weighted centroids
+ * - a centroid may span at most one unit of the scale k(q) = compression / (2 pi) * asin(2q - 1),
+ *   so centroids stay small near the tails where p95 / p99 are read and their number
+ *   is bounded by the compression, not by how many values went in
+ * - digests merge, so per-bucket digests can be combined into a window
+ * arrays are allocated once, add() and merge() allocate nothing
+ * not thread safe
+ */
+public class TDigest {
+    private final double compression;
+    private final double[] means;
+    private final double[] weights;
+    private int centroidCount = 0;
+    private double centroidWeight = 0;
+
+    // values not yet merged into centroids
+    private final double[] bufferMeans;
+    private final double[] bufferWeights;
+    private int bufferCount = 0;
+
+    // merge scratch, centroids and buffer sorted together
+    private final double[] sortMeans;
+    private final double[] sortWeights;
+
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     *
+     * @param compression accuracy vs size, ~100 keeps p99 within a fraction of a percent
+     */
+    public TDigest(double compression) {
+        this.compression = Math.max(10, compression);
+        // k spans compression / 2 units, merging leaves fewer than twice that many centroids
+        int capacity = (int) Math.ceil(2 * this.compression);
+        means = new double[capacity];
+        weights = new double[capacity];
+        bufferMeans = new double[capacity * 4];
+        bufferWeights = new double[capacity * 4];
+        sortMeans = new double[capacity * 5];
+        sortWeights = new double[capacity * 5];
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void add(double value, double weight) {
+        if (Double.isNaN(value) || weight <= 0) {
+            return;
+        }
+        if (bufferCount == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[bufferCount] = value;
+        bufferWeights[bufferCount] = weight;
+        bufferCount++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * fold another digest's values into this one, the other is left unchanged
+     */
+    public void merge(TDigest other) {
+        for (int i = 0; i < other.centroidCount; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        for (int i = 0; i < other.bufferCount; i++) {
+            add(other.bufferMeans[i], other.bufferWeights[i]);
+        }
+    }
+
+    /**
+     *
+     * @return total weight added, the value count when every weight is 1
+     */
+    public double size() {
+        double buffered = 0;
+        for (int i = 0; i < bufferCount; i++) {
+            buffered += bufferWeights[i];
+        }
+        return centroidWeight + buffered;
+    }
+
+    public void reset() {
+        centroidCount = 0;
+        centroidWeight = 0;
+        bufferCount = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     *
+     * @param quantile between 0 and 1, e.g. 0.99
+     * @return approximate value at that quantile, NaN when empty
+     */
+    public double quantile(double quantile) {
+        compress();
+        if (centroidCount == 0) {
+            return Double.NaN;
+        }
+        if (centroidCount == 1) {
+            return means[0];
+        }
+
+        double target = Math.max(0, Math.min(1, quantile)) * centroidWeight;
+        // each centroid's weight is centred on its mean, min and max anchor the ends
+        if (target < weights[0] / 2) {
+            return min + (means[0] - min) * target / (weights[0] / 2);
+        }
+        double cumulative = weights[0] / 2;
+        for (int i = 0; i < centroidCount - 1; i++) {
+            double step = (weights[i] + weights[i + 1]) / 2;
+            if (target < cumulative + step) {
+                return means[i] + (means[i + 1] - means[i]) * (target - cumulative) / step;
+            }
+            cumulative += step;
+        }
+        double lastHalf = weights[centroidCount - 1] / 2;
+        double fraction = lastHalf > 0 ? Math.min(1, (target - cumulative) / lastHalf) : 1;
+        return means[centroidCount - 1] + (max - means[centroidCount - 1]) * fraction;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * merge buffered values into the centroids
+     */
+    private void compress() {
+        if (bufferCount == 0) {
+            return;
+        }
+
+        int count = 0;
+        double total = centroidWeight;
+        for (int i = 0; i < centroidCount; i++) {
+            sortMeans[count] = means[i];
+            sortWeights[count] = weights[i];
+            count++;
+        }
+        for (int i = 0; i < bufferCount; i++) {
+            sortMeans[count] = bufferMeans[i];
+            sortWeights[count] = bufferWeights[i];
+            total += bufferWeights[i];
+            count++;
+        }
+        bufferCount = 0;
+        sort(sortMeans, sortWeights, 0, count - 1);
+
+        // greedy pass: grow the current centroid while it spans at most one k unit
+        int out = 0;
+        means[0] = sortMeans[0];
+        weights[0] = sortWeights[0];
+        double before = 0;
+        double kLeft = scale(0);
+        for (int i = 1; i < count; i++) {
+            double merged = weights[out] + sortWeights[i];
+            if (scale((before + merged) / total) - kLeft <= 1 || out == means.length - 1) {
+                means[out] += (sortMeans[i] - means[out]) * sortWeights[i] / merged;
+                weights[out] = merged;
+            } else {
+                before += weights[out];
+                kLeft = scale(before / total);
+                out++;
+                means[out] = sortMeans[i];
+                weights[out] = sortWeights[i];
+            }
+        }
+        centroidCount = out + 1;
+        centroidWeight = total;
+    }
+
+    private double scale(double quantile) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, quantile) - 1);
+    }
+
+    // quicksort of the means, weights follow along
+    private static void sort(double[] keys, double[] values, int low, int high) {
+        while (low < high) {
+            double pivot = keys[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    double key = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = key;
+                    double value = values[i];
+                    values[i] = values[j];
+                    values[j] = value;
+                    i++;
+                    j--;
+                }
+            }
+            // recurse into the smaller side, loop on the larger
+            if (j - low < high - i) {
+                sort(keys, values, low, j);
+                low = i;
+            } else {
+                sort(keys, values, i, high);
+                high = j;
+            }
+        }
+    }
+}
@@ -12,9 +12,15 @@ import com.team12.smarthat.models.SensorData;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 
 public class TestDataGenerator {
@@ -54,7 +60,7 @@ public class TestDataGenerator {
     private final Random random = new Random();
     
     // Mock connection manager for test mode simulation
-    private MockBleConnectionManager mockBleManager;
+    private volatile MockBleConnectionManager mockBleManager;
     
     // Simulated characteristic objects for test data
     private BluetoothGattCharacteristic dustCharacteristic;
@@ -68,6 +74,93 @@ public class TestDataGenerator {
     
     private TestDataListener legacyListener;
     
+    /**
+     * settings for the load test, rates are per sensor in Hz and 0 leaves a sensor silent
+     */
+    public static class LoadProfile {
+        public static final int MAX_RATE_HZ = 1000;
+
+        public enum Shape {
+            STEADY, // evenly spaced
+            JITTER, // each emission moved by up to +-jitter/2 of a period, mean rate kept
+            BURST   // burstSize back to back, then idle long enough to keep the mean rate
+        }
+
+        private int dustHz;
+        private int noiseHz;
+        private int gasHz;
+        private Shape shape = Shape.STEADY;
+        private float jitter = 0.5f;
+        private int burstSize = 10;
+        private long durationMs = 0;
+        private long seed = System.nanoTime();
+
+        public LoadProfile(int dustHz, int noiseHz, int gasHz) {
+            this.dustHz = checkRate(dustHz);
+            this.noiseHz = checkRate(noiseHz);
+            this.gasHz = checkRate(gasHz);
+        }
+
+        public LoadProfile setShape(Shape shape) {
+            this.shape = shape;
+            return this;
+        }
+
+        /**
+         * @param jitter 0..1, fraction of a period an emission may move by
+         */
+        public LoadProfile setJitter(float jitter) {
+            if (jitter < 0f || jitter > 1f) {
+                throw new IllegalArgumentException("Jitter must be between 0 and 1: " + jitter);
+            }
+            this.jitter = jitter;
+            return this;
+        }
+
+        public LoadProfile setBurstSize(int burstSize) {
+            if (burstSize < 1) {
+                throw new IllegalArgumentException("Burst size must be at least 1: " + burstSize);
+            }
+            this.burstSize = burstSize;
+            return this;
+        }
+
+        /**
+         * @param durationMs stop by itself after this long, 0 runs until stopLoadTest()
+         */
+        public LoadProfile setDurationMs(long durationMs) {
+            this.durationMs = Math.max(0, durationMs);
+            return this;
+        }
+
+        public LoadProfile setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        private static int checkRate(int hz) {
+            if (hz < 0 || hz > MAX_RATE_HZ) {
+                throw new IllegalArgumentException("Rate must be between 0 and " + MAX_RATE_HZ + " Hz: " + hz);
+            }
+            return hz;
+        }
+    }
+
+    /**
+     * where load test payloads go, MockBleConnectionManager unless replaced in tests
+     */
+    interface PayloadSink {
+        void deliver(UUID uuid, byte[] payload);
+    }
+
+    private PayloadSink loadSink;
+    private final AtomicInteger activeEmitters = new AtomicInteger(0);
+    private final AtomicLong[] loadEmitted = {new AtomicLong(), new AtomicLong(), new AtomicLong()};
+    private final AtomicLong maxLoadLagNanos = new AtomicLong();
+    private volatile boolean loadRunning = false;
+    private Thread[] loadThreads;
+    private volatile Thread scenarioThread;
+    
     
     public void setMockBleManager(MockBleConnectionManager manager) {
         this.mockBleManager = manager;
@@ -375,7 +468,288 @@ public class TestDataGenerator {
         return data;
     }
     
+    /**
+     * emit from all three sensors at once, each on its own thread, through the mock manager
+     * every emission is a new characteristic so nothing queued behind it sees its value change
+     * @return false if no mock manager is set or a load test is already running
+     */
+    public synchronized boolean startLoadTest(LoadProfile profile) {
+        // emitters of a stopped run may still be finishing their last payload
+        if (hasLoadEmitters() || (loadSink == null && mockBleManager == null)) {
+            return false;
+        }
+
+        for (AtomicLong count : loadEmitted) {
+            count.set(0);
+        }
+        maxLoadLagNanos.set(0);
+        loadRunning = true;
+
+        int[] rates = {profile.dustHz, profile.noiseHz, profile.gasHz};
+        String[] types = {SensorData.TYPE_DUST, SensorData.TYPE_NOISE, SensorData.TYPE_GAS};
+        UUID[] uuids = {ESP32BluetoothSpec.DUST_CHARACTERISTIC_UUID,
+                ESP32BluetoothSpec.SOUND_CHARACTERISTIC_UUID, ESP32BluetoothSpec.GAS_CHARACTERISTIC_UUID};
+        PayloadSink sink = loadSink != null ? loadSink : this::deliverToMockManager;
+        long deadline = profile.durationMs > 0
+                ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(profile.durationMs) : Long.MAX_VALUE;
+
+        loadThreads = new Thread[types.length];
+        for (int i = 0; i < types.length; i++) {
+            if (rates[i] == 0) {
+                continue;
+            }
+            final int sensor = i;
+            // seeded per sensor so one profile always produces the same values and spacing
+            Random rng = new Random(profile.seed * 31 + i);
+            activeEmitters.incrementAndGet();
+            loadThreads[i] = new Thread(() -> runEmitter(profile, rates[sensor], types[sensor], uuids[sensor],
+                    loadEmitted[sensor], rng, sink, deadline), "LoadGen-" + types[i]);
+            loadThreads[i].start();
+        }
+        if (activeEmitters.get() == 0) {
+            loadRunning = false;
+            loadThreads = null;
+            return false;
+        }
+
+        Log.d(TAG, "Load test started: dust " + profile.dustHz + " Hz, noise " + profile.noiseHz
+                + " Hz, gas " + profile.gasHz + " Hz, " + profile.shape);
+        return true;
+    }
+
+    /**
+     * tell the emitters to stop without waiting for them, safe on the main thread
+     * each one finishes the payload it is delivering and exits
+     */
+    public synchronized void stopLoadTest() {
+        if (loadThreads == null) {
+            return;
+        }
+        loadRunning = false;
+        for (Thread thread : loadThreads) {
+            if (thread != null) {
+                // wakes an emitter parked until its next slot
+                thread.interrupt();
+            }
+        }
+        loadThreads = null;
+    }
+
+    /**
+     *
+     * @return true while at least one sensor is still emitting and the test wasn't stopped
+     */
+    public boolean isLoadTestActive() {
+        return loadRunning && hasLoadEmitters();
+    }
+
+    /**
+     *
+     * @return true until every emitter thread, stopped or not, has exited
+     */
+    boolean hasLoadEmitters() {
+        return activeEmitters.get() > 0;
+    }
+
+    public long getLoadEmittedCount(String sensorType) {
+        switch (sensorType) {
+            case SensorData.TYPE_DUST:
+                return loadEmitted[0].get();
+            case SensorData.TYPE_NOISE:
+                return loadEmitted[1].get();
+            case SensorData.TYPE_GAS:
+                return loadEmitted[2].get();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     *
+     * @return furthest any emitter fell behind its schedule, the sink couldn't keep up if this grows
+     */
+    public long getMaxLoadLagNanos() {
+        return maxLoadLagNanos.get();
+    }
+
+    void setPayloadSink(PayloadSink sink) {
+        this.loadSink = sink;
+    }
+
+    private void runEmitter(LoadProfile profile, int hz, String type, UUID uuid, AtomicLong emitted,
+                            Random rng, PayloadSink sink, long deadline) {
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / hz;
+        int perWake = profile.shape == LoadProfile.Shape.BURST ? profile.burstSize : 1;
+        long slotNanos = periodNanos * perWake;
+        long base = System.nanoTime();
+
+        try {
+            while (loadRunning) {
+                long target = base;
+                if (profile.shape == LoadProfile.Shape.JITTER) {
+                    target += (long) ((rng.nextDouble() - 0.5) * profile.jitter * periodNanos);
+                }
+                if (target >= deadline) {
+                    break;
+                }
+
+                long now;
+                while (loadRunning && (now = System.nanoTime()) < target) {
+                    LockSupport.parkNanos(target - now);
+                }
+                if (!loadRunning) {
+                    break;
+                }
+                updateMaxLag(System.nanoTime() - target);
+
+                for (int i = 0; i < perWake && loadRunning; i++) {
+                    sink.deliver(uuid, loadPayload(type, rng));
+                    emitted.incrementAndGet();
+                }
+                base += slotNanos;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Load test emitter for " + type + " failed: " + e.getMessage(), e);
+        } finally {
+            if (activeEmitters.decrementAndGet() == 0) {
+                Log.d(TAG, "Load test finished: " + getLoadEmittedCount(SensorData.TYPE_DUST) + " dust, "
+                        + getLoadEmittedCount(SensorData.TYPE_NOISE) + " noise, "
+                        + getLoadEmittedCount(SensorData.TYPE_GAS) + " gas, max lag "
+                        + TimeUnit.NANOSECONDS.toMillis(getMaxLoadLagNanos()) + "ms");
+            }
+        }
+    }
+
+    private void updateMaxLag(long lagNanos) {
+        long current;
+        while (lagNanos > (current = maxLoadLagNanos.get())) {
+            if (maxLoadLagNanos.compareAndSet(current, lagNanos)) {
+                return;
+            }
+        }
+    }
+
+    private static byte[] loadPayload(String type, Random rng) {
+        float value;
+        switch (type) {
+            case SensorData.TYPE_DUST:
+                value = MIN_DUST_VALUE + rng.nextFloat() * (MAX_DUST_VALUE - MIN_DUST_VALUE);
+                break;
+            case SensorData.TYPE_NOISE:
+                value = MIN_NOISE_VALUE + rng.nextFloat() * (MAX_NOISE_VALUE - MIN_NOISE_VALUE);
+                break;
+            default:
+                value = MIN_GAS_VALUE + rng.nextFloat() * (MAX_GAS_VALUE - MIN_GAS_VALUE);
+                break;
+        }
+        return payload(type, value, System.currentTimeMillis());
+    }
+
+    // test-mode json, the same shape the generators above build with JSONObject, not the esp32's
+    // messageType/data/timeStamp format. built directly since JSONObject would dominate at 1000 Hz
+    static byte[] payload(String type, float value, long timestamp) {
+        String json = "{\"type\":\"" + type + "\",\"value\":" + value + ",\"timestamp\":" + timestamp + "}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * play a scripted scenario through the mock manager in real time, timestamps start now
+     * @return false if no mock manager is set or a scenario is already playing
+     */
+    public synchronized boolean startScenario(SensorScenario scenario) {
+        if (isScenarioActive() || (loadSink == null && mockBleManager == null)) {
+            return false;
+        }
+        PayloadSink sink = loadSink != null ? loadSink : this::deliverToMockManager;
+        List<SensorScenario.Sample> samples = scenario.generate(System.currentTimeMillis());
+        scenarioThread = new Thread(() -> playScenario(samples, sink), "ScenarioPlayer");
+        scenarioThread.start();
+        Log.d(TAG, "Scenario started: seed " + scenario.getSeed() + ", " + samples.size() + " samples over "
+                + scenario.getDurationMs() + "ms");
+        return true;
+    }
+
+    /**
+     * stop the playing scenario without waiting for its thread, called on the main thread
+     * the player checks before every sample, at most the one being delivered still arrives
+     */
+    public synchronized void stopScenario() {
+        Thread thread = scenarioThread;
+        if (thread == null) {
+            return;
+        }
+        scenarioThread = null;
+        thread.interrupt();
+    }
+
+    public boolean isScenarioActive() {
+        Thread thread = scenarioThread;
+        return thread != null && thread.isAlive();
+    }
+
+    /**
+     * reseed the preset test modes, the same seed gives the same values in the same order
+     */
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    private void playScenario(List<SensorScenario.Sample> samples, PayloadSink sink) {
+        long start = System.nanoTime();
+        try {
+            for (SensorScenario.Sample sample : samples) {
+                long target = start + TimeUnit.MILLISECONDS.toNanos(sample.getOffsetMs());
+                long now;
+                while ((now = System.nanoTime()) < target) {
+                    LockSupport.parkNanos(target - now);
+                    if (!isPlaying()) {
+                        return;
+                    }
+                }
+                // samples that are already due skip the wait, stopped is checked again here
+                if (!isPlaying()) {
+                    return;
+                }
+                sink.deliver(uuidOf(sample.getType()), sample.toPayload());
+            }
+            Log.d(TAG, "Scenario finished");
+        } catch (Exception e) {
+            Log.e(TAG, "Scenario playback failed: " + e.getMessage(), e);
+        }
+    }
+
+    // false once stopScenario let go of this thread, the sink may have swallowed the interrupt
+    private boolean isPlaying() {
+        Thread current = Thread.currentThread();
+        return scenarioThread == current && !current.isInterrupted();
+    }
+
+    private static UUID uuidOf(String type) {
+        switch (type) {
+            case SensorData.TYPE_DUST:
+                return ESP32BluetoothSpec.DUST_CHARACTERISTIC_UUID;
+            case SensorData.TYPE_NOISE:
+                return ESP32BluetoothSpec.SOUND_CHARACTERISTIC_UUID;
+            default:
+                return ESP32BluetoothSpec.GAS_CHARACTERISTIC_UUID;
+        }
+    }
+
+    private void deliverToMockManager(UUID uuid, byte[] payload) {
+        MockBleConnectionManager manager = mockBleManager;
+        if (manager == null) {
+            return;
+        }
+        BluetoothGattCharacteristic characteristic = new BluetoothGattCharacteristic(uuid,
+                BluetoothGattCharacteristic.PROPERTY_READ | BluetoothGattCharacteristic.PROPERTY_NOTIFY,
+                BluetoothGattCharacteristic.PERMISSION_READ);
+        characteristic.setValue(payload);
+        manager.simulateCharacteristicChange(characteristic);
+    }
+
     public void cleanup() {
+        stopLoadTest();
+        stopScenario();
         stopTestMode();
         handler.removeCallbacksAndMessages(null);
         legacyListener = null;
@@ -0,0 +1,196 @@
+package com.team12.smarthat.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.team12.smarthat.models.SensorData;
+
+import java.util.Objects;
+
+/**
+ * immutable snapshot of the user's thresholds and alert switches
+ * - read from shared preferences once, then published through a volatile field
+ * - a preference listener replaces the snapshot when settings change,
+ *   writers that need the new values right away call refresh() after apply()
+ * - per-sample code takes get() once and reads plain fields, no prefs or map lookups
+ */
+public final class ThresholdConfig {
+    private static volatile ThresholdConfig current = defaults();
+    private static SharedPreferences preferences;
+    // shared preferences only keep a weak reference to listeners
+    private static SharedPreferences.OnSharedPreferenceChangeListener listener;
+
+    private final float dustThreshold;
+    private final float noiseThreshold;
+    private final float gasThreshold;
+    private final boolean notificationsEnabled;
+    private final boolean dustNotificationsEnabled;
+    private final boolean noiseNotificationsEnabled;
+    private final boolean gasNotificationsEnabled;
+
+    public ThresholdConfig(float dustThreshold, float noiseThreshold, float gasThreshold,
+                           boolean notificationsEnabled, boolean dustNotificationsEnabled,
+                           boolean noiseNotificationsEnabled, boolean gasNotificationsEnabled) {
+        this.dustThreshold = dustThreshold;
+        this.noiseThreshold = noiseThreshold;
+        this.gasThreshold = gasThreshold;
+        this.notificationsEnabled = notificationsEnabled;
+        this.dustNotificationsEnabled = dustNotificationsEnabled;
+        this.noiseNotificationsEnabled = noiseNotificationsEnabled;
+        this.gasNotificationsEnabled = gasNotificationsEnabled;
+    }
+
+    /**
+     * load the snapshot and follow preference changes, call once from AppController
+     */
+    public static synchronized void initialize(Context context) {
+        if (preferences != null) {
+            return;
+        }
+        preferences = context.getApplicationContext().getSharedPreferences(Constants.PREF_NAME, Context.MODE_PRIVATE);
+        listener = (prefs, key) -> {
+            if (isConfigKey(key)) {
+                current = fromPreferences(prefs);
+            }
+        };
+        preferences.registerOnSharedPreferenceChangeListener(listener);
+        current = fromPreferences(preferences);
+    }
+
+    /**
+     *
+     * @return current snapshot, defaults until initialize() ran
+     */
+    public static ThresholdConfig get() {
+        return current;
+    }
+
+    /**
+     * re-read the preferences now instead of waiting for the listener,
+     * which runs later on the main thread. logs only when a value changed
+     */
+    public static void refresh(Context context) {
+        SharedPreferences prefs = preferences != null ? preferences
+                : context.getApplicationContext().getSharedPreferences(Constants.PREF_NAME, Context.MODE_PRIVATE);
+        ThresholdConfig previous = current;
+        ThresholdConfig refreshed = fromPreferences(prefs);
+        current = refreshed;
+        if (!refreshed.equals(previous)) {
+            Log.d(Constants.TAG_MAIN, "Threshold config changed: " + refreshed);
+        }
+    }
+
+    public static ThresholdConfig defaults() {
+        return new ThresholdConfig(Constants.DUST_THRESHOLD, Constants.NOISE_THRESHOLD, Constants.GAS_THRESHOLD,
+                true, true, true, true);
+    }
+
+    static ThresholdConfig fromPreferences(SharedPreferences prefs) {
+        return new ThresholdConfig(
+                prefs.getFloat(Constants.PREF_DUST_THRESHOLD, Constants.DUST_THRESHOLD),
+                prefs.getFloat(Constants.PREF_NOISE_THRESHOLD, Constants.NOISE_THRESHOLD),
+                prefs.getFloat(Constants.PREF_GAS_THRESHOLD, Constants.GAS_THRESHOLD),
+                prefs.getBoolean(Constants.PREF_NOTIFICATIONS_ENABLED, true),
+                prefs.getBoolean(Constants.PREF_DUST_NOTIFICATIONS_ENABLED, true),
+                prefs.getBoolean(Constants.PREF_NOISE_NOTIFICATIONS_ENABLED, true),
+                prefs.getBoolean(Constants.PREF_GAS_NOTIFICATIONS_ENABLED, true));
+    }
+
+    private static boolean isConfigKey(String key) {
+        // null when the preferences were cleared
+        return key == null
+                || Constants.PREF_DUST_THRESHOLD.equals(key)
+                || Constants.PREF_NOISE_THRESHOLD.equals(key)
+                || Constants.PREF_GAS_THRESHOLD.equals(key)
+                || Constants.PREF_NOTIFICATIONS_ENABLED.equals(key)
+                || Constants.PREF_DUST_NOTIFICATIONS_ENABLED.equals(key)
+                || Constants.PREF_NOISE_NOTIFICATIONS_ENABLED.equals(key)
+                || Constants.PREF_GAS_NOTIFICATIONS_ENABLED.equals(key);
+    }
+
+    public float getDustThreshold() {
+        return dustThreshold;
+    }
+
+    public float getNoiseThreshold() {
+        return noiseThreshold;
+    }
+
+    public float getGasThreshold() {
+        return gasThreshold;
+    }
+
+    /**
+     *
+     * @param sensorType sensor type (SensorData.TYPE_*)
+     * @return threshold of that sensor, Float.MAX_VALUE for unknown sensors so they never breach
+     */
+    public float thresholdFor(String sensorType) {
+        if (SensorData.TYPE_DUST.equals(sensorType)) {
+            return dustThreshold;
+        } else if (SensorData.TYPE_NOISE.equals(sensorType)) {
+            return noiseThreshold;
+        } else if (SensorData.TYPE_GAS.equals(sensorType)) {
+            return gasThreshold;
+        }
+        return Float.MAX_VALUE;
+    }
+
+    public boolean isBreach(SensorData data) {
+        return data.getValue() > thresholdFor(data.getSensorType());
+    }
+
+    /**
+     * the master switch only, system permission is checked by NotificationUtils
+     */
+    public boolean areNotificationsEnabled() {
+        return notificationsEnabled;
+    }
+
+    /**
+     *
+     * @param alertType dust, noise or gas, case insensitive
+     * @return false if the type is switched off, unknown types follow the master switch only
+     */
+    public boolean areNotificationsEnabledForType(String alertType) {
+        if ("dust".equalsIgnoreCase(alertType)) {
+            return dustNotificationsEnabled;
+        } else if ("noise".equalsIgnoreCase(alertType)) {
+            return noiseNotificationsEnabled;
+        } else if ("gas".equalsIgnoreCase(alertType)) {
+            return gasNotificationsEnabled;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ThresholdConfig)) {
+            return false;
+        }
+        ThresholdConfig other = (ThresholdConfig) o;
+        return Float.compare(dustThreshold, other.dustThreshold) == 0
+                && Float.compare(noiseThreshold, other.noiseThreshold) == 0
+                && Float.compare(gasThreshold, other.gasThreshold) == 0
+                && notificationsEnabled == other.notificationsEnabled
+                && dustNotificationsEnabled == other.dustNotificationsEnabled
+                && noiseNotificationsEnabled == other.noiseNotificationsEnabled
+                && gasNotificationsEnabled == other.gasNotificationsEnabled;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(dustThreshold, noiseThreshold, gasThreshold, notificationsEnabled,
+                dustNotificationsEnabled, noiseNotificationsEnabled, gasNotificationsEnabled);
+    }
+
+    @Override
+    public String toString() {
+        return "dust=" + dustThreshold + ", noise=" + noiseThreshold + ", gas=" + gasThreshold
+                + ", notifications=" + notificationsEnabled;
+    }
+}
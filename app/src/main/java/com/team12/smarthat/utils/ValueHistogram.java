@@ -0,0 +1,68 @@
+package com.team12.smarthat.utils;
+
+/**
+ * fixed-bin histogram for approximate percentiles in a single pass
+ * the range is known up front (e.g. min/max from sql) so binning is one
+ * multiply and nothing is allocated per value
+ * error is at most one bin width, (max - min) / bins
+ */
+public class ValueHistogram {
+    private final float min;
+    private final float max;
+    private final float binWidth;
+    private final int[] bins;
+    private int count = 0;
+
+    /**
+     *
+     * @param min lowest value that will be added
+     * @param max highest value that will be added
+     * @param binCount number of bins, more bins means finer percentiles
+     */
+    public ValueHistogram(float min, float max, int binCount) {
+        this.min = min;
+        this.max = max;
+        this.bins = new int[Math.max(1, binCount)];
+        this.binWidth = (max - min) / bins.length;
+    }
+
+    /**
+     * count a value, values outside the range land in the first or last bin
+     */
+    public void add(float value) {
+        int bin = binWidth > 0 ? (int) ((value - min) / binWidth) : 0;
+        bins[Math.max(0, Math.min(bins.length - 1, bin))]++;
+        count++;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     *
+     * @param quantile between 0 and 1, e.g. 0.95
+     * @return approximate value below which that share of the values falls, NaN when empty
+     */
+    public float percentile(double quantile) {
+        if (count == 0) {
+            return Float.NaN;
+        }
+
+        // nearest-rank target, then interpolate inside the bin that holds it
+        double rank = Math.max(1.0, Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < bins.length; i++) {
+            if (bins[i] == 0) {
+                continue;
+            }
+            if (seen + bins[i] >= rank) {
+                double fraction = (rank - seen) / bins[i];
+                float value = (float) (min + (i + fraction) * binWidth);
+                return Math.max(min, Math.min(max, value));
+            }
+            seen += bins[i];
+        }
+        return max;
+    }
+}
@@ -0,0 +1,205 @@
+package com.team12.smarthat.bluetooth.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BleCaptureRecorderTest {
+
+    private static final UUID DUST = UUID.fromString("12345678-1234-5678-1234-56789abcdef1");
+    private static final UUID GAS = UUID.fromString("12345678-1234-5678-1234-56789abcdef3");
+
+    private File captureFile;
+
+    @Before
+    public void setUp() throws IOException {
+        captureFile = File.createTempFile("ble_capture", ".shcap");
+    }
+
+    @After
+    public void tearDown() {
+        captureFile.delete();
+    }
+
+    @Test
+    public void payloads_writtenWithUuidDefinedOnceAndNanosKept() throws IOException {
+        BleCaptureRecorder recorder = new BleCaptureRecorder(captureFile, 4096, 60000);
+        assertTrue(recorder.start(1000L, 5000L));
+
+        recorder.record(DUST, new byte[]{1, 2, 3}, 5001L);
+        recorder.record(GAS, new byte[]{4}, 5002L);
+        recorder.record(DUST, new byte[]{5, 6}, 5003L);
+        recorder.stop();
+
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(captureFile.toPath()));
+        assertEquals(in.capacity(), recorder.getBytesWritten());
+        assertEquals(BleCaptureRecorder.MAGIC, in.getInt());
+        assertEquals(BleCaptureRecorder.VERSION, in.get());
+        assertEquals(1000L, in.getLong());
+        assertEquals(5000L, in.getLong());
+
+        assertUuid(in, 0, DUST);
+        assertPayload(in, 0, 5001L, new byte[]{1, 2, 3});
+        assertUuid(in, 1, GAS);
+        assertPayload(in, 1, 5002L, new byte[]{4});
+        // dust is already defined
+        assertPayload(in, 0, 5003L, new byte[]{5, 6});
+        assertFalse(in.hasRemaining());
+        assertEquals(3, recorder.getRecordCount());
+        assertEquals(0, recorder.getDroppedCount());
+    }
+
+    @Test
+    public void recordThatDoesNotFit_isDroppedNotBlocked() {
+        // room for the header of one record but not its uuid definition too
+        BleCaptureRecorder recorder = new BleCaptureRecorder(captureFile, 20, 60000);
+        assertTrue(recorder.start(0L, 0L));
+
+        recorder.record(DUST, new byte[]{1}, 1L);
+        recorder.stop();
+
+        assertEquals(0, recorder.getRecordCount());
+        assertEquals(1, recorder.getDroppedCount());
+        assertEquals(BleCaptureRecorder.HEADER_SIZE, captureFile.length());
+    }
+
+    @Test
+    public void afterStop_recordsAreIgnored() {
+        BleCaptureRecorder recorder = new BleCaptureRecorder(captureFile, 4096, 60000);
+        assertTrue(recorder.start(0L, 0L));
+        recorder.stop();
+
+        recorder.record(DUST, new byte[]{1}, 1L);
+
+        assertFalse(recorder.isRecording());
+        assertEquals(0, recorder.getRecordCount());
+        assertEquals(BleCaptureRecorder.HEADER_SIZE, captureFile.length());
+    }
+
+    @Test
+    public void sizeLimit_endsTheCaptureAndTellsTheListenerOnce() {
+        // header, dust uuid and two 3 byte payloads fit, the third doesn't
+        long limit = BleCaptureRecorder.HEADER_SIZE + BleCaptureRecorder.UUID_RECORD_SIZE
+                + 2 * (BleCaptureRecorder.PAYLOAD_RECORD_HEADER_SIZE + 3);
+        BleCaptureRecorder recorder = new BleCaptureRecorder(captureFile, 4096, 60000, limit);
+        AtomicInteger notified = new AtomicInteger();
+        recorder.setLimitListener(full -> notified.incrementAndGet());
+        assertTrue(recorder.start(0L, 0L));
+
+        recorder.record(DUST, new byte[]{1, 2, 3}, 1L);
+        recorder.record(DUST, new byte[]{4, 5, 6}, 2L);
+        recorder.record(DUST, new byte[]{7, 8, 9}, 3L);
+        recorder.record(DUST, new byte[]{1}, 4L);
+        recorder.stop();
+
+        assertTrue(recorder.isLimitReached());
+        assertFalse(recorder.isRecording());
+        assertEquals(1, notified.get());
+        assertEquals(2, recorder.getRecordCount());
+        assertEquals(limit, captureFile.length());
+    }
+
+    @Test
+    public void deleteOldCaptures_keepsTheNewest() throws IOException {
+        File directory = Files.createTempDirectory("ble_captures").toFile();
+        try {
+            File[] captures = new File[4];
+            for (int i = 0; i < captures.length; i++) {
+                captures[i] = new File(directory, "ble_" + i + BleCaptureRecorder.FILE_EXTENSION);
+                assertTrue(captures[i].createNewFile());
+                assertTrue(captures[i].setLastModified(1_000_000L * (i + 1)));
+            }
+            File other = new File(directory, "notes.txt");
+            assertTrue(other.createNewFile());
+
+            assertEquals(2, BleCaptureRecorder.deleteOldCaptures(directory, 2));
+
+            assertFalse(captures[0].exists());
+            assertFalse(captures[1].exists());
+            assertTrue(captures[2].exists());
+            assertTrue(captures[3].exists());
+            assertTrue(other.exists());
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void reader_returnsPayloadsInOrderWithUuidsAndStartTimes() throws IOException {
+        BleCaptureRecorder recorder = new BleCaptureRecorder(captureFile, 4096, 60000);
+        assertTrue(recorder.start(1000L, 5000L));
+        recorder.record(DUST, new byte[]{1, 2, 3}, 5001L);
+        recorder.record(GAS, new byte[0], 5002L);
+        recorder.record(DUST, new byte[]{4}, 5003L);
+        recorder.stop();
+
+        try (BleCaptureReader reader = new BleCaptureReader(captureFile)) {
+            assertEquals(1000L, reader.getStartWallClockMs());
+            assertEquals(5000L, reader.getStartNanos());
+            assertTrue(reader.next());
+            assertEquals(DUST, reader.getUuid());
+            assertEquals(5001L, reader.getReceiveNanos());
+            assertArrayEquals(new byte[]{1, 2, 3}, reader.getPayload());
+            assertTrue(reader.next());
+            assertEquals(GAS, reader.getUuid());
+            assertEquals(0, reader.getPayload().length);
+            assertTrue(reader.next());
+            assertEquals(DUST, reader.getUuid());
+            assertArrayEquals(new byte[]{4}, reader.getPayload());
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void reader_tornTailEndsSession() throws IOException {
+        BleCaptureRecorder recorder = new BleCaptureRecorder(captureFile, 4096, 60000);
+        assertTrue(recorder.start(0L, 0L));
+        recorder.record(DUST, new byte[]{1, 2, 3}, 1L);
+        recorder.record(DUST, new byte[]{4, 5, 6}, 2L);
+        recorder.stop();
+        // cut the last payload short, as a crash mid-write would
+        try (RandomAccessFile file = new RandomAccessFile(captureFile, "rw")) {
+            file.setLength(file.length() - 2);
+        }
+
+        try (BleCaptureReader reader = new BleCaptureReader(captureFile)) {
+            assertTrue(reader.next());
+            assertEquals(1L, reader.getReceiveNanos());
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void reader_rejectsOtherFiles() throws IOException {
+        Files.write(captureFile.toPath(), new byte[]{'n', 'o', 'p', 'e'});
+        new BleCaptureReader(captureFile).close();
+    }
+
+    private static void assertUuid(ByteBuffer in, int index, UUID uuid) {
+        assertEquals(BleCaptureRecorder.RECORD_UUID, in.get());
+        assertEquals(index, in.get());
+        assertEquals(uuid, new UUID(in.getLong(), in.getLong()));
+    }
+
+    private static void assertPayload(ByteBuffer in, int index, long nanos, byte[] payload) {
+        assertEquals(BleCaptureRecorder.RECORD_PAYLOAD, in.get());
+        assertEquals(index, in.get());
+        assertEquals(nanos, in.getLong());
+        byte[] read = new byte[in.getShort() & 0xFFFF];
+        in.get(read);
+        assertArrayEquals(payload, read);
+    }
+}
@@ -0,0 +1,147 @@
+package com.team12.smarthat.bluetooth.core;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.team12.smarthat.bluetooth.devices.esp32.ESP32BluetoothSpec;
+import com.team12.smarthat.models.SensorData;
+import com.team12.smarthat.permissions.BluetoothPermissionManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * replays a capture through the real mock manager, pipeline and integration dispatch
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+public class BleSessionReplayerIntegrationTest {
+
+    private static final UUID DUST = ESP32BluetoothSpec.DUST_CHARACTERISTIC_UUID;
+    private static final UUID SOUND = ESP32BluetoothSpec.SOUND_CHARACTERISTIC_UUID;
+    private static final UUID GAS = ESP32BluetoothSpec.GAS_CHARACTERISTIC_UUID;
+    private static final long MS = 1_000_000L;
+
+    private File captureFile;
+    private MockBleConnectionManager mockManager;
+    private BluetoothServiceIntegration integration;
+    // readings as the integration's listeners saw them
+    private final List<SensorData> dispatched = new ArrayList<>();
+    // sensor readings must not be in the future, SensorData replaces those timestamps
+    private final long start = System.currentTimeMillis() - 60_000;
+
+    @Before
+    public void setUp() throws IOException {
+        captureFile = File.createTempFile("ble_replay", ".shcap");
+        Context context = ApplicationProvider.getApplicationContext();
+        mockManager = MockBleConnectionManager.getInstance(context, mock(BluetoothPermissionManager.class));
+        integration = new BluetoothServiceIntegration(mockManager);
+        integration.addSensorDataListener((data, sensorType) -> dispatched.add(data));
+    }
+
+    @After
+    public void tearDown() {
+        integration.cleanup();
+        MockBleConnectionManager.resetInstance();
+        captureFile.delete();
+    }
+
+    @Test
+    public void replayedCapture_reachesListenersInTimestampOrder() throws InterruptedException {
+        BleCaptureRecorder recorder = new BleCaptureRecorder(captureFile, 4096, 60000);
+        assertTrue(recorder.start(start, 0L));
+        recorder.record(DUST, payload("DUST_SENSOR_DATA", 12.5f, start), 0L);
+        recorder.record(SOUND, payload("SOUND_SENSOR_DATA", 62f, start + 100), 100 * MS);
+        recorder.record(GAS, payload("GAS_SENSOR_DATA", 410f, start + 200), 200 * MS);
+        recorder.record(DUST, payload("DUST_SENSOR_DATA", 13f, start + 300), 300 * MS);
+        recorder.record(SOUND, payload("SOUND_SENSOR_DATA", 64.5f, start + 400), 400 * MS);
+        recorder.stop();
+
+        BleSessionReplayer.Report report = replay(BleSessionReplayer.MAX_SPEED);
+
+        assertEquals(5, report.getPayloads());
+        assertEquals(5, report.getReadings());
+        assertEquals(0, report.getLostReadings());
+
+        assertEquals(5, dispatched.size());
+        assertReading(dispatched.get(0), SensorData.TYPE_DUST, 12.5f, start);
+        assertReading(dispatched.get(1), SensorData.TYPE_NOISE, 62f, start + 100);
+        assertReading(dispatched.get(2), SensorData.TYPE_GAS, 410f, start + 200);
+        assertReading(dispatched.get(3), SensorData.TYPE_DUST, 13f, start + 300);
+        assertReading(dispatched.get(4), SensorData.TYPE_NOISE, 64.5f, start + 400);
+    }
+
+    @Test
+    public void badPayload_isReplayedAsTheLastValidReading() throws InterruptedException {
+        BleCaptureRecorder recorder = new BleCaptureRecorder(captureFile, 4096, 60000);
+        assertTrue(recorder.start(start, 0L));
+        recorder.record(GAS, payload("GAS_SENSOR_DATA", 420f, start), 0L);
+        recorder.record(GAS, "{\"data\":".getBytes(StandardCharsets.UTF_8), 100 * MS);
+        recorder.stop();
+
+        BleSessionReplayer.Report report = replay(BleSessionReplayer.MAX_SPEED);
+
+        assertEquals(2, report.getReadings());
+        assertEquals(2, dispatched.size());
+        assertReading(dispatched.get(0), SensorData.TYPE_GAS, 420f, start);
+        assertEquals(SensorData.TYPE_GAS, dispatched.get(1).getSensorType());
+        assertEquals(420f, dispatched.get(1).getValue(), 0f);
+    }
+
+    // runs the main looper while the replay thread hands payloads over, both hops post to it
+    private BleSessionReplayer.Report replay(double speed) throws InterruptedException {
+        BleSessionReplayer replayer = new BleSessionReplayer(mockManager, integration);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<BleSessionReplayer.Report> result = new AtomicReference<>();
+        assertTrue(replayer.start(captureFile, speed, new BleSessionReplayer.Listener() {
+            @Override
+            public void onReplayFinished(BleSessionReplayer.Report report) {
+                result.set(report);
+                done.countDown();
+            }
+
+            @Override
+            public void onReplayFailed(Exception e) {
+                done.countDown();
+            }
+        }));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (done.getCount() > 0 && System.nanoTime() < deadline) {
+            ShadowLooper.shadowMainLooper().idle();
+            Thread.sleep(5);
+        }
+        assertNotNull("replay did not finish", result.get());
+        return result.get();
+    }
+
+    private static byte[] payload(String messageType, float value, long timestamp) {
+        return ("{\"messageType\":\"" + messageType + "\",\"data\":" + value + ",\"timeStamp\":" + timestamp + "}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void assertReading(SensorData data, String sensorType, float value, long timestamp) {
+        assertEquals(sensorType, data.getSensorType());
+        assertEquals(value, data.getValue(), 0f);
+        assertEquals(timestamp, data.getTimestamp());
+    }
+}
@@ -0,0 +1,115 @@
+package com.team12.smarthat.bluetooth.core;
+
+import static org.junit.Assert.*;
+
+import com.team12.smarthat.bluetooth.devices.esp32.ESP32BluetoothSpec;
+import com.team12.smarthat.models.SensorData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class BleSessionReplayerTest {
+
+    private static final UUID DUST = ESP32BluetoothSpec.DUST_CHARACTERISTIC_UUID;
+    private static final UUID GAS = ESP32BluetoothSpec.GAS_CHARACTERISTIC_UUID;
+    private static final long MS = 1_000_000L;
+
+    private File captureFile;
+
+    @Before
+    public void setUp() throws IOException {
+        captureFile = File.createTempFile("ble_replay", ".shcap");
+    }
+
+    @After
+    public void tearDown() {
+        captureFile.delete();
+    }
+
+    // three payloads 100 ms apart
+    private void writeCapture() {
+        BleCaptureRecorder recorder = new BleCaptureRecorder(captureFile, 4096, 60000);
+        assertTrue(recorder.start(0L, 0L));
+        recorder.record(DUST, "{\"data\":10}".getBytes(), 0L);
+        recorder.record(GAS, "{\"data\":400}".getBytes(), 100 * MS);
+        recorder.record(DUST, "{\"data\":11}".getBytes(), 200 * MS);
+        recorder.stop();
+    }
+
+    // pipeline stand-in that turns every payload into a reading right away
+    private static BleSessionReplayer.Report replay(File capture, double speed, boolean dropGas) throws InterruptedException {
+        AtomicReference<BleSessionReplayer> replayer = new AtomicReference<>();
+        replayer.set(new BleSessionReplayer((uuid, payload) -> {
+            String type = DUST.equals(uuid) ? SensorData.TYPE_DUST : SensorData.TYPE_GAS;
+            if (!dropGas || DUST.equals(uuid)) {
+                replayer.get().onSensorData(new SensorData(type, 1f), type);
+            }
+        }, Runnable::run, null));
+
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<BleSessionReplayer.Report> result = new AtomicReference<>();
+        assertTrue(replayer.get().start(capture, speed, new BleSessionReplayer.Listener() {
+            @Override
+            public void onReplayFinished(BleSessionReplayer.Report report) {
+                result.set(report);
+                done.countDown();
+            }
+
+            @Override
+            public void onReplayFailed(Exception e) {
+                done.countDown();
+            }
+        }));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return result.get();
+    }
+
+    @Test
+    public void recordedSpeed_keepsGapsBetweenPayloads() throws InterruptedException {
+        writeCapture();
+
+        BleSessionReplayer.Report report = replay(captureFile, 1, false);
+
+        assertEquals(3, report.getPayloads());
+        assertEquals(3, report.getReadings());
+        assertEquals(0, report.getLostReadings());
+        assertTrue(report.getDurationMs() >= 195);
+    }
+
+    @Test
+    public void fasterSpeed_dividesGaps() throws InterruptedException {
+        writeCapture();
+
+        BleSessionReplayer.Report report = replay(captureFile, 4, false);
+
+        assertTrue(report.getDurationMs() >= 45);
+        assertTrue(report.getDurationMs() < 150);
+    }
+
+    @Test
+    public void maxSpeed_doesNotWaitAndCountsLostReadings() throws InterruptedException {
+        writeCapture();
+
+        BleSessionReplayer.Report report = replay(captureFile, BleSessionReplayer.MAX_SPEED, true);
+
+        assertEquals(3, report.getPayloads());
+        assertEquals(2, report.getReadings());
+        assertEquals(1, report.getLostReadings());
+        assertEquals(0, report.getMaxScheduleLagMs(), 0);
+        assertTrue(report.getP99LatencyMs() >= 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroSpeed_rejected() {
+        new BleSessionReplayer((uuid, payload) -> { }, Runnable::run, null)
+                .start(captureFile, 0, null);
+    }
+}
@@ -0,0 +1,133 @@
+package com.team12.smarthat.bluetooth.core;
+
+import static org.junit.Assume.assumeTrue;
+
+import com.team12.smarthat.benchmark.MicroBenchmark;
+import com.team12.smarthat.bluetooth.devices.esp32.ESP32BluetoothSpec;
+import com.team12.smarthat.core.Clock;
+import com.team12.smarthat.core.IngestPipeline;
+import com.team12.smarthat.core.Scheduler;
+import com.team12.smarthat.models.SensorData;
+import com.team12.smarthat.utils.Constants;
+import com.team12.smarthat.utils.SensorScenario;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * ingest hot path benchmarks with the app's sensor setup, skipped unless run with -Pbench
+ * parser and pipeline internals are benchmarked in :core, this covers what the app adds on top.
+ * robolectric keeps every Log call, so bytes/op includes that capture.
+ * compare runs with each other, not with device numbers
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+public class IngestBenchmark {
+    // power of two so inputs cycle with a mask
+    private static final int INPUTS = 1024;
+    private static final int MASK = INPUTS - 1;
+
+    private IngestPipeline pipeline;
+    private MicroBenchmark benchmark;
+
+    private final byte[][] esp32Payloads = new byte[INPUTS][];
+    private final UUID[] characteristics = new UUID[INPUTS];
+    private final String[] types = new String[INPUTS];
+    private final float[] values = new float[INPUTS];
+    private final long[] timestamps = new long[INPUTS];
+    private final SensorData[] readings = new SensorData[INPUTS];
+    // what the pipeline listener last built, keeps it from being optimised away
+    private SensorData lastReading;
+
+    @Before
+    public void setUp() {
+        assumeTrue("benchmarks run with -Pbench", MicroBenchmark.enabled());
+
+        benchmark = new MicroBenchmark(5, 10, 200).setBetweenIterations(ShadowLog::clear);
+
+        // the same data TestDataGenerator plays, with an out of order burst
+        List<SensorScenario.Sample> samples = SensorScenario.alertWalkthrough(Constants.TEST_SCENARIO_SEED)
+                .rate(SensorData.TYPE_DUST, 10)
+                .rate(SensorData.TYPE_NOISE, 10)
+                .rate(SensorData.TYPE_GAS, 10)
+                .outOfOrderBurst(SensorData.TYPE_DUST, 20_000, 8)
+                .generate(1_700_000_000_000L);
+        for (int i = 0; i < INPUTS; i++) {
+            SensorScenario.Sample sample = samples.get(i);
+            types[i] = sample.getType();
+            values[i] = sample.getValue();
+            timestamps[i] = sample.getTimestamp();
+            esp32Payloads[i] = String.format(Locale.US, "{\"messageType\":\"%s\",\"data\":%.2f,\"timeStamp\":%d}",
+                    messageType(sample.getType()), sample.getValue(), sample.getTimestamp())
+                    .getBytes(StandardCharsets.UTF_8);
+            characteristics[i] = uuid(sample.getType());
+            readings[i] = new SensorData(types[i], values[i], timestamps[i]);
+        }
+
+        // wired as BluetoothServiceIntegration wires it, tasks run inline instead of on its handler thread
+        Scheduler inline = new Scheduler() {
+            @Override
+            public void execute(Runnable task) {
+                task.run();
+            }
+
+            @Override
+            public void executeDelayed(Runnable task, long delayMs) {
+                task.run();
+            }
+        };
+        pipeline = new IngestPipeline(inline, Clock.SYSTEM, BluetoothServiceIntegration.MAX_TIMESTAMP_DEVIATION,
+                (sensorType, value, timestamp, trace) -> lastReading = new SensorData(sensorType, value, timestamp));
+        pipeline.addSensor(ESP32BluetoothSpec.DUST_CHARACTERISTIC_UUID, SensorData.TYPE_DUST,
+                BluetoothServiceIntegration.MAX_DUST_VALUE, ESP32BluetoothSpec.NotificationParams.INITIAL_DUST_VALUE);
+        pipeline.addSensor(ESP32BluetoothSpec.SOUND_CHARACTERISTIC_UUID, SensorData.TYPE_NOISE,
+                BluetoothServiceIntegration.MAX_NOISE_VALUE, ESP32BluetoothSpec.NotificationParams.INITIAL_SOUND_VALUE);
+        pipeline.addSensor(ESP32BluetoothSpec.GAS_CHARACTERISTIC_UUID, SensorData.TYPE_GAS,
+                BluetoothServiceIntegration.MAX_GAS_VALUE, ESP32BluetoothSpec.NotificationParams.INITIAL_GAS_VALUE);
+    }
+
+    @Test
+    public void ingestHotPath() throws Exception {
+        // one op is one payload from the gatt callback to a SensorData, clear() forgets the last
+        // timestamps so the second lap over the inputs isn't skipped as out of order
+        benchmark.run("pipeline.esp32", i -> {
+            pipeline.clear();
+            pipeline.onPayload(characteristics[i & MASK], esp32Payloads[i & MASK]);
+            return lastReading;
+        });
+        benchmark.run("sensorData.construct", i -> new SensorData(types[i & MASK], values[i & MASK], timestamps[i & MASK]));
+        benchmark.run("sensorData.getFormattedValue", i -> readings[i & MASK].getFormattedValue());
+        benchmark.writeReport("ingest");
+    }
+
+    private static String messageType(String type) {
+        switch (type) {
+            case SensorData.TYPE_DUST:
+                return Constants.MESSAGE_TYPE_DUST;
+            case SensorData.TYPE_NOISE:
+                return Constants.MESSAGE_TYPE_SOUND;
+            default:
+                return Constants.MESSAGE_TYPE_GAS;
+        }
+    }
+
+    private static UUID uuid(String type) {
+        switch (type) {
+            case SensorData.TYPE_DUST:
+                return ESP32BluetoothSpec.DUST_CHARACTERISTIC_UUID;
+            case SensorData.TYPE_NOISE:
+                return ESP32BluetoothSpec.SOUND_CHARACTERISTIC_UUID;
+            default:
+                return ESP32BluetoothSpec.GAS_CHARACTERISTIC_UUID;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.team12.smarthat.database;
+
+import static org.junit.Assert.*;
+
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import com.team12.smarthat.models.BreachEpisode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BreachEpisodeTrackerTest {
+
+    private static final long START = 1_700_000_000_000L;
+    private static final float NOISE_THRESHOLD = 85.0f;
+
+    private FakeEpisodeDao dao;
+    private BreachEpisodeTracker tracker;
+
+    @Before
+    public void setUp() {
+        dao = new FakeEpisodeDao();
+        tracker = new BreachEpisodeTracker(dao, 30_000);
+    }
+
+    @Test
+    public void sustainedBreach_becomesOneEpisode() {
+        // 20 minutes above the threshold at 1 Hz
+        for (int i = 0; i < 1200; i++) {
+            tracker.track("noise", START + i * 1000L, i == 600 ? 101.0f : 90.0f, NOISE_THRESHOLD);
+        }
+        tracker.flush();
+
+        assertEquals(1, dao.episodes.size());
+        BreachEpisode episode = dao.episodes.get(0);
+        assertEquals(START, episode.getStartTimestamp());
+        assertEquals(START + 1199 * 1000L, episode.getEndTimestamp());
+        assertEquals(1200, episode.getSampleCount());
+        assertEquals(101.0f, episode.getPeakValue(), 0.0f);
+        assertEquals(1, dao.updates);
+    }
+
+    @Test
+    public void readingBelowThreshold_closesEpisode() {
+        tracker.track("noise", START, 90.0f, NOISE_THRESHOLD);
+        tracker.track("noise", START + 1000, 80.0f, NOISE_THRESHOLD);
+        tracker.track("noise", START + 2000, 95.0f, NOISE_THRESHOLD);
+        tracker.flush();
+
+        assertEquals(2, dao.episodes.size());
+        assertNull(tracker.getOpenEpisode("dust"));
+        assertEquals(START + 2000, tracker.getOpenEpisode("noise").getStartTimestamp());
+    }
+
+    @Test
+    public void longGap_startsNewEpisode() {
+        tracker.track("noise", START, 90.0f, NOISE_THRESHOLD);
+        tracker.track("noise", START + 60_000, 90.0f, NOISE_THRESHOLD);
+
+        assertEquals(2, dao.episodes.size());
+    }
+
+    @Test
+    public void sensorsAreTrackedIndependently() {
+        tracker.track("noise", START, 90.0f, NOISE_THRESHOLD);
+        tracker.track("dust", START + 500, 10.0f, 50.0f);
+        tracker.track("noise", START + 1000, 92.0f, NOISE_THRESHOLD);
+        tracker.flush();
+
+        assertEquals(1, dao.episodes.size());
+        assertEquals(2, dao.episodes.get(0).getSampleCount());
+        assertEquals(91.0f, dao.episodes.get(0).getMeanValue(), 0.001f);
+    }
+
+    private static class FakeEpisodeDao implements BreachEpisodeDao {
+        final List<BreachEpisode> episodes = new ArrayList<>();
+        int updates = 0;
+
+        @Override
+        public long insert(BreachEpisode episode) {
+            episodes.add(episode);
+            return episodes.size();
+        }
+
+        @Override
+        public void update(BreachEpisode episode) {
+            updates++;
+        }
+
+        @Override
+        public List<BreachEpisode> getEpisodesSync() {
+            return episodes;
+        }
+
+        @Override
+        public List<BreachEpisode> getEpisodesSync(long startTimestamp, long endTimestamp) {
+            return episodes;
+        }
+
+        @Override
+        public List<BreachEpisode> queryEpisodes(SupportSQLiteQuery query) {
+            return episodes;
+        }
+
+        @Override
+        public Long getOverlapStart(long startTimestamp, long endTimestamp) {
+            return null;
+        }
+
+        @Override
+        public Long getOverlapEnd(long startTimestamp, long endTimestamp) {
+            return null;
+        }
+
+        @Override
+        public int deleteOverlapping(long startTimestamp, long endTimestamp, long liveStart) {
+            return 0;
+        }
+
+        @Override
+        public Long getRetiredEnd(String sensorType, long liveStart) {
+            return null;
+        }
+
+        @Override
+        public void clearEpisodes() {
+            episodes.clear();
+        }
+    }
+}
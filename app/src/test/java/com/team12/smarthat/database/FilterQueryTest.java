@@ -0,0 +1,92 @@
+package com.team12.smarthat.database;
+
+import static org.junit.Assert.*;
+
+import com.team12.smarthat.models.DataFilter;
+import com.team12.smarthat.models.SensorData;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+
+public class FilterQueryTest {
+
+    @Test
+    public void emptyFilter_onlyLiveRows() {
+        FilterQuery query = FilterQuery.readings(new DataFilter());
+
+        assertEquals("SELECT * FROM sensor_data s WHERE s.deleted = 0 ORDER BY s.timestamp DESC", query.getSql());
+        assertEquals(0, query.getArgs().length);
+    }
+
+    @Test
+    public void everyCriterion_boundAsArgumentsInIndexOrder() {
+        DataFilter filter = new DataFilter(new Date(1000L), new Date(2000L));
+        filter.setSensorTypes(Collections.singleton(SensorData.TYPE_NOISE));
+        filter.setMinValue(40f);
+        filter.setMaxValue(90f);
+        filter.setSource(SensorData.SOURCE_REAL);
+
+        FilterQuery query = FilterQuery.readings(filter);
+
+        assertEquals("SELECT * FROM sensor_data s WHERE s.sensorType IN (?) AND s.deleted = 0"
+                + " AND s.timestamp BETWEEN ? AND ? AND s.value >= ? AND s.value <= ? AND s.source = ?"
+                + " ORDER BY s.timestamp DESC", query.getSql());
+        assertArrayEquals(new Object[]{SensorData.TYPE_NOISE, 1000L, 2000L, 40f, 90f, SensorData.SOURCE_REAL},
+                query.getArgs());
+    }
+
+    @Test
+    public void breaches_unselectedSensorsLeaveZoneAndRowTerms() {
+        DataFilter filter = new DataFilter();
+        filter.setSensorTypes(Collections.singleton(SensorData.TYPE_GAS));
+        filter.setMinValue(5f);
+
+        FilterQuery query = FilterQuery.thresholdBreaches(filter, 50f, 85f, 2f);
+
+        String sql = query.getSql();
+        assertTrue(sql.contains("((z.maxGas > ? AND z.maxGas >= ?))"));
+        assertFalse(sql.contains("maxDust"));
+        assertFalse(sql.contains("maxNoise"));
+        assertTrue(sql.contains("((s.sensorType = ? AND s.value > ?))"));
+        assertArrayEquals(new Object[]{2f, 5f, SensorData.TYPE_GAS, 2f, 5f}, query.getArgs());
+    }
+
+    @Test
+    public void breaches_unknownSensorTypeMatchesNothing() {
+        DataFilter filter = new DataFilter();
+        filter.setSensorTypes(Collections.singleton("humidity"));
+
+        FilterQuery query = FilterQuery.thresholdBreachIds(filter, 50f, 85f, 2f);
+
+        assertTrue(query.getSql().endsWith(" WHERE 0"));
+        assertEquals(0, query.getArgs().length);
+    }
+
+    @Test
+    public void episodes_ignoreSourceAndBoundPeak() {
+        DataFilter filter = new DataFilter();
+        filter.setMaxValue(100f);
+        filter.setSource(SensorData.SOURCE_TEST);
+
+        FilterQuery query = FilterQuery.breachEpisodes(filter);
+
+        assertEquals("SELECT * FROM breach_episodes WHERE peakValue <= ? ORDER BY startTimestamp DESC", query.getSql());
+        assertArrayEquals(new Object[]{100f}, query.getArgs());
+    }
+
+    @Test
+    public void exportPage_keysetAfterFilterArgsAndLimitLast() {
+        DataFilter filter = new DataFilter();
+        filter.setSensorTypes(Collections.singleton(SensorData.TYPE_DUST));
+
+        FilterQuery query = FilterQuery.exportPage(filter, 5000L, 42L, 1000);
+
+        assertEquals("SELECT s.id, s.timestamp, s.sensorType, s.value, s.source, s.metadata FROM sensor_data s"
+                + " WHERE s.sensorType IN (?) AND s.deleted = 0"
+                + " AND (s.timestamp > ? OR (s.timestamp = ? AND s.id > ?))"
+                + " ORDER BY s.timestamp ASC, s.id ASC LIMIT ?", query.getSql());
+        assertArrayEquals(new Object[]{SensorData.TYPE_DUST, 5000L, 5000L, 42L, 1000}, query.getArgs());
+    }
+}
@@ -0,0 +1,122 @@
+package com.team12.smarthat.database;
+
+import static org.junit.Assert.*;
+
+import com.team12.smarthat.models.NoiseDoseShift;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class NoiseDoseTrackerTest {
+
+    private static final long START = 1_700_000_000_000L;
+    private static final long SECOND = 1000L;
+    private static final long HOUR = 60 * 60 * SECOND;
+    private static final long MAX_HOLD = 10 * SECOND;
+    private static final long SHIFT_BREAK = 2 * HOUR;
+
+    private FakeNoiseDoseDao dao;
+    private NoiseDoseTracker tracker;
+
+    @Before
+    public void setUp() {
+        dao = new FakeNoiseDoseDao();
+        tracker = new NoiseDoseTracker(dao, MAX_HOLD, SHIFT_BREAK);
+    }
+
+    @Test
+    public void fourHoursAt95_isFullDose() {
+        // one reading per second for 4 hours, the allowed time at 95 dB
+        for (long t = 0; t <= 4 * HOUR; t += SECOND) {
+            tracker.track(START + t, 95f);
+        }
+        tracker.flush();
+
+        NoiseDoseShift shift = dao.shifts.get(0);
+        assertEquals(1, dao.shifts.size());
+        assertEquals(100.0, shift.getDosePercent(), 0.01);
+        assertEquals(90.0, shift.getTwa(), 0.01);
+        assertEquals(0, shift.getProjectedMsToFullDose());
+    }
+
+    @Test
+    public void projection_usesAverageRate() {
+        for (long t = 0; t <= HOUR; t += SECOND) {
+            tracker.track(START + t, 95f);
+        }
+
+        // a quarter of the dose in an hour, three more hours to go
+        NoiseDoseShift shift = tracker.getCurrentShift();
+        assertEquals(25.0, shift.getDosePercent(), 0.01);
+        assertEquals(3 * HOUR, shift.getProjectedMsToFullDose(), SECOND);
+    }
+
+    @Test
+    public void dropout_countsOnlyUpToMaxHold() {
+        tracker.track(START, 100f);
+        tracker.track(START + HOUR, 100f);
+
+        assertEquals(MAX_HOLD, tracker.getCurrentShift().getMeasuredMs());
+    }
+
+    @Test
+    public void longGap_startsNewShift() {
+        tracker.track(START, 95f);
+        tracker.track(START + SECOND, 95f);
+        tracker.track(START + SECOND + SHIFT_BREAK + 1, 95f);
+
+        assertEquals(2, dao.shifts.size());
+        assertEquals(1, tracker.getCurrentShift().getSampleCount());
+    }
+
+    @Test
+    public void restart_continuesStoredShift() {
+        tracker.track(START, 95f);
+        tracker.track(START + MAX_HOLD, 95f);
+        tracker.flush();
+
+        NoiseDoseTracker restarted = new NoiseDoseTracker(dao, MAX_HOLD, SHIFT_BREAK);
+        restarted.track(START + 2 * MAX_HOLD, 95f);
+
+        assertEquals(1, dao.shifts.size());
+        assertEquals(2 * MAX_HOLD, restarted.getCurrentShift().getMeasuredMs());
+    }
+
+    private static class FakeNoiseDoseDao implements NoiseDoseDao {
+        // oldest first, stands in for the table
+        final List<NoiseDoseShift> shifts = new ArrayList<>();
+
+        @Override
+        public long insert(NoiseDoseShift shift) {
+            shifts.add(shift);
+            return shifts.size();
+        }
+
+        @Override
+        public void update(NoiseDoseShift shift) {
+        }
+
+        @Override
+        public NoiseDoseShift getLatestShift() {
+            return shifts.isEmpty() ? null : shifts.get(shifts.size() - 1);
+        }
+
+        @Override
+        public List<NoiseDoseShift> getShiftsSync() {
+            return shifts;
+        }
+
+        @Override
+        public List<NoiseDoseShift> getShiftsSync(long startTimestamp, long endTimestamp) {
+            return shifts;
+        }
+
+        @Override
+        public void clearShifts() {
+            shifts.clear();
+        }
+    }
+}
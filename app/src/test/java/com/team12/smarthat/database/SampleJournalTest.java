@@ -0,0 +1,159 @@
+package com.team12.smarthat.database;
+
+import static org.junit.Assert.*;
+
+import com.team12.smarthat.models.SensorData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+public class SampleJournalTest {
+
+    private File journalFile;
+
+    @Before
+    public void setUp() throws IOException {
+        journalFile = File.createTempFile("sample_journal", ".bin");
+        journalFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        journalFile.delete();
+    }
+
+    @Test
+    public void appendedSamples_areRecoveredOnReopen() {
+        long now = System.currentTimeMillis();
+        SampleJournal journal = new SampleJournal(journalFile);
+        assertTrue(journal.open().isEmpty());
+
+        journal.append(new SensorData(SensorData.TYPE_DUST, 42.5f, now));
+        SensorData gas = new SensorData(SensorData.TYPE_GAS, 1500.0f, now + 1);
+        gas.setSource(SensorData.SOURCE_TEST);
+        journal.append(gas);
+        journal.close();
+
+        List<SensorData> recovered = new SampleJournal(journalFile).open();
+        assertEquals(2, recovered.size());
+        assertEquals(SensorData.TYPE_DUST, recovered.get(0).getSensorType());
+        assertEquals(42.5f, recovered.get(0).getValue(), 0.0f);
+        assertEquals(now, recovered.get(0).getTimestamp());
+        assertFalse(recovered.get(0).isTestData());
+        assertEquals(SensorData.TYPE_GAS, recovered.get(1).getSensorType());
+        assertTrue(recovered.get(1).isTestData());
+    }
+
+    @Test
+    public void spikeFlag_isRecoveredWithItsMetadata() {
+        long now = System.currentTimeMillis();
+        SampleJournal journal = new SampleJournal(journalFile);
+        journal.open();
+        SensorData spike = new SensorData(SensorData.TYPE_DUST, 400.0f, now);
+        spike.markSuspectedSpike(35.5f);
+        journal.append(spike);
+        journal.append(new SensorData(SensorData.TYPE_DUST, 36.0f, now + 1));
+        journal.close();
+
+        List<SensorData> recovered = new SampleJournal(journalFile).open();
+        assertEquals(2, recovered.size());
+        assertTrue(recovered.get(0).isSuspectedSpike());
+        assertEquals(35.5f, recovered.get(0).getSpikeMedian(), 0.0f);
+        assertEquals(spike.getMetadata(), recovered.get(0).getMetadata());
+        assertFalse(recovered.get(1).isSuspectedSpike());
+        assertNull(recovered.get(1).getMetadata());
+    }
+
+    @Test
+    public void reset_discardsCommittedSamples() {
+        SampleJournal journal = new SampleJournal(journalFile);
+        journal.open();
+        journal.append(new SensorData(SensorData.TYPE_NOISE, 90.0f, System.currentTimeMillis()));
+        assertEquals(1, journal.getRecordCount());
+
+        journal.reset();
+        assertEquals(0, journal.getRecordCount());
+        journal.close();
+
+        assertTrue(new SampleJournal(journalFile).open().isEmpty());
+    }
+
+    @Test
+    public void commit_dropsOnlyTheCommittedRecords() {
+        long now = System.currentTimeMillis();
+        SampleJournal journal = new SampleJournal(journalFile);
+        journal.open();
+        for (int i = 0; i < 5; i++) {
+            journal.append(new SensorData(SensorData.TYPE_DUST, i, now + i));
+        }
+
+        // the first three made it into room, two arrived while they were committing
+        journal.commit(3);
+        assertEquals(2, journal.getRecordCount());
+        journal.append(new SensorData(SensorData.TYPE_DUST, 5, now + 5));
+        journal.close();
+
+        List<SensorData> recovered = new SampleJournal(journalFile).open();
+        assertEquals(3, recovered.size());
+        assertEquals(3.0f, recovered.get(0).getValue(), 0.0f);
+        assertEquals(4.0f, recovered.get(1).getValue(), 0.0f);
+        assertEquals(5.0f, recovered.get(2).getValue(), 0.0f);
+    }
+
+    @Test
+    public void tornTailRecord_isIgnored() throws IOException {
+        SampleJournal journal = new SampleJournal(journalFile);
+        journal.open();
+        journal.append(new SensorData(SensorData.TYPE_NOISE, 70.0f, System.currentTimeMillis()));
+        journal.close();
+
+        // half a record, as if the process died mid-write
+        try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+            out.write(new byte[SampleJournal.RECORD_SIZE / 2]);
+        }
+
+        SampleJournal reopened = new SampleJournal(journalFile);
+        assertEquals(1, reopened.open().size());
+        reopened.close();
+        assertEquals(SampleJournal.HEADER_SIZE + SampleJournal.RECORD_SIZE, journalFile.length());
+    }
+
+    @Test
+    public void sequence_keepsIncreasingAcrossCommitsAndRuns() {
+        long now = System.currentTimeMillis();
+        SampleJournal journal = new SampleJournal(journalFile);
+        journal.open();
+        for (int i = 0; i < 3; i++) {
+            journal.append(new SensorData(SensorData.TYPE_GAS, 400 + i, now + i));
+        }
+        assertEquals(1, journal.getFirstSequence());
+        assertEquals(3, journal.getLastSequence());
+
+        journal.commit(2);
+        assertEquals(3, journal.getFirstSequence());
+        journal.reset();
+        assertEquals(4, journal.getFirstSequence());
+        journal.close();
+
+        // an emptied journal still knows where it was
+        SampleJournal reopened = new SampleJournal(journalFile);
+        assertTrue(reopened.open().isEmpty());
+        assertEquals(4, reopened.getFirstSequence());
+        reopened.append(new SensorData(SensorData.TYPE_GAS, 410, now + 3));
+        reopened.append(new SensorData(SensorData.TYPE_GAS, 411, now + 4));
+        reopened.commit(1);
+        reopened.close();
+
+        SampleJournal recovered = new SampleJournal(journalFile);
+        assertEquals(1, recovered.open().size());
+        assertEquals(5, recovered.getFirstSequence());
+        assertEquals(5, recovered.getLastSequence());
+        recovered.close();
+    }
+}
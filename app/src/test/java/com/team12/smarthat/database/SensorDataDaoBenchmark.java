@@ -0,0 +1,270 @@
+package com.team12.smarthat.database;
+
+import static org.junit.Assume.assumeTrue;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.team12.smarthat.benchmark.MicroBenchmark;
+import com.team12.smarthat.models.SensorData;
+import com.team12.smarthat.models.SensorDataZone;
+import com.team12.smarthat.utils.Constants;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * SensorDataDao throughput at 10k, 100k and 1M rows, skipped unless run with -Pbench
+ * - inserts: single rows, DatabaseHelper sized batches and one large transaction
+ * - breach and range queries, with the table's indices and again with them dropped
+ * - retention: deleteOldest and the cleanup DatabaseHelper runs past MAX_RECORDS
+ * a file database in wal mode like the app's, on robolectric's sqlite. bytes/op only counts
+ * the calling thread. index, query and retention changes should come with a before and after
+ * of build/benchmarks/room.json
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+public class SensorDataDaoBenchmark {
+    private static final int[] TABLE_SIZES = {10_000, 100_000, 1_000_000};
+    private static final String DATABASE_NAME = "sensor_benchmark.db";
+    // every sensor at 10 Hz, the esp32's rate
+    private static final long ROW_INTERVAL_MS = 33;
+    // one breach episode every this many rows, the rest stays below the thresholds
+    private static final int EPISODE_SPACING = 20_000;
+    private static final int EPISODE_LENGTH = 300;
+    private static final int QUERY_REPETITIONS = 5;
+    // matches DatabaseHelper.INSERT_BATCH_SIZE
+    private static final int HELPER_BATCH = 50;
+    private static final int TRANSACTION_ROWS = 1000;
+    private static final int SINGLE_INSERTS = 200;
+    private static final int RETIRED_ROWS = 1000;
+    // rows inserted after seeding stay in the past, SensorData replaces future timestamps
+    private static final int HEADROOM_ROWS = 50_000;
+    private static final String[] TYPES = {SensorData.TYPE_DUST, SensorData.TYPE_NOISE, SensorData.TYPE_GAS};
+    // index names room derives from SensorData's @Index columns
+    private static final String[] INDICES = {
+            "CREATE INDEX IF NOT EXISTS index_sensor_data_sensorType_deleted_timestamp ON sensor_data (sensorType, deleted, timestamp)",
+            "CREATE INDEX IF NOT EXISTS index_sensor_data_deleted_timestamp ON sensor_data (deleted, timestamp)"};
+    private static final String[] INDEX_NAMES = {
+            "index_sensor_data_sensorType_deleted_timestamp", "index_sensor_data_deleted_timestamp"};
+    // the breach query without the zone map, to show what skipping blocks buys
+    private static final String FULL_SCAN_BREACHES = "SELECT * FROM sensor_data s WHERE " + SensorDataDao.ROW_LIVE
+            + " AND ((s.sensorType = 'dust' AND s.value > ?) OR (s.sensorType = 'noise' AND s.value > ?)"
+            + " OR (s.sensorType = 'gas' AND s.value > ?)) ORDER BY s.timestamp DESC";
+
+    private Context context;
+    private SensorDatabase database;
+    private SensorDataDao dao;
+    private MicroBenchmark benchmark;
+    private final Random random = new Random(Constants.TEST_SCENARIO_SEED);
+    // timestamp of the newest row, inserts continue from here
+    private long lastTimestamp;
+    private long rowCount;
+
+    @Before
+    public void setUp() {
+        assumeTrue("benchmarks run with -Pbench", MicroBenchmark.enabled());
+        context = ApplicationProvider.getApplicationContext();
+        benchmark = new MicroBenchmark(0, 0, 0);
+    }
+
+    @After
+    public void tearDown() {
+        closeDatabase();
+    }
+
+    @Test
+    public void sensorDataDao() throws Exception {
+        for (int rows : TABLE_SIZES) {
+            openDatabase();
+            seed(rows);
+            String prefix = "rows" + rows + ".";
+
+            inserts(prefix);
+            queries(prefix);
+            dropIndices();
+            queries(prefix + "noIndex.");
+            createIndices();
+            retention(prefix, rows);
+
+            closeDatabase();
+        }
+        benchmark.writeReport("room");
+    }
+
+    private void inserts(String prefix) {
+        benchmark.sample(prefix + "insert.single", QUERY_REPETITIONS, SINGLE_INSERTS, ShadowLog::clear, i -> {
+            for (int j = 0; j < SINGLE_INSERTS; j++) {
+                dao.insertWithZone(nextReading());
+            }
+            return null;
+        });
+        benchmark.sample(prefix + "insert.batch" + HELPER_BATCH, QUERY_REPETITIONS, HELPER_BATCH, ShadowLog::clear,
+                i -> {
+                    dao.insertAllWithZones(nextReadings(HELPER_BATCH));
+                    return null;
+                });
+        benchmark.sample(prefix + "insert.transaction" + TRANSACTION_ROWS, QUERY_REPETITIONS, TRANSACTION_ROWS,
+                ShadowLog::clear, i -> {
+                    List<SensorData> batch = nextReadings(TRANSACTION_ROWS);
+                    database.runInTransaction(() -> {
+                        for (SensorData data : batch) {
+                            dao.insertWithZone(data);
+                        }
+                    });
+                    return null;
+                });
+    }
+
+    private void queries(String prefix) {
+        long hourAgo = lastTimestamp - 60 * 60 * 1000;
+        benchmark.sample(prefix + "breach.zoneMap", QUERY_REPETITIONS, 1, null,
+                i -> dao.getThresholdBreachesSync(Constants.DUST_THRESHOLD, Constants.NOISE_THRESHOLD,
+                        Constants.GAS_THRESHOLD).size());
+        benchmark.sample(prefix + "breach.zoneMap.lastHour", QUERY_REPETITIONS, 1, null,
+                i -> dao.getThresholdBreachesSync(Constants.DUST_THRESHOLD, Constants.NOISE_THRESHOLD,
+                        Constants.GAS_THRESHOLD, hourAgo, lastTimestamp).size());
+        benchmark.sample(prefix + "breach.fullScan", QUERY_REPETITIONS, 1, null,
+                i -> dao.querySensorData(new SimpleSQLiteQuery(FULL_SCAN_BREACHES, new Object[]{
+                        Constants.DUST_THRESHOLD, Constants.NOISE_THRESHOLD, Constants.GAS_THRESHOLD})).size());
+        // the live chart's five minute window and the stats screen's last hour
+        benchmark.sample(prefix + "range.readingsSince5min", QUERY_REPETITIONS, 1, null,
+                i -> dao.getReadingsSince(SensorData.TYPE_DUST, lastTimestamp - 5 * 60 * 1000).size());
+        benchmark.sample(prefix + "range.countLastHour", QUERY_REPETITIONS, 1, null,
+                i -> dao.countReadings(SensorData.TYPE_NOISE, hourAgo, lastTimestamp));
+        benchmark.sample(prefix + "range.aggregatesLastHour", QUERY_REPETITIONS, 1, null,
+                i -> dao.getAggregates(hourAgo, lastTimestamp).size());
+    }
+
+    private void retention(String prefix, int rows) {
+        benchmark.sample(prefix + "retention.deleteOldest" + RETIRED_ROWS, QUERY_REPETITIONS, RETIRED_ROWS, null, i -> {
+            dao.deleteOldest(RETIRED_ROWS);
+            return null;
+        });
+        // checkAndCleanupDatabase with the table RETIRED_ROWS over its limit
+        benchmark.sample(prefix + "retention.cleanup", QUERY_REPETITIONS, 1, () -> overfill(rows), i -> {
+            int count = dao.getCount();
+            if (count > rows) {
+                dao.deleteOldest(count - rows);
+                dao.retireZones();
+            }
+            return count;
+        });
+    }
+
+    private void openDatabase() {
+        context.deleteDatabase(DATABASE_NAME);
+        // same setup as SensorDatabase.getInstance, queries run on the benchmark thread
+        database = Room.databaseBuilder(context, SensorDatabase.class, DATABASE_NAME)
+                .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+                .allowMainThreadQueries()
+                .build();
+        dao = database.sensorDataDao();
+    }
+
+    private void closeDatabase() {
+        if (database != null) {
+            database.close();
+            database = null;
+            context.deleteDatabase(DATABASE_NAME);
+        }
+    }
+
+    // bulk load through one prepared statement, then build the zone map in one pass
+    private void seed(int rows) {
+        lastTimestamp = System.currentTimeMillis() - (rows + HEADROOM_ROWS) * ROW_INTERVAL_MS;
+        rowCount = 0;
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        db.beginTransaction();
+        try {
+            SupportSQLiteStatement insert = db.compileStatement(
+                    "INSERT INTO sensor_data (sensorType, value, timestamp, metadata, source, deleted) "
+                            + "VALUES (?, ?, ?, NULL, '" + SensorData.SOURCE_TEST + "', 0)");
+            for (int i = 0; i < rows; i++) {
+                SensorData data = nextReading();
+                insert.bindString(1, data.getSensorType());
+                insert.bindDouble(2, data.getValue());
+                insert.bindLong(3, data.getTimestamp());
+                insert.executeInsert();
+                insert.clearBindings();
+            }
+            db.execSQL("INSERT INTO sensor_data_zones (blockId, minTimestamp, maxTimestamp, maxDust, maxNoise, maxGas) "
+                    + "SELECT id / " + SensorDataZone.BLOCK_SIZE + ", MIN(timestamp), MAX(timestamp), "
+                    + "IFNULL(MAX(CASE WHEN sensorType = 'dust' THEN value END), " + SensorDataZone.NO_VALUE + "), "
+                    + "IFNULL(MAX(CASE WHEN sensorType = 'noise' THEN value END), " + SensorDataZone.NO_VALUE + "), "
+                    + "IFNULL(MAX(CASE WHEN sensorType = 'gas' THEN value END), " + SensorDataZone.NO_VALUE + ") "
+                    + "FROM sensor_data GROUP BY id / " + SensorDataZone.BLOCK_SIZE);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // bring the table to limit + RETIRED_ROWS, so the cleanup has RETIRED_ROWS to remove
+    private void overfill(int limit) {
+        int missing = limit + RETIRED_ROWS - dao.getCount();
+        if (missing > 0) {
+            dao.insertAllWithZones(nextReadings(missing));
+        } else if (missing < 0) {
+            dao.deleteOldest(-missing);
+        }
+    }
+
+    private void dropIndices() {
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        for (String index : INDEX_NAMES) {
+            db.execSQL("DROP INDEX IF EXISTS " + index);
+        }
+    }
+
+    private void createIndices() {
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        for (String index : INDICES) {
+            db.execSQL(index);
+        }
+    }
+
+    private List<SensorData> nextReadings(int count) {
+        List<SensorData> readings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            readings.add(nextReading());
+        }
+        return readings;
+    }
+
+    // round robin over the sensors, mostly safe levels with a sustained breach now and then
+    private SensorData nextReading() {
+        lastTimestamp += ROW_INTERVAL_MS;
+        long row = rowCount++;
+        String type = TYPES[(int) (row % TYPES.length)];
+        boolean breach = row % EPISODE_SPACING < EPISODE_LENGTH;
+        float value;
+        switch (type) {
+            case SensorData.TYPE_DUST:
+                value = breach ? 180f + random.nextFloat() * 100f : 20f + random.nextFloat() * 60f;
+                break;
+            case SensorData.TYPE_NOISE:
+                value = breach ? 90f + random.nextFloat() * 15f : 45f + random.nextFloat() * 25f;
+                break;
+            default:
+                value = breach ? 1200f + random.nextFloat() * 600f : 300f + random.nextFloat() * 400f;
+                break;
+        }
+        return new SensorData(type, value, lastTimestamp);
+    }
+}
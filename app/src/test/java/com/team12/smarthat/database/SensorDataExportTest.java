@@ -0,0 +1,52 @@
+package com.team12.smarthat.database;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SensorDataExportTest {
+
+    private static String iso(long timestamp) {
+        StringBuilder out = new StringBuilder();
+        SensorDataExport.appendIsoTime(out, timestamp);
+        return out.toString();
+    }
+
+    @Test
+    public void isoTime_utcWithMillis() {
+        assertEquals("1970-01-01T00:00:00.000Z", iso(0));
+        assertEquals("2023-11-14T22:13:20.123Z", iso(1700000000123L));
+        assertEquals("2000-02-29T00:00:00.000Z", iso(951782400000L));
+        assertEquals("1969-12-31T23:59:59.999Z", iso(-1));
+    }
+
+    @Test
+    public void csvRow_quotesOnlyFieldsThatNeedIt() {
+        StringBuilder out = new StringBuilder();
+        SensorDataExport.appendRow(SensorDataExport.Format.CSV, out, 7, 0, "dust", 12.5f, "REAL",
+                "{\"note\":\"a,b\"}");
+
+        assertEquals("7,0,1970-01-01T00:00:00.000Z,dust,12.5,REAL,\"{\"\"note\"\":\"\"a,b\"\"}\"\n", out.toString());
+    }
+
+    @Test
+    public void ndjsonRow_escapesStringsAndWritesNulls() {
+        StringBuilder out = new StringBuilder();
+        SensorDataExport.appendRow(SensorDataExport.Format.NDJSON, out, 7, 0, "noise", Float.NaN, "TEST",
+                null);
+        SensorDataExport.appendRow(SensorDataExport.Format.NDJSON, out, 8, 0, "gas", 400f, "REAL",
+                "line\n\"q\"\u0001");
+
+        assertEquals("{\"id\":7,\"timestamp\":0,\"time\":\"1970-01-01T00:00:00.000Z\",\"sensorType\":\"noise\","
+                + "\"value\":null,\"source\":\"TEST\",\"metadata\":null}\n"
+                + "{\"id\":8,\"timestamp\":0,\"time\":\"1970-01-01T00:00:00.000Z\",\"sensorType\":\"gas\","
+                + "\"value\":400.0,\"source\":\"REAL\",\"metadata\":\"line\\n\\\"q\\\"\\u0001\"}\n", out.toString());
+    }
+
+    @Test
+    public void fileName_extensionFollowsFormatAndCompression() {
+        assertTrue(SensorDataExport.fileName(SensorDataExport.Format.CSV, false, 0).endsWith(".csv"));
+        assertTrue(SensorDataExport.fileName(SensorDataExport.Format.NDJSON, true, 0).endsWith(".ndjson.gz"));
+        assertTrue(SensorDataExport.fileName(SensorDataExport.Format.CSV, true, 0).startsWith("smarthat_readings_"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.team12.smarthat.database;
+
+import static org.junit.Assert.*;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.team12.smarthat.models.SensorData;
+import com.team12.smarthat.models.SensorDataZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * upgrades a version 2 database, as the released app wrote it, to the current schema
+ * room validates every table and index against the entities when it opens
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+public class SensorDatabaseMigrationTest {
+
+    private static final String DATABASE_NAME = "migration_test.db";
+
+    private Context context;
+    private SensorDatabase database;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (database != null) {
+            database.close();
+        }
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void version2Readings_areKeptWithTheirZones() {
+        long start = System.currentTimeMillis() - 60_000;
+        try (SQLiteDatabase v2 = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DATABASE_NAME), null)) {
+            v2.execSQL("CREATE TABLE IF NOT EXISTS `sensor_data` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`sensorType` TEXT, `value` REAL NOT NULL, `timestamp` INTEGER NOT NULL, `metadata` TEXT, `source` TEXT)");
+            v2.execSQL("INSERT INTO sensor_data (sensorType, value, timestamp, source) VALUES ('dust', 40, " + start + ", 'REAL')");
+            v2.execSQL("INSERT INTO sensor_data (sensorType, value, timestamp, source) VALUES ('gas', 900, " + (start + 1000) + ", 'REAL')");
+            // second block, only noise
+            v2.execSQL("INSERT INTO sensor_data (id, sensorType, value, timestamp, source) VALUES ("
+                    + SensorDataZone.BLOCK_SIZE + ", 'noise', 70, " + (start + 2000) + ", 'REAL')");
+            v2.setVersion(2);
+        }
+
+        database = Room.databaseBuilder(context, SensorDatabase.class, DATABASE_NAME)
+                .addMigrations(SensorDatabase.MIGRATION_2_3)
+                .allowMainThreadQueries()
+                .build();
+        SensorDataDao dao = database.sensorDataDao();
+
+        assertEquals(3, dao.getCount());
+        assertEquals(Long.valueOf(start), dao.getOldestTimestamp());
+        assertTrue(SensorDatabase.takeEpisodeRebuild());
+        assertFalse(SensorDatabase.takeEpisodeRebuild());
+
+        try (Cursor zones = database.query("SELECT blockId, minTimestamp, maxTimestamp, maxDust, maxNoise, maxGas "
+                + "FROM sensor_data_zones ORDER BY blockId", null)) {
+            assertEquals(2, zones.getCount());
+            zones.moveToFirst();
+            assertEquals(0, zones.getLong(0));
+            assertEquals(start, zones.getLong(1));
+            assertEquals(start + 1000, zones.getLong(2));
+            assertEquals(40f, zones.getFloat(3), 0f);
+            assertEquals(SensorDataZone.NO_VALUE, zones.getFloat(4), 0f);
+            assertEquals(900f, zones.getFloat(5), 0f);
+            zones.moveToNext();
+            assertEquals(1, zones.getLong(0));
+            assertEquals(70f, zones.getFloat(4), 0f);
+        }
+
+        // new rows still extend the backfilled zones
+        dao.insertWithZone(new SensorData(SensorData.TYPE_DUST, 55f, start + 3000));
+        assertEquals(4, dao.getCount());
+    }
+}
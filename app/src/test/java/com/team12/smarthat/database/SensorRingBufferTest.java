@@ -0,0 +1,87 @@
+package com.team12.smarthat.database;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SensorRingBufferTest {
+
+    @Test
+    public void wrapAround_keepsNewestReadingsInOrder() {
+        SensorRingBuffer buffer = new SensorRingBuffer(4);
+        for (int i = 0; i < 10; i++) {
+            buffer.add(1000L + i, i);
+        }
+
+        long[] timestamps = new long[8];
+        float[] values = new float[8];
+        int count = buffer.copyLatest(timestamps, values);
+
+        assertEquals(4, count);
+        assertEquals(4, buffer.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(1006L + i, timestamps[i]);
+            assertEquals(6 + i, values[i], 0.0f);
+        }
+        assertEquals(9.0f, buffer.getLatestValue(-1.0f), 0.0f);
+    }
+
+    @Test
+    public void copySince_returnsOnlyReadingsInWindow() {
+        SensorRingBuffer buffer = new SensorRingBuffer(100);
+        for (int i = 0; i < 50; i++) {
+            buffer.add(i * 1000L, i);
+        }
+
+        long[] timestamps = new long[100];
+        float[] values = new float[100];
+        int count = buffer.copySince(40_000L, timestamps, values);
+
+        assertEquals(10, count);
+        assertEquals(40_000L, timestamps[0]);
+        assertEquals(49.0f, values[9], 0.0f);
+    }
+
+    @Test
+    public void emptyBuffer_returnsFallback() {
+        SensorRingBuffer buffer = new SensorRingBuffer(8);
+        assertEquals(0, buffer.copyLatest(new long[8], new float[8]));
+        assertEquals(-1.0f, buffer.getLatestValue(-1.0f), 0.0f);
+    }
+
+    @Test
+    public void concurrentReader_neverSeesTornSnapshot() throws InterruptedException {
+        SensorRingBuffer buffer = new SensorRingBuffer(64);
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        // value always equals the timestamp, and timestamps are consecutive
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 2_000_000; i++) {
+                buffer.add(i, i);
+            }
+        });
+        Thread reader = new Thread(() -> {
+            long[] timestamps = new long[32];
+            float[] values = new float[32];
+            while (writer.isAlive()) {
+                int count = buffer.copyLatest(timestamps, values);
+                for (int i = 0; i < count; i++) {
+                    if (i > 0 && timestamps[i] != timestamps[i - 1] + 1) {
+                        failure.set("gap at " + i + ": " + timestamps[i - 1] + " -> " + timestamps[i]);
+                    }
+                    if (values[i] != (float) timestamps[i]) {
+                        failure.set("value " + values[i] + " does not belong to " + timestamps[i]);
+                    }
+                }
+            }
+        });
+
+        writer.start();
+        reader.start();
+        writer.join();
+        reader.join();
+        assertNull(failure.get(), failure.get());
+    }
+}
@@ -0,0 +1,142 @@
+package com.team12.smarthat.database;
+
+import static org.junit.Assert.*;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.team12.smarthat.core.Clock;
+import com.team12.smarthat.models.SensorData;
+import com.team12.smarthat.models.SensorWindow;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+public class SensorWindowQueryTest {
+
+    private static final long WINDOW_MS = 10_000;
+
+    private SensorDatabase database;
+    private SensorDataDao dao;
+    // readings must not be in the future, SensorData replaces those timestamps
+    private long now = System.currentTimeMillis() - 60_000;
+    private final Clock clock = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+
+        @Override
+        public long nanoTime() {
+            return now * 1_000_000L;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, SensorDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        dao = database.sensorDataDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void newRows_areAppended() {
+        insert(SensorData.TYPE_DUST, 10, now - 3000);
+        insert(SensorData.TYPE_DUST, 11, now - 2000);
+        insert(SensorData.TYPE_NOISE, 60, now - 1500);
+        SensorWindowQuery query = SensorWindowQuery.lastMillis(dao, clock, SensorData.TYPE_DUST, WINDOW_MS);
+
+        SensorWindow first = query.call();
+        assertEquals(2, first.getReadings().size());
+        assertEquals(2, first.getAppended().size());
+
+        insert(SensorData.TYPE_DUST, 12, now - 1000);
+        SensorWindow second = query.call();
+        assertEquals(3, second.getReadings().size());
+        assertEquals(1, second.getAppended().size());
+        assertEquals(12f, second.getAppended().get(0).getValue(), 0f);
+        assertEquals(0, second.getEvictedCount());
+    }
+
+    @Test
+    public void agedRows_areEvictedWithoutAWrite() {
+        insert(SensorData.TYPE_DUST, 10, now - 9000);
+        insert(SensorData.TYPE_DUST, 11, now - 5000);
+        SensorWindowQuery query = SensorWindowQuery.lastMillis(dao, clock, SensorData.TYPE_DUST, WINDOW_MS);
+        query.call();
+        // stale once the 9 s old reading turns 10 s old
+        assertEquals(1000, query.millisUntilStale());
+
+        now += 2000;
+        SensorWindow window = query.call();
+        assertEquals(1, window.getEvictedCount());
+        assertTrue(window.getAppended().isEmpty());
+        assertEquals(11f, window.getReadings().get(0).getValue(), 0f);
+        assertEquals(3000, query.millisUntilStale());
+    }
+
+    @Test
+    public void tombstonedRows_leaveTheWindow() {
+        insert(SensorData.TYPE_GAS, 400, now - 3000);
+        insert(SensorData.TYPE_GAS, 4000, now - 2000);
+        insert(SensorData.TYPE_GAS, 420, now - 1000);
+        SensorWindowQuery query = SensorWindowQuery.lastMillis(dao, clock, SensorData.TYPE_GAS, WINDOW_MS);
+        List<SensorData> loaded = query.call().getReadings();
+
+        dao.tombstoneByIds(List.of(loaded.get(1).getId()));
+        SensorWindow window = query.call();
+
+        // reloaded: the old window is evicted and the live rows come back as appended
+        assertEquals(3, window.getEvictedCount());
+        assertEquals(2, window.getAppended().size());
+        assertEquals(2, window.getReadings().size());
+        assertEquals(400f, window.getReadings().get(0).getValue(), 0f);
+        assertEquals(420f, window.getReadings().get(1).getValue(), 0f);
+    }
+
+    @Test
+    public void rowsWindow_requeriesOnlyWhatIsNew() {
+        insert(SensorData.TYPE_NOISE, 50, now - 3000);
+        insert(SensorData.TYPE_NOISE, 55, now - 2000);
+        insert(SensorData.TYPE_NOISE, 60, now - 1000);
+        SensorWindowQuery query = SensorWindowQuery.lastRows(dao, SensorData.TYPE_NOISE, 2);
+
+        SensorWindow first = query.call();
+        assertEquals(2, first.getReadings().size());
+        assertEquals(55f, first.getReadings().get(0).getValue(), 0f);
+
+        SensorWindow unchanged = query.call();
+        assertTrue(unchanged.getAppended().isEmpty());
+        assertEquals(0, unchanged.getEvictedCount());
+
+        insert(SensorData.TYPE_NOISE, 65, now);
+        SensorWindow next = query.call();
+        assertEquals(1, next.getAppended().size());
+        assertEquals(1, next.getEvictedCount());
+        assertEquals(60f, next.getReadings().get(0).getValue(), 0f);
+        assertEquals(65f, next.getReadings().get(1).getValue(), 0f);
+        // only time windows age
+        assertEquals(-1, query.millisUntilStale());
+    }
+
+    private void insert(String sensorType, float value, long timestamp) {
+        dao.insertWithZone(new SensorData(sensorType, value, timestamp));
+    }
+}
@@ -0,0 +1,56 @@
+package com.team12.smarthat.utils;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class HampelFilterTest {
+
+    @Test
+    public void singleSpike_isOutlier() {
+        HampelFilter filter = new HampelFilter(5, 3.0f, 20.0f);
+        float[] values = {40f, 42f, 41f, 43f, 40f};
+        for (float value : values) {
+            assertFalse(filter.isOutlier(value));
+        }
+
+        assertTrue(filter.isOutlier(600f));
+        // the spike pushed the first 40 out of the window
+        assertEquals(42f, filter.getLastMedian(), 0f);
+        // back to normal right after
+        assertFalse(filter.isOutlier(41f));
+    }
+
+    @Test
+    public void realStep_passesOnceItHoldsTheMedian() {
+        HampelFilter filter = new HampelFilter(5, 3.0f, 20.0f);
+        for (int i = 0; i < 5; i++) {
+            filter.isOutlier(40f + i % 2);
+        }
+
+        assertTrue(filter.isOutlier(300f));
+        assertTrue(filter.isOutlier(302f));
+        assertFalse(filter.isOutlier(301f));
+        assertFalse(filter.isOutlier(303f));
+    }
+
+    @Test
+    public void flatSignal_smallChangesBelowMinDeviationPass() {
+        HampelFilter filter = new HampelFilter(5, 3.0f, 20.0f);
+        for (int i = 0; i < 5; i++) {
+            filter.isOutlier(50f);
+        }
+
+        // MAD is 0 here, only the floor stops this from being a spike
+        assertFalse(filter.isOutlier(65f));
+    }
+
+    @Test
+    public void partialWindow_neverFlags() {
+        HampelFilter filter = new HampelFilter(5, 3.0f, 20.0f);
+        filter.isOutlier(40f);
+        filter.isOutlier(40f);
+
+        assertFalse(filter.isOutlier(900f));
+    }
+}
@@ -0,0 +1,73 @@
+package com.team12.smarthat.utils;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LttbDownsamplerTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    public void fewerPointsThanTarget_passThroughUnchanged() {
+        LttbDownsampler downsampler = new LttbDownsampler(5, 100);
+        for (int i = 0; i < 5; i++) {
+            downsampler.add(START + i * 1000L, i);
+        }
+
+        long[] timestamps = downsampler.getTimestamps();
+        float[] values = downsampler.getValues();
+        assertEquals(5, timestamps.length);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(START + i * 1000L, timestamps[i]);
+            assertEquals(i, values[i], 0.0f);
+        }
+    }
+
+    @Test
+    public void largeSeries_reducedToTargetKeepingEndpoints() {
+        int total = 10_000;
+        int target = 200;
+        LttbDownsampler downsampler = new LttbDownsampler(total, target);
+        for (int i = 0; i < total; i++) {
+            downsampler.add(START + i * 1000L, (float) Math.sin(i / 100.0) * 50 + 60);
+        }
+
+        long[] timestamps = downsampler.getTimestamps();
+        assertEquals(target, timestamps.length);
+        assertEquals(START, timestamps[0]);
+        assertEquals(START + (total - 1) * 1000L, timestamps[target - 1]);
+        for (int i = 1; i < timestamps.length; i++) {
+            assertTrue("timestamps must stay ordered", timestamps[i] > timestamps[i - 1]);
+        }
+    }
+
+    @Test
+    public void spikeInFlatSeries_isKept() {
+        int total = 5_000;
+        LttbDownsampler downsampler = new LttbDownsampler(total, 50);
+        for (int i = 0; i < total; i++) {
+            downsampler.add(START + i * 1000L, i == 2_345 ? 120.0f : 60.0f);
+        }
+
+        float max = 0;
+        for (float value : downsampler.getValues()) {
+            max = Math.max(max, value);
+        }
+        assertEquals(120.0f, max, 0.0f);
+    }
+
+    @Test
+    public void shortStream_endsOnLastPointReceived() {
+        // rows deleted between the count and the scan
+        LttbDownsampler downsampler = new LttbDownsampler(1_000, 20);
+        for (int i = 0; i < 700; i++) {
+            downsampler.add(START + i * 1000L, i % 7);
+        }
+
+        long[] timestamps = downsampler.getTimestamps();
+        assertTrue(timestamps.length <= 20);
+        assertEquals(START, timestamps[0]);
+        assertEquals(START + 699 * 1000L, timestamps[timestamps.length - 1]);
+    }
+}
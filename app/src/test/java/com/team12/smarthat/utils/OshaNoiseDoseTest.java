@@ -0,0 +1,39 @@
+package com.team12.smarthat.utils;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class OshaNoiseDoseTest {
+
+    private static final double HOUR_MS = 60 * 60 * 1000.0;
+
+    @Test
+    public void tableLevels_giveTableTimes() {
+        for (int i = 0; i < Constants.OSHA_NOISE_LEVELS.length; i++) {
+            assertEquals(Constants.OSHA_EXPOSURE_TIMES[i],
+                    OshaNoiseDose.allowedMs(Constants.OSHA_NOISE_LEVELS[i]), 1.0);
+        }
+    }
+
+    @Test
+    public void exchangeRate_isFiveDb() {
+        assertEquals(5.0, OshaNoiseDose.EXCHANGE_RATE, 1e-9);
+        // 85 dB is below the table, extrapolated to 16 hours
+        assertEquals(16 * HOUR_MS, OshaNoiseDose.allowedMs(85f), 1.0);
+    }
+
+    @Test
+    public void belowDoseThreshold_neverAccumulates() {
+        assertTrue(Double.isInfinite(OshaNoiseDose.allowedMs(79.9f)));
+    }
+
+    @Test
+    public void twa_matchesOshaFormula() {
+        assertEquals(90.0, OshaNoiseDose.twa(1.0), 1e-9);
+        assertEquals(95.0, OshaNoiseDose.twa(2.0), 1e-9);
+        // 16.61 * log10(D / 100) + 90
+        assertEquals(16.61 * Math.log10(0.5) + 90, OshaNoiseDose.twa(0.5), 0.01);
+        assertTrue(Double.isNaN(OshaNoiseDose.twa(0)));
+    }
+}
@@ -0,0 +1,75 @@
+package com.team12.smarthat.utils;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class RollingStatisticsTest {
+
+    private static final long START = 1_700_000_000_000L;
+    private static final long SECOND = 1000L;
+
+    @Test
+    public void constantSignal_meanAndEwmaEqualIt() {
+        RollingStatistics stats = new RollingStatistics(60 * SECOND, 6, 10 * SECOND, 100);
+        for (int i = 0; i < 120; i++) {
+            stats.add(START + i * SECOND, 70f);
+        }
+
+        RollingStatistics.Snapshot snapshot = stats.snapshot();
+        assertEquals(70.0, snapshot.getEwma(), 1e-6);
+        assertEquals(70.0, snapshot.getWindowMean(), 1e-6);
+        assertEquals(0.0, snapshot.getWindowStdDev(), 1e-6);
+        assertEquals(120, snapshot.getTotalCount());
+        assertEquals(70.0, snapshot.getP99(), 1e-6);
+    }
+
+    @Test
+    public void window_forgetsOldReadings() {
+        RollingStatistics stats = new RollingStatistics(60 * SECOND, 6, 10 * SECOND, 100);
+        for (int i = 0; i < 60; i++) {
+            stats.add(START + i * SECOND, 100f);
+        }
+        for (int i = 60; i < 180; i++) {
+            stats.add(START + i * SECOND, 50f);
+        }
+
+        RollingStatistics.Snapshot snapshot = stats.snapshot();
+        assertEquals(50.0, snapshot.getWindowMax(), 1e-6);
+        assertTrue(snapshot.getWindowCount() <= 60);
+        // the totals still include the loud minute
+        assertEquals((60 * 100.0 + 120 * 50.0) / 180, snapshot.getTotalMean(), 1e-6);
+    }
+
+    @Test
+    public void welford_matchesTwoPassVariance() {
+        RollingStatistics stats = new RollingStatistics(600 * SECOND, 10, 10 * SECOND, 100);
+        float[] values = {60f, 62f, 71f, 58f, 90f, 66f, 64f, 80f};
+        double sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            stats.add(START + i * 30 * SECOND, values[i]);
+            sum += values[i];
+        }
+        double mean = sum / values.length;
+        double squares = 0;
+        for (float value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+
+        RollingStatistics.Snapshot snapshot = stats.snapshot();
+        // readings span several buckets, so this also checks the bucket combination
+        assertEquals(mean, snapshot.getWindowMean(), 1e-6);
+        assertEquals(Math.sqrt(squares / (values.length - 1)), snapshot.getWindowStdDev(), 1e-6);
+        assertEquals(snapshot.getWindowStdDev(), snapshot.getTotalStdDev(), 1e-6);
+    }
+
+    @Test
+    public void ewma_movesAboutOneTimeConstant() {
+        RollingStatistics stats = new RollingStatistics(60 * SECOND, 6, 10 * SECOND, 100);
+        stats.add(START, 0f);
+        stats.add(START + 10 * SECOND, 100f);
+
+        // one time constant covers 1 - 1/e of the step
+        assertEquals(100 * (1 - Math.exp(-1)), stats.snapshot().getEwma(), 1e-6);
+    }
+}
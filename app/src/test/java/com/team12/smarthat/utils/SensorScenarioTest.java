@@ -0,0 +1,122 @@
+package com.team12.smarthat.utils;
+
+import static org.junit.Assert.*;
+
+import com.team12.smarthat.models.SensorData;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class SensorScenarioTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    public void generate_sameSeedGivesSameSamples() {
+        List<SensorScenario.Sample> a = SensorScenario.alertWalkthrough(42).generate(START);
+        List<SensorScenario.Sample> b = SensorScenario.alertWalkthrough(42).generate(START);
+        List<SensorScenario.Sample> c = SensorScenario.alertWalkthrough(43).generate(START);
+
+        assertEquals(a.size(), b.size());
+        boolean differs = false;
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(a.get(i).getOffsetMs(), b.get(i).getOffsetMs());
+            assertEquals(a.get(i).getType(), b.get(i).getType());
+            assertEquals(a.get(i).getValue(), b.get(i).getValue(), 0f);
+            assertEquals(a.get(i).getTimestamp(), b.get(i).getTimestamp());
+            differs |= a.get(i).getValue() != c.get(i).getValue();
+        }
+        assertTrue(differs);
+    }
+
+    @Test
+    public void shapes_produceExpectedValues() {
+        List<SensorScenario.Sample> samples = new SensorScenario(1, 4000)
+                .rate(SensorData.TYPE_DUST, 20)
+                .ramp(SensorData.TYPE_DUST, 0, 1000, 0f, 100f)
+                .squarePulse(SensorData.TYPE_DUST, 1000, 2000, 10f, 50f, 500, 0.4f)
+                .sine(SensorData.TYPE_DUST, 2000, 3000, 500f, 100f, 1000)
+                .sustained(SensorData.TYPE_DUST, 3000, 4000, 90f, 5f)
+                .generate(START);
+
+        assertEquals(80, samples.size());
+        assertEquals(0f, valueAt(samples, 0), 0.001f);
+        assertEquals(50f, valueAt(samples, 500), 0.001f);
+        assertEquals(50f, valueAt(samples, 1100), 0f);
+        assertEquals(10f, valueAt(samples, 1300), 0f);
+        assertEquals(50f, valueAt(samples, 1500), 0f);
+        assertEquals(600f, valueAt(samples, 2250), 0.01f);
+        assertEquals(400f, valueAt(samples, 2750), 0.01f);
+        for (long t = 3000; t < 4000; t += 50) {
+            float value = valueAt(samples, t);
+            assertTrue(String.valueOf(value), value >= 85f && value <= 95f);
+        }
+    }
+
+    @Test
+    public void dropout_skipsWindowForChosenSensors() {
+        List<SensorScenario.Sample> samples = new SensorScenario(1, 1000)
+                .rate(SensorData.TYPE_DUST, 10)
+                .rate(SensorData.TYPE_GAS, 10)
+                .constant(SensorData.TYPE_DUST, 0, 1000, 1f)
+                .constant(SensorData.TYPE_GAS, 0, 1000, 2f)
+                .dropout(SensorData.TYPE_DUST, 200, 500)
+                .generate(START);
+
+        int dust = 0;
+        int gas = 0;
+        for (SensorScenario.Sample sample : samples) {
+            if (sample.getType().equals(SensorData.TYPE_DUST)) {
+                dust++;
+                assertFalse(sample.getOffsetMs() >= 200 && sample.getOffsetMs() < 500);
+            } else {
+                gas++;
+            }
+        }
+        assertEquals(7, dust);
+        assertEquals(10, gas);
+    }
+
+    @Test
+    public void outOfOrderBurst_reversesTimestampsInPlace() {
+        List<SensorScenario.Sample> samples = new SensorScenario(1, 1000)
+                .rate(SensorData.TYPE_NOISE, 10)
+                .ramp(SensorData.TYPE_NOISE, 0, 1000, 0f, 100f)
+                .outOfOrderBurst(SensorData.TYPE_NOISE, 300, 4)
+                .generate(START);
+
+        long[] expected = {0, 100, 200, 600, 500, 400, 300, 700, 800, 900};
+        for (int i = 0; i < samples.size(); i++) {
+            assertEquals(i * 100L, samples.get(i).getOffsetMs());
+            assertEquals(START + expected[i], samples.get(i).getTimestamp());
+        }
+        assertEquals(60f, samples.get(3).getValue(), 0.001f);
+    }
+
+    @Test
+    public void toPayload_matchesDeviceJson() {
+        SensorScenario.Sample sample = new SensorScenario(1, 100)
+                .rate(SensorData.TYPE_GAS, 10)
+                .constant(SensorData.TYPE_GAS, 0, 100, 800f)
+                .generate(START).get(0);
+
+        assertEquals("{\"type\":\"gas\",\"value\":800.0,\"timestamp\":" + START + "}",
+                new String(sample.toPayload(), StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ramp_rejectsEmptyWindow() {
+        new SensorScenario(1, 1000).ramp(SensorData.TYPE_DUST, 500, 500, 0f, 1f);
+    }
+
+    private static float valueAt(List<SensorScenario.Sample> samples, long offsetMs) {
+        for (SensorScenario.Sample sample : samples) {
+            if (sample.getOffsetMs() == offsetMs) {
+                return sample.getValue();
+            }
+        }
+        throw new AssertionError("No sample at " + offsetMs);
+    }
+}
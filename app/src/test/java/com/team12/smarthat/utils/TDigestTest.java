@@ -0,0 +1,61 @@
+package com.team12.smarthat.utils;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class TDigestTest {
+
+    @Test
+    public void empty_returnsNaN() {
+        assertTrue(Double.isNaN(new TDigest(100).quantile(0.5)));
+    }
+
+    @Test
+    public void uniformValues_quantilesClose() {
+        TDigest digest = new TDigest(100);
+        for (int i = 0; i < 100_000; i++) {
+            digest.add(i % 1000);
+        }
+
+        assertEquals(100_000, digest.size(), 0.0);
+        assertEquals(500, digest.quantile(0.5), 10);
+        assertEquals(990, digest.quantile(0.99), 3);
+        assertEquals(0, digest.getMin(), 0.0);
+        assertEquals(999, digest.getMax(), 0.0);
+    }
+
+    @Test
+    public void skewedValues_tailMatchesExact() {
+        Random random = new Random(42);
+        double[] values = new double[50_000];
+        TDigest digest = new TDigest(100);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(random.nextGaussian());
+            digest.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        double exactP99 = values[(int) (0.99 * values.length)];
+        assertEquals(exactP99, digest.quantile(0.99), exactP99 * 0.02);
+    }
+
+    @Test
+    public void merge_sameAsOneDigest() {
+        TDigest first = new TDigest(100);
+        TDigest second = new TDigest(100);
+        for (int i = 0; i < 10_000; i++) {
+            first.add(i);
+            second.add(10_000 + i);
+        }
+
+        first.merge(second);
+
+        assertEquals(20_000, first.size(), 0.0);
+        assertEquals(10_000, first.quantile(0.5), 200);
+        assertEquals(19_999, first.getMax(), 0.0);
+    }
+}
@@ -3,12 +3,19 @@ package com.team12.smarthat.utils;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import com.team12.smarthat.bluetooth.devices.esp32.ESP32BluetoothSpec;
 import com.team12.smarthat.models.SensorData;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
 public class TestDataGeneratorTest {
 
     private TestDataGenerator testDataGenerator;
@@ -73,4 +80,140 @@ public class TestDataGeneratorTest {
         assertFalse(testDataGenerator.isTestModeActive());
         assertEquals(TestDataGenerator.TestMode.OFF, testDataGenerator.getCurrentMode());
     }
-} 
\ No newline at end of file
+    
+    @Test
+    public void loadTest_emitsEverySensorAtItsRate() throws Exception {
+        List<UUID> uuids = new ArrayList<>();
+        List<String> payloads = new ArrayList<>();
+        testDataGenerator.setPayloadSink((uuid, payload) -> {
+            synchronized (uuids) {
+                uuids.add(uuid);
+                payloads.add(new String(payload, StandardCharsets.UTF_8));
+            }
+        });
+        
+        assertTrue(testDataGenerator.startLoadTest(new TestDataGenerator.LoadProfile(400, 0, 100)
+                .setShape(TestDataGenerator.LoadProfile.Shape.JITTER).setDurationMs(500).setSeed(7)));
+        assertFalse(testDataGenerator.startLoadTest(new TestDataGenerator.LoadProfile(1, 1, 1)));
+        waitForLoadTest();
+        
+        long dust = testDataGenerator.getLoadEmittedCount(SensorData.TYPE_DUST);
+        long gas = testDataGenerator.getLoadEmittedCount(SensorData.TYPE_GAS);
+        assertTrue("dust " + dust, dust >= 180 && dust <= 201);
+        assertTrue("gas " + gas, gas >= 45 && gas <= 51);
+        assertEquals(0, testDataGenerator.getLoadEmittedCount(SensorData.TYPE_NOISE));
+        
+        synchronized (uuids) {
+            assertEquals(dust + gas, uuids.size());
+            for (int i = 0; i < uuids.size(); i++) {
+                String type = uuids.get(i).equals(ESP32BluetoothSpec.DUST_CHARACTERISTIC_UUID)
+                        ? SensorData.TYPE_DUST : SensorData.TYPE_GAS;
+                assertTrue(payloads.get(i), payloads.get(i).startsWith("{\"type\":\"" + type + "\",\"value\":"));
+            }
+        }
+    }
+    
+    @Test
+    public void loadTest_burstsKeepTheMeanRate() throws Exception {
+        testDataGenerator.setPayloadSink((uuid, payload) -> { });
+        
+        assertTrue(testDataGenerator.startLoadTest(new TestDataGenerator.LoadProfile(0, 200, 0)
+                .setShape(TestDataGenerator.LoadProfile.Shape.BURST).setBurstSize(20).setDurationMs(450)));
+        waitForLoadTest();
+        
+        // a burst of 20 every 100ms, five of them start inside 450ms
+        assertEquals(100, testDataGenerator.getLoadEmittedCount(SensorData.TYPE_NOISE));
+    }
+    
+    @Test
+    public void loadTest_stopEndsEmission() throws Exception {
+        testDataGenerator.setPayloadSink((uuid, payload) -> { });
+        
+        assertTrue(testDataGenerator.startLoadTest(new TestDataGenerator.LoadProfile(1000, 1000, 1000)));
+        Thread.sleep(100);
+        assertTrue(testDataGenerator.isLoadTestActive());
+        
+        testDataGenerator.stopLoadTest();
+        assertFalse(testDataGenerator.isLoadTestActive());
+        // stop doesn't wait, the emitters exit after the payload they are on
+        long deadline = System.currentTimeMillis() + 1000;
+        while (testDataGenerator.hasLoadEmitters() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertFalse(testDataGenerator.hasLoadEmitters());
+        long emitted = testDataGenerator.getLoadEmittedCount(SensorData.TYPE_DUST);
+        assertTrue(emitted > 0);
+        Thread.sleep(50);
+        assertEquals(emitted, testDataGenerator.getLoadEmittedCount(SensorData.TYPE_DUST));
+    }
+    
+    @Test
+    public void scenario_playsEverySampleInOrder() throws Exception {
+        List<String> types = new ArrayList<>();
+        testDataGenerator.setPayloadSink((uuid, payload) -> {
+            synchronized (types) {
+                types.add(uuid.equals(ESP32BluetoothSpec.DUST_CHARACTERISTIC_UUID)
+                        ? SensorData.TYPE_DUST : SensorData.TYPE_NOISE);
+            }
+        });
+        SensorScenario scenario = new SensorScenario(3, 300)
+                .rate(SensorData.TYPE_DUST, 20)
+                .rate(SensorData.TYPE_NOISE, 50)
+                .constant(SensorData.TYPE_DUST, 0, 300, 40f)
+                .sustained(SensorData.TYPE_NOISE, 0, 300, 90f, 5f);
+        
+        assertTrue(testDataGenerator.startScenario(scenario));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (testDataGenerator.isScenarioActive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        
+        List<SensorScenario.Sample> expected = scenario.generate(0);
+        synchronized (types) {
+            assertEquals(expected.size(), types.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getType(), types.get(i));
+            }
+        }
+    }
+    
+    @Test
+    public void stopScenario_returnsAtOnceAndNothingArrivesAfter() throws Exception {
+        AtomicLong delivered = new AtomicLong();
+        testDataGenerator.setPayloadSink((uuid, payload) -> {
+            delivered.incrementAndGet();
+            // a sink that clears the interrupt, the player must still stop
+            Thread.interrupted();
+        });
+        SensorScenario scenario = new SensorScenario(5, 10_000)
+                .rate(SensorData.TYPE_DUST, 200)
+                .constant(SensorData.TYPE_DUST, 0, 10_000, 40f);
+        
+        assertTrue(testDataGenerator.startScenario(scenario));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (delivered.get() < 5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        testDataGenerator.stopScenario();
+        assertFalse(testDataGenerator.isScenarioActive());
+        
+        // the sample being delivered when stop was called may still land
+        Thread.sleep(50);
+        long afterStop = delivered.get();
+        Thread.sleep(100);
+        assertEquals(afterStop, delivered.get());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void loadProfile_rejectsRatesAboveLimit() {
+        new TestDataGenerator.LoadProfile(TestDataGenerator.LoadProfile.MAX_RATE_HZ + 1, 0, 0);
+    }
+    
+    private void waitForLoadTest() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (testDataGenerator.isLoadTestActive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(testDataGenerator.isLoadTestActive());
+    }
+}
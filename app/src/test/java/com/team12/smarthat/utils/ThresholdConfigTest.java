@@ -0,0 +1,58 @@
+package com.team12.smarthat.utils;
+
+import static org.junit.Assert.*;
+
+import com.team12.smarthat.models.SensorData;
+
+import org.junit.Test;
+
+public class ThresholdConfigTest {
+
+    @Test
+    public void thresholdFor_mapsEachSensor() {
+        ThresholdConfig config = new ThresholdConfig(40f, 80f, 1000f, true, true, true, true);
+
+        assertEquals(40f, config.thresholdFor(SensorData.TYPE_DUST), 0f);
+        assertEquals(80f, config.thresholdFor(SensorData.TYPE_NOISE), 0f);
+        assertEquals(1000f, config.thresholdFor(SensorData.TYPE_GAS), 0f);
+        assertEquals(Float.MAX_VALUE, config.thresholdFor("humidity"), 0f);
+    }
+
+    @Test
+    public void isBreach_strictlyAboveThreshold() {
+        ThresholdConfig config = new ThresholdConfig(40f, 80f, 1000f, true, true, true, true);
+
+        assertFalse(config.isBreach(new SensorData(SensorData.TYPE_NOISE, 80f)));
+        assertTrue(config.isBreach(new SensorData(SensorData.TYPE_NOISE, 80.5f)));
+    }
+
+    @Test
+    public void equals_comparesEveryValue() {
+        ThresholdConfig config = new ThresholdConfig(40f, 80f, 1000f, true, true, true, true);
+
+        assertEquals(config, new ThresholdConfig(40f, 80f, 1000f, true, true, true, true));
+        assertEquals(config.hashCode(), new ThresholdConfig(40f, 80f, 1000f, true, true, true, true).hashCode());
+        assertNotEquals(config, new ThresholdConfig(40f, 85f, 1000f, true, true, true, true));
+        assertNotEquals(config, new ThresholdConfig(40f, 80f, 1000f, true, true, true, false));
+    }
+
+    @Test
+    public void perTypeSwitches_unknownTypesAllowed() {
+        ThresholdConfig config = new ThresholdConfig(40f, 80f, 1000f, true, false, true, false);
+
+        assertFalse(config.areNotificationsEnabledForType("Dust"));
+        assertTrue(config.areNotificationsEnabledForType("noise"));
+        assertFalse(config.areNotificationsEnabledForType("gas"));
+        assertTrue(config.areNotificationsEnabledForType("general"));
+    }
+
+    @Test
+    public void beforeInitialize_defaultsFromConstants() {
+        ThresholdConfig config = ThresholdConfig.get();
+
+        assertEquals(Constants.DUST_THRESHOLD, config.getDustThreshold(), 0f);
+        assertEquals(Constants.NOISE_THRESHOLD, config.getNoiseThreshold(), 0f);
+        assertEquals(Constants.GAS_THRESHOLD, config.getGasThreshold(), 0f);
+        assertTrue(config.areNotificationsEnabled());
+    }
+}
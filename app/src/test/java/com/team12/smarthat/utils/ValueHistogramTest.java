@@ -0,0 +1,37 @@
+package com.team12.smarthat.utils;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ValueHistogramTest {
+
+    @Test
+    public void uniformValues_percentilesWithinOneBin() {
+        ValueHistogram histogram = new ValueHistogram(0.0f, 100.0f, 1000);
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.add(i / 100.0f);
+        }
+
+        float binWidth = 100.0f / 1000;
+        assertEquals(50.0f, histogram.percentile(0.50), binWidth);
+        assertEquals(95.0f, histogram.percentile(0.95), binWidth);
+        assertEquals(99.0f, histogram.percentile(0.99), binWidth);
+        assertEquals(10_000, histogram.getCount());
+    }
+
+    @Test
+    public void constantValues_percentileIsThatValue() {
+        ValueHistogram histogram = new ValueHistogram(85.0f, 85.0f, 1024);
+        for (int i = 0; i < 100; i++) {
+            histogram.add(85.0f);
+        }
+
+        assertEquals(85.0f, histogram.percentile(0.95), 0.0f);
+    }
+
+    @Test
+    public void emptyHistogram_returnsNaN() {
+        assertTrue(Float.isNaN(new ValueHistogram(0.0f, 10.0f, 16).percentile(0.5)));
+    }
+}
@@ -0,0 +1,19 @@
+// android-free ingest pipeline, runs and benchmarks on a plain jvm
+plugins {
+    `java-library`
+    `java-test-fixtures`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
+
+tasks.test {
+    // benchmarks under src/test are skipped unless run with -Pbench
+    systemProperty("smarthat.bench", project.hasProperty("bench").toString())
+}
@@ -0,0 +1,24 @@
+package com.team12.smarthat.core;
+
+/**
+ * time source for the pipeline, swapped for a fixed clock in tests
+ */
+public interface Clock {
+    /** wall clock ms, what reading timestamps are compared with */
+    long currentTimeMillis();
+
+    /** monotonic ns for measuring durations, no relation to the wall clock */
+    long nanoTime();
+
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+}
@@ -0,0 +1,290 @@
+package com.team12.smarthat.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * turns raw sensor payloads into readings:
+ *   queue -> batch -> parse -> order by timestamp -> out of order check -> range check -> listener
+ * - onPayload() only queues, from any thread; everything else runs on the scheduler
+ * - a full queue drops its oldest payloads
+ * - a batch is ordered by payload timestamp, arrival breaks ties
+ * - a payload older than the last one of its sensor is still used within maxTimestampDeviationMs,
+ *   beyond that it is skipped
+ * - a payload that isn't json yields the sensor's last valid value, stamped now
+ * - a traced payload is stamped queued and parsed on a LatencyTracer, see setTracer()
+ * sensors are registered with addSensor() before the first payload
+ */
+public class IngestPipeline implements PayloadSource.Listener {
+    public static final int MAX_QUEUE_SIZE = 100;
+    public static final int BATCH_SIZE = 10;
+    private static final long RETRY_DELAY_MS = 100;
+
+    public interface Listener {
+        /**
+         * one reading, on the scheduler's thread
+         * @param timestamp from the payload, 0 if it had none
+         * @param trace the payload's LatencyTracer id, to attach to the reading built here
+         */
+        void onReading(String sensorType, float value, long timestamp, int trace);
+
+        /**
+         * something worth logging: a dropped, skipped, out of range or unreadable payload
+         */
+        default void onWarning(String message) {
+        }
+    }
+
+    // a queued payload, parsed fields are filled in on the scheduler thread
+    private static final class Pending {
+        final UUID uuid;
+        final byte[] payload;
+        final long receivedAt;
+        final int trace;
+        int sensor;
+        boolean valid;
+        double value;
+        long timestamp;
+
+        Pending(UUID uuid, byte[] payload, long receivedAt, int trace) {
+            this.uuid = uuid;
+            this.payload = payload;
+            this.receivedAt = receivedAt;
+            this.trace = trace;
+        }
+    }
+
+    private static final Comparator<Pending> BY_TIMESTAMP = (a, b) -> {
+        if (a.timestamp == b.timestamp) {
+            return Long.compare(a.receivedAt, b.receivedAt);
+        }
+        return Long.compare(a.timestamp, b.timestamp);
+    };
+
+    private final Scheduler scheduler;
+    private final Clock clock;
+    private final long maxTimestampDeviationMs;
+    private final Listener listener;
+    private volatile LatencyTracer tracer;
+
+    // registered sensors, looked up by uuid with a short linear scan
+    private UUID[] uuids = new UUID[0];
+    private String[] types = new String[0];
+    private float[] maxValues = new float[0];
+    private float[] lastValid = new float[0];
+    private long[] lastTimestamps = new long[0];
+
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    // ConcurrentLinkedQueue.size() walks the queue, this doesn't
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final Runnable drainTask = this::drain;
+    private final Runnable retryTask = this::scheduleDrain;
+
+    // only touched on the scheduler thread
+    private final SensorPayloadParser parser = new SensorPayloadParser();
+    private final List<Pending> batch = new ArrayList<>(BATCH_SIZE);
+
+    /**
+     *
+     * @param scheduler runs parsing and dispatch, one task at a time
+     * @param clock stamps arrivals and fallback readings
+     * @param maxTimestampDeviationMs how far back a payload may be and still be used
+     * @param listener receives readings on the scheduler's thread
+     */
+    public IngestPipeline(Scheduler scheduler, Clock clock, long maxTimestampDeviationMs, Listener listener) {
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.maxTimestampDeviationMs = maxTimestampDeviationMs;
+        this.listener = listener;
+    }
+
+    /**
+     * @param maxValue readings above this are still dispatched, but not kept as the fallback
+     * @param initialValue fallback until a valid reading arrives
+     */
+    public synchronized void addSensor(UUID uuid, String type, float maxValue, float initialValue) {
+        int count = uuids.length;
+        uuids = Arrays.copyOf(uuids, count + 1);
+        types = Arrays.copyOf(types, count + 1);
+        maxValues = Arrays.copyOf(maxValues, count + 1);
+        lastValid = Arrays.copyOf(lastValid, count + 1);
+        lastTimestamps = Arrays.copyOf(lastTimestamps, count + 1);
+        uuids[count] = uuid;
+        types[count] = type;
+        maxValues[count] = maxValue;
+        lastValid[count] = initialValue;
+    }
+
+    /**
+     * stamp traced payloads on this tracer, null to stop
+     */
+    public void setTracer(LatencyTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * queue one payload, safe from any thread
+     */
+    @Override
+    public void onPayload(UUID characteristic, byte[] payload) {
+        onPayload(characteristic, payload, LatencyTracer.NO_TRACE);
+    }
+
+    @Override
+    public void onPayload(UUID characteristic, byte[] payload, int trace) {
+        // make room first, the newest payload is the one worth keeping
+        int over = queued.get() - MAX_QUEUE_SIZE + 1;
+        if (over > 0) {
+            listener.onWarning("Notification queue reached maximum size (" + MAX_QUEUE_SIZE
+                    + "), removing oldest notifications");
+            for (int i = 0; i < over && queue.poll() != null; i++) {
+                queued.decrementAndGet();
+            }
+        }
+
+        LatencyTracer currentTracer = tracer;
+        if (currentTracer != null) {
+            currentTracer.mark(trace, LatencyTracer.STAGE_QUEUED);
+        }
+        queue.add(new Pending(characteristic, payload, clock.currentTimeMillis(), trace));
+        queued.incrementAndGet();
+        scheduleDrain();
+    }
+
+    /**
+     * drop queued payloads and forget the last timestamps, fallback values are kept
+     */
+    public void clear() {
+        while (queue.poll() != null) {
+            queued.decrementAndGet();
+        }
+        synchronized (this) {
+            Arrays.fill(lastTimestamps, 0);
+        }
+    }
+
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    private void scheduleDrain() {
+        if (!draining.getAndSet(true)) {
+            scheduler.execute(drainTask);
+        }
+    }
+
+    private void drain() {
+        try {
+            batch.clear();
+            Pending pending;
+            while (batch.size() < BATCH_SIZE && (pending = queue.poll()) != null) {
+                queued.decrementAndGet();
+                batch.add(pending);
+            }
+            if (batch.isEmpty()) {
+                draining.set(false);
+                return;
+            }
+
+            // parse once per payload, the sort and the checks read the parsed fields
+            LatencyTracer currentTracer = tracer;
+            for (int i = 0; i < batch.size(); i++) {
+                Pending p = batch.get(i);
+                p.sensor = indexOf(p.uuid);
+                p.valid = parser.parse(p.payload);
+                p.value = parser.getValue();
+                p.timestamp = parser.getTimestamp();
+                if (currentTracer != null) {
+                    currentTracer.mark(p.trace, LatencyTracer.STAGE_PARSED);
+                }
+            }
+            batch.sort(BY_TIMESTAMP);
+
+            for (int i = 0; i < batch.size(); i++) {
+                process(batch.get(i));
+            }
+            batch.clear();
+
+            draining.set(false);
+            if (!queue.isEmpty()) {
+                scheduleDrain();
+            }
+        } catch (RuntimeException e) {
+            listener.onWarning("Error processing notification queue: " + e);
+            batch.clear();
+            draining.set(false);
+            if (!queue.isEmpty()) {
+                // short delay so a payload that keeps failing can't spin the thread
+                scheduler.executeDelayed(retryTask, RETRY_DELAY_MS);
+            }
+        }
+    }
+
+    private void process(Pending p) {
+        int sensor = p.sensor;
+        if (sensor < 0) {
+            listener.onWarning("Unknown characteristic UUID: " + p.uuid);
+            return;
+        }
+        String type = types[sensor];
+        long timestamp = p.timestamp;
+
+        long last = lastTimestamps[sensor];
+        if (timestamp > 0 && last > 0 && timestamp < last) {
+            long behind = last - timestamp;
+            if (behind >= maxTimestampDeviationMs) {
+                listener.onWarning("Skipping significantly out-of-order notification for " + type
+                        + ", time difference: -" + behind + "ms (exceeds max deviation of "
+                        + maxTimestampDeviationMs + "ms)");
+                return;
+            }
+            listener.onWarning("Processing out-of-order notification for " + type
+                    + ", time difference: -" + behind + "ms");
+        }
+
+        if (p.payload == null || p.payload.length == 0) {
+            listener.onWarning("Empty characteristic data");
+            return;
+        }
+
+        try {
+            if (p.valid) {
+                double value = p.value;
+                if (value < 0 || value > maxValues[sensor]) {
+                    // still dispatched, just not kept as the fallback
+                    listener.onWarning(type + " sensor value out of range: " + value);
+                } else {
+                    lastValid[sensor] = (float) value;
+                }
+                listener.onReading(type, (float) value, timestamp, p.trace);
+            } else {
+                listener.onWarning("Invalid JSON, using last valid reading as fallback: "
+                        + lastValid[sensor] + " for " + type);
+                listener.onReading(type, lastValid[sensor], clock.currentTimeMillis(), p.trace);
+            }
+        } catch (RuntimeException e) {
+            listener.onWarning("Error processing characteristic data: " + e);
+        }
+
+        if (timestamp > last) {
+            lastTimestamps[sensor] = timestamp;
+        }
+    }
+
+    private int indexOf(UUID uuid) {
+        UUID[] registered = uuids;
+        for (int i = 0; i < registered.length; i++) {
+            if (registered[i].equals(uuid)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
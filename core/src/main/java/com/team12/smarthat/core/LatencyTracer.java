@@ -0,0 +1,264 @@
+package com.team12.smarthat.core;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * per-sample monotonic timestamps from the gatt callback to the screen and the database
+ *   gatt callback -> queued -> parsed -> dispatched -> displayed
+ *                                                  \-> committed
+ * - begin() hands out a trace id, each stage stamps it with mark()
+ * - once a sample is a reading, attach() ties the trace to it and traceOf() finds it again,
+ *   so nothing is added to the reading itself
+ * - each stage's latency since the stage before it, and the whole path to the screen and to
+ *   disk, goes into a histogram
+ * fixed size: the last CAPACITY traces are kept, a stamp for an older one is ignored.
+ * nothing allocates after construction, every method is safe from any thread
+ */
+public final class LatencyTracer {
+    public static final int NO_TRACE = 0;
+
+    public static final int STAGE_GATT_CALLBACK = 0;
+    public static final int STAGE_QUEUED = 1;
+    public static final int STAGE_PARSED = 2;
+    public static final int STAGE_DISPATCHED = 3;
+    public static final int STAGE_DISPLAYED = 4;
+    public static final int STAGE_COMMITTED = 5;
+    public static final int STAGES = 6;
+
+    private static final String[] STAGE_NAMES = {"gatt", "queue", "parse", "dispatch", "display", "commit"};
+    // the stage each one is measured from, display and commit both follow dispatch
+    private static final int[] PREVIOUS = {STAGE_GATT_CALLBACK, STAGE_GATT_CALLBACK, STAGE_QUEUED,
+            STAGE_PARSED, STAGE_DISPATCHED, STAGE_DISPATCHED};
+
+    // a few seconds of samples at the esp32's rate, covers a database batch
+    public static final int CAPACITY = 1024;
+    private static final int MASK = CAPACITY - 1;
+
+    private static volatile LatencyTracer instance;
+
+    private final Clock clock;
+    private volatile boolean enabled = true;
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    // slot = trace & MASK, the slot remembers which trace owns it
+    private final AtomicIntegerArray slotTraces = new AtomicIntegerArray(CAPACITY);
+    private final AtomicLongArray stamps = new AtomicLongArray(CAPACITY * STAGES);
+    private final AtomicReferenceArray<Object> samples = new AtomicReferenceArray<>(CAPACITY);
+    // identity hash of an attached sample -> its trace, open addressing over PROBES slots so
+    // samples sharing a hash stay findable. twice CAPACITY keeps the table at most half full
+    static final int IDENTITY_SLOTS = CAPACITY * 2;
+    private static final int IDENTITY_MASK = IDENTITY_SLOTS - 1;
+    private static final int PROBES = 8;
+    private final AtomicIntegerArray byIdentity = new AtomicIntegerArray(IDENTITY_SLOTS);
+
+    private final LatencyHistogram[] stageHistograms = new LatencyHistogram[STAGES];
+    private final LatencyHistogram toDisplay = new LatencyHistogram();
+    private final LatencyHistogram toCommit = new LatencyHistogram();
+
+    public LatencyTracer(Clock clock) {
+        this.clock = clock;
+        for (int i = 0; i < STAGES; i++) {
+            stageHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * the tracer the app's stages share
+     */
+    public static LatencyTracer getInstance() {
+        if (instance == null) {
+            synchronized (LatencyTracer.class) {
+                if (instance == null) {
+                    instance = new LatencyTracer(Clock.SYSTEM);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * while disabled begin() returns NO_TRACE and every stage is a no-op
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * start a trace, stamped as the gatt callback
+     * @return trace id, NO_TRACE when disabled
+     */
+    public int begin() {
+        if (!enabled) {
+            return NO_TRACE;
+        }
+        int trace;
+        do {
+            trace = sequence.incrementAndGet() & Integer.MAX_VALUE;
+        } while (trace == NO_TRACE);
+
+        int slot = trace & MASK;
+        slotTraces.set(slot, NO_TRACE);
+        samples.set(slot, null);
+        int base = slot * STAGES;
+        for (int stage = 1; stage < STAGES; stage++) {
+            stamps.set(base + stage, 0);
+        }
+        stamps.set(base, clock.nanoTime());
+        slotTraces.set(slot, trace);
+        return trace;
+    }
+
+    /**
+     * stamp a stage, the first stamp of a stage wins
+     * @param trace from begin() or traceOf(), NO_TRACE is ignored
+     */
+    public void mark(int trace, int stage) {
+        if (trace == NO_TRACE || stage <= STAGE_GATT_CALLBACK || stage >= STAGES) {
+            return;
+        }
+        int slot = trace & MASK;
+        if (slotTraces.get(slot) != trace) {
+            // the slot went to a newer trace
+            return;
+        }
+        int base = slot * STAGES;
+        long now = clock.nanoTime();
+        if (!stamps.compareAndSet(base + stage, 0, now)) {
+            return;
+        }
+        long previous = stamps.get(base + PREVIOUS[stage]);
+        if (previous != 0) {
+            stageHistograms[stage].record(now - previous);
+        }
+        if (stage == STAGE_DISPLAYED) {
+            toDisplay.record(now - stamps.get(base));
+        } else if (stage == STAGE_COMMITTED) {
+            toCommit.record(now - stamps.get(base));
+        }
+    }
+
+    /**
+     * tie a trace to the reading built from it, for the stages that only see the reading
+     */
+    public void attach(int trace, Object sample) {
+        if (trace == NO_TRACE || sample == null) {
+            return;
+        }
+        int slot = trace & MASK;
+        if (slotTraces.get(slot) != trace) {
+            return;
+        }
+        samples.set(slot, sample);
+
+        int home = System.identityHashCode(sample);
+        int oldest = home & IDENTITY_MASK;
+        int oldestAge = -1;
+        for (int probe = 0; probe < PROBES; probe++) {
+            int index = (home + probe) & IDENTITY_MASK;
+            int current = byIdentity.get(index);
+            if (!isAttached(current)) {
+                if (byIdentity.compareAndSet(index, current, trace)) {
+                    return;
+                }
+                current = byIdentity.get(index);
+            }
+            int age = (trace - current) & Integer.MAX_VALUE;
+            if (age > oldestAge) {
+                oldestAge = age;
+                oldest = index;
+            }
+        }
+        // every probed entry is live, the oldest trace is the one least likely to still be marked
+        byIdentity.set(oldest, trace);
+    }
+
+    // the entry still points at a trace that owns its slot and has a sample attached
+    private boolean isAttached(int trace) {
+        if (trace == NO_TRACE) {
+            return false;
+        }
+        int slot = trace & MASK;
+        return slotTraces.get(slot) == trace && samples.get(slot) != null;
+    }
+
+    /**
+     * @return the trace attached to this exact object, NO_TRACE if none or it was overwritten
+     */
+    public int traceOf(Object sample) {
+        if (sample == null || !enabled) {
+            return NO_TRACE;
+        }
+        int home = System.identityHashCode(sample);
+        for (int probe = 0; probe < PROBES; probe++) {
+            int trace = byIdentity.get((home + probe) & IDENTITY_MASK);
+            if (trace == NO_TRACE) {
+                continue;
+            }
+            int slot = trace & MASK;
+            if (samples.get(slot) == sample && slotTraces.get(slot) == trace) {
+                return trace;
+            }
+        }
+        return NO_TRACE;
+    }
+
+    /**
+     * mark by reading rather than by id
+     */
+    public void markSample(Object sample, int stage) {
+        mark(traceOf(sample), stage);
+    }
+
+    /**
+     * @param stage STAGE_QUEUED to STAGE_COMMITTED, latency since the stage before it
+     */
+    public LatencyHistogram getStageHistogram(int stage) {
+        return stageHistograms[stage];
+    }
+
+    /** gatt callback to the gauge update */
+    public LatencyHistogram getDisplayHistogram() {
+        return toDisplay;
+    }
+
+    /** gatt callback to the database commit */
+    public LatencyHistogram getCommitHistogram() {
+        return toCommit;
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : stageHistograms) {
+            histogram.reset();
+        }
+        toDisplay.reset();
+        toCommit.reset();
+    }
+
+    /**
+     * percentile table in ms, one row per stage and one per end to end path
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format(Locale.US, "%-16s %8s %9s %9s %9s %9s%n",
+                "stage (ms)", "count", "p50", "p90", "p99", "max"));
+        for (int stage = STAGE_QUEUED; stage < STAGES; stage++) {
+            appendRow(report, STAGE_NAMES[PREVIOUS[stage]] + ">" + STAGE_NAMES[stage], stageHistograms[stage]);
+        }
+        appendRow(report, "gatt>display", toDisplay);
+        appendRow(report, "gatt>commit", toCommit);
+        return report.toString();
+    }
+
+    private static void appendRow(StringBuilder report, String name, LatencyHistogram histogram) {
+        report.append(String.format(Locale.US, "%-16s %8d %9.2f %9.2f %9.2f %9.2f%n", name, histogram.getCount(),
+                histogram.getPercentileNanos(50) / 1e6, histogram.getPercentileNanos(90) / 1e6,
+                histogram.getPercentileNanos(99) / 1e6, histogram.getMaxNanos() / 1e6));
+    }
+}
@@ -0,0 +1,30 @@
+package com.team12.smarthat.core;
+
+import java.util.UUID;
+
+/**
+ * where raw sensor payloads come from, gatt notifications in the app
+ */
+public interface PayloadSource {
+    interface Listener {
+        /**
+         * called once per notification, on the source's thread
+         * @param characteristic uuid the payload arrived on
+         * @param payload raw bytes, not modified by the source afterwards
+         */
+        void onPayload(UUID characteristic, byte[] payload);
+
+        /**
+         * same, for a payload whose latency trace began in the gatt callback
+         * @param trace LatencyTracer id, LatencyTracer.NO_TRACE if not traced
+         */
+        default void onPayload(UUID characteristic, byte[] payload, int trace) {
+            onPayload(characteristic, payload);
+        }
+    }
+
+    /**
+     * @param listener receives every payload from now on, null to detach
+     */
+    void setPayloadListener(Listener listener);
+}
@@ -0,0 +1,11 @@
+package com.team12.smarthat.core;
+
+/**
+ * runs pipeline work off the caller's thread, tasks must run one at a time in order
+ * a Handler on a HandlerThread in the app, an executor or the calling thread on the jvm
+ */
+public interface Scheduler {
+    void execute(Runnable task);
+
+    void executeDelayed(Runnable task, long delayMs);
+}
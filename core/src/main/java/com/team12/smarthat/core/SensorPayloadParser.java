@@ -0,0 +1,424 @@
+package com.team12.smarthat.core;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * reads value and timestamp out of a sensor payload without building a json tree
+ * accepts the esp32 format {"messageType":..,"data":..,"timeStamp":..} and the test mode
+ * format {"type":..,"value":..,"timestamp":..}, reading them the way org.json's
+ * has/optDouble/optLong did: "data" wins over "value", "timeStamp" over "timestamp",
+ * numeric strings count as numbers, anything else non numeric reads as 0
+ * one instance per thread, results are overwritten by the next parse()
+ */
+public final class SensorPayloadParser {
+    private static final byte[] KEY_DATA = ascii("data");
+    private static final byte[] KEY_VALUE = ascii("value");
+    private static final byte[] KEY_TIME_STAMP = ascii("timeStamp");
+    private static final byte[] KEY_TIMESTAMP = ascii("timestamp");
+    private static final int FIELD_NONE = 0;
+    private static final int FIELD_DATA = 1;
+    private static final int FIELD_VALUE = 2;
+    private static final int FIELD_TIME_STAMP = 3;
+    private static final int FIELD_TIMESTAMP = 4;
+
+    // exact powers of ten, a double holds all of these without rounding
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    // integers up to this many digits are exact in a double
+    private static final int EXACT_DIGITS = 15;
+
+    private byte[] json;
+    private int pos;
+    private int end;
+
+    private boolean hasData;
+    private double data;
+    private boolean hasValue;
+    private double value;
+    private boolean hasTimeStamp;
+    private long timeStamp;
+    private boolean hasTimestamp;
+    private long timestamp;
+
+    // set by readNumber()/readString() for the token just read
+    private int tokenStart;
+    private int tokenEnd;
+    private boolean tokenEscaped;
+
+    /**
+     *
+     * @return false if the payload is not a json object, the getters then read 0
+     */
+    public boolean parse(byte[] payload) {
+        hasData = hasValue = hasTimeStamp = hasTimestamp = false;
+        data = value = 0;
+        timeStamp = timestamp = 0;
+        if (payload == null) {
+            return false;
+        }
+        json = payload;
+        pos = 0;
+        end = payload.length;
+        boolean valid;
+        try {
+            valid = readObject();
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            // ran off the end of a truncated payload, or a broken unicode escape
+            valid = false;
+        } finally {
+            json = null;
+        }
+        if (!valid) {
+            // fields read before the error don't count
+            hasData = hasValue = hasTimeStamp = hasTimestamp = false;
+        }
+        return valid;
+    }
+
+    /**
+     *
+     * @return true if the payload had a "data" or "value" key
+     */
+    public boolean hasReading() {
+        return hasData || hasValue;
+    }
+
+    public double getValue() {
+        return hasData ? data : value;
+    }
+
+    /**
+     *
+     * @return "timeStamp", else "timestamp", else 0
+     */
+    public long getTimestamp() {
+        return hasTimeStamp ? timeStamp : hasTimestamp ? timestamp : 0;
+    }
+
+    private boolean readObject() {
+        skipWhitespace();
+        if (pos >= end || json[pos] != '{') {
+            return false;
+        }
+        pos++;
+        skipWhitespace();
+        if (json[pos] == '}') {
+            return true;
+        }
+
+        while (true) {
+            skipWhitespace();
+            if (json[pos] != '"' || !readString()) {
+                return false;
+            }
+            int keyStart = tokenStart;
+            int keyEnd = tokenEnd;
+            boolean keyEscaped = tokenEscaped;
+
+            skipWhitespace();
+            if (json[pos++] != ':') {
+                return false;
+            }
+            skipWhitespace();
+            if (!readField(keyStart, keyEnd, keyEscaped)) {
+                return false;
+            }
+
+            skipWhitespace();
+            byte next = json[pos++];
+            if (next == '}') {
+                // anything after the object is ignored, as org.json did
+                return true;
+            }
+            if (next != ',') {
+                return false;
+            }
+        }
+    }
+
+    // read one value, keeping it if the key is one we want
+    private boolean readField(int keyStart, int keyEnd, boolean keyEscaped) {
+        int field = keyEscaped ? fieldOf(unescape(keyStart, keyEnd)) : fieldOf(keyStart, keyEnd);
+        byte first = json[pos];
+
+        double number = 0;
+        if (first == '"') {
+            if (!readString()) {
+                return false;
+            }
+            if (field != FIELD_NONE) {
+                number = parseNumericString();
+            }
+        } else if (first == '-' || (first >= '0' && first <= '9')) {
+            if (!readNumber()) {
+                return false;
+            }
+            if (field == FIELD_TIME_STAMP || field == FIELD_TIMESTAMP) {
+                // timestamps read as integers when they are written as integers, no double rounding
+                long whole = parseLong(tokenStart, tokenEnd);
+                if (whole != Long.MIN_VALUE) {
+                    setTimestamp(field, whole);
+                    return true;
+                }
+            }
+            if (field != FIELD_NONE) {
+                number = parseDouble(tokenStart, tokenEnd);
+            }
+        } else if (!skipValue()) {
+            return false;
+        }
+
+        switch (field) {
+            case FIELD_DATA:
+                hasData = true;
+                data = number;
+                break;
+            case FIELD_VALUE:
+                hasValue = true;
+                value = number;
+                break;
+            case FIELD_TIME_STAMP:
+            case FIELD_TIMESTAMP:
+                setTimestamp(field, (long) number);
+                break;
+            default:
+                break;
+        }
+        return true;
+    }
+
+    private void setTimestamp(int field, long time) {
+        if (field == FIELD_TIME_STAMP) {
+            hasTimeStamp = true;
+            timeStamp = time;
+        } else {
+            hasTimestamp = true;
+            timestamp = time;
+        }
+    }
+
+    private int fieldOf(int start, int stop) {
+        if (matches(start, stop, KEY_DATA)) {
+            return FIELD_DATA;
+        } else if (matches(start, stop, KEY_VALUE)) {
+            return FIELD_VALUE;
+        } else if (matches(start, stop, KEY_TIME_STAMP)) {
+            return FIELD_TIME_STAMP;
+        } else if (matches(start, stop, KEY_TIMESTAMP)) {
+            return FIELD_TIMESTAMP;
+        }
+        return FIELD_NONE;
+    }
+
+    private static int fieldOf(String key) {
+        switch (key) {
+            case "data":
+                return FIELD_DATA;
+            case "value":
+                return FIELD_VALUE;
+            case "timeStamp":
+                return FIELD_TIME_STAMP;
+            case "timestamp":
+                return FIELD_TIMESTAMP;
+            default:
+                return FIELD_NONE;
+        }
+    }
+
+    private boolean matches(int start, int stop, byte[] key) {
+        if (stop - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (json[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // pos at the opening quote, leaves the contents in tokenStart..tokenEnd
+    private boolean readString() {
+        pos++;
+        tokenStart = pos;
+        tokenEscaped = false;
+        while (true) {
+            byte b = json[pos];
+            if (b == '"') {
+                tokenEnd = pos++;
+                return true;
+            }
+            if (b == '\\') {
+                tokenEscaped = true;
+                pos++;
+            } else if (b < 0x20 && b >= 0) {
+                // raw control characters are not allowed in json strings
+                return false;
+            }
+            pos++;
+        }
+    }
+
+    private boolean readNumber() {
+        tokenStart = pos;
+        while (pos < end) {
+            byte b = json[pos];
+            if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E') {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        tokenEnd = pos;
+        return tokenEnd > tokenStart;
+    }
+
+    // literals, nested objects and arrays, none of which we read
+    private boolean skipValue() {
+        byte first = json[pos];
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            do {
+                byte b = json[pos];
+                if (b == '"') {
+                    if (!readString()) {
+                        return false;
+                    }
+                    continue;
+                }
+                if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    depth--;
+                }
+                pos++;
+            } while (depth > 0);
+            return true;
+        }
+        int start = pos;
+        while (pos < end && json[pos] >= 'a' && json[pos] <= 'z') {
+            pos++;
+        }
+        return pos > start;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte b = json[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    // whole number in the token, Long.MIN_VALUE if it has a fraction, exponent or too many digits
+    private long parseLong(int start, int stop) {
+        boolean negative = json[start] == '-';
+        int i = negative ? start + 1 : start;
+        if (i == stop || stop - i > 18) {
+            return Long.MIN_VALUE;
+        }
+        long result = 0;
+        for (; i < stop; i++) {
+            byte b = json[i];
+            if (b < '0' || b > '9') {
+                return Long.MIN_VALUE;
+            }
+            result = result * 10 + (b - '0');
+        }
+        return negative ? -result : result;
+    }
+
+    // exact fast path for short decimals, the jdk parser for everything else
+    private double parseDouble(int start, int stop) {
+        boolean negative = json[start] == '-';
+        int i = negative ? start + 1 : start;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; i < stop; i++) {
+            byte b = json[i];
+            if (b >= '0' && b <= '9') {
+                if (mantissa != 0 || b != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (fraction) {
+                    scale++;
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+
+        if (i == stop && digits <= EXACT_DIGITS && scale < POW10.length) {
+            double result = mantissa / POW10[scale];
+            return negative ? -result : result;
+        }
+        try {
+            return Double.parseDouble(new String(json, start, stop - start, StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private double parseNumericString() {
+        String text = tokenEscaped ? unescape(tokenStart, tokenEnd)
+                : new String(json, tokenStart, tokenEnd - tokenStart, StandardCharsets.UTF_8);
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // rare path, keys and values with escapes
+    private String unescape(int start, int stop) {
+        StringBuilder text = new StringBuilder(stop - start);
+        String raw = new String(json, start, stop - start, StandardCharsets.UTF_8);
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c != '\\' || i + 1 >= raw.length()) {
+                text.append(c);
+                continue;
+            }
+            char escaped = raw.charAt(++i);
+            switch (escaped) {
+                case 'n':
+                    text.append('\n');
+                    break;
+                case 't':
+                    text.append('\t');
+                    break;
+                case 'r':
+                    text.append('\r');
+                    break;
+                case 'b':
+                    text.append('\b');
+                    break;
+                case 'f':
+                    text.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 < raw.length()) {
+                        text.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+                        i += 4;
+                    }
+                    break;
+                default:
+                    text.append(escaped);
+                    break;
+            }
+        }
+        return text.toString();
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,187 @@
+package com.team12.smarthat.core;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import com.team12.smarthat.benchmark.MicroBenchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * allocation budgets for the steady-state ingest path, bytes per sample on this thread
+ * pushes SAMPLES synthetic notifications through parser, tracer and pipeline after a warmup and
+ * fails when the mean goes over budget. a failure means something started allocating per sample,
+ * a string, a boxed number, an iterator, a lambda; raise a budget only with a reason in the commit
+ * the app's own stages (SensorData, log calls, the main thread post) run on art and aren't covered
+ */
+public class IngestAllocationTest {
+    private static final int SAMPLES = 20_000;
+    private static final int WARMUP = 5_000;
+
+    // budgets in bytes per sample
+    // parser and tracer allocate nothing once warm, the slack covers one-off allocations
+    private static final double PARSER_BUDGET = 1;
+    private static final double TRACER_BUDGET = 1;
+    // the pipeline's budget is one queued entry and its queue node, sized for this jvm's layout
+    // (80 bytes with compressed oops, 104 without). the slack is less than a boxed number
+    private static final double PIPELINE_SLACK = 2;
+    // objects allocated to measure the layout
+    private static final int LAYOUT_PROBES = 4096;
+
+    private static final String[] MESSAGE_TYPES = {"DUST_SENSOR_DATA", "SOUND_SENSOR_DATA", "GAS_SENSOR_DATA"};
+    private static final float[] MAX_VALUES = {1000f, 150f, 5000f};
+    // power of two so inputs cycle with a mask
+    private static final int INPUTS = 1024;
+    private static final int MASK = INPUTS - 1;
+
+    private final UUID[] uuids = new UUID[MESSAGE_TYPES.length];
+    private final byte[][] payloads = new byte[INPUTS][];
+    private final UUID[] characteristics = new UUID[INPUTS];
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private final Scheduler scheduler = new Scheduler() {
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        @Override
+        public void executeDelayed(Runnable task, long delayMs) {
+            tasks.add(task);
+        }
+    };
+    private final SensorPayloadParser parser = new SensorPayloadParser();
+    private final Object[] readings = new Object[INPUTS];
+    private LatencyTracer tracer;
+    private IngestPipeline pipeline;
+    private long sink;
+    private int readingCount;
+
+    @Before
+    public void setUp() {
+        assumeTrue("jvm counts thread allocations", MicroBenchmark.allocatedBytes() >= 0);
+
+        Random random = new Random(12);
+        for (int s = 0; s < uuids.length; s++) {
+            uuids[s] = new UUID(0x0000000100001000L + s, 0x800000805f9b34fbL);
+        }
+        for (int i = 0; i < INPUTS; i++) {
+            int sensor = i % uuids.length;
+            payloads[i] = String.format(Locale.US, "{\"messageType\":\"%s\",\"data\":%.2f,\"timeStamp\":%d}",
+                    MESSAGE_TYPES[sensor], random.nextDouble() * MAX_VALUES[sensor], 1_700_000_000_000L + i * 33L)
+                    .getBytes(StandardCharsets.UTF_8);
+            characteristics[i] = uuids[sensor];
+            readings[i] = new Object();
+        }
+
+        tracer = new LatencyTracer(Clock.SYSTEM);
+        pipeline = new IngestPipeline(scheduler, Clock.SYSTEM, 5000,
+                (sensorType, value, timestamp, trace) -> readingCount++);
+        for (int s = 0; s < uuids.length; s++) {
+            pipeline.addSensor(uuids[s], MESSAGE_TYPES[s], MAX_VALUES[s], 0f);
+        }
+    }
+
+    @Test
+    public void parser_staysWithinBudget() {
+        assertWithinBudget("parser", PARSER_BUDGET, i -> {
+            parser.parse(payloads[i & MASK]);
+            sink += parser.getTimestamp();
+        });
+    }
+
+    @Test
+    public void tracer_staysWithinBudget() {
+        assertWithinBudget("tracer", TRACER_BUDGET, i -> {
+            int trace = tracer.begin();
+            tracer.mark(trace, LatencyTracer.STAGE_QUEUED);
+            tracer.mark(trace, LatencyTracer.STAGE_PARSED);
+            tracer.attach(trace, readings[i & MASK]);
+            tracer.markSample(readings[i & MASK], LatencyTracer.STAGE_DISPATCHED);
+            tracer.markSample(readings[i & MASK], LatencyTracer.STAGE_DISPLAYED);
+            tracer.markSample(readings[i & MASK], LatencyTracer.STAGE_COMMITTED);
+        });
+    }
+
+    @Test
+    public void pipeline_staysWithinBudget() {
+        pipeline.setTracer(tracer);
+        // drained in batches, as the handler thread does when notifications arrive faster than it runs
+        assertWithinBudget("pipeline", pipelineBudget(), i -> {
+            if ((i & MASK) == 0) {
+                // a new lap over the inputs starts the timestamps over, clear() would drop what's queued
+                runTasks();
+                pipeline.clear();
+            }
+            pipeline.onPayload(characteristics[i & MASK], payloads[i & MASK], tracer.begin());
+            if (i % IngestPipeline.BATCH_SIZE == IngestPipeline.BATCH_SIZE - 1) {
+                runTasks();
+            }
+        });
+        assertEquals(WARMUP + SAMPLES, readingCount);
+    }
+
+    private interface Sample {
+        void run(int i);
+    }
+
+    private void assertWithinBudget(String name, double budget, Sample sample) {
+        for (int i = 0; i < WARMUP; i++) {
+            sample.run(i);
+        }
+        runTasks();
+
+        long before = MicroBenchmark.allocatedBytes();
+        for (int i = WARMUP; i < WARMUP + SAMPLES; i++) {
+            sample.run(i);
+        }
+        runTasks();
+        long allocated = MicroBenchmark.allocatedBytes() - before;
+
+        double perSample = (double) allocated / SAMPLES;
+        assertTrue(String.format(Locale.US, "%s allocates %.1f bytes per sample, budget is %.0f",
+                name, perSample, budget), perSample <= budget);
+    }
+
+    // IngestPipeline.Pending (two references, two longs, a double, two ints and a boolean)
+    // plus the ConcurrentLinkedQueue node holding it (item and next)
+    private static double pipelineBudget() {
+        int reference = (int) ((sizeOf(() -> new Object[64]) - sizeOf(() -> new Object[0])) / 64);
+        // an object with one int is 16 bytes when the header is 12, 24 when it's 16
+        int header = sizeOf(IntField::new) <= 16 ? 12 : 16;
+        long pending = align(header + 2 * reference + 2 * Long.BYTES + Double.BYTES + 2 * Integer.BYTES + 1);
+        long node = align(header + 2 * reference);
+        return pending + node + PIPELINE_SLACK;
+    }
+
+    private static final class IntField {
+        int value;
+    }
+
+    private static long sizeOf(Supplier<Object> factory) {
+        Object[] kept = new Object[LAYOUT_PROBES];
+        long before = MicroBenchmark.allocatedBytes();
+        for (int i = 0; i < kept.length; i++) {
+            kept[i] = factory.get();
+        }
+        return Math.round((double) (MicroBenchmark.allocatedBytes() - before) / kept.length);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+}
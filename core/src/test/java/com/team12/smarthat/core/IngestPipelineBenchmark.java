@@ -0,0 +1,122 @@
+package com.team12.smarthat.core;
+
+import static org.junit.Assume.assumeTrue;
+
+import com.team12.smarthat.benchmark.MicroBenchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * parser and pipeline benchmarks on a plain jvm, skipped unless run with -Pbench
+ * no android shadows here, so bytes/op is the pipeline's own allocation
+ */
+public class IngestPipelineBenchmark {
+    // power of two so inputs cycle with a mask
+    private static final int INPUTS = 1024;
+    private static final int MASK = INPUTS - 1;
+    private static final String[] TYPES = {"dust", "noise", "gas"};
+    private static final String[] MESSAGE_TYPES = {"DUST_SENSOR_DATA", "SOUND_SENSOR_DATA", "GAS_SENSOR_DATA"};
+    private static final float[] MAX_VALUES = {1000f, 150f, 5000f};
+
+    private final UUID[] uuids = new UUID[TYPES.length];
+    private final byte[][] esp32Payloads = new byte[INPUTS][];
+    private final byte[][] testPayloads = new byte[INPUTS][];
+    private final UUID[] characteristics = new UUID[INPUTS];
+
+    private MicroBenchmark benchmark;
+    private final SensorPayloadParser parser = new SensorPayloadParser();
+    private final Scheduler inline = new Scheduler() {
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+
+        @Override
+        public void executeDelayed(Runnable task, long delayMs) {
+            task.run();
+        }
+    };
+    private float lastValue;
+    // tasks held back until a whole batch has queued
+    private final ArrayDeque<Runnable> held = new ArrayDeque<>();
+
+    @Before
+    public void setUp() {
+        assumeTrue("benchmarks run with -Pbench", MicroBenchmark.enabled());
+        benchmark = new MicroBenchmark(5, 10, 200);
+
+        for (int s = 0; s < TYPES.length; s++) {
+            uuids[s] = UUID.nameUUIDFromBytes(TYPES[s].getBytes(StandardCharsets.UTF_8));
+        }
+        // a few timestamps are swapped with a neighbour so the sort has work to do
+        Random random = new Random(12);
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < INPUTS; i++) {
+            int sensor = i % TYPES.length;
+            double value = random.nextDouble() * MAX_VALUES[sensor];
+            long stamp = timestamp + i * 33L + (i % 7 == 0 ? 50 : 0);
+            esp32Payloads[i] = String.format(Locale.US, "{\"messageType\":\"%s\",\"data\":%.2f,\"timeStamp\":%d}",
+                    MESSAGE_TYPES[sensor], value, stamp).getBytes(StandardCharsets.UTF_8);
+            testPayloads[i] = String.format(Locale.US, "{\"type\":\"%s\",\"value\":%.2f,\"timestamp\":%d}",
+                    TYPES[sensor], value, stamp).getBytes(StandardCharsets.UTF_8);
+            characteristics[i] = uuids[sensor];
+        }
+    }
+
+    @Test
+    public void ingestPipeline() throws Exception {
+        benchmark.run("parse.esp32", i -> parser.parse(esp32Payloads[i & MASK]) ? parser.getTimestamp() : 0L);
+        benchmark.run("parse.testMode", i -> parser.parse(testPayloads[i & MASK]) ? parser.getTimestamp() : 0L);
+
+        // one op is one payload through queue, parse, checks and listener, drained as it arrives
+        IngestPipeline single = pipeline(inline);
+        benchmark.run("pipeline.single", i -> {
+            single.clear();
+            single.onPayload(characteristics[i & MASK], esp32Payloads[i & MASK]);
+            return lastValue;
+        });
+
+        // one op is a full batch queued while the drain is pending, then sorted and dispatched
+        IngestPipeline batched = pipeline(new Scheduler() {
+            @Override
+            public void execute(Runnable task) {
+                held.add(task);
+            }
+
+            @Override
+            public void executeDelayed(Runnable task, long delayMs) {
+                held.add(task);
+            }
+        });
+        benchmark.run("pipeline.batch" + IngestPipeline.BATCH_SIZE, i -> {
+            batched.clear();
+            int start = (i * IngestPipeline.BATCH_SIZE) & MASK;
+            for (int j = 0; j < IngestPipeline.BATCH_SIZE; j++) {
+                int index = (start + j) & MASK;
+                batched.onPayload(characteristics[index], esp32Payloads[index]);
+            }
+            Runnable task;
+            while ((task = held.poll()) != null) {
+                task.run();
+            }
+            return lastValue;
+        });
+        benchmark.writeReport("core-ingest");
+    }
+
+    private IngestPipeline pipeline(Scheduler scheduler) {
+        IngestPipeline pipeline = new IngestPipeline(scheduler, Clock.SYSTEM, 5000,
+                (sensorType, value, timestamp, trace) -> lastValue = value);
+        for (int s = 0; s < TYPES.length; s++) {
+            pipeline.addSensor(uuids[s], TYPES[s], MAX_VALUES[s], 0f);
+        }
+        return pipeline;
+    }
+}
@@ -0,0 +1,171 @@
+package com.team12.smarthat.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class IngestPipelineTest {
+
+    private static final UUID DUST = UUID.fromString("00000001-0000-1000-8000-00805f9b34fb");
+    private static final UUID NOISE = UUID.fromString("00000002-0000-1000-8000-00805f9b34fb");
+    private static final long MAX_DEVIATION = 5000;
+
+    // runs queued tasks only when asked, like a handler thread that hasn't got to them yet
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private final Scheduler scheduler = new Scheduler() {
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        @Override
+        public void executeDelayed(Runnable task, long delayMs) {
+            tasks.add(task);
+        }
+    };
+    private long now = 50_000;
+    private final Clock clock = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+
+        @Override
+        public long nanoTime() {
+            return now * 1_000_000L;
+        }
+    };
+
+    private final List<String> readings = new ArrayList<>();
+    private final List<String> warnings = new ArrayList<>();
+    private IngestPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        pipeline = new IngestPipeline(scheduler, clock, MAX_DEVIATION, new IngestPipeline.Listener() {
+            @Override
+            public void onReading(String sensorType, float value, long timestamp, int trace) {
+                readings.add(sensorType + " " + value + " @" + timestamp);
+            }
+
+            @Override
+            public void onWarning(String message) {
+                warnings.add(message);
+            }
+        });
+        pipeline.addSensor(DUST, "dust", 1000f, 12f);
+        pipeline.addSensor(NOISE, "noise", 150f, 40f);
+    }
+
+    @Test
+    public void payloads_areParsedAndDispatchedOnTheScheduler() {
+        pipeline.onPayload(DUST, json("DUST_SENSOR_DATA", 25.5, 1000));
+        assertTrue(readings.isEmpty());
+
+        runTasks();
+        assertEquals(List.of("dust 25.5 @1000"), readings);
+    }
+
+    @Test
+    public void batch_isOrderedByPayloadTimestamp() {
+        pipeline.onPayload(NOISE, json("SOUND_SENSOR_DATA", 3, 3000));
+        pipeline.onPayload(NOISE, json("SOUND_SENSOR_DATA", 1, 1000));
+        pipeline.onPayload(DUST, json("DUST_SENSOR_DATA", 2, 2000));
+        runTasks();
+
+        assertEquals(List.of("noise 1.0 @1000", "dust 2.0 @2000", "noise 3.0 @3000"), readings);
+    }
+
+    @Test
+    public void outOfOrder_usedWithinDeviationAndSkippedBeyond() {
+        pipeline.onPayload(NOISE, json("SOUND_SENSOR_DATA", 70, 20_000));
+        runTasks();
+        pipeline.onPayload(NOISE, json("SOUND_SENSOR_DATA", 60, 19_000));
+        runTasks();
+        pipeline.onPayload(NOISE, json("SOUND_SENSOR_DATA", 50, 20_000 - MAX_DEVIATION));
+        runTasks();
+        // other sensors keep their own order
+        pipeline.onPayload(DUST, json("DUST_SENSOR_DATA", 5, 1000));
+        runTasks();
+
+        assertEquals(List.of("noise 70.0 @20000", "noise 60.0 @19000", "dust 5.0 @1000"), readings);
+        assertTrue(warnings.get(0).startsWith("Processing out-of-order notification for noise"));
+        assertTrue(warnings.get(1).startsWith("Skipping significantly out-of-order notification for noise"));
+    }
+
+    @Test
+    public void invalidJson_fallsBackToLastValidValue() {
+        pipeline.onPayload(NOISE, bytes("{This is not valid JSON"));
+        runTasks();
+        pipeline.onPayload(NOISE, json("SOUND_SENSOR_DATA", 80, 1000));
+        // out of range, dispatched but not kept as the fallback
+        pipeline.onPayload(NOISE, json("SOUND_SENSOR_DATA", 200, 2000));
+        runTasks();
+        now = 60_000;
+        pipeline.onPayload(NOISE, bytes("garbage"));
+        runTasks();
+
+        assertEquals(List.of("noise 40.0 @50000", "noise 80.0 @1000", "noise 200.0 @2000", "noise 80.0 @60000"),
+                readings);
+    }
+
+    @Test
+    public void unknownAndEmptyPayloads_areDropped() {
+        pipeline.onPayload(UUID.randomUUID(), json("GAS_SENSOR_DATA", 1, 1000));
+        pipeline.onPayload(DUST, new byte[0]);
+        pipeline.onPayload(DUST, null);
+        runTasks();
+
+        assertTrue(readings.isEmpty());
+        assertEquals(3, warnings.size());
+    }
+
+    @Test
+    public void fullQueue_dropsOldestAndBatchesKeepEveryPayload() {
+        for (int i = 0; i < IngestPipeline.MAX_QUEUE_SIZE + 5; i++) {
+            pipeline.onPayload(DUST, json("DUST_SENSOR_DATA", i, 1000 + i));
+        }
+        assertEquals(IngestPipeline.MAX_QUEUE_SIZE, pipeline.getQueuedCount());
+        runTasks();
+
+        assertEquals(IngestPipeline.MAX_QUEUE_SIZE, readings.size());
+        assertEquals("dust 5.0 @1005", readings.get(0));
+        assertEquals("dust 104.0 @1104", readings.get(readings.size() - 1));
+        assertEquals(0, pipeline.getQueuedCount());
+    }
+
+    @Test
+    public void clear_dropsQueuedPayloadsAndTimestamps() {
+        pipeline.onPayload(DUST, json("DUST_SENSOR_DATA", 1, 10_000));
+        runTasks();
+        pipeline.onPayload(DUST, json("DUST_SENSOR_DATA", 2, 10_001));
+        pipeline.clear();
+        runTasks();
+        pipeline.onPayload(DUST, json("DUST_SENSOR_DATA", 3, 1000));
+        runTasks();
+
+        assertEquals(List.of("dust 1.0 @10000", "dust 3.0 @1000"), readings);
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private static byte[] json(String messageType, double value, long timestamp) {
+        return bytes("{\"messageType\":\"" + messageType + "\",\"data\":" + value + ",\"timeStamp\":" + timestamp + "}");
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,59 @@
+package com.team12.smarthat.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverEveryValueWithinAnEighth() {
+        long[] values = {0, 1, 7, 8, 15, 16, 100, 1_000, 999_999, 1_000_000, 123_456_789, Long.MAX_VALUE / 3,
+                Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            long upper = LatencyHistogram.upperBoundOf(bucket);
+            assertTrue(value + " <= " + upper, value <= upper);
+            assertTrue(value + " within 12.5% of " + upper, upper - value <= value / 8);
+            if (bucket > 0) {
+                assertTrue(LatencyHistogram.upperBoundOf(bucket - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void percentiles_ofAUniformSpread() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.record(ms * 1_000_000L);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100_000_000L, histogram.getMaxNanos());
+        assertEquals(50_500_000L, histogram.getMeanNanos());
+        assertWithin(50_000_000L, histogram.getPercentileNanos(50));
+        assertWithin(90_000_000L, histogram.getPercentileNanos(90));
+        assertWithin(99_000_000L, histogram.getPercentileNanos(99));
+        assertEquals(100_000_000L, histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void emptyAndReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(99));
+
+        histogram.record(-5);
+        histogram.record(42);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(50));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getPercentileNanos(50));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual + " vs " + expected, actual >= expected && actual - expected <= expected / 8);
+    }
+}
@@ -0,0 +1,166 @@
+package com.team12.smarthat.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+public class LatencyTracerTest {
+
+    private static final long MS = 1_000_000L;
+
+    private long nanos = 10 * MS;
+    private final Clock clock = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return nanos / MS;
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanos;
+        }
+    };
+    private LatencyTracer tracer;
+
+    @Before
+    public void setUp() {
+        tracer = new LatencyTracer(clock);
+    }
+
+    @Test
+    public void stages_recordTheTimeSinceTheStageBefore() {
+        Object reading = new Object();
+        int trace = tracer.begin();
+        nanos += 2 * MS;
+        tracer.mark(trace, LatencyTracer.STAGE_QUEUED);
+        nanos += 3 * MS;
+        tracer.mark(trace, LatencyTracer.STAGE_PARSED);
+        tracer.attach(trace, reading);
+        nanos += 5 * MS;
+        tracer.markSample(reading, LatencyTracer.STAGE_DISPATCHED);
+        nanos += 7 * MS;
+        tracer.markSample(reading, LatencyTracer.STAGE_DISPLAYED);
+        nanos += 1000 * MS;
+        tracer.markSample(reading, LatencyTracer.STAGE_COMMITTED);
+
+        assertStage(LatencyTracer.STAGE_QUEUED, 2 * MS);
+        assertStage(LatencyTracer.STAGE_PARSED, 3 * MS);
+        assertStage(LatencyTracer.STAGE_DISPATCHED, 5 * MS);
+        assertStage(LatencyTracer.STAGE_DISPLAYED, 7 * MS);
+        // display and commit both count from dispatch
+        assertStage(LatencyTracer.STAGE_COMMITTED, 1007 * MS);
+        assertEquals(17 * MS, tracer.getDisplayHistogram().getMaxNanos());
+        assertEquals(1017 * MS, tracer.getCommitHistogram().getMaxNanos());
+        assertTrue(tracer.report().contains("dispatch>commit"));
+    }
+
+    @Test
+    public void repeatedMarks_countOnce() {
+        int trace = tracer.begin();
+        nanos += MS;
+        tracer.mark(trace, LatencyTracer.STAGE_QUEUED);
+        nanos += MS;
+        tracer.mark(trace, LatencyTracer.STAGE_QUEUED);
+
+        assertEquals(1, tracer.getStageHistogram(LatencyTracer.STAGE_QUEUED).getCount());
+        assertEquals(MS, tracer.getStageHistogram(LatencyTracer.STAGE_QUEUED).getMaxNanos());
+    }
+
+    @Test
+    public void untracedAndOverwritten_areIgnored() {
+        tracer.mark(LatencyTracer.NO_TRACE, LatencyTracer.STAGE_QUEUED);
+        tracer.markSample(new Object(), LatencyTracer.STAGE_DISPLAYED);
+        tracer.markSample(null, LatencyTracer.STAGE_DISPLAYED);
+
+        Object reading = new Object();
+        int old = tracer.begin();
+        tracer.attach(old, reading);
+        for (int i = 0; i < LatencyTracer.CAPACITY; i++) {
+            tracer.begin();
+        }
+        assertEquals(LatencyTracer.NO_TRACE, tracer.traceOf(reading));
+        tracer.mark(old, LatencyTracer.STAGE_QUEUED);
+
+        assertEquals(0, tracer.getStageHistogram(LatencyTracer.STAGE_QUEUED).getCount());
+        assertEquals(0, tracer.getDisplayHistogram().getCount());
+    }
+
+    @Test
+    public void samplesSharingAnIdentitySlot_keepTheirOwnTraces() {
+        Object[] colliding = collidingSamples();
+        int first = tracer.begin();
+        tracer.attach(first, colliding[0]);
+        int second = tracer.begin();
+        tracer.attach(second, colliding[1]);
+
+        assertEquals(first, tracer.traceOf(colliding[0]));
+        assertEquals(second, tracer.traceOf(colliding[1]));
+
+        // the older one, usually the slower one, still reaches the commit histogram
+        nanos += 40 * MS;
+        tracer.markSample(colliding[0], LatencyTracer.STAGE_COMMITTED);
+        assertEquals(40 * MS, tracer.getCommitHistogram().getMaxNanos());
+    }
+
+    @Test
+    public void disabled_handsOutNoTraces() {
+        tracer.setEnabled(false);
+        assertEquals(LatencyTracer.NO_TRACE, tracer.begin());
+
+        tracer.setEnabled(true);
+        assertNotEquals(LatencyTracer.NO_TRACE, tracer.begin());
+    }
+
+    @Test
+    public void pipeline_stampsQueueAndParse() {
+        UUID uuid = UUID.randomUUID();
+        Runnable[] pending = new Runnable[1];
+        int[] readingTrace = new int[1];
+        IngestPipeline pipeline = new IngestPipeline(new Scheduler() {
+            @Override
+            public void execute(Runnable task) {
+                pending[0] = task;
+            }
+
+            @Override
+            public void executeDelayed(Runnable task, long delayMs) {
+                pending[0] = task;
+            }
+        }, clock, 5000, (sensorType, value, timestamp, trace) -> readingTrace[0] = trace);
+        pipeline.addSensor(uuid, "noise", 150f, 40f);
+        pipeline.setTracer(tracer);
+
+        int trace = tracer.begin();
+        nanos += 4 * MS;
+        pipeline.onPayload(uuid, "{\"data\":60,\"timeStamp\":1}".getBytes(StandardCharsets.UTF_8), trace);
+        nanos += 9 * MS;
+        pending[0].run();
+
+        assertEquals(trace, readingTrace[0]);
+        assertStage(LatencyTracer.STAGE_QUEUED, 4 * MS);
+        assertStage(LatencyTracer.STAGE_PARSED, 9 * MS);
+    }
+
+    // two objects whose identity hashes land on the same slot
+    private static Object[] collidingSamples() {
+        Object[] seen = new Object[LatencyTracer.IDENTITY_SLOTS];
+        while (true) {
+            Object sample = new Object();
+            int index = System.identityHashCode(sample) & (LatencyTracer.IDENTITY_SLOTS - 1);
+            if (seen[index] != null) {
+                return new Object[]{seen[index], sample};
+            }
+            seen[index] = sample;
+        }
+    }
+
+    private void assertStage(int stage, long nanos) {
+        LatencyHistogram histogram = tracer.getStageHistogram(stage);
+        assertEquals(1, histogram.getCount());
+        assertEquals(nanos, histogram.getMaxNanos());
+    }
+}
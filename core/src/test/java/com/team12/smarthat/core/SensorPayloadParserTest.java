@@ -0,0 +1,90 @@
+package com.team12.smarthat.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class SensorPayloadParserTest {
+
+    private final SensorPayloadParser parser = new SensorPayloadParser();
+
+    @Test
+    public void parse_esp32Format() {
+        assertTrue(parse("{\"messageType\":\"SOUND_SENSOR_DATA\",\"data\":75.5,\"timeStamp\":1234567890}"));
+        assertTrue(parser.hasReading());
+        assertEquals(75.5, parser.getValue(), 0);
+        assertEquals(1234567890L, parser.getTimestamp());
+    }
+
+    @Test
+    public void parse_testModeFormat() {
+        assertTrue(parse("{\"type\":\"gas\",\"value\":812.25,\"timestamp\":1700000000123}"));
+        assertEquals(812.25, parser.getValue(), 0);
+        assertEquals(1700000000123L, parser.getTimestamp());
+    }
+
+    @Test
+    public void parse_preferredKeysWinWhateverTheOrder() {
+        assertTrue(parse("{\"value\":1,\"timestamp\":5,\"data\":2,\"timeStamp\":6}"));
+        assertEquals(2, parser.getValue(), 0);
+        assertEquals(6, parser.getTimestamp());
+    }
+
+    @Test
+    public void parse_numbersMatchTheJdkParser() {
+        String[] numbers = {"0", "-0.5", "12.345", "0.1", "99999.99999", "1e3", "-2.5E-3",
+                "123456789012345678", "3.141592653589793238", "0.000001"};
+        for (String number : numbers) {
+            assertTrue(number, parse("{\"data\":" + number + "}"));
+            assertEquals(number, Double.parseDouble(number), parser.getValue(), 0);
+        }
+    }
+
+    @Test
+    public void parse_numericStringsAndOtherValues() {
+        assertTrue(parse("{\"data\":\" 42.5\",\"timeStamp\":\"1000\"}"));
+        assertEquals(42.5, parser.getValue(), 0);
+        assertEquals(1000, parser.getTimestamp());
+
+        assertTrue(parse("{\"data\":null,\"value\":7}"));
+        assertTrue(parser.hasReading());
+        assertEquals(0, parser.getValue(), 0);
+
+        assertTrue(parse("{\"data\":true,\"timeStamp\":12.9}"));
+        assertEquals(0, parser.getValue(), 0);
+        assertEquals(12, parser.getTimestamp());
+    }
+
+    @Test
+    public void parse_skipsNestedValuesAndEscapes() {
+        assertTrue(parse(" {\"meta\":{\"a\":[1,{\"data\":9}],\"b\":\"x}\\\"\"},\n\t\"d\\u0061ta\": 3.5 ,\"timeStamp\":7} trailing"));
+        assertEquals(3.5, parser.getValue(), 0);
+        assertEquals(7, parser.getTimestamp());
+    }
+
+    @Test
+    public void parse_missingFieldsReadAsZero() {
+        assertTrue(parse("{\"messageType\":\"DUST_SENSOR_DATA\"}"));
+        assertFalse(parser.hasReading());
+        assertEquals(0, parser.getValue(), 0);
+        assertEquals(0, parser.getTimestamp());
+    }
+
+    @Test
+    public void parse_rejectsWhatIsNotAnObject() {
+        String[] invalid = {"{This is not valid JSON", "", "75.5", "[1,2]", "{\"data\":1", "{\"data\" 1}",
+                "{\"data\":1,}", "{\"data\":1 \"x\":2}"};
+        for (String payload : invalid) {
+            assertFalse(payload, parse(payload));
+            assertFalse(payload, parser.hasReading());
+            assertEquals(payload, 0, parser.getTimestamp());
+        }
+        assertFalse(parser.parse(null));
+    }
+
+    private boolean parse(String json) {
+        return parser.parse(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,229 @@
+package com.team12.smarthat.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * small jmh style harness for the benchmarks in the :core and :app unit tests
+ * - timed warmup iterations, then timed measurement iterations of one op in a loop
+ * - ops/s is the median iteration, bytes/op the mean from the thread's allocation counter
+ * - sample() times slow ops one repetition at a time instead
+ * - every result is stored in a volatile field so the jit can't drop the work
+ * benchmarks only run with -Pbench (system property smarthat.bench), e.g.
+ *   ./gradlew :core:test :app:testDebugUnitTest -Pbench --tests '*Benchmark'
+ * reports go to build/benchmarks/<suite>.json under the module being tested
+ */
+public class MicroBenchmark {
+    public static final String ENABLED_PROPERTY = "smarthat.bench";
+
+    // ops between clock reads, keeps System.nanoTime out of the numbers
+    private static final int BATCH = 64;
+
+    public interface Op {
+        /**
+         * @param i running op count, for cycling through prepared inputs
+         * @return anything the op produced, consumed so it isn't optimised away
+         */
+        Object run(int i);
+    }
+
+    public static class Result {
+        public final String name;
+        public final double opsPerSecond;
+        public final double nanosPerOp;
+        // -1 when the jvm can't count allocations
+        public final double bytesPerOp;
+
+        Result(String name, double opsPerSecond, double bytesPerOp) {
+            this.name = name;
+            this.opsPerSecond = opsPerSecond;
+            this.nanosPerOp = 1e9 / opsPerSecond;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-32s %14.0f ops/s %12.1f ns/op %12.1f B/op",
+                    name, opsPerSecond, nanosPerOp, bytesPerOp);
+        }
+    }
+
+    private final int warmupIterations;
+    private final int measureIterations;
+    private final long iterationNanos;
+    private final List<Result> results = new ArrayList<>();
+    private Runnable betweenIterations;
+
+    // written by every op, read by nobody
+    public static volatile Object blackhole;
+
+    public MicroBenchmark(int warmupIterations, int measureIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measureIterations = measureIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    public static boolean enabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    /**
+     * run outside the timed region before each iteration, e.g. to clear captured logs
+     */
+    public MicroBenchmark setBetweenIterations(Runnable betweenIterations) {
+        this.betweenIterations = betweenIterations;
+        return this;
+    }
+
+    public Result run(String name, Op op) {
+        int counter = 0;
+        for (int i = 0; i < warmupIterations; i++) {
+            counter = iterate(op, counter, null);
+        }
+
+        double[] throughput = new double[measureIterations];
+        long totalOps = 0;
+        long totalBytes = 0;
+        boolean counted = true;
+        for (int i = 0; i < measureIterations; i++) {
+            long[] measured = new long[3];
+            counter = iterate(op, counter, measured);
+            throughput[i] = measured[0] * 1e9 / measured[1];
+            totalOps += measured[0];
+            if (measured[2] < 0) {
+                counted = false;
+            }
+            totalBytes += measured[2];
+        }
+
+        Arrays.sort(throughput);
+        Result result = new Result(name, throughput[measureIterations / 2],
+                counted ? (double) totalBytes / totalOps : -1);
+        results.add(result);
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * for ops too slow to loop in batches, like queries over a large table
+     * each repetition is timed on its own, the first is an untimed warmup
+     * @param opsPerRepetition rows or calls one repetition covers, results are per op
+     * @param before runs untimed before each repetition, e.g. to put back rows a delete removed
+     */
+    public Result sample(String name, int repetitions, int opsPerRepetition, Runnable before, Op op) {
+        double[] throughput = new double[repetitions];
+        long totalBytes = 0;
+        boolean counted = true;
+        for (int i = -1; i < repetitions; i++) {
+            if (before != null) {
+                before.run();
+            }
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            blackhole = op.run(i);
+            long elapsed = Math.max(1, System.nanoTime() - start);
+            long allocated = allocatedBytes() - allocatedBefore;
+            if (i < 0) {
+                continue;
+            }
+            throughput[i] = opsPerRepetition * 1e9 / elapsed;
+            if (allocatedBefore < 0) {
+                counted = false;
+            }
+            totalBytes += allocated;
+        }
+
+        Arrays.sort(throughput);
+        Result result = new Result(name, throughput[repetitions / 2],
+                counted ? (double) totalBytes / ((long) repetitions * opsPerRepetition) : -1);
+        results.add(result);
+        System.out.println(result);
+        return result;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * write every result so far as json, to compare runs before and after a change
+     * @return the report file
+     */
+    public File writeReport(String suite) throws IOException {
+        File directory = new File("build/benchmarks");
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory.getAbsolutePath());
+        }
+        File file = new File(directory, suite + ".json");
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(toJson(suite, results));
+        }
+        System.out.println("Benchmark report: " + file.getAbsolutePath());
+        return file;
+    }
+
+    static String toJson(String suite, List<Result> results) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"suite\": \"").append(suite).append("\",\n")
+                .append("  \"timestamp\": ").append(System.currentTimeMillis()).append(",\n")
+                .append("  \"jvm\": \"").append(System.getProperty("java.vm.name")).append(' ')
+                .append(System.getProperty("java.version")).append("\",\n")
+                .append("  \"results\": [");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append(String.format(Locale.US,
+                            "    {\"name\": \"%s\", \"opsPerSecond\": %.1f, \"nanosPerOp\": %.2f, \"bytesPerOp\": %.1f}",
+                            result.name, result.opsPerSecond, result.nanosPerOp, result.bytesPerOp));
+        }
+        return json.append("\n  ]\n}\n").toString();
+    }
+
+    /**
+     * bytes allocated by the calling thread so far, -1 if the jvm doesn't track it
+     */
+    public static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    // measured, when given, receives ops, elapsed nanos and allocated bytes
+    private int iterate(Op op, int counter, long[] measured) {
+        if (betweenIterations != null) {
+            betweenIterations.run();
+        }
+        long ops = 0;
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < BATCH; i++) {
+                blackhole = op.run(counter++);
+            }
+            ops += BATCH;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        long allocatedAfter = allocatedBytes();
+
+        if (measured != null) {
+            measured[0] = ops;
+            measured[1] = elapsed;
+            measured[2] = allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore;
+        }
+        return counter;
+    }
+}
@@ -16,4 +16,5 @@ dependencyResolutionManagement {
 }
 
 rootProject.name = "SmartHat"
-include(":app")
\ No newline at end of file
+include(":app")
+include(":core")
\ No newline at end of file